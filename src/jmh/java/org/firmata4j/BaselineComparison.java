@@ -0,0 +1,150 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares results of the JMH benchmarks in CSV format with the baseline
+ * checked in with the sources and prints the change of every score.<br/>
+ * A score that got worse than the baseline by more than the threshold and
+ * more than the errors of both measurements is marked as a regression.<br/>
+ * Run with
+ * {@code java org.firmata4j.BaselineComparison baseline.csv result.csv [threshold in percents]}.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class BaselineComparison {
+
+    private static final double DEFAULT_THRESHOLD = 10;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: BaselineComparison baseline.csv result.csv [threshold in percents]");
+            return;
+        }
+        if (!new File(args[0]).isFile()) {
+            System.out.printf("There is no baseline in %s. Copy %s there to make one.%n", args[0], args[1]);
+            return;
+        }
+        Map<String, Score> baseline = read(new File(args[0]));
+        Map<String, Score> result = read(new File(args[1]));
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+        int regressions = 0;
+        for (Map.Entry<String, Score> entry : result.entrySet()) {
+            Score current = entry.getValue();
+            Score base = baseline.get(entry.getKey());
+            if (base == null) {
+                System.out.printf("%-70s %14.3f %-8s (no baseline)%n", entry.getKey(), current.value, current.unit);
+                continue;
+            }
+            double change = (current.value - base.value) * 100 / base.value;
+            // throughput is better when higher, time is better when lower
+            double worse = current.higherIsBetter ? -change : change;
+            boolean regression = worse > threshold
+                    && Math.abs(current.value - base.value) > current.error + base.error;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-70s %14.3f %-8s %+7.1f%%%s%n", entry.getKey(), current.value, current.unit,
+                    change, regression ? "  REGRESSION" : "");
+        }
+        System.out.printf("%d of %d benchmarks regressed by more than %.0f%%%n", regressions, result.size(), threshold);
+    }
+
+    /**
+     * Reads scores from a CSV file written by JMH with {@code -rf csv}.
+     */
+    private static Map<String, Score> read(File file) throws IOException {
+        Map<String, Score> result = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            List<String> header = split(reader.readLine());
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                List<String> row = split(line);
+                StringBuilder key = new StringBuilder(row.get(0));
+                for (int i = 7; i < row.size() && i < header.size(); i++) {
+                    if (!row.get(i).isEmpty()) {
+                        key.append(' ').append(header.get(i).replace("Param: ", "")).append('=').append(row.get(i));
+                    }
+                }
+                String error = row.get(5);
+                result.put(key.toString(), new Score(
+                        Double.parseDouble(row.get(4)),
+                        error.isEmpty() || "NaN".equals(error) ? 0 : Double.parseDouble(error),
+                        row.get(6),
+                        "thrpt".equals(row.get(1))));
+            }
+        }
+        return result;
+    }
+
+    private static List<String> split(String line) {
+        List<String> result = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                result.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        result.add(cell.toString());
+        return result;
+    }
+
+    private static class Score {
+
+        private final double value;
+        private final double error;
+        private final String unit;
+        private final boolean higherIsBetter;
+
+        Score(double value, double error, String unit, boolean higherIsBetter) {
+            this.value = value;
+            this.error = error;
+            this.unit = unit;
+            this.higherIsBetter = higherIsBetter;
+        }
+
+    }
+
+}
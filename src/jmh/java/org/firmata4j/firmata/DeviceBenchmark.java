@@ -0,0 +1,174 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.firmata4j.IODeviceEventListener;
+import org.firmata4j.IOEvent;
+import org.firmata4j.Parser;
+import org.firmata4j.Pin;
+import org.firmata4j.PinValueSink;
+import org.firmata4j.transport.TransportInterface;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures setting of output values by {@link FirmataPin} and dispatching of
+ * the values received from a board through {@link FirmataDevice} to the
+ * specified count of {@link IODeviceEventListener}s.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeviceBenchmark {
+
+    private static final int PINS = 8;
+    private static final int FIRST_ANALOG = 2;
+    private static final int MESSAGES = 60;
+
+    @Param({"0", "4"})
+    private int listeners;
+
+    private final AtomicLong values = new AtomicLong();
+    private final byte[][] chunks = new byte[2][];
+    private Parser parser;
+    private FirmataDevice device;
+    private Pin output;
+    private int chunk;
+    private long value;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        device = new FirmataDevice(new TransportInterface() {
+            @Override
+            public void start() throws IOException {
+
+            }
+
+            @Override
+            public void stop() throws IOException {
+
+            }
+
+            @Override
+            public void write(byte[] bytes) throws IOException {
+
+            }
+
+            @Override
+            public void setParser(Parser p) {
+                parser = p;
+            }
+        });
+        device.addPinValueSink(new PinValueSink() {
+            @Override
+            public void onValue(int pinIndex, long value, long nanoTime) {
+                values.incrementAndGet();
+            }
+        });
+        for (int i = 0; i < listeners; i++) {
+            device.addEventListener(new CountingListener());
+        }
+        device.start();
+        parser.parse(BoardResponses.handshake(PINS, FIRST_ANALOG, FIRST_ANALOG));
+        device.ensureInitializationIsDone();
+        output = device.getPin(0);
+        // every message changes the value of its channel, so that every message reaches the sink
+        for (int c = 0; c < chunks.length; c++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (int i = 0; i < MESSAGES; i++) {
+                byte[] message = BoardResponses.analogMessage(i % (PINS - FIRST_ANALOG), c * 512 + i);
+                out.write(message, 0, message.length);
+            }
+            chunks[c] = out.toByteArray();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        device.stop();
+    }
+
+    @Benchmark
+    public long setValue() throws IOException {
+        value ^= 1;
+        output.setValue(value);
+        return value;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long dispatch() {
+        long expected = values.get() + MESSAGES;
+        parser.parse(chunks[chunk ^= 1]);
+        while (values.get() < expected) {
+            Thread.yield();
+        }
+        return expected;
+    }
+
+    private static class CountingListener implements IODeviceEventListener {
+
+        private long events;
+
+        @Override
+        public void onStart(IOEvent event) {
+        }
+
+        @Override
+        public void onStop(IOEvent event) {
+        }
+
+        @Override
+        public void onPinChange(IOEvent event) {
+            events++;
+        }
+
+        @Override
+        public void onMessageReceive(IOEvent event, String message) {
+        }
+
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.util.concurrent.TimeUnit;
+import org.firmata4j.Pin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the encoders of {@link FirmataMessageFactory}.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageFactoryBenchmark {
+
+    private int value;
+
+    @Benchmark
+    public byte[] setMode() {
+        return FirmataMessageFactory.setMode((byte) (value++ & 0x0F), Pin.Mode.OUTPUT);
+    }
+
+    @Benchmark
+    public byte[] setDigitalPinValue() {
+        return FirmataMessageFactory.setDigitalPinValue((byte) (value++ & 0x0F), (byte) 1);
+    }
+
+    @Benchmark
+    public byte[] setAnalogPinValue() {
+        return FirmataMessageFactory.setAnalogPinValue((byte) 3, value++ & 0x3FFF);
+    }
+
+    @Benchmark
+    public byte[] setExtendedAnalogPinValue() {
+        return FirmataMessageFactory.setAnalogPinValue((byte) 20, value++ & 0x3FFF);
+    }
+
+    @Benchmark
+    public byte[] i2cWriteRequest() {
+        byte b = (byte) value++;
+        return FirmataMessageFactory.i2cWriteRequest((byte) 0x3C, (byte) 0x40, b, b, b, b, b, b, b, b, b, b, b, b, b, b, b, b);
+    }
+
+    @Benchmark
+    public byte[] i2cReadRequest() {
+        return FirmataMessageFactory.i2cReadRequest((byte) 0x3C, value++ & 0xFF, 6, false);
+    }
+
+    @Benchmark
+    public byte[] analogReport() {
+        return FirmataMessageFactory.analogReport(true);
+    }
+
+    @Benchmark
+    public byte[] stringMessage() {
+        return FirmataMessageFactory.stringMessage("Hello, Firmata!");
+    }
+
+}
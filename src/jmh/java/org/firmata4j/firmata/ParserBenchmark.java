@@ -0,0 +1,158 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.firmata4j.Consumer;
+import org.firmata4j.firmata.parser.FirmataParser;
+import org.firmata4j.firmata.parser.WaitingForMessageState;
+import org.firmata4j.fsm.DirectExecutor;
+import org.firmata4j.fsm.Event;
+import org.firmata4j.fsm.FiniteStateMachine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import static org.firmata4j.firmata.parser.FirmataEventType.*;
+import static org.firmata4j.firmata.parser.FirmataToken.*;
+
+/**
+ * Measures how fast the byte stream of a board is turned into events by
+ * {@link FiniteStateMachine} alone and by {@link FirmataParser} that hands
+ * the bytes over to its own thread.<br/>
+ * The stream is what a board reporting 6 analog inputs, 2 digital ports, an
+ * I2C device and occasional strings sends to the host.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    private static final int CYCLES = 16;
+    private static final int MESSAGES_PER_CYCLE = 10;
+    private static final int MESSAGES = CYCLES * MESSAGES_PER_CYCLE;
+
+    private final AtomicLong events = new AtomicLong();
+    private byte[] stream;
+    private FiniteStateMachine fsm;
+    private FirmataParser parser;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stream = stream();
+        fsm = countingStateMachine();
+        parser = new FirmataParser(countingStateMachine());
+        parser.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        parser.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long stateMachine() {
+        fsm.process(stream);
+        return events.get();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long parser() {
+        long expected = events.get() + MESSAGES;
+        parser.parse(stream);
+        while (events.get() < expected) {
+            Thread.yield();
+        }
+        return expected;
+    }
+
+    /**
+     * Creates a state machine that counts the messages. Every event has a
+     * handler, otherwise the state machine logs the event.
+     */
+    private FiniteStateMachine countingStateMachine() {
+        Consumer<Event> counter = new Consumer<Event>() {
+            @Override
+            public void accept(Event event) {
+                events.incrementAndGet();
+            }
+        };
+        FiniteStateMachine result = new FiniteStateMachine(WaitingForMessageState.class);
+        result.setEventHandlingExecutor(DirectExecutor.INSTANCE);
+        result.addHandler(ANALOG_MESSAGE_RESPONSE, counter);
+        result.addHandler(DIGITAL_PORT_MESSAGE, counter);
+        result.addHandler(I2C_MESSAGE, counter);
+        result.addHandler(STRING_MESSAGE, counter);
+        // a port message is followed by a message of every pin of the port
+        result.addHandler(DIGITAL_MESSAGE_RESPONSE, new Consumer<Event>() {
+            @Override
+            public void accept(Event event) {
+            }
+        });
+        return result;
+    }
+
+    private static byte[] stream() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int cycle = 0; cycle < CYCLES; cycle++) {
+            for (int channel = 0; channel < 6; channel++) {
+                write(out, BoardResponses.analogMessage(channel, (cycle * 61 + channel * 173) % 1024));
+            }
+            for (int port = 0; port < 2; port++) {
+                int value = cycle * (port + 1) & 0xFF;
+                write(out, new byte[] {(byte) (DIGITAL_MESSAGE | port), (byte) (value & 0x7F), (byte) (value >>> 7)});
+            }
+            write(out, BoardResponses.i2cReply(0x3C, 0x10, cycle, cycle + 1, cycle + 2, cycle + 3));
+            if (cycle % 2 == 0) {
+                write(out, FirmataMessageFactory.stringMessage("cycle " + cycle));
+            } else {
+                write(out, BoardResponses.analogMessage(0, cycle));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void write(ByteArrayOutputStream out, byte[] message) {
+        out.write(message, 0, message.length);
+    }
+
+}
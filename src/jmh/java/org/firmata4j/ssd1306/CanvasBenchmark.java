@@ -0,0 +1,115 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.ssd1306;
+
+import java.util.concurrent.TimeUnit;
+import org.firmata4j.ssd1306.MonochromeCanvas.Color;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the drawing primitives of {@link MonochromeCanvas} on a canvas of
+ * 128x64 pixels.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CanvasBenchmark {
+
+    private final MonochromeCanvas canvas = new MonochromeCanvas(128, 64);
+    private int step;
+
+    private Color color() {
+        return (step++ & 1) == 0 ? Color.BRIGHT : Color.DARK;
+    }
+
+    @Benchmark
+    public MonochromeCanvas setPixel() {
+        int i = step;
+        canvas.setPixel(i & 127, (i >>> 7) & 63, color());
+        return canvas;
+    }
+
+    @Benchmark
+    public MonochromeCanvas drawLine() {
+        canvas.drawLine(0, 0, 127, 63, color());
+        return canvas;
+    }
+
+    @Benchmark
+    public MonochromeCanvas drawHorizontalLine() {
+        canvas.drawHorizontalLine(0, 31, 128, color());
+        return canvas;
+    }
+
+    @Benchmark
+    public MonochromeCanvas fillRect() {
+        canvas.fillRect(8, 8, 112, 48, color());
+        return canvas;
+    }
+
+    @Benchmark
+    public MonochromeCanvas drawCircle() {
+        canvas.drawCircle(64, 32, 30, color());
+        return canvas;
+    }
+
+    @Benchmark
+    public MonochromeCanvas fillCircle() {
+        canvas.fillCircle(64, 32, 30, color());
+        return canvas;
+    }
+
+    @Benchmark
+    public MonochromeCanvas fillTriangle() {
+        canvas.fillTriangle(0, 63, 64, 0, 127, 63, color());
+        return canvas;
+    }
+
+    @Benchmark
+    public MonochromeCanvas drawString() {
+        canvas.setColor(color());
+        canvas.drawString(0, 0, "Hello, Firmata!");
+        return canvas;
+    }
+
+    @Benchmark
+    public MonochromeCanvas clear() {
+        canvas.clear();
+        return canvas;
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.ssd1306;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.firmata4j.I2CDevice;
+import org.firmata4j.I2CEvent;
+import org.firmata4j.I2CListener;
+import org.firmata4j.flow.Publisher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures transferring of the canvas by {@link SSD1306#display()} to an I2C
+ * device that only counts the bytes it has been told.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DisplayBenchmark {
+
+    @Param({"SSD1306_128_64", "SSD1306_128_32"})
+    private SSD1306.Size size;
+
+    private final StubDevice device = new StubDevice();
+    private SSD1306 display;
+
+    @Setup
+    public void setUp() {
+        display = new SSD1306(device, size);
+        display.getCanvas().drawString(0, 0, "Hello, Firmata!");
+        display.getCanvas().fillCircle(64, size.height / 2, size.height / 4, MonochromeCanvas.Color.BRIGHT);
+    }
+
+    @Benchmark
+    public long display() {
+        display.display();
+        return device.told;
+    }
+
+    private static class StubDevice implements I2CDevice {
+
+        private long told;
+
+        @Override
+        public byte getAddress() {
+            return 0x3C;
+        }
+
+        @Override
+        public void setDelay(int delay) throws IOException {
+        }
+
+        @Override
+        public void tell(byte... data) throws IOException {
+            told += data.length;
+        }
+
+        @Override
+        public void ask(byte responseLength, I2CListener listener) throws IOException {
+        }
+
+        @Override
+        public void ask(int register, byte responseLength, I2CListener listener) throws IOException {
+        }
+
+        @Override
+        public void subscribe(I2CListener listener) {
+        }
+
+        @Override
+        public void unsubscribe(I2CListener listener) {
+        }
+
+        @Override
+        public boolean startReceivingUpdates(int register, byte messageLength) throws IOException {
+            return false;
+        }
+
+        @Override
+        public boolean startReceivingUpdates(byte messageLength) throws IOException {
+            return false;
+        }
+
+        @Override
+        public void stopReceivingUpdates() throws IOException {
+        }
+
+        @Override
+        public byte[] read(int register, byte length, long timeout, TimeUnit unit) throws IOException, InterruptedException, TimeoutException {
+            return new byte[length];
+        }
+
+        @Override
+        public Publisher<I2CEvent> getPublisher() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j;
+
+import java.util.Arrays;
+
+/**
+ * Values of all analog channels the device has reported in one sampling
+ * cycle.<br/>
+ * The values are indexed by analog channel. A channel that was not reported
+ * in the cycle has value 0 and {@link #hasChannel(int)} returns
+ * {@code false} for it.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class AnalogFrame {
+
+    private final IODevice device;
+    private final int[] values;
+    private final int channels;
+    private final long nanoTime;
+
+    /**
+     * Constructs the frame.
+     *
+     * @param device the device that reported the values
+     * @param values values indexed by analog channel
+     * @param channels bit mask of the reported channels
+     * @param nanoTime the moment the first value of the cycle was received as
+     * reported by {@link System#nanoTime()}
+     */
+    public AnalogFrame(IODevice device, int[] values, int channels, long nanoTime) {
+        this.device = device;
+        this.values = values;
+        this.channels = channels;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Returns the device that reported the values.
+     *
+     * @return the device
+     */
+    public IODevice getDevice() {
+        return device;
+    }
+
+    /**
+     * Returns the values indexed by analog channel. The array is not copied,
+     * so it must not be modified.
+     *
+     * @return the values
+     */
+    public int[] getValues() {
+        return values;
+    }
+
+    /**
+     * Returns the value of the analog channel.
+     *
+     * @param channel the analog channel
+     * @return value of the channel or 0 if the channel was not reported
+     */
+    public int getValue(int channel) {
+        return channel < values.length ? values[channel] : 0;
+    }
+
+    /**
+     * Checks if the channel was reported in the cycle.
+     *
+     * @param channel the analog channel
+     * @return {@code true} if the frame contains value of the channel
+     */
+    public boolean hasChannel(int channel) {
+        return channel < values.length && (channels & (1 << channel)) != 0;
+    }
+
+    /**
+     * Returns count of the channels reported in the cycle.
+     *
+     * @return count of the channels
+     */
+    public int getChannelCount() {
+        return Integer.bitCount(channels);
+    }
+
+    /**
+     * Returns the moment the first value of the cycle was received as
+     * reported by {@link System#nanoTime()}.
+     *
+     * @return the moment of the frame
+     */
+    public long getNanoTime() {
+        return nanoTime;
+    }
+
+    @Override
+    public String toString() {
+        return "AnalogFrame{channels=" + Integer.toBinaryString(channels)
+                + ", values=" + Arrays.toString(values) + ", nanoTime=" + nanoTime + '}';
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An event which indicates that the connection to an {@link IODevice} has
+ * been lost or restored.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ * @see ConnectionListener
+ */
+public class ConnectionEvent {
+
+    private final IODevice device;
+    private final IOException cause;
+    private final long downtime;
+    private final int attempts;
+    private final boolean stateRestored;
+    private final long timestamp = System.currentTimeMillis();
+
+    /**
+     * Constructs the event of loss of the connection.
+     *
+     * @param device the device that has been disconnected
+     * @param cause the failure that revealed the loss
+     */
+    public ConnectionEvent(IODevice device, IOException cause) {
+        this(device, cause, 0, 0, false);
+    }
+
+    /**
+     * Constructs the event of restoration of the connection.
+     *
+     * @param device the device that has been connected again
+     * @param downtime nanoseconds the device has been disconnected for
+     * @param attempts count of connection attempts it took
+     * @param stateRestored true if the state of the device has been restored
+     */
+    public ConnectionEvent(IODevice device, long downtime, int attempts, boolean stateRestored) {
+        this(device, null, downtime, attempts, stateRestored);
+    }
+
+    private ConnectionEvent(IODevice device, IOException cause, long downtime, int attempts, boolean stateRestored) {
+        this.device = device;
+        this.cause = cause;
+        this.downtime = downtime;
+        this.attempts = attempts;
+        this.stateRestored = stateRestored;
+    }
+
+    /**
+     * Returns the device that originated the event.
+     *
+     * @return the device
+     */
+    public IODevice getDevice() {
+        return device;
+    }
+
+    /**
+     * Returns the failure that revealed the loss of the connection.
+     *
+     * @return the cause of disconnection or null if the connection has been
+     * restored
+     */
+    public IOException getCause() {
+        return cause;
+    }
+
+    /**
+     * Returns how long the device has been disconnected, including the time
+     * taken to restore its state.
+     *
+     * @param unit time unit of the result
+     * @return the downtime or 0 if the connection has been lost
+     */
+    public long getDowntime(TimeUnit unit) {
+        return unit.convert(downtime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the count of connection attempts it took to restore the
+     * connection.
+     *
+     * @return count of attempts or 0 if the connection has been lost
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Checks whether the modes and values of the pins, the I2C configuration
+     * and reporting of the device have been applied again after
+     * reconnection. That is not done when the device runs another firmware.
+     *
+     * @return true if the state of the device has been restored
+     */
+    public boolean isStateRestored() {
+        return stateRestored;
+    }
+
+    /**
+     * Returns the timestamp of the event.
+     *
+     * @return the timestamp in milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j;
+
+/**
+ * The listener of the connection to a device.<br/>
+ * The device notifies the listener only if its transport reports the state
+ * of the connection. The listener is invoked on the threads of the transport
+ * and of the device, so it should return quickly.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ * @see IODevice#addConnectionListener(ConnectionListener)
+ * @see org.firmata4j.transport.ObservableTransport
+ */
+public interface ConnectionListener {
+
+    /**
+     * Invoked when the connection to the device is lost.
+     *
+     * @param event the event that carries the cause of the loss
+     */
+    void onDisconnect(ConnectionEvent event);
+
+    /**
+     * Invoked when the device is connected again and its state has been
+     * restored if possible.
+     *
+     * @param event the event that carries the downtime
+     */
+    void onReconnect(ConnectionEvent event);
+
+}
@@ -0,0 +1,108 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j;
+
+/**
+ * Consistent view of the modes and values of all pins of a device. All the
+ * values of a snapshot were current at the same moment, unlike the values
+ * obtained from the pins one by one.<br/>
+ * The snapshot is reusable: {@link #refresh()} copies the current state into
+ * the same arrays without creating any objects, so it can be invoked on
+ * every iteration of a control loop. A snapshot is not thread-safe.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ * @see IODevice#snapshot(long[], Pin.Mode[])
+ */
+public class DeviceSnapshot {
+
+    private final IODevice device;
+    private final long[] values;
+    private final Pin.Mode[] modes;
+    private long version = -1;
+
+    /**
+     * Creates a snapshot of the device. The device should be initialized, so
+     * that the count of its pins is known. The snapshot is empty until
+     * {@link #refresh()} is invoked.
+     *
+     * @param device the device
+     */
+    public DeviceSnapshot(IODevice device) {
+        this.device = device;
+        this.values = new long[device.getPinsCount()];
+        this.modes = new Pin.Mode[values.length];
+    }
+
+    /**
+     * Copies the current state of the pins of the device.
+     *
+     * @return {@code true} if the state has changed since the previous
+     * refresh
+     */
+    public boolean refresh() {
+        long previous = version;
+        version = device.snapshot(values, modes);
+        return version != previous;
+    }
+
+    /**
+     * Returns the count of pins in the snapshot.
+     *
+     * @return count of pins
+     */
+    public int getPinsCount() {
+        return values.length;
+    }
+
+    /**
+     * Returns the value the pin had at the moment of the snapshot.
+     *
+     * @param index index of the pin
+     * @return value of the pin
+     */
+    public long getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Returns the mode the pin had at the moment of the snapshot.
+     *
+     * @param index index of the pin
+     * @return mode of the pin
+     */
+    public Pin.Mode getMode(int index) {
+        return modes[index];
+    }
+
+    /**
+     * Returns the version of the state the snapshot holds. The version grows
+     * with every change of a pin of the device.
+     *
+     * @return the version of the state
+     */
+    public long getVersion() {
+        return version;
+    }
+
+}
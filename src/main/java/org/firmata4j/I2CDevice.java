@@ -25,6 +25,9 @@
 package org.firmata4j;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.firmata4j.flow.Publisher;
 
 /**
  * Represents an I2C device and encapsulates logic to communicate to it.
@@ -128,4 +131,29 @@ public interface I2CDevice {
      */
     void stopReceivingUpdates() throws IOException;
 
+    /**
+     * Reads data from the register of the I2C device blocking the current
+     * thread until the data arrives.
+     *
+     * @param register the register to read from
+     * @param length count of bytes to read
+     * @param timeout how long to wait
+     * @param unit time unit of the timeout
+     * @return the data
+     * @throws IOException when sending of the request fails
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws TimeoutException if the data does not arrive in time
+     */
+    byte[] read(int register, byte length, long timeout, TimeUnit unit) throws IOException, InterruptedException, TimeoutException;
+
+    /**
+     * Returns the publisher of the messages received from the I2C device
+     * after {@link #startReceivingUpdates(int, byte)}. Every subscriber has a
+     * bounded buffer of messages it has not requested yet. When the buffer is
+     * full, the messages from the same register get conflated.
+     *
+     * @return the publisher of the messages
+     */
+    Publisher<I2CEvent> getPublisher();
+
 }
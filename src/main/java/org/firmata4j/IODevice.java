@@ -26,6 +26,7 @@ package org.firmata4j;
 
 import java.io.IOException;
 import java.util.Set;
+import org.firmata4j.flow.Publisher;
 import org.firmata4j.fsm.Event;
 
 /**
@@ -104,6 +105,17 @@ public interface IODevice {
      * @return the pin
      */
     Pin getPin(int index);
+
+    /**
+     * Creates a group of pins that can be read and written as a whole. The
+     * first pin stands for the least significant bit of the group's value.
+     *
+     * @param indexes indexes of the pins that make up the group
+     * @return the group of pins
+     * @throws IllegalArgumentException when the indexes are empty, contain
+     * duplicates or point to nonexistent pins
+     */
+    PinGroup createPinGroup(int... indexes) throws IllegalArgumentException;
     
     /**
      * Returns I2C device by its address.
@@ -114,6 +126,21 @@ public interface IODevice {
      */
     I2CDevice getI2CDevice(byte address) throws IOException;
 
+    /**
+     * Copies the values and modes of all pins at once. Unlike reading the
+     * pins one by one, the copied state is consistent: it never mixes values
+     * from before and after an update. Copying does not block the threads
+     * that update the pins and does not create objects.
+     *
+     * @param values the array to receive the values indexed by pin
+     * @param modes the array to receive the modes indexed by pin, may be
+     * {@code null}
+     * @return the version of the copied state which grows with every change
+     * of a pin
+     * @see DeviceSnapshot
+     */
+    long snapshot(long[] values, Pin.Mode[] modes);
+
     /**
      * Adds the specified listener to receive events from this device.
      *
@@ -129,6 +156,82 @@ public interface IODevice {
      */
     void removeEventListener(IODeviceEventListener listener);
 
+    /**
+     * Adds the specified listener to receive notifications about loss and
+     * restoration of the connection to this device.
+     *
+     * @param listener the listener
+     */
+    void addConnectionListener(ConnectionListener listener);
+
+    /**
+     * Removes the specified listener so that it no longer receives
+     * notifications about the connection.
+     *
+     * @param listener the listener
+     */
+    void removeConnectionListener(ConnectionListener listener);
+
+    /**
+     * Adds the specified sink to receive values of all pins of this device.
+     * The sink receives values without creation of {@link IOEvent}s.
+     *
+     * @param sink the sink
+     */
+    void addPinValueSink(PinValueSink sink);
+
+    /**
+     * Removes the specified sink so that it no longer receives values of the
+     * pins.
+     *
+     * @param sink the sink
+     */
+    void removePinValueSink(PinValueSink sink);
+
+    /**
+     * Adds the specified sink to receive every value the device reports for
+     * its input pins, including the values that repeat the previous one. The
+     * values bypass the filters of the pins. Unlike the sinks added by
+     * {@link #addPinValueSink(PinValueSink)}, these sinks see the samples
+     * rather than the changes, which is what statistics over time need.
+     *
+     * @param sink the sink
+     */
+    void addPinSampleSink(PinValueSink sink);
+
+    /**
+     * Removes the specified sink so that it no longer receives the samples of
+     * the pins.
+     *
+     * @param sink the sink
+     */
+    void removePinSampleSink(PinValueSink sink);
+
+    /**
+     * Adds the specified listener to receive values of all analog channels
+     * reported in a sampling cycle at once.
+     *
+     * @param listener the listener
+     */
+    void addAnalogFrameListener(AnalogFrameListener listener);
+
+    /**
+     * Removes the specified listener so that it no longer receives frames of
+     * analog values.
+     *
+     * @param listener the listener
+     */
+    void removeAnalogFrameListener(AnalogFrameListener listener);
+
+    /**
+     * Returns the publisher of the values of all pins of this device. Every
+     * subscriber has a bounded buffer of samples it has not requested yet.
+     * When the buffer is full, the samples of the same pin get conflated.
+     *
+     * @return the publisher of pin values
+     */
+    Publisher<PinSample> getPinPublisher();
+
     /**
      * Returns the name of a protocol that the device uses.
      *
@@ -78,9 +78,23 @@ public class IOEvent {
      * @param timestamp the timestamp of event
      */
     public IOEvent(Pin pin, long timestamp) {
+        this(pin, pin.getValue(), timestamp);
+    }
+
+    /**
+     * Constructs the event is relevant to a particular {@link Pin}.
+     *
+     * This constructor allows setting the value the pin received
+     * independently of the current value of the pin.
+     *
+     * @param pin the pin that originated the event
+     * @param value the value the pin received
+     * @param timestamp the timestamp of event
+     */
+    public IOEvent(Pin pin, long value, long timestamp) {
         this.device = pin.getDevice();
         this.pin = pin;
-        this.value = pin.getValue();
+        this.value = value;
         this.timestamp = timestamp;
     }
 
@@ -0,0 +1,437 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.firmata4j.firmata.DaemonThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decorator that isolates a listener from the thread that produces the
+ * events.<br/>
+ * Each isolated listener has its own bounded queue. The events are put into
+ * the queue and a separate task delivers them to the decorated listener.
+ * Thus a slow listener does not stall the processing of the messages from the
+ * device and the other listeners. What happens when the queue is full is
+ * defined by {@link OverflowPolicy}.<br/>
+ * The decorator is registered instead of the listener it decorates:
+ * <pre>
+ * IsolatedListener isolated = new IsolatedListener(listener, 1024, OverflowPolicy.CONFLATE);
+ * device.addEventListener(isolated);
+ * ...
+ * device.removeEventListener(isolated);
+ * </pre>
+ * The decorator of an {@link IODeviceEventListener} ignores the events of
+ * {@link PinEventListener} and vice versa.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class IsolatedListener implements IODeviceEventListener, PinEventListener {
+
+    /**
+     * Defines what happens to an event when the queue of an isolated listener
+     * is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The thread that produces the event waits until the queue has room
+         * for the event. No events are lost but the producer is slowed down
+         * to the pace of the listener.
+         */
+        BLOCK,
+        /**
+         * The oldest event in the queue is dropped to make room for the new
+         * one.
+         */
+        DROP_OLDEST,
+        /**
+         * A pin change that is still in the queue is replaced by a newer
+         * change of the same pin, so the listener receives only the latest
+         * change of every pin. If the queue is full of other events, the
+         * oldest event is dropped.
+         */
+        CONFLATE
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IsolatedListener.class);
+    private static final ExecutorService DRAINERS = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 5, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(), new DaemonThreadFactory("firmata-isolated-listener"));
+
+    /**
+     * Firmata addresses up to 128 pins.
+     */
+    private static final int MAX_PINS = 128;
+
+    private static final int START = 0;
+    private static final int STOP = 1;
+    private static final int PIN_CHANGE = 2;
+    private static final int MESSAGE = 3;
+    private static final int MODE_CHANGE = 4;
+    private static final int VALUE_CHANGE = 5;
+
+    private final IODeviceEventListener deviceListener;
+    private final PinEventListener pinListener;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final Queue<Notification> queue = new ArrayDeque<>();
+    private final Notification[] pendingChanges = new Notification[2 * MAX_PINS]; // indexed by slot()
+    private final Lock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private boolean draining;
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong conflated = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong callbackTime = new AtomicLong();
+    private final AtomicLong maxCallbackTime = new AtomicLong();
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            while (true) {
+                Notification notification;
+                lock.lock();
+                try {
+                    notification = queue.poll();
+                    if (notification == null) {
+                        draining = false;
+                        return;
+                    }
+                    forget(notification);
+                    notFull.signal();
+                } finally {
+                    lock.unlock();
+                }
+                deliver(notification);
+            }
+        }
+    };
+
+    /**
+     * Creates an isolated decorator of the device listener.
+     *
+     * @param listener the listener to be isolated
+     * @param capacity maximum count of the events waiting for delivery
+     * @param policy what to do when there is no room for a new event
+     */
+    public IsolatedListener(IODeviceEventListener listener, int capacity, OverflowPolicy policy) {
+        this(listener, null, capacity, policy);
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener is required");
+        }
+    }
+
+    /**
+     * Creates an isolated decorator of the pin listener.
+     *
+     * @param listener the listener to be isolated
+     * @param capacity maximum count of the events waiting for delivery
+     * @param policy what to do when there is no room for a new event
+     */
+    public IsolatedListener(PinEventListener listener, int capacity, OverflowPolicy policy) {
+        this(null, listener, capacity, policy);
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener is required");
+        }
+    }
+
+    private IsolatedListener(IODeviceEventListener deviceListener, PinEventListener pinListener, int capacity, OverflowPolicy policy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than 0.");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("Overflow policy is required");
+        }
+        this.deviceListener = deviceListener;
+        this.pinListener = pinListener;
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    @Override
+    public void onStart(IOEvent event) {
+        if (deviceListener != null) {
+            offer(new Notification(START, event, null));
+        }
+    }
+
+    @Override
+    public void onStop(IOEvent event) {
+        if (deviceListener != null) {
+            offer(new Notification(STOP, event, null));
+        }
+    }
+
+    @Override
+    public void onPinChange(IOEvent event) {
+        if (deviceListener != null) {
+            offer(new Notification(PIN_CHANGE, event, null));
+        }
+    }
+
+    @Override
+    public void onMessageReceive(IOEvent event, String message) {
+        if (deviceListener != null) {
+            offer(new Notification(MESSAGE, event, message));
+        }
+    }
+
+    @Override
+    public void onModeChange(IOEvent event) {
+        if (pinListener != null) {
+            offer(new Notification(MODE_CHANGE, event, null));
+        }
+    }
+
+    @Override
+    public void onValueChange(IOEvent event) {
+        if (pinListener != null) {
+            offer(new Notification(VALUE_CHANGE, event, null));
+        }
+    }
+
+    /**
+     * Returns the count of events waiting for delivery.
+     *
+     * @return size of the queue
+     */
+    public int getQueueSize() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how long the oldest event that is waiting for delivery has been
+     * in the queue.
+     *
+     * @param unit time unit of the result
+     * @return the lag of the listener or 0 if the queue is empty
+     */
+    public long getLag(TimeUnit unit) {
+        lock.lock();
+        try {
+            Notification oldest = queue.peek();
+            return oldest == null ? 0 : unit.convert(System.nanoTime() - oldest.enqueued, TimeUnit.NANOSECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the count of events delivered to the listener.
+     *
+     * @return count of delivered events
+     */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * Returns the count of events dropped because the queue was full.
+     *
+     * @return count of dropped events
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the count of pin changes replaced by a newer change of the same
+     * pin before they were delivered.
+     *
+     * @return count of conflated events
+     */
+    public long getConflatedCount() {
+        return conflated.get();
+    }
+
+    /**
+     * Returns the count of events the listener failed to handle by throwing
+     * an exception.
+     *
+     * @return count of failures
+     */
+    public long getFailureCount() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the average time the listener takes to handle an event.
+     *
+     * @param unit time unit of the result
+     * @return average duration of callbacks
+     */
+    public long getAverageCallbackTime(TimeUnit unit) {
+        long count = delivered.get();
+        return count == 0 ? 0 : unit.convert(callbackTime.get() / count, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the longest time the listener took to handle an event.
+     *
+     * @param unit time unit of the result
+     * @return maximum duration of callbacks
+     */
+    public long getMaxCallbackTime(TimeUnit unit) {
+        return unit.convert(maxCallbackTime.get(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IsolatedListener [%s, policy=%s, queue=%d/%d, delivered=%d, dropped=%d, conflated=%d]",
+                deviceListener != null ? deviceListener : pinListener, policy, getQueueSize(), capacity,
+                delivered.get(), dropped.get(), conflated.get());
+    }
+
+    private void offer(Notification notification) {
+        boolean conflatable = policy == OverflowPolicy.CONFLATE
+                && (notification.kind == PIN_CHANGE || notification.kind == VALUE_CHANGE)
+                && notification.event.getPin() != null;
+        lock.lock();
+        try {
+            if (conflatable) {
+                Notification pending = pendingChanges[slot(notification)];
+                if (pending != null) {
+                    pending.event = notification.event;
+                    conflated.incrementAndGet();
+                    return;
+                }
+            }
+            while (queue.size() >= capacity) {
+                if (policy == OverflowPolicy.BLOCK) {
+                    try {
+                        notFull.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        dropped.incrementAndGet();
+                        return;
+                    }
+                } else {
+                    forget(queue.poll());
+                    dropped.incrementAndGet();
+                }
+            }
+            queue.add(notification);
+            if (conflatable) {
+                pendingChanges[slot(notification)] = notification;
+            }
+            if (!draining) {
+                draining = true;
+                DRAINERS.execute(drain);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the notification from the pending changes of pins. Must be
+     * called holding the lock.
+     */
+    private void forget(Notification notification) {
+        if ((notification.kind == PIN_CHANGE || notification.kind == VALUE_CHANGE)
+                && notification.event.getPin() != null && pendingChanges[slot(notification)] == notification) {
+            pendingChanges[slot(notification)] = null;
+        }
+    }
+
+    /**
+     * Returns the slot of pending changes a conflatable notification occupies.
+     * Changes of different kinds never replace each other even when they
+     * concern the same pin.
+     */
+    private static int slot(Notification notification) {
+        int pin = notification.event.getPin().getIndex();
+        return notification.kind == VALUE_CHANGE ? MAX_PINS + pin : pin;
+    }
+
+    private void deliver(Notification notification) {
+        long start = System.nanoTime();
+        try {
+            switch (notification.kind) {
+                case START:
+                    deviceListener.onStart(notification.event);
+                    break;
+                case STOP:
+                    deviceListener.onStop(notification.event);
+                    break;
+                case PIN_CHANGE:
+                    deviceListener.onPinChange(notification.event);
+                    break;
+                case MESSAGE:
+                    deviceListener.onMessageReceive(notification.event, notification.message);
+                    break;
+                case MODE_CHANGE:
+                    pinListener.onModeChange(notification.event);
+                    break;
+                case VALUE_CHANGE:
+                    pinListener.onValueChange(notification.event);
+                    break;
+            }
+        } catch (RuntimeException ex) {
+            failed.incrementAndGet();
+            LOGGER.error("Listener failed to handle an event", ex);
+        }
+        long duration = System.nanoTime() - start;
+        callbackTime.addAndGet(duration);
+        delivered.incrementAndGet();
+        long max = maxCallbackTime.get();
+        while (duration > max && !maxCallbackTime.compareAndSet(max, duration)) {
+            max = maxCallbackTime.get();
+        }
+    }
+
+    /**
+     * An event waiting for delivery.
+     */
+    private static class Notification {
+
+        private final int kind;
+        private final String message;
+        private final long enqueued = System.nanoTime();
+        private IOEvent event; // guarded by the lock of the listener
+
+        Notification(int kind, IOEvent event, String message) {
+            this.kind = kind;
+            this.event = event;
+            this.message = message;
+        }
+
+    }
+
+}
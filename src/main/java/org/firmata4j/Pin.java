@@ -26,7 +26,11 @@ package org.firmata4j;
 
 import java.io.IOException;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.firmata4j.filter.SignalFilter;
 import org.firmata4j.firmata.parser.FirmataToken;
+import org.firmata4j.flow.Publisher;
 
 /**
  * A pin is a connector of an {@link IODevice} to external signal receiver or
@@ -157,6 +161,19 @@ public interface Pin {
      */
     void setServoMode(int minPulse, int maxPulse) throws IOException, IllegalArgumentException;
 
+    /**
+     * Assigns new mode to the pin and asks the device to confirm it. The
+     * returned future gets completed when the device reports that the pin is
+     * in the mode.
+     *
+     * @param mode the mode the pin should get into
+     * @return the future that completes on confirmation of the mode
+     * @throws IOException when assigning is failed due a communication issue
+     * or too many changes are waiting for confirmation
+     * @throws IllegalArgumentException when the pin does not support the mode
+     */
+    PinStateFuture setModeAsync(Mode mode) throws IOException, IllegalArgumentException;
+
     /**
      * Checks if the pin supports the mode
      *
@@ -179,6 +196,45 @@ public interface Pin {
      */
     long getValue();
 
+    /**
+     * Blocks the current thread until the value of the pin matches the
+     * predicate. Returns immediately if the current value matches.<br/>
+     * The waiting thread is parked and woken up by the thread that updates
+     * the value, so many threads can wait cheaply. The predicate is evaluated
+     * on the updating thread and should be quick.
+     *
+     * @param predicate the condition the value should meet
+     * @param timeout how long to wait
+     * @param unit time unit of the timeout
+     * @return the value that matches the predicate
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws TimeoutException if the value does not match in time
+     */
+    long awaitValue(LongPredicate predicate, long timeout, TimeUnit unit) throws InterruptedException, TimeoutException;
+
+    /**
+     * Blocks the current thread until the value of the pin changes.
+     *
+     * @param timeout how long to wait
+     * @param unit time unit of the timeout
+     * @return the new value of the pin
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws TimeoutException if the value does not change in time
+     */
+    long awaitChange(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException;
+
+    /**
+     * Sets the filters the values reported by the device pass through before
+     * they are assigned to the pin. The listeners are notified only about the
+     * values that pass all the filters. Invoking the method without arguments
+     * removes the filters.<br/>
+     * Filters keep state of the signal, so every pin needs its own instances.
+     * The filters are not applied to the values set to an output pin.
+     *
+     * @param filters the filters in order of application
+     */
+    void setFilters(SignalFilter... filters);
+
     /**
      * Sets the value to the pin. It is impossible to set a value to a pin in
      * input mode such as {@link Mode#INPUT} or {@link Mode#ANALOG}.
@@ -190,6 +246,20 @@ public interface Pin {
      */
     void setValue(long value) throws IOException, IllegalStateException;
 
+    /**
+     * Sets the value to the pin and asks the device to confirm it. The
+     * returned future gets completed when the device reports that the pin
+     * has the value.
+     *
+     * @param value the value to be assigned to the pin
+     * @return the future that completes on confirmation of the value
+     * @throws IOException when setting fails due a communication issue or too
+     * many changes are waiting for confirmation
+     * @throws IllegalStateException when the pin is in input mode such as
+     * {@link Mode#INPUT} or {@link Mode#ANALOG}.
+     */
+    PinStateFuture setValueAsync(long value) throws IOException, IllegalStateException;
+
     /**
      * Adds the specified listener to receive events from this pin.
      *
@@ -212,5 +282,14 @@ public interface Pin {
      */
     void removeAllEventListeners();
 
+    /**
+     * Returns the publisher of the values of this pin. Every subscriber has a
+     * bounded buffer of samples it has not requested yet. When the buffer is
+     * full, the newest buffered sample is replaced.
+     *
+     * @return the publisher of the pin values
+     */
+    Publisher<PinSample> getPublisher();
+
 
 }
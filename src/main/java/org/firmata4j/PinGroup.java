@@ -0,0 +1,104 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.firmata4j;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A group of digital pins that are read and written as a whole. That is
+ * convenient for driving parallel buses such as data lines of a LCD or
+ * segments of an indicator.<br/>
+ * The first pin of the group stands for the least significant bit of the
+ * group's value.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ * @see IODevice#createPinGroup(int...)
+ */
+public interface PinGroup {
+
+    /**
+     * Returns an {@link IODevice} the pins of the group belong to.
+     *
+     * @return the device
+     */
+    IODevice getDevice();
+
+    /**
+     * Returns the pins of the group. The first pin of the list stands for the
+     * least significant bit of the group's value.
+     *
+     * @return the pins of the group
+     */
+    List<Pin> getPins();
+
+    /**
+     * Returns count of pins in the group.
+     *
+     * @return count of pins
+     */
+    int size();
+
+    /**
+     * Returns current value of the group. Every bit of the value represents
+     * the level of the corresponding pin (0 - low, 1 - high).
+     *
+     * @return current value of the group
+     */
+    long getValue();
+
+    /**
+     * Sets the levels of all the pins of the group at once. Every bit of the
+     * value represents the level of the corresponding pin. The bits that do
+     * not correspond to any pin of the group are ignored.
+     *
+     * @param value the value to be assigned to the group
+     * @throws IOException when setting fails due a communication issue
+     * @throws IllegalStateException when a pin of the group is not in
+     * {@link Pin.Mode#OUTPUT} mode
+     */
+    void setValue(long value) throws IOException, IllegalStateException;
+
+    /**
+     * Adds the specified listener to receive events from this group.
+     *
+     * @param listener the listener
+     */
+    void addEventListener(PinGroupEventListener listener);
+
+    /**
+     * Removes the specified listener so that it no longer receives events from
+     * this group.
+     *
+     * @param listener the listener
+     */
+    void removeEventListener(PinGroupEventListener listener);
+
+    /**
+     * Removes all listeners from this group.
+     */
+    void removeAllEventListeners();
+
+}
@@ -0,0 +1,90 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.firmata4j;
+
+/**
+ * An event which indicates that the value of a {@link PinGroup} changed.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class PinGroupEvent {
+
+    private final PinGroup group;
+    private final long value;
+    private final long timestamp;
+
+    /**
+     * Constructs the event.
+     *
+     * @param group the group that originated the event
+     * @param value the value the group received
+     */
+    public PinGroupEvent(PinGroup group, long value) {
+        this(group, value, System.currentTimeMillis());
+    }
+
+    /**
+     * Constructs the event.
+     *
+     * This constructor allows setting the timestamp of event.
+     *
+     * @param group the group that originated the event
+     * @param value the value the group received
+     * @param timestamp the timestamp of event
+     */
+    public PinGroupEvent(PinGroup group, long value, long timestamp) {
+        this.group = group;
+        this.value = value;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Returns the group that originated the event.
+     *
+     * @return the group
+     */
+    public PinGroup getGroup() {
+        return group;
+    }
+
+    /**
+     * Returns the value the group received.
+     *
+     * @return the value of the group
+     */
+    public long getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the timestamp of the event.
+     *
+     * @return timestamp of the event
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+}
@@ -0,0 +1,256 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Keeps recent values of selected pins along with the moments they were
+ * received.<br/>
+ * Every pin has a ring of fixed capacity. When the ring is full, the oldest
+ * sample gets overwritten, so the memory the history takes is bounded by
+ * {@link #getMemoryUsage()} from the moment of creation. The rings store
+ * primitives in byte buffers, either on heap or off heap, so recording a
+ * sample does not create objects and the history does not burden the garbage
+ * collector.<br/>
+ * The history is a {@link PinValueSink}, so it is registered on a device:
+ * <pre>
+ * PinHistory history = new PinHistory(10000, true, 14, 15);
+ * device.addPinValueSink(history);
+ * ...
+ * long[] times = new long[100];
+ * long[] values = new long[100];
+ * int count = history.latest(14, 100, times, values);
+ * </pre>
+ * The history records changes of the values. A pin that keeps the same value
+ * does not produce new samples.<br/>
+ * The queries copy the samples into arrays provided by the caller. The
+ * history is thread-safe.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class PinHistory implements PinValueSink {
+
+    /**
+     * Each sample consists of the moment and the value.
+     */
+    private static final int SAMPLE_SIZE = 2 * Long.SIZE / Byte.SIZE;
+
+    /**
+     * Firmata addresses up to 128 pins.
+     */
+    private static final int MAX_PINS = 128;
+
+    private final Ring[] rings = new Ring[MAX_PINS];
+    private final int capacity;
+    private final long memoryUsage;
+
+    /**
+     * Creates the history of the pins.
+     *
+     * @param capacity count of samples kept for every pin
+     * @param direct whether the samples are stored off heap
+     * @param pins indexes of the pins to keep history of
+     */
+    public PinHistory(int capacity, boolean direct, int... pins) {
+        if (capacity <= 0 || capacity > Integer.MAX_VALUE / SAMPLE_SIZE) {
+            throw new IllegalArgumentException("Capacity is out of range: " + capacity);
+        }
+        this.capacity = capacity;
+        long memory = 0;
+        for (int pin : pins) {
+            if (pin < 0 || pin >= MAX_PINS) {
+                throw new IllegalArgumentException("Pin index is out of range: " + pin);
+            }
+            if (rings[pin] == null) {
+                int size = capacity * SAMPLE_SIZE;
+                rings[pin] = new Ring(direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size));
+                memory += size;
+            }
+        }
+        this.memoryUsage = memory;
+    }
+
+    @Override
+    public void onValue(int pinIndex, long value, long nanoTime) {
+        if (pinIndex >= 0 && pinIndex < MAX_PINS) {
+            Ring ring = rings[pinIndex];
+            if (ring != null) {
+                ring.append(nanoTime, value);
+            }
+        }
+    }
+
+    /**
+     * Copies the latest samples of the pin, the oldest first.
+     *
+     * @param pin index of the pin
+     * @param count how many samples to copy at most
+     * @param times the array to receive the moments of the samples as
+     * reported by {@link System#nanoTime()}
+     * @param values the array to receive the values
+     * @return count of copied samples
+     * @throws IllegalArgumentException if the history does not keep the pin
+     */
+    public int latest(int pin, int count, long[] times, long[] values) {
+        return ring(pin).latest(count, times, values);
+    }
+
+    /**
+     * Copies the samples of the pin that were received within the range of
+     * time, the oldest first. If the arrays are too short, the earliest
+     * samples of the range are copied.
+     *
+     * @param pin index of the pin
+     * @param from the start of the range (inclusive) as reported by
+     * {@link System#nanoTime()}
+     * @param to the end of the range (inclusive) as reported by
+     * {@link System#nanoTime()}
+     * @param times the array to receive the moments of the samples
+     * @param values the array to receive the values
+     * @return count of copied samples
+     * @throws IllegalArgumentException if the history does not keep the pin
+     */
+    public int range(int pin, long from, long to, long[] times, long[] values) {
+        return ring(pin).range(from, to, times, values);
+    }
+
+    /**
+     * Returns count of the samples of the pin kept in the history.
+     *
+     * @param pin index of the pin
+     * @return count of the samples
+     * @throws IllegalArgumentException if the history does not keep the pin
+     */
+    public int size(int pin) {
+        return ring(pin).size();
+    }
+
+    /**
+     * Returns count of samples kept for every pin.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the count of bytes the samples take.
+     *
+     * @return the memory usage
+     */
+    public long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    /**
+     * Removes all the samples.
+     */
+    public void clear() {
+        for (Ring ring : rings) {
+            if (ring != null) {
+                ring.clear();
+            }
+        }
+    }
+
+    private Ring ring(int pin) {
+        Ring ring = pin >= 0 && pin < MAX_PINS ? rings[pin] : null;
+        if (ring == null) {
+            throw new IllegalArgumentException("History of pin " + pin + " is not kept.");
+        }
+        return ring;
+    }
+
+    /**
+     * Ring of samples of a single pin.
+     */
+    private final class Ring {
+
+        private final ByteBuffer buffer;
+        private long appended;
+
+        Ring(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        synchronized void append(long nanoTime, long value) {
+            int offset = (int) (appended % capacity) * SAMPLE_SIZE;
+            buffer.putLong(offset, nanoTime);
+            buffer.putLong(offset + SAMPLE_SIZE / 2, value);
+            appended++;
+        }
+
+        synchronized int latest(int count, long[] times, long[] values) {
+            int result = Math.min(Math.min(count, size()), Math.min(times.length, values.length));
+            copy(appended - result, result, times, values);
+            return result;
+        }
+
+        synchronized int range(long from, long to, long[] times, long[] values) {
+            long first = appended - size();
+            // the samples are appended in order of time, so the start of the range is found by bisection
+            long low = first;
+            long high = appended;
+            while (low < high) {
+                long middle = (low + high) >>> 1;
+                if (timeAt(middle) - from < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            int result = 0;
+            int limit = Math.min(times.length, values.length);
+            while (low + result < appended && result < limit && timeAt(low + result) - to <= 0) {
+                result++;
+            }
+            copy(low, result, times, values);
+            return result;
+        }
+
+        synchronized int size() {
+            return (int) Math.min(appended, capacity);
+        }
+
+        synchronized void clear() {
+            appended = 0;
+        }
+
+        private long timeAt(long sequence) {
+            return buffer.getLong((int) (sequence % capacity) * SAMPLE_SIZE);
+        }
+
+        private void copy(long start, int count, long[] times, long[] values) {
+            for (int i = 0; i < count; i++) {
+                int offset = (int) ((start + i) % capacity) * SAMPLE_SIZE;
+                times[i] = buffer.getLong(offset);
+                values[i] = buffer.getLong(offset + SAMPLE_SIZE / 2);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j;
+
+/**
+ * A value a pin had at a moment.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class PinSample {
+
+    private final int pinIndex;
+    private final long value;
+    private final long nanoTime;
+
+    /**
+     * Constructs the sample.
+     *
+     * @param pinIndex index of the pin
+     * @param value value of the pin
+     * @param nanoTime the moment the pin got the value as reported by
+     * {@link System#nanoTime()}
+     */
+    public PinSample(int pinIndex, long value, long nanoTime) {
+        this.pinIndex = pinIndex;
+        this.value = value;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Returns the index of the pin.
+     *
+     * @return index of the pin
+     */
+    public int getPinIndex() {
+        return pinIndex;
+    }
+
+    /**
+     * Returns the value of the pin.
+     *
+     * @return value of the pin
+     */
+    public long getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the moment the pin got the value as reported by
+     * {@link System#nanoTime()}.
+     *
+     * @return the moment the pin got the value
+     */
+    public long getNanoTime() {
+        return nanoTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PinSample [pin=%d, value=%d, nanoTime=%d]", pinIndex, value, nanoTime);
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.firmata4j;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The result of an acknowledged change of a pin's state. It gets completed
+ * when the device reports the pin's state that matches the change. The value
+ * of the future is the value of the pin as the device reported it.<br/>
+ * If the device does not confirm the change in time, the future fails with
+ * {@link java.util.concurrent.TimeoutException} as a cause.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ * @see Pin#setModeAsync(org.firmata4j.Pin.Mode)
+ * @see Pin#setValueAsync(long)
+ */
+public interface PinStateFuture extends Future<Long> {
+
+    /**
+     * Returns the pin which state is being changed.
+     *
+     * @return the pin
+     */
+    Pin getPin();
+
+    /**
+     * Returns the mode of the pin as the device reported it.
+     *
+     * @return the confirmed mode or null if the change has not been confirmed
+     */
+    Pin.Mode getMode();
+
+    /**
+     * Returns the time passed since the change was sent to the device until
+     * the device confirmed it.
+     *
+     * @param unit the time unit of the result
+     * @return the latency or -1 if the change has not been confirmed
+     */
+    long getLatency(TimeUnit unit);
+
+    /**
+     * Registers an action to be performed when the future completes in any
+     * way. If the future is already complete, the action is performed
+     * immediately in the current thread.
+     *
+     * @param action the action that receives the completed future
+     */
+    void whenDone(Consumer<PinStateFuture> action);
+
+}
@@ -0,0 +1,169 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.aggregate;
+
+/**
+ * Statistics of the values a pin has taken during a window of time.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class Aggregate {
+
+    private final int pinIndex;
+    private final long start;
+    private final long end;
+    private final long count;
+    private final long min;
+    private final long max;
+    private final long sum;
+    private final double mean;
+    private final double variance;
+
+    /**
+     * Constructs the aggregate.
+     *
+     * @param pinIndex index of the pin
+     * @param start the start of the window (inclusive) as reported by
+     * {@link System#nanoTime()}
+     * @param end the end of the window (exclusive) as reported by
+     * {@link System#nanoTime()}
+     * @param count count of the values
+     * @param min the least value
+     * @param max the greatest value
+     * @param sum sum of the values
+     * @param mean mean of the values
+     * @param variance population variance of the values
+     */
+    public Aggregate(int pinIndex, long start, long end, long count, long min, long max, long sum, double mean, double variance) {
+        this.pinIndex = pinIndex;
+        this.start = start;
+        this.end = end;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.mean = mean;
+        this.variance = variance;
+    }
+
+    /**
+     * Returns the index of the pin.
+     *
+     * @return index of the pin
+     */
+    public int getPinIndex() {
+        return pinIndex;
+    }
+
+    /**
+     * Returns the start of the window (inclusive) as reported by
+     * {@link System#nanoTime()}.
+     *
+     * @return the start of the window
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the end of the window (exclusive) as reported by
+     * {@link System#nanoTime()}.
+     *
+     * @return the end of the window
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Returns count of the values received during the window.
+     *
+     * @return count of the values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the least value.
+     *
+     * @return the least value
+     */
+    public long getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the greatest value.
+     *
+     * @return the greatest value
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns sum of the values.
+     *
+     * @return sum of the values
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns mean of the values.
+     *
+     * @return mean of the values
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Returns population variance of the values.
+     *
+     * @return variance of the values
+     */
+    public double getVariance() {
+        return variance;
+    }
+
+    /**
+     * Returns population standard deviation of the values.
+     *
+     * @return standard deviation of the values
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(variance);
+    }
+
+    @Override
+    public String toString() {
+        return "Aggregate{pinIndex=" + pinIndex + ", start=" + start + ", end=" + end
+                + ", count=" + count + ", min=" + min + ", max=" + max + ", sum=" + sum
+                + ", mean=" + mean + ", variance=" + variance + '}';
+    }
+
+}
@@ -0,0 +1,268 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.aggregate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.firmata4j.IOEvent;
+import org.firmata4j.PinEventListener;
+import org.firmata4j.PinValueSink;
+
+/**
+ * Computes statistics of the values of a pin over windows of time and emits
+ * an {@link Aggregate} when a window closes, so that the consumers receive
+ * one event per window instead of every value.<br/>
+ * A tumbling window covers a period of time and the next window starts where
+ * it ends. A sliding window moves forward by a step shorter than the window,
+ * so the windows overlap. A sliding window is split into buckets of the
+ * length of the step. Every value updates the statistics of the current
+ * bucket in constant time, and the buckets get merged when a window closes.
+ * The values themselves are not stored. The variance is computed by Welford's
+ * method.<br/>
+ * The windows are aligned to the first value. A window closes when a value
+ * of a later window arrives or when {@link #closeWindows(long)} is invoked
+ * after the end of the window. Windows without values are not emitted.<br/>
+ * The statistics are computed over the values the aggregator receives. To
+ * cover every sample the device reports, add the aggregator to the device as
+ * a sample sink:
+ * <pre>
+ * WindowAggregator perSecond = WindowAggregator.tumbling(14, 1, TimeUnit.SECONDS, listener);
+ * device.addPinSampleSink(perSecond);
+ * </pre>
+ * Added by {@link org.firmata4j.IODevice#addPinValueSink(PinValueSink)} or
+ * to a pin as a {@link PinEventListener}, the aggregator receives only the
+ * changes of the value. A steady input then produces no aggregates at all,
+ * and the statistics describe the transitions rather than the signal.
+ * The aggregator is thread-safe. The listener is invoked on the thread that
+ * closes the window.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class WindowAggregator implements PinEventListener, PinValueSink {
+
+    private final int pinIndex;
+    private final long step;
+    private final AggregateListener listener;
+    private final long[] counts;
+    private final long[] mins;
+    private final long[] maxs;
+    private final long[] sums;
+    private final double[] means;
+    private final double[] m2s;
+    private boolean started;
+    private long origin;
+    private long currentBucket;
+    private long lastFilledBucket;
+
+    private WindowAggregator(int pinIndex, long length, long step, AggregateListener listener) {
+        if (step <= 0 || length < step || length % step != 0) {
+            throw new IllegalArgumentException("Window length must be a positive multiple of the step.");
+        }
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null.");
+        }
+        int buckets = (int) (length / step);
+        this.pinIndex = pinIndex;
+        this.step = step;
+        this.listener = listener;
+        this.counts = new long[buckets];
+        this.mins = new long[buckets];
+        this.maxs = new long[buckets];
+        this.sums = new long[buckets];
+        this.means = new double[buckets];
+        this.m2s = new double[buckets];
+    }
+
+    /**
+     * Creates an aggregator of tumbling windows.
+     *
+     * @param pinIndex index of the pin
+     * @param length length of the window
+     * @param unit time unit of the length
+     * @param listener the receiver of the aggregates
+     * @return the aggregator
+     */
+    public static WindowAggregator tumbling(int pinIndex, long length, TimeUnit unit, AggregateListener listener) {
+        return new WindowAggregator(pinIndex, unit.toNanos(length), unit.toNanos(length), listener);
+    }
+
+    /**
+     * Creates an aggregator of sliding windows. The length of the window
+     * should be a multiple of the step.
+     *
+     * @param pinIndex index of the pin
+     * @param length length of the window
+     * @param step how far the window moves when it closes
+     * @param unit time unit of the length and the step
+     * @param listener the receiver of the aggregates
+     * @return the aggregator
+     */
+    public static WindowAggregator sliding(int pinIndex, long length, long step, TimeUnit unit, AggregateListener listener) {
+        return new WindowAggregator(pinIndex, unit.toNanos(length), unit.toNanos(step), listener);
+    }
+
+    @Override
+    public void onModeChange(IOEvent event) {
+        // mode changes do not affect the statistics
+    }
+
+    @Override
+    public void onValueChange(IOEvent event) {
+        if (event.getPin() != null) {
+            onValue(event.getPin().getIndex(), event.getValue(), System.nanoTime());
+        }
+    }
+
+    @Override
+    public void onValue(int pinIndex, long value, long nanoTime) {
+        if (pinIndex != this.pinIndex) {
+            return;
+        }
+        List<Aggregate> closed;
+        synchronized (this) {
+            if (!started) {
+                started = true;
+                origin = nanoTime;
+                currentBucket = 0;
+                lastFilledBucket = Long.MIN_VALUE;
+            }
+            closed = advance(bucketOf(nanoTime));
+            add(value);
+        }
+        notify(closed);
+    }
+
+    /**
+     * Closes the windows that have ended by the moment. Invoking this method
+     * periodically makes the aggregates arrive in time even if the pin does
+     * not change.
+     *
+     * @param nanoTime the current moment as reported by
+     * {@link System#nanoTime()}
+     */
+    public void closeWindows(long nanoTime) {
+        List<Aggregate> closed;
+        synchronized (this) {
+            if (!started) {
+                return;
+            }
+            closed = advance(bucketOf(nanoTime));
+        }
+        notify(closed);
+    }
+
+    private long bucketOf(long nanoTime) {
+        long bucket = (nanoTime - origin) / step;
+        // a value that came out of order is added to the current bucket
+        return Math.max(bucket, currentBucket);
+    }
+
+    /**
+     * Closes the windows that end before the bucket.
+     */
+    private List<Aggregate> advance(long bucket) {
+        List<Aggregate> closed = null;
+        while (currentBucket < bucket) {
+            if (currentBucket - lastFilledBucket >= counts.length) {
+                // the remaining windows are empty, so they are skipped
+                Arrays.fill(counts, 0);
+                currentBucket = bucket;
+                break;
+            }
+            if (closed == null) {
+                closed = new ArrayList<>(counts.length);
+            }
+            closed.add(aggregate());
+            currentBucket++;
+            counts[index(currentBucket)] = 0;
+        }
+        return closed;
+    }
+
+    private void add(long value) {
+        int i = index(currentBucket);
+        long n = ++counts[i];
+        if (n == 1) {
+            mins[i] = value;
+            maxs[i] = value;
+            sums[i] = value;
+            means[i] = value;
+            m2s[i] = 0;
+        } else {
+            mins[i] = Math.min(mins[i], value);
+            maxs[i] = Math.max(maxs[i], value);
+            sums[i] += value;
+            double delta = value - means[i];
+            means[i] += delta / n;
+            m2s[i] += delta * (value - means[i]);
+        }
+        lastFilledBucket = currentBucket;
+    }
+
+    /**
+     * Merges the buckets of the window that ends with the current bucket.
+     */
+    private Aggregate aggregate() {
+        long count = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        long sum = 0;
+        double mean = 0;
+        double m2 = 0;
+        for (int j = 0; j < counts.length; j++) {
+            long bucket = currentBucket - j;
+            if (bucket < 0 || counts[index(bucket)] == 0) {
+                continue;
+            }
+            int i = index(bucket);
+            long n = count + counts[i];
+            double delta = means[i] - mean;
+            mean += delta * counts[i] / n;
+            m2 += m2s[i] + delta * delta * count * counts[i] / n;
+            count = n;
+            min = Math.min(min, mins[i]);
+            max = Math.max(max, maxs[i]);
+            sum += sums[i];
+        }
+        long end = origin + (currentBucket + 1) * step;
+        return new Aggregate(pinIndex, end - counts.length * step, end, count, min, max, sum, mean, count == 0 ? 0 : m2 / count);
+    }
+
+    private int index(long bucket) {
+        return (int) (bucket % counts.length);
+    }
+
+    private void notify(List<Aggregate> closed) {
+        if (closed != null) {
+            for (Aggregate aggregate : closed) {
+                if (aggregate.getCount() > 0) {
+                    listener.onAggregate(aggregate);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.filter;
+
+/**
+ * Drops readings that differ from the last passed value less than the
+ * threshold. It removes jitter of the least significant bits of an analog
+ * input.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class Deadband extends SignalFilter {
+
+    private final long threshold;
+    private boolean initialized;
+    private long last;
+
+    /**
+     * Creates the filter.
+     *
+     * @param threshold the smallest change that passes the filter
+     */
+    public Deadband(long threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Threshold must be greater than 0.");
+        }
+        this.threshold = threshold;
+    }
+
+    @Override
+    public long filter(long value, long nanoTime) {
+        if (initialized && Math.abs(value - last) < threshold) {
+            return SUPPRESS;
+        }
+        initialized = true;
+        last = value;
+        return value;
+    }
+
+    @Override
+    public void reset() {
+        initialized = false;
+    }
+
+}
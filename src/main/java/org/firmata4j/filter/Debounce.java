@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.filter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Passes a value only when it stays the same for the period. It suppresses
+ * bursts of changes caused by bouncing contacts of buttons and switches.<br/>
+ * The value the input settles on is released when the period passes, even if
+ * the device does not report anything after that.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class Debounce extends SignalFilter {
+
+    private final long period;
+    private boolean initialized;
+    private long emitted;
+    private long candidate;
+    private long since;
+
+    /**
+     * Creates the filter.
+     *
+     * @param period how long a value should stay the same
+     * @param unit time unit of the period
+     */
+    public Debounce(long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be greater than 0.");
+        }
+        this.period = unit.toNanos(period);
+    }
+
+    @Override
+    public long filter(long value, long nanoTime) {
+        if (!initialized) {
+            initialized = true;
+            emitted = value;
+            candidate = value;
+            return value;
+        }
+        if (value != candidate) {
+            candidate = value;
+            since = nanoTime;
+        }
+        return release(nanoTime);
+    }
+
+    @Override
+    public long getPendingDelay(long nanoTime) {
+        if (!initialized || candidate == emitted) {
+            return -1;
+        }
+        return Math.max(0, since + period - nanoTime);
+    }
+
+    @Override
+    public long release(long nanoTime) {
+        if (candidate != emitted && nanoTime - since >= period) {
+            emitted = candidate;
+            return emitted;
+        }
+        return SUPPRESS;
+    }
+
+    @Override
+    public void reset() {
+        initialized = false;
+    }
+
+}
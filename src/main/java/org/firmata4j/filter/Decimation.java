@@ -0,0 +1,64 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.filter;
+
+/**
+ * Passes every n-th reading and drops the others. It reduces the rate of a
+ * signal that is sampled more often than needed.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class Decimation extends SignalFilter {
+
+    private final int factor;
+    private int skipped;
+
+    /**
+     * Creates the filter.
+     *
+     * @param factor one of how many readings passes
+     */
+    public Decimation(int factor) {
+        if (factor <= 0) {
+            throw new IllegalArgumentException("Factor must be greater than 0.");
+        }
+        this.factor = factor;
+    }
+
+    @Override
+    public long filter(long value, long nanoTime) {
+        if (skipped == 0) {
+            skipped = factor - 1;
+            return value;
+        }
+        skipped--;
+        return SUPPRESS;
+    }
+
+    @Override
+    public void reset() {
+        skipped = 0;
+    }
+
+}
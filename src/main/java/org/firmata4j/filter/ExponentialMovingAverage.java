@@ -0,0 +1,66 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.filter;
+
+/**
+ * Replaces a reading with the exponentially weighted average of the readings.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class ExponentialMovingAverage extends SignalFilter {
+
+    private final double alpha;
+    private boolean initialized;
+    private double average;
+
+    /**
+     * Creates the filter.
+     *
+     * @param alpha weight of a new reading, from 0 (exclusive) to 1
+     * (inclusive)
+     */
+    public ExponentialMovingAverage(double alpha) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("Weight must be in range (0, 1].");
+        }
+        this.alpha = alpha;
+    }
+
+    @Override
+    public long filter(long value, long nanoTime) {
+        if (initialized) {
+            average += alpha * (value - average);
+        } else {
+            average = value;
+            initialized = true;
+        }
+        return Math.round(average);
+    }
+
+    @Override
+    public void reset() {
+        initialized = false;
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.filter;
+
+/**
+ * Sequence of filters a reading passes through. A reading dropped by a filter
+ * does not reach the filters that follow it.<br/>
+ * The chain is not thread-safe. The owner of the chain is responsible for
+ * serializing the invocations.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class FilterChain {
+
+    private final SignalFilter[] filters;
+
+    /**
+     * Creates the chain.
+     *
+     * @param filters the filters in order of application
+     */
+    public FilterChain(SignalFilter... filters) {
+        for (SignalFilter filter : filters) {
+            if (filter == null) {
+                throw new IllegalArgumentException("Filter cannot be null");
+            }
+        }
+        this.filters = filters.clone();
+    }
+
+    /**
+     * Passes the reading through the filters.
+     *
+     * @param value the reading
+     * @param nanoTime the moment of the reading
+     * @return the filtered value or {@link SignalFilter#SUPPRESS}
+     */
+    public long apply(long value, long nanoTime) {
+        return apply(0, value, nanoTime);
+    }
+
+    /**
+     * Releases a value a filter has been holding back and passes it through
+     * the filters that follow.
+     *
+     * @param nanoTime the current moment
+     * @return the filtered value or {@link SignalFilter#SUPPRESS}
+     */
+    public long release(long nanoTime) {
+        for (int i = 0; i < filters.length; i++) {
+            if (filters[i].getPendingDelay(nanoTime) == 0) {
+                long value = filters[i].release(nanoTime);
+                return value == SignalFilter.SUPPRESS ? value : apply(i + 1, value, nanoTime);
+            }
+        }
+        return SignalFilter.SUPPRESS;
+    }
+
+    /**
+     * Returns how long till a filter of the chain can release a value it
+     * holds back.
+     *
+     * @param nanoTime the current moment
+     * @return the shortest delay in nanoseconds or -1 if no filter holds a
+     * value
+     */
+    public long getPendingDelay(long nanoTime) {
+        long result = -1;
+        for (SignalFilter filter : filters) {
+            long delay = filter.getPendingDelay(nanoTime);
+            if (delay >= 0 && (result < 0 || delay < result)) {
+                result = delay;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Forgets the state of all the filters.
+     */
+    public void reset() {
+        for (SignalFilter filter : filters) {
+            filter.reset();
+        }
+    }
+
+    private long apply(int from, long value, long nanoTime) {
+        for (int i = from; i < filters.length && value != SignalFilter.SUPPRESS; i++) {
+            value = filters[i].filter(value, nanoTime);
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.filter;
+
+import java.util.Arrays;
+
+/**
+ * Replaces a reading with the median of the latest readings. Unlike an
+ * average, the median is not affected by single spikes.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class Median extends SignalFilter {
+
+    private final long[] window;
+    private final long[] sorted;
+    private int position;
+    private int count;
+
+    /**
+     * Creates the filter.
+     *
+     * @param size count of readings to take the median of
+     */
+    public Median(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Window size must be greater than 0.");
+        }
+        this.window = new long[size];
+        this.sorted = new long[size];
+    }
+
+    @Override
+    public long filter(long value, long nanoTime) {
+        if (count == window.length) {
+            // the oldest reading leaves the sorted readings
+            int index = Arrays.binarySearch(sorted, 0, count, window[position]);
+            System.arraycopy(sorted, index + 1, sorted, index, count - index - 1);
+            count--;
+        }
+        window[position] = value;
+        position = (position + 1) % window.length;
+        int index = Arrays.binarySearch(sorted, 0, count, value);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        System.arraycopy(sorted, index, sorted, index + 1, count - index);
+        sorted[index] = value;
+        count++;
+        return sorted[count / 2];
+    }
+
+    @Override
+    public void reset() {
+        position = 0;
+        count = 0;
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.filter;
+
+/**
+ * Replaces a reading with the average of the latest readings.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class MovingAverage extends SignalFilter {
+
+    private final long[] window;
+    private int position;
+    private int count;
+    private long sum;
+
+    /**
+     * Creates the filter.
+     *
+     * @param size count of readings to average
+     */
+    public MovingAverage(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Window size must be greater than 0.");
+        }
+        this.window = new long[size];
+    }
+
+    @Override
+    public long filter(long value, long nanoTime) {
+        if (count == window.length) {
+            sum -= window[position];
+        } else {
+            count++;
+        }
+        window[position] = value;
+        sum += value;
+        position = (position + 1) % window.length;
+        return Math.round((double) sum / count);
+    }
+
+    @Override
+    public void reset() {
+        position = 0;
+        count = 0;
+        sum = 0;
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.filter;
+
+/**
+ * A stage of conditioning of the values that a pin receives from the device.
+ * Filters are applied before the value is assigned to the pin, so the
+ * listeners are notified only about the values that pass all the filters.
+ * <br/>
+ * A filter keeps state of a signal of a single pin, so an instance must not
+ * be shared between pins. Filters are invoked for every reading, so they
+ * should not create objects.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ * @see org.firmata4j.Pin#setFilters(SignalFilter...)
+ */
+public abstract class SignalFilter {
+
+    /**
+     * The value a filter returns in order to drop a reading.
+     */
+    public static final long SUPPRESS = Long.MIN_VALUE;
+
+    /**
+     * Processes a reading.
+     *
+     * @param value the reading
+     * @param nanoTime the moment of the reading as reported by
+     * {@link System#nanoTime()}
+     * @return the filtered value or {@link #SUPPRESS} to drop the reading
+     */
+    public abstract long filter(long value, long nanoTime);
+
+    /**
+     * Returns how long the filter is going to hold a value back. When the
+     * time comes, {@link #release(long)} is invoked even if no new readings
+     * arrive.<br/>
+     * The default implementation returns -1.
+     *
+     * @param nanoTime the current moment as reported by
+     * {@link System#nanoTime()}
+     * @return nanoseconds till the held value can be released, 0 if it can be
+     * released now, -1 if the filter does not hold a value
+     */
+    public long getPendingDelay(long nanoTime) {
+        return -1;
+    }
+
+    /**
+     * Releases the held value.<br/>
+     * The default implementation returns {@link #SUPPRESS}.
+     *
+     * @param nanoTime the current moment as reported by
+     * {@link System#nanoTime()}
+     * @return the held value or {@link #SUPPRESS} if there is nothing to
+     * release
+     */
+    public long release(long nanoTime) {
+        return SUPPRESS;
+    }
+
+    /**
+     * Forgets the state of the signal.<br/>
+     * The default implementation does nothing.
+     */
+    public void reset() {
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.util.concurrent.TimeUnit;
+import org.firmata4j.AnalogFrame;
+
+/**
+ * Groups analog values the device reports into frames of sampling cycles.<br/>
+ * A board reports the enabled analog channels one after another once per
+ * sampling interval. A frame is complete when all the channels of the pins in
+ * analog mode have been reported. A frame also ends when a channel gets
+ * reported twice, which means the next cycle has begun, or when there is a
+ * gap between the reports longer than a cycle takes to transmit.<br/>
+ * The assembler is used only by the thread that handles events of the
+ * device, so it is not thread-safe.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+class AnalogFrameAssembler {
+
+    /**
+     * Analog message addresses up to 16 channels.
+     */
+    static final int MAX_CHANNELS = 16;
+
+    private static final long DEFAULT_GAP = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final FirmataDevice device;
+    private final int[] values = new int[MAX_CHANNELS];
+    private int channels;
+    private int expectedChannels;
+    private long start;
+    private long last;
+    private volatile long gap = DEFAULT_GAP;
+
+    AnalogFrameAssembler(FirmataDevice device) {
+        this.device = device;
+    }
+
+    /**
+     * Sets the longest pause between reports of the same sampling cycle.
+     *
+     * @param gap the pause in nanoseconds
+     */
+    void setGap(long gap) {
+        this.gap = gap;
+    }
+
+    /**
+     * Adds a reported value to the current frame and emits the frame when it
+     * is complete.
+     *
+     * @param channel the analog channel
+     * @param value the value of the channel
+     * @param nanoTime the moment the value was received
+     */
+    void accept(int channel, int value, long nanoTime) {
+        if (channel >= MAX_CHANNELS) {
+            return;
+        }
+        int bit = 1 << channel;
+        if (channels != 0 && ((channels & bit) != 0 || nanoTime - last > gap)) {
+            emit();
+        }
+        if (channels == 0) {
+            start = nanoTime;
+            expectedChannels = device.countAnalogInputs();
+        }
+        values[channel] = value;
+        channels |= bit;
+        last = nanoTime;
+        if (Integer.bitCount(channels) >= expectedChannels) {
+            emit();
+        }
+    }
+
+    private void emit() {
+        if (device.hasAnalogFrameListeners()) {
+            int[] frameValues = new int[MAX_CHANNELS];
+            for (int i = 0; i < MAX_CHANNELS; i++) {
+                if ((channels & (1 << i)) != 0) {
+                    frameValues[i] = values[i];
+                }
+            }
+            device.analogFrameReady(new AnalogFrame(device, frameValues, channels, start));
+        }
+        channels = 0;
+    }
+
+}
@@ -26,30 +26,46 @@ package org.firmata4j.firmata;
 import org.firmata4j.*;
 import org.firmata4j.firmata.parser.FirmataParser;
 import org.firmata4j.firmata.parser.WaitingForMessageState;
+import org.firmata4j.flow.Publisher;
+import org.firmata4j.flow.SamplePublisher;
 import org.firmata4j.fsm.Event;
 import org.firmata4j.fsm.FiniteStateMachine;
+import org.firmata4j.transport.ObservableTransport;
 import org.firmata4j.transport.SerialTransport;
 import org.firmata4j.transport.TransportInterface;
+import org.firmata4j.transport.TransportListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.text.MessageFormat;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 import static org.firmata4j.firmata.parser.FirmataEventType.*;
 import static org.firmata4j.firmata.parser.FirmataToken.*;
 
@@ -60,22 +76,58 @@ import static org.firmata4j.firmata.parser.FirmataToken.*;
  */
 public class FirmataDevice implements IODevice {
 
-    private Parser parser;
+    private FirmataParser parser;
     private TransportInterface transport;
     private FiniteStateMachine protocol;
-    private final Set<IODeviceEventListener> listeners = Collections.synchronizedSet(new LinkedHashSet<IODeviceEventListener>());
-    private final List<FirmataPin> pins = Collections.synchronizedList(new ArrayList<FirmataPin>());
+    private final Set<IODeviceEventListener> listeners = new CopyOnWriteArraySet<>();
+    private final Set<IODeviceEventListener> pinChangeListeners = new CopyOnWriteArraySet<>();
+    private final Set<ConnectionListener> connectionListeners = new CopyOnWriteArraySet<>();
+    private volatile PinValueSink[] sinks = new PinValueSink[0];
+    private volatile PinValueSink[] sampleSinks = new PinValueSink[0];
+    private final Set<AnalogFrameListener> frameListeners = new CopyOnWriteArraySet<>();
+    private final AnalogFrameAssembler analogFrames = new AnalogFrameAssembler(this);
+    private PinSamplePublisher pinPublisher;
+    private volatile boolean demandDrivenReporting;
+    private final Set<Integer> pausedAnalogPins = new CopyOnWriteArraySet<>();
+    private final List<FirmataPin> pins = new CopyOnWriteArrayList<>();
+    private final PinTable pinTable = new PinTable();
     private final Queue<Byte> pinStateRequestQueue = new ArrayDeque<>();
     private final AtomicBoolean started = new AtomicBoolean(false);
     private final AtomicBoolean ready = new AtomicBoolean(false);
     private final AtomicInteger initializedPins = new AtomicInteger(0);
     private final AtomicInteger longestI2CDelay = new AtomicInteger(0);
     private final Map<Byte, FirmataI2CDevice> i2cDevices = new HashMap<>();
+    private final AtomicIntegerArray portValues = new AtomicIntegerArray(MAX_PORTS);
+    private final Object portWriteLock = new Object();
+    private final List<FirmataPinGroup> pinGroups = new CopyOnWriteArrayList<>();
     private volatile Map<String, Object> firmwareInfo;
     private volatile Map<Integer, Integer> analogMapping;
+    private final OutputConflator outputConflator = new OutputConflator(this);
+    private volatile ScheduledFuture<?> outputFlusher;
+    private ScheduledExecutorService scheduler;
+    private final ExecutorService executor; // handles the events of the default protocol
+    private final List<FirmataPinStateFuture> pendingPinStates = new LinkedList<>();
+    private volatile Semaphore pinStateWindow = new Semaphore(DEFAULT_PIN_STATE_WINDOW);
+    private volatile long pinStateTimeout = DEFAULT_PIN_STATE_TIMEOUT;
+    private final AtomicBoolean reconnecting = new AtomicBoolean(false);
+    private volatile ScheduledFuture<?> firmwareRetry;
+    private volatile long disconnectedAt;
+    private volatile int reconnectAttempts;
+    private final AtomicLong reconnectCount = new AtomicLong();
+    private final AtomicLong totalDowntime = new AtomicLong();
     
     private static final ThreadFactory THREAD_FACTORY = new DaemonThreadFactory("firmata-event-handler");
+    private static final ThreadFactory SCHEDULER_THREAD_FACTORY = new DaemonThreadFactory("firmata-scheduler");
     private static final long TIMEOUT = 15000L;
+    private static final int MAX_PORTS = 16;
+    static final int PUBLISHER_BUFFER_SIZE = 256;
+    private static final int DEFAULT_PIN_STATE_WINDOW = 16;
+    private static final long DEFAULT_PIN_STATE_TIMEOUT = 2000L;
+    /**
+     * How long to wait for the firmware after reconnection before requesting
+     * it again, in milliseconds.
+     */
+    private static final long FIRMWARE_RETRY_INTERVAL = 2000L;
     private static final Logger LOGGER = LoggerFactory.getLogger(FirmataDevice.class);
 
     /**
@@ -94,24 +146,7 @@ public class FirmataDevice implements IODevice {
      * @param transport the communication channel
      */
     public FirmataDevice(TransportInterface transport) {
-        final ExecutorService executor = Executors.newSingleThreadExecutor(THREAD_FACTORY);
-        addEventListener(new OnStopListener() {
-            @Override
-            public void accept(IOEvent event) {
-                executor.shutdown();
-                try {
-                    if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
-                        executor.shutdownNow();
-                        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
-                            LOGGER.error("Cannot stop an event handling executor. It may result in a thread leak.");
-                        }
-                    }
-                } catch (InterruptedException e) {
-                    executor.shutdownNow();
-                    Thread.currentThread().interrupt();
-                }
-            }
-        });
+        executor = Executors.newSingleThreadExecutor(THREAD_FACTORY);
         protocol = new FiniteStateMachine(WaitingForMessageState.class);
         protocol.setEventHandlingExecutor(executor);
         protocol.addHandler(PROTOCOL_MESSAGE, onProtocolReceive);
@@ -122,6 +157,7 @@ public class FirmataDevice implements IODevice {
         protocol.addHandler(ANALOG_MAPPING_MESSAGE, onAnalogMappingReceive);
         protocol.addHandler(ANALOG_MESSAGE_RESPONSE, onAnalogMessageReceive);
         protocol.addHandler(DIGITAL_MESSAGE_RESPONSE, onDigitalMessageReceive);
+        protocol.addHandler(DIGITAL_PORT_MESSAGE, onDigitalPortMessageReceive);
         protocol.addHandler(I2C_MESSAGE, onI2cMessageReceive);
         protocol.addHandler(STRING_MESSAGE, onStringMessageReceive);
         protocol.addHandler(FiniteStateMachine.FSM_IS_IN_TERMINAL_STATE, new Consumer<Event>() {
@@ -133,6 +169,9 @@ public class FirmataDevice implements IODevice {
         parser = new FirmataParser(protocol);
         transport.setParser(parser);
         this.transport = transport;
+        if (transport instanceof ObservableTransport) {
+            ((ObservableTransport) transport).addTransportListener(connectionWatcher);
+        }
     }
 
     /**
@@ -148,6 +187,7 @@ public class FirmataDevice implements IODevice {
         transport.setParser(parser);
         this.protocol = protocol;
         this.transport = transport;
+        this.executor = null; // the protocol handles its events itself
     }
 
     @Override
@@ -186,10 +226,37 @@ public class FirmataDevice implements IODevice {
 
     @Override
     public void stop() throws IOException {
-        shutdown();
-        IOEvent event = new IOEvent(this);
-        for (IODeviceEventListener l : listeners) {
-            l.onStop(event);
+        try {
+            shutdown();
+        } finally {
+            stopEventHandling();
+            IOEvent event = new IOEvent(this);
+            for (IODeviceEventListener l : listeners) {
+                l.onStop(event);
+            }
+        }
+    }
+
+    /**
+     * Stops the thread that handles the events of the protocol. It is kept
+     * out of the listeners of the device, so that they consist of the
+     * listeners of the user only.
+     */
+    private void stopEventHandling() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+                if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    LOGGER.error("Cannot stop an event handling executor. It may result in a thread leak.");
+                }
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -224,11 +291,121 @@ public class FirmataDevice implements IODevice {
     @Override
     public void addEventListener(IODeviceEventListener listener) {
         listeners.add(listener);
+        if (!(listener instanceof OnStartListener || listener instanceof OnStopListener)) {
+            pinChangeListeners.add(listener);
+        }
     }
 
     @Override
     public void removeEventListener(IODeviceEventListener listener) {
         listeners.remove(listener);
+        pinChangeListeners.remove(listener);
+    }
+
+    @Override
+    public void addConnectionListener(ConnectionListener listener) {
+        connectionListeners.add(listener);
+    }
+
+    @Override
+    public void removeConnectionListener(ConnectionListener listener) {
+        connectionListeners.remove(listener);
+    }
+
+    /**
+     * Returns how many times the connection to the device has been restored.
+     *
+     * @return count of reconnections
+     */
+    public long getReconnectCount() {
+        return reconnectCount.get();
+    }
+
+    /**
+     * Returns how long the device has been disconnected in total. Every
+     * period of downtime lasts from the loss of the connection until the
+     * state of the device is restored.
+     *
+     * @param unit time unit of the result
+     * @return the total downtime
+     */
+    public long getTotalDowntime(TimeUnit unit) {
+        return unit.convert(totalDowntime.get(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public synchronized void addPinValueSink(PinValueSink sink) {
+        sinks = with(sinks, sink);
+    }
+
+    @Override
+    public synchronized void removePinValueSink(PinValueSink sink) {
+        sinks = without(sinks, sink);
+    }
+
+    @Override
+    public synchronized void addPinSampleSink(PinValueSink sink) {
+        sampleSinks = with(sampleSinks, sink);
+    }
+
+    @Override
+    public synchronized void removePinSampleSink(PinValueSink sink) {
+        sampleSinks = without(sampleSinks, sink);
+    }
+
+    private static PinValueSink[] with(PinValueSink[] sinks, PinValueSink sink) {
+        for (PinValueSink s : sinks) {
+            if (s.equals(sink)) {
+                return sinks;
+            }
+        }
+        PinValueSink[] result = Arrays.copyOf(sinks, sinks.length + 1);
+        result[sinks.length] = sink;
+        return result;
+    }
+
+    private static PinValueSink[] without(PinValueSink[] sinks, PinValueSink sink) {
+        for (int i = 0; i < sinks.length; i++) {
+            if (sinks[i].equals(sink)) {
+                PinValueSink[] result = new PinValueSink[sinks.length - 1];
+                System.arraycopy(sinks, 0, result, 0, i);
+                System.arraycopy(sinks, i + 1, result, i, result.length - i);
+                return result;
+            }
+        }
+        return sinks;
+    }
+
+    @Override
+    public void addAnalogFrameListener(AnalogFrameListener listener) {
+        frameListeners.add(listener);
+    }
+
+    @Override
+    public void removeAnalogFrameListener(AnalogFrameListener listener) {
+        frameListeners.remove(listener);
+    }
+
+    /**
+     * Sets the longest pause between analog reports of the same sampling
+     * cycle. A longer pause ends the frame of analog values even if not all
+     * the channels have been reported. The pause should be shorter than the
+     * sampling interval of the device.
+     *
+     * @param gap the pause
+     * @param unit time unit of the pause
+     * @see #addAnalogFrameListener(AnalogFrameListener)
+     */
+    public void setAnalogFrameGap(long gap, TimeUnit unit) {
+        if (gap <= 0) {
+            throw new IllegalArgumentException("Gap must be greater than 0.");
+        }
+        analogFrames.setGap(unit.toNanos(gap));
+    }
+
+    @Override
+    public long snapshot(long[] values, Pin.Mode[] modes) {
+        return pinTable.read(values, modes);
     }
 
     @Override
@@ -246,6 +423,121 @@ public class FirmataDevice implements IODevice {
         return pins.get(index);
     }
 
+    @Override
+    public PinGroup createPinGroup(int... indexes) {
+        if (indexes.length == 0 || indexes.length > Long.SIZE) {
+            throw new IllegalArgumentException(String.format("A pin group should contain from 1 to %d pins.", Long.SIZE));
+        }
+        FirmataPin[] groupPins = new FirmataPin[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            if (indexes[i] < 0 || indexes[i] >= pins.size()) {
+                throw new IllegalArgumentException(String.format("Pin %d does not exist", indexes[i]));
+            }
+            for (int j = 0; j < i; j++) {
+                if (indexes[j] == indexes[i]) {
+                    throw new IllegalArgumentException(String.format("Pin %d is included in the group twice", indexes[i]));
+                }
+            }
+            groupPins[i] = pins.get(indexes[i]);
+        }
+        return new FirmataPinGroup(this, groupPins);
+    }
+
+    @Override
+    public synchronized Publisher<PinSample> getPinPublisher() {
+        if (pinPublisher == null) {
+            pinPublisher = new PinSamplePublisher(PinSamplePublisher.ALL_PINS, PUBLISHER_BUFFER_SIZE);
+            addPinValueSink(pinPublisher);
+        }
+        return pinPublisher;
+    }
+
+    /**
+     * Enables or disables reporting driven by demand of the subscribers.<br/>
+     * When enabled, the device stops reporting an analog input while none of
+     * the subscribers of the pin's publisher (see {@link Pin#getPublisher()})
+     * is able to receive samples. The same applies to continuous reading of
+     * an I2C device with respect to its publisher. Digital ports keep
+     * reporting as a port is shared by several pins.<br/>
+     * Note that the other listeners of the pin do not receive values while
+     * reporting is stopped.
+     *
+     * @param enable true to enable demand driven reporting
+     * @throws IOException when resuming of reporting fails
+     */
+    public void setDemandDrivenReporting(boolean enable) throws IOException {
+        demandDrivenReporting = enable;
+        if (!enable) {
+            pausedAnalogPins.clear();
+        }
+        if (!enable && isReady()) {
+            sendMessage(FirmataMessageFactory.analogReport(true));
+            List<FirmataI2CDevice> devices;
+            synchronized (this) {
+                devices = new ArrayList<>(i2cDevices.values());
+            }
+            for (FirmataI2CDevice device : devices) {
+                device.resumeUpdates();
+            }
+        }
+    }
+
+    /**
+     * Checks whether reporting is driven by demand of the subscribers.
+     *
+     * @return true if demand driven reporting is enabled
+     */
+    public boolean isDemandDrivenReporting() {
+        return demandDrivenReporting;
+    }
+
+    /**
+     * Creates the publisher of the values of the pin. Reporting of the pin is
+     * paused while the subscribers have no demand if
+     * {@link #isDemandDrivenReporting()}.<br/>
+     * This method is package-wide accessible to be used by {@link FirmataPin}.
+     *
+     * @param pin the pin
+     * @return the publisher
+     */
+    PinSamplePublisher createPinPublisher(final FirmataPin pin) {
+        PinSamplePublisher publisher = new PinSamplePublisher(pin.getIndex(), PUBLISHER_BUFFER_SIZE);
+        publisher.setDemandListener(new SamplePublisher.DemandListener() {
+            @Override
+            public void onDemand() {
+                if (pausedAnalogPins.remove((int) pin.getIndex())) {
+                    setAnalogReporting(pin, true);
+                }
+            }
+
+            @Override
+            public void onNoDemand() {
+                if (demandDrivenReporting && pausedAnalogPins.add((int) pin.getIndex())) {
+                    setAnalogReporting(pin, false);
+                }
+            }
+        });
+        addPinValueSink(publisher);
+        return publisher;
+    }
+
+    private void setAnalogReporting(FirmataPin pin, boolean enable) {
+        Map<Integer, Integer> mapping = analogMapping;
+        if (mapping == null || pin.getMode() != Pin.Mode.ANALOG) {
+            return;
+        }
+        for (Map.Entry<Integer, Integer> entry : mapping.entrySet()) {
+            if (entry.getValue() == pin.getIndex()) {
+                try {
+                    sendMessage(FirmataMessageFactory.analogReport(entry.getKey().byteValue(), enable));
+                } catch (IOException ex) {
+                    LOGGER.error(String.format("Cannot %s reporting of pin %d", enable ? "resume" : "pause", pin.getIndex()), ex);
+                }
+                return;
+            }
+        }
+    }
+
     @Override
     public synchronized I2CDevice getI2CDevice(byte address) throws IOException {
         if (!i2cDevices.containsKey(address)) {
@@ -293,6 +585,416 @@ public class FirmataDevice implements IODevice {
         transport.write(msg);
     }
 
+    /**
+     * Enables conflation of the values that are set to pins in
+     * {@link Pin.Mode#PWM}, {@link Pin.Mode#SERVO} and {@link Pin.Mode#ANALOG}
+     * modes.<br/>
+     * While conflation is enabled, the values are not sent to the device right
+     * away. Only the latest value set to a pin is sent once per period, all the
+     * values that were set in between are dropped. That prevents stale values
+     * from queueing up when an application sets values faster than the
+     * connection can deliver them.<br/>
+     * If conflation is already enabled, its period gets changed.
+     *
+     * @param period how often the pending values are sent to the device
+     * @param unit time unit of the period
+     * @see #getSupersededOutputCount()
+     */
+    public synchronized void enableOutputConflation(long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Conflation period must be greater than 0.");
+        }
+        if (outputFlusher != null) {
+            outputFlusher.cancel(false);
+        }
+        outputFlusher = getScheduler().scheduleAtFixedRate(flushOutput, period, period, unit);
+    }
+
+    /**
+     * Disables conflation of the output values. The values that are pending
+     * get sent to the device immediately.
+     *
+     * @throws IOException when sending of the pending values fails
+     */
+    public synchronized void disableOutputConflation() throws IOException {
+        if (outputFlusher != null) {
+            outputFlusher.cancel(false);
+            outputFlusher = null;
+            outputConflator.flush();
+        }
+    }
+
+    /**
+     * Checks whether output values are conflated.
+     *
+     * @return true if conflation of output values is enabled, false otherwise
+     */
+    public boolean isOutputConflationEnabled() {
+        return outputFlusher != null;
+    }
+
+    /**
+     * Returns the number of output values that have been replaced by a newer
+     * value before they were sent to the device.
+     *
+     * @return count of superseded output values
+     */
+    public long getSupersededOutputCount() {
+        return outputConflator.getSupersededCount();
+    }
+
+    /**
+     * Returns the number of chunks of bytes received from the transport that
+     * have been skipped because the parser could not keep up with them.
+     *
+     * @return count of dropped chunks
+     */
+    public long getDroppedChunkCount() {
+        return parser.getDroppedChunkCount();
+    }
+
+    /**
+     * Returns the number of chunks of bytes waiting to be parsed.
+     *
+     * @return count of queued chunks
+     */
+    int getQueuedChunkCount() {
+        return parser.getQueuedChunkCount();
+    }
+
+    /**
+     * Sends a message that sets a value of an output pin. When conflation of
+     * output values is enabled, the message is put to the conflation buffer
+     * instead.<br/>
+     * This method is package-wide accessible to be used by {@link FirmataPin}.
+     *
+     * @param pinId index of the pin
+     * @param message the message that sets a value of the pin
+     * @throws IOException when sending of the message fails
+     */
+    void sendOutput(byte pinId, byte[] message) throws IOException {
+        if (outputFlusher == null) {
+            sendMessage(message);
+        } else {
+            outputConflator.offer(pinId, message);
+            if (outputFlusher == null) {
+                // conflation has been disabled meanwhile
+                outputConflator.flush(pinId);
+            }
+        }
+    }
+
+    /**
+     * Sends pending output value of the pin if there is one. That is supposed
+     * to be done before the pin gets another mode.<br/>
+     * This method is package-wide accessible to be used by {@link FirmataPin}.
+     *
+     * @param pinId index of the pin
+     * @throws IOException when sending of the value fails
+     */
+    void flushOutput(byte pinId) throws IOException {
+        outputConflator.flush(pinId);
+    }
+
+    /**
+     * Sets how many pin state changes made by
+     * {@link Pin#setModeAsync(org.firmata4j.Pin.Mode)} and
+     * {@link Pin#setValueAsync(long)} can wait for confirmation at the same
+     * time. When the window is full, those methods block until a change gets
+     * confirmed or times out.<br/>
+     * The changes that are already waiting for confirmation are not affected.
+     *
+     * @param size maximum count of unconfirmed changes
+     */
+    public void setPinStateConfirmationWindow(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Confirmation window must be greater than 0.");
+        }
+        pinStateWindow = new Semaphore(size);
+    }
+
+    /**
+     * Sets how long a pin state change waits for confirmation before it
+     * fails.
+     *
+     * @param timeout the timeout
+     * @param unit time unit of the timeout
+     */
+    public void setPinStateConfirmationTimeout(long timeout, TimeUnit unit) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Confirmation timeout must be greater than 0.");
+        }
+        pinStateTimeout = unit.toMillis(timeout);
+    }
+
+    /**
+     * Creates a future that gets completed when the device reports the pin
+     * being in the mode.<br/>
+     * This method is package-wide accessible to be used by {@link FirmataPin}.
+     *
+     * @param pin the pin
+     * @param mode the expected mode
+     * @return the future
+     * @throws IOException when the confirmation window stays full for twice
+     * the confirmation timeout
+     */
+    FirmataPinStateFuture expectPinState(FirmataPin pin, Pin.Mode mode) throws IOException {
+        Semaphore window = acquirePinStateWindow();
+        return trackPinState(new FirmataPinStateFuture(pin, mode, window));
+    }
+
+    /**
+     * Creates a future that gets completed when the device reports the pin
+     * being in the mode and having the value.<br/>
+     * This method is package-wide accessible to be used by {@link FirmataPin}.
+     *
+     * @param pin the pin
+     * @param mode the expected mode
+     * @param value the expected value
+     * @return the future
+     * @throws IOException when the confirmation window stays full for twice
+     * the confirmation timeout
+     */
+    FirmataPinStateFuture expectPinState(FirmataPin pin, Pin.Mode mode, long value) throws IOException {
+        Semaphore window = acquirePinStateWindow();
+        return trackPinState(new FirmataPinStateFuture(pin, mode, value, window));
+    }
+
+    private Semaphore acquirePinStateWindow() throws IOException {
+        Semaphore window = pinStateWindow;
+        // every change in the window times out within the confirmation timeout,
+        // so a slot should get free by then unless the scheduler got stuck
+        long timeout = 2 * pinStateTimeout;
+        try {
+            if (!window.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                throw new IOException(String.format("None of pin state changes has been confirmed within %d ms.", timeout));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for confirmation of pin state changes");
+        }
+        return window;
+    }
+
+    private FirmataPinStateFuture trackPinState(final FirmataPinStateFuture future) {
+        synchronized (pendingPinStates) {
+            pendingPinStates.add(future);
+        }
+        future.whenDone(new Consumer<PinStateFuture>() {
+            @Override
+            public void accept(PinStateFuture f) {
+                synchronized (pendingPinStates) {
+                    pendingPinStates.remove(future);
+                }
+            }
+        });
+        final long timeout = pinStateTimeout;
+        future.setTimeout(getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                future.fail(new TimeoutException(String.format("Pin %d state has not been confirmed within %d ms", future.getPin().getIndex(), timeout)));
+            }
+        }, timeout, TimeUnit.MILLISECONDS));
+        return future;
+    }
+
+    /**
+     * Returns the levels of the pins of a port as the device knows them. The
+     * levels of output pins are the ones that were sent to the device. The
+     * levels of input pins are the ones the device reported the latest.
+     *
+     * @param portId index of the port
+     * @return the levels of the pins (bit per pin)
+     */
+    int getPortValue(int portId) {
+        return portValues.get(portId);
+    }
+
+    /**
+     * Clears the level of the pin in the levels of its port. The device
+     * drives a pin low when it is switched to output mode, so a level the pin
+     * reported as an input must not be sent along with the other pins of the
+     * port.<br/>
+     * This method is package-wide accessible to be used by {@link FirmataPin}.
+     *
+     * @param pinId index of the pin
+     */
+    void clearPortLevel(int pinId) {
+        int portId = pinId / 8;
+        int bit = 1 << (pinId % 8);
+        synchronized (portWriteLock) {
+            int current;
+            do {
+                current = portValues.get(portId);
+            } while (!portValues.compareAndSet(portId, current, current & ~bit));
+        }
+    }
+
+    /**
+     * Sets levels of output pins of a port sending one message to the device.
+     * The pins that are not included in the mask keep their levels.<br/>
+     * This method is package-wide accessible to be used by {@link FirmataPin}.
+     *
+     * @param portId index of the port
+     * @param mask bits of the pins to be set
+     * @param levels new levels of the pins
+     * @throws IOException when sending of the message fails
+     */
+    void writeDigitalPort(int portId, int mask, int levels) throws IOException {
+        writeDigitalPorts(new int[]{portId}, new int[]{mask}, new int[]{levels});
+    }
+
+    /**
+     * Sets levels of output pins of several ports sending one message per
+     * port.<br/>
+     * This method is package-wide accessible to be used by {@link FirmataPin}
+     * and {@link FirmataPinGroup}.
+     *
+     * @param portIds indexes of the ports
+     * @param masks bits of the pins to be set per port
+     * @param levels new levels of the pins per port
+     * @throws IOException when sending of a message fails
+     */
+    void writeDigitalPorts(int[] portIds, int[] masks, int[] levels) throws IOException {
+        synchronized (portWriteLock) {
+            for (int i = 0; i < portIds.length; i++) {
+                int portId = portIds[i];
+                int mask = masks[i];
+                int portValue = (portValues.get(portId) & ~mask) | (levels[i] & mask);
+                sendMessage(FirmataMessageFactory.setDigitalPinValue((byte) portId, (byte) (portValue & getPortMask(portId, Pin.Mode.OUTPUT))));
+                int current;
+                do {
+                    // levels of input pins may be updated concurrently
+                    current = portValues.get(portId);
+                } while (!portValues.compareAndSet(portId, current, (current & ~mask) | (levels[i] & mask)));
+            }
+        }
+    }
+
+    /**
+     * Makes the group receive notifications about changes of ports.
+     *
+     * @param group the group of pins
+     */
+    void addPinGroup(FirmataPinGroup group) {
+        if (!pinGroups.contains(group)) {
+            pinGroups.add(group);
+        }
+    }
+
+    /**
+     * Stops notifying the group about changes of ports.
+     *
+     * @param group the group of pins
+     */
+    void removePinGroup(FirmataPinGroup group) {
+        pinGroups.remove(group);
+    }
+
+    /**
+     * Notifies the groups of pins that the port has changed.
+     *
+     * @param portId index of the port
+     */
+    void notifyPinGroups(int portId) {
+        for (FirmataPinGroup group : pinGroups) {
+            group.portChanged(portId);
+        }
+    }
+
+    /**
+     * Returns the bits of the pins of a port that are in the specified modes.
+     *
+     * @param portId index of the port
+     * @param modes the modes
+     * @return bit per pin that is in one of the modes
+     */
+    private int getPortMask(int portId, Pin.Mode... modes) {
+        int result = 0;
+        for (int i = 0; i < 8; i++) {
+            int pinId = portId * 8 + i;
+            if (pinId < pins.size()) {
+                Pin.Mode pinMode = pins.get(pinId).getMode();
+                for (Pin.Mode mode : modes) {
+                    if (mode == pinMode) {
+                        result |= 1 << i;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the scheduler that performs periodic tasks of the device. The
+     * scheduler is created on demand and gets stopped along with the device.
+     *
+     * @return the scheduler
+     */
+    synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(SCHEDULER_THREAD_FACTORY);
+        }
+        return scheduler;
+    }
+
+    /**
+     * Records the current state of the pin for the snapshots.<br/>
+     * This method is package-wide accessible to be used by {@link FirmataPin}.
+     *
+     * @param pin the pin that has changed
+     */
+    void pinStateChanged(FirmataPin pin) {
+        pinTable.update(pin);
+    }
+
+    /**
+     * Checks if there are listeners of frames of analog values.<br/>
+     * This method is package-wide accessible to be used by
+     * {@link AnalogFrameAssembler}.
+     *
+     * @return {@code true} if there are listeners
+     */
+    boolean hasAnalogFrameListeners() {
+        return !frameListeners.isEmpty();
+    }
+
+    /**
+     * Notifies the listeners of a complete frame of analog values.<br/>
+     * This method is package-wide accessible to be used by
+     * {@link AnalogFrameAssembler}.
+     *
+     * @param frame the frame
+     */
+    void analogFrameReady(AnalogFrame frame) {
+        for (AnalogFrameListener listener : frameListeners) {
+            listener.onAnalogFrame(frame);
+        }
+    }
+
+    /**
+     * Counts the analog channels that are reported by the device, that is
+     * the channels of the pins in analog mode.<br/>
+     * This method is package-wide accessible to be used by
+     * {@link AnalogFrameAssembler}.
+     *
+     * @return count of the reported analog channels
+     */
+    int countAnalogInputs() {
+        Map<Integer, Integer> mapping = analogMapping;
+        int count = 0;
+        if (mapping != null) {
+            for (Map.Entry<Integer, Integer> entry : mapping.entrySet()) {
+                int pinId = entry.getValue();
+                if (entry.getKey() < AnalogFrameAssembler.MAX_CHANNELS && pinId < pins.size()
+                        && Pin.Mode.ANALOG.equals(pins.get(pinId).getMode())) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
     /**
      * Notifies the device listeners that a pin has changed.<br/>
      * This method is package-wide accessible to be used by {@link FirmataPin}.
@@ -300,11 +1002,58 @@ public class FirmataDevice implements IODevice {
      * @param event the event to be send to the listeners
      */
     void pinChanged(IOEvent event) {
-        for (IODeviceEventListener listener : listeners) {
+        for (IODeviceEventListener listener : pinChangeListeners) {
             listener.onPinChange(event);
         }
     }
 
+    /**
+     * Passes the new value of a pin to the sinks.<br/>
+     * This method is package-wide accessible to be used by {@link FirmataPin}.
+     *
+     * @param pinId index of the pin
+     * @param value the new value
+     */
+    void pinValueChanged(int pinId, long value) {
+        PinValueSink[] receivers = sinks;
+        if (receivers.length > 0) {
+            long now = System.nanoTime();
+            for (int i = 0; i < receivers.length; i++) {
+                receivers[i].onValue(pinId, value, now);
+            }
+        }
+    }
+
+    /**
+     * Passes a value reported by the device to the sample sinks.<br/>
+     * This method is package-wide accessible to be used by {@link FirmataPin}.
+     *
+     * @param pinId index of the pin
+     * @param value the reported value
+     */
+    void pinSampled(int pinId, long value) {
+        PinValueSink[] receivers = sampleSinks;
+        if (receivers.length > 0) {
+            long now = System.nanoTime();
+            for (int i = 0; i < receivers.length; i++) {
+                receivers[i].onValue(pinId, value, now);
+            }
+        }
+    }
+
+    /**
+     * Checks whether there are listeners of the changes of pins.<br/>
+     * {@link OnStartListener} and {@link OnStopListener} ignore the changes
+     * of pins, so they are not counted.<br/>
+     * This method is package-wide accessible to be used by {@link FirmataPin}
+     * in order to avoid creation of events that nobody receives.
+     *
+     * @return true if at least one listener of the changes is registered
+     */
+    boolean hasEventListeners() {
+        return !pinChangeListeners.isEmpty();
+    }
+
     /**
      * Sets delay between the moment an I2C device's register is written to and
      * the moment when the data can be read from that register. The delay is set
@@ -326,6 +1075,86 @@ public class FirmataDevice implements IODevice {
         }
     }
 
+    /**
+     * Completes reconnection after the board has reported its firmware. If
+     * the firmware is the same, the board gets the known state of the device
+     * in a single write instead of going through the whole initialization.
+     *
+     * @param firmware the firmware the board has reported
+     */
+    private void reconnected(Map<String, Object> firmware) {
+        Map<String, Object> known = firmwareInfo;
+        boolean restored = false;
+        if (Objects.equals(known.get(FIRMWARE_NAME), firmware.get(FIRMWARE_NAME))
+                && Objects.equals(known.get(FIRMWARE_MAJOR), firmware.get(FIRMWARE_MAJOR))
+                && Objects.equals(known.get(FIRMWARE_MINOR), firmware.get(FIRMWARE_MINOR))) {
+            try {
+                sendMessage(stateRestoration());
+                restored = true;
+            } catch (IOException ex) {
+                LOGGER.error("Cannot restore the state of the device", ex);
+            }
+        } else {
+            LOGGER.error("The device runs {} {}.{} after reconnection instead of {}. Its state cannot be restored, the device should be restarted.",
+                    firmware.get(FIRMWARE_NAME),
+                    firmware.get(FIRMWARE_MAJOR),
+                    firmware.get(FIRMWARE_MINOR),
+                    getProtocol());
+        }
+        long downtime = System.nanoTime() - disconnectedAt;
+        reconnectCount.incrementAndGet();
+        totalDowntime.addAndGet(downtime);
+        ConnectionEvent event = new ConnectionEvent(this, downtime, reconnectAttempts, restored);
+        for (ConnectionListener listener : connectionListeners) {
+            listener.onReconnect(event);
+        }
+    }
+
+    /**
+     * Builds the messages that apply the known state of the device to a board
+     * that might have lost it: modes of the pins, values of the outputs, I2C
+     * configuration, continuous reading of I2C devices and reporting of the
+     * inputs. The analog inputs paused for lack of demand stay paused.
+     *
+     * @return the messages
+     */
+    private byte[] stateRestoration() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (FirmataPin pin : pins) {
+            pin.writeState(out);
+        }
+        byte[] message;
+        synchronized (portWriteLock) {
+            for (int portId = 0; portId * 8 < pins.size(); portId++) {
+                int mask = getPortMask(portId, Pin.Mode.OUTPUT);
+                if (mask != 0) {
+                    message = FirmataMessageFactory.setDigitalPinValue((byte) portId, (byte) (portValues.get(portId) & mask));
+                    out.write(message, 0, message.length);
+                }
+            }
+        }
+        List<FirmataI2CDevice> devices;
+        synchronized (this) {
+            devices = new ArrayList<>(i2cDevices.values());
+        }
+        if (!devices.isEmpty()) {
+            message = FirmataMessageFactory.i2cConfigRequest(longestI2CDelay.get());
+            out.write(message, 0, message.length);
+            for (FirmataI2CDevice device : devices) {
+                device.writeState(out);
+            }
+        }
+        Map<Integer, Integer> mapping = analogMapping;
+        for (byte channel = 0; channel < 16; channel++) {
+            Integer pinId = mapping == null ? null : mapping.get((int) channel);
+            message = FirmataMessageFactory.analogReport(channel, pinId == null || !pausedAnalogPins.contains(pinId));
+            out.write(message, 0, message.length);
+        }
+        message = FirmataMessageFactory.digitalReport(true);
+        out.write(message, 0, message.length);
+        return out.toByteArray();
+    }
+
     /**
      * Tries to release all resources and properly terminate the connection to
      * the hardware.
@@ -334,12 +1163,139 @@ public class FirmataDevice implements IODevice {
      */
     private void shutdown() throws IOException {
         ready.set(false);
-        sendMessage(FirmataMessageFactory.analogReport(false));
-        sendMessage(FirmataMessageFactory.digitalReport(false));
-        parser.stop();
-        transport.stop();
+        reconnecting.set(false);
+        cancelFirmwareRetry();
+        try {
+            disableOutputConflation();
+        } catch (IOException ex) {
+            // the connection is lost, so are the pending values, but the resources still have to be released
+            LOGGER.warn("Cannot send pending output values on stop", ex);
+        }
+        List<FirmataPinStateFuture> unconfirmed;
+        synchronized (pendingPinStates) {
+            unconfirmed = new ArrayList<>(pendingPinStates);
+        }
+        for (FirmataPinStateFuture future : unconfirmed) {
+            future.fail(new IOException("Device has been stopped"));
+        }
+        for (FirmataPin pin : pins) {
+            pin.closePublisher();
+        }
+        List<FirmataI2CDevice> devices;
+        PinSamplePublisher publisher;
+        synchronized (this) {
+            devices = new ArrayList<>(i2cDevices.values());
+            publisher = pinPublisher;
+        }
+        for (FirmataI2CDevice device : devices) {
+            device.closePublisher();
+        }
+        if (publisher != null) {
+            publisher.close();
+        }
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+        try {
+            sendMessage(FirmataMessageFactory.analogReport(false));
+            sendMessage(FirmataMessageFactory.digitalReport(false));
+        } finally {
+            // the threads should stop even if the connection is already lost
+            try {
+                parser.stop();
+            } finally {
+                transport.stop();
+            }
+        }
     }
 
+    /**
+     * Follows the state of the connection reported by the transport. When the
+     * connection is back, the firmware gets requested to check whether the
+     * board is the same.
+     */
+    private final TransportListener connectionWatcher = new TransportListener() {
+        @Override
+        public void onConnectionLost(IOException cause) {
+            disconnectedAt = System.nanoTime();
+            reconnecting.set(false);
+            cancelFirmwareRetry();
+            ConnectionEvent event = new ConnectionEvent(FirmataDevice.this, cause);
+            for (ConnectionListener listener : connectionListeners) {
+                listener.onDisconnect(event);
+            }
+        }
+
+        @Override
+        public void onConnectionRestored(int attempts) {
+            if (!isReady()) {
+                LOGGER.warn("Connection has been restored before the device got initialized. The initialization cannot be resumed.");
+                return;
+            }
+            reconnectAttempts = attempts;
+            reconnecting.set(true);
+            cancelFirmwareRetry();
+            requestFirmwareAfterReconnection();
+        }
+    };
+
+    /**
+     * Requests the firmware of the reconnected board and makes sure the
+     * request is repeated if the board does not answer in time.
+     */
+    private void requestFirmwareAfterReconnection() {
+        try {
+            sendMessage(FirmataMessageFactory.REQUEST_FIRMWARE);
+        } catch (IOException ex) {
+            LOGGER.error("Cannot request the firmware after reconnection", ex);
+        }
+        if (reconnecting.get() && isReady()) {
+            try {
+                firmwareRetry = getScheduler().schedule(retryFirmwareRequest, FIRMWARE_RETRY_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // the device is shutting down
+            }
+        }
+    }
+
+    private void cancelFirmwareRetry() {
+        ScheduledFuture<?> retry = firmwareRetry;
+        if (retry != null) {
+            retry.cancel(false);
+        }
+    }
+
+    /**
+     * Requests the firmware again when the reply to the former request has
+     * not arrived, so that the state of the device still gets restored.
+     */
+    private final Runnable retryFirmwareRequest = new Runnable() {
+        @Override
+        public void run() {
+            if (reconnecting.get() && isReady()) {
+                LOGGER.warn("The board has not reported its firmware after reconnection. Requesting it again.");
+                requestFirmwareAfterReconnection();
+            }
+        }
+    };
+
+    /**
+     * Sends the conflated output values to the device.
+     */
+    private final Runnable flushOutput = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                outputConflator.flush();
+            } catch (IOException ex) {
+                LOGGER.error("Cannot send conflated output values", ex);
+            }
+        }
+    };
+
     /**
      * Describes reaction to protocol receiving.
      */
@@ -369,6 +1325,14 @@ public class FirmataDevice implements IODevice {
     private final Consumer<Event> onFirmwareReceive = new Consumer<Event>() {
         @Override
         public void accept(Event event) {
+            if (isReady()) {
+                // the board reports the firmware again after reconnection or reboot
+                if (reconnecting.getAndSet(false)) {
+                    cancelFirmwareRetry();
+                    reconnected(event.getBody());
+                }
+                return;
+            }
             firmwareInfo = event.getBody();
             try {
                 sendMessage(FirmataMessageFactory.REQUEST_CAPABILITY);
@@ -390,6 +1354,7 @@ public class FirmataDevice implements IODevice {
                 pin.addSupportedMode(Pin.Mode.resolve(i));
             }
             pins.add(pin.getIndex(), pin);
+            pinTable.setSize(pins.size());
             if (pin.getSupportedModes().isEmpty()) {
                 // if the pin has no supported modes, its initialization is already done
                 initializedPins.incrementAndGet();
@@ -430,6 +1395,23 @@ public class FirmataDevice implements IODevice {
         @Override
         public void accept(Event event) {
             byte pinId = (Byte) event.getBodyItem(PIN_ID);
+            if (isReady()) {
+                // after initialization pin states are reported on request of pin state changes
+                Pin.Mode mode = Pin.Mode.resolve((Byte) event.getBodyItem(PIN_MODE));
+                long value = (Long) event.getBodyItem(PIN_VALUE);
+                List<FirmataPinStateFuture> confirmed = new ArrayList<>();
+                synchronized (pendingPinStates) {
+                    for (FirmataPinStateFuture future : pendingPinStates) {
+                        if (future.getPin().getIndex() == pinId && future.matches(mode, value)) {
+                            confirmed.add(future);
+                        }
+                    }
+                }
+                for (FirmataPinStateFuture future : confirmed) {
+                    future.confirm(mode, value);
+                }
+                return;
+            }
             FirmataPin pin = pins.get(pinId);
             if (pin.getMode() == null) {
                 pin.initMode(Pin.Mode.resolve((Byte) event.getBodyItem(PIN_MODE)));
@@ -487,7 +1469,9 @@ public class FirmataDevice implements IODevice {
                 if (pinId < pins.size()) {
                     FirmataPin pin = pins.get(pinId);
                     if (Pin.Mode.ANALOG.equals(pin.getMode())) {
-                        pin.updateValue((Integer) event.getBodyItem(PIN_VALUE));
+                        int value = (Integer) event.getBodyItem(PIN_VALUE);
+                        pin.receiveValue(value);
+                        analogFrames.accept(analogId, value, System.nanoTime());
                     }
                 }
             }
@@ -505,12 +1489,30 @@ public class FirmataDevice implements IODevice {
                 FirmataPin pin = pins.get(pinId);
                 if (Pin.Mode.INPUT.equals(pin.getMode()) ||
                         Pin.Mode.PULLUP.equals(pin.getMode())) {
-                    pin.updateValue((Integer) event.getBodyItem(PIN_VALUE));
+                    pin.receiveValue((Integer) event.getBodyItem(PIN_VALUE));
                 }
             }
         }
     };
 
+    /**
+     * Describes reaction to the digital message that carries the value of a
+     * whole port. It follows the messages about particular pins of the port.
+     */
+    private final Consumer<Event> onDigitalPortMessageReceive = new Consumer<Event>() {
+        @Override
+        public void accept(Event event) {
+            int portId = (Integer) event.getBodyItem(PORT_ID);
+            int value = (Integer) event.getBodyItem(PORT_VALUE);
+            int mask = getPortMask(portId, Pin.Mode.INPUT, Pin.Mode.PULLUP);
+            int current;
+            do {
+                current = portValues.get(portId);
+            } while (!portValues.compareAndSet(portId, current, (current & ~mask) | (value & mask)));
+            notifyPinGroups(portId);
+        }
+    };
+
     private final Consumer<Event> onI2cMessageReceive = new Consumer<Event>() {
         @Override
         public void accept(Event event) {
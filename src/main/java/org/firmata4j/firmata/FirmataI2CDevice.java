@@ -23,15 +23,24 @@
  */
 package org.firmata4j.firmata;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.firmata4j.I2CDevice;
 import org.firmata4j.I2CEvent;
 import org.firmata4j.I2CListener;
+import org.firmata4j.flow.Publisher;
+import org.firmata4j.flow.SamplePublisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Represents an I2C device and encapsulates communication logic using Firmata
@@ -43,6 +52,8 @@ public class FirmataI2CDevice implements I2CDevice {
 
     public static final int REGISTER_NOT_SET = -1;
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(FirmataI2CDevice.class);
+
     private final FirmataDevice masterDevice;
 
     private final byte address;
@@ -51,7 +62,17 @@ public class FirmataI2CDevice implements I2CDevice {
 
     private final Map<Integer, I2CListener> callbacks = new ConcurrentHashMap<>();
 
-    private final Set<I2CListener> subscribers = new ConcurrentSkipListSet<>();
+    private final Set<I2CListener> subscribers = new CopyOnWriteArraySet<>();
+
+    private volatile int updatesRegister;
+
+    private volatile byte updatesLength;
+
+    private volatile boolean updatesPaused;
+
+    private volatile SamplePublisher<I2CEvent> publisher;
+
+    private final ConcurrentHashMap<Integer, Queue<Waiter<byte[]>>> pendingReads = new ConcurrentHashMap<>();
 
     FirmataI2CDevice(FirmataDevice masterDevice, byte address) {
         this.masterDevice = masterDevice;
@@ -84,6 +105,27 @@ public class FirmataI2CDevice implements I2CDevice {
         masterDevice.sendMessage(FirmataMessageFactory.i2cReadRequest(address, register, responseLength, false));
     }
 
+    @Override
+    public byte[] read(int register, byte length, long timeout, TimeUnit unit) throws IOException, InterruptedException, TimeoutException {
+        Queue<Waiter<byte[]>> readers = pendingReads.get(register);
+        if (readers == null) {
+            Queue<Waiter<byte[]>> created = new ConcurrentLinkedQueue<>();
+            readers = pendingReads.putIfAbsent(register, created);
+            if (readers == null) {
+                readers = created;
+            }
+        }
+        Waiter<byte[]> waiter = new Waiter<>();
+        readers.add(waiter);
+        try {
+            masterDevice.sendMessage(FirmataMessageFactory.i2cReadRequest(address, register, length, false));
+            return waiter.await(timeout, unit);
+        } catch (IOException | InterruptedException | TimeoutException ex) {
+            readers.remove(waiter);
+            throw ex;
+        }
+    }
+
     @Override
     public void subscribe(I2CListener listener) {
         subscribers.add(listener);
@@ -98,6 +140,8 @@ public class FirmataI2CDevice implements I2CDevice {
     public boolean startReceivingUpdates(int register, byte messageLength) throws IOException {
         boolean result = receivingUpdates.compareAndSet(false, true);
         if (result) {
+            updatesRegister = register;
+            updatesLength = messageLength;
             masterDevice.sendMessage(FirmataMessageFactory.i2cReadRequest(address, register, messageLength, true));
         }
         return result;
@@ -107,6 +151,8 @@ public class FirmataI2CDevice implements I2CDevice {
     public boolean startReceivingUpdates(byte messageLength) throws IOException {
         boolean result = receivingUpdates.compareAndSet(false, true);
         if (result) {
+            updatesRegister = REGISTER_NOT_SET;
+            updatesLength = messageLength;
             masterDevice.sendMessage(FirmataMessageFactory.i2cReadRequest(address, REGISTER_NOT_SET, messageLength, true));
         }
         return result;
@@ -115,10 +161,95 @@ public class FirmataI2CDevice implements I2CDevice {
     @Override
     public void stopReceivingUpdates() throws IOException {
         if (receivingUpdates.compareAndSet(true, false)) {
+            updatesPaused = false;
+            masterDevice.sendMessage(FirmataMessageFactory.i2cStopContinuousRequest(address));
+        }
+    }
+
+    @Override
+    public synchronized Publisher<I2CEvent> getPublisher() {
+        if (publisher == null) {
+            publisher = new SamplePublisher<I2CEvent>(FirmataDevice.PUBLISHER_BUFFER_SIZE) {
+                @Override
+                protected int keyOf(I2CEvent item) {
+                    return item.getRegister();
+                }
+            };
+            publisher.setDemandListener(new SamplePublisher.DemandListener() {
+                @Override
+                public void onDemand() {
+                    try {
+                        resumeUpdates();
+                    } catch (IOException ex) {
+                        LOGGER.error(String.format("Cannot resume updates from I2C device 0x%02X", address), ex);
+                    }
+                }
+
+                @Override
+                public void onNoDemand() {
+                    try {
+                        pauseUpdates();
+                    } catch (IOException ex) {
+                        LOGGER.error(String.format("Cannot pause updates from I2C device 0x%02X", address), ex);
+                    }
+                }
+            });
+        }
+        return publisher;
+    }
+
+    /**
+     * Stops continuous reading if the device reports on demand of the
+     * subscribers.
+     *
+     * @throws IOException when sending of the request fails
+     */
+    synchronized void pauseUpdates() throws IOException {
+        if (masterDevice.isDemandDrivenReporting() && receivingUpdates.get() && !updatesPaused) {
+            updatesPaused = true;
             masterDevice.sendMessage(FirmataMessageFactory.i2cStopContinuousRequest(address));
         }
     }
 
+    /**
+     * Restarts continuous reading if it has been paused.<br/>
+     * This method is package-wide accessible to be used by
+     * {@link FirmataDevice}.
+     *
+     * @throws IOException when sending of the request fails
+     */
+    synchronized void resumeUpdates() throws IOException {
+        if (receivingUpdates.get() && updatesPaused) {
+            updatesPaused = false;
+            masterDevice.sendMessage(FirmataMessageFactory.i2cReadRequest(address, updatesRegister, updatesLength, true));
+        }
+    }
+
+    /**
+     * Writes the request that resumes continuous reading to a board that
+     * might have lost it.<br/>
+     * This method is package-wide accessible to be used by
+     * {@link FirmataDevice}.
+     *
+     * @param out the buffer of the messages
+     */
+    synchronized void writeState(ByteArrayOutputStream out) {
+        if (receivingUpdates.get() && !updatesPaused) {
+            byte[] message = FirmataMessageFactory.i2cReadRequest(address, updatesRegister, updatesLength, true);
+            out.write(message, 0, message.length);
+        }
+    }
+
+    /**
+     * Completes the subscriptions to the messages of the device.
+     */
+    void closePublisher() {
+        SamplePublisher<I2CEvent> p = publisher;
+        if (p != null) {
+            p.close();
+        }
+    }
+
     /**
      * {@link FirmataDevice} calls this method when receives a message from I2C
      * device.
@@ -127,12 +258,26 @@ public class FirmataI2CDevice implements I2CDevice {
      * @param message actual data from I2C device
      */
     void onReceive(int register, byte[] message) {
+        Queue<Waiter<byte[]>> readers = pendingReads.get(register);
+        if (readers != null) {
+            // the replies arrive in the order of requests, so the oldest reader gets the data
+            Waiter<byte[]> reader;
+            while ((reader = readers.poll()) != null) {
+                if (reader.complete(message)) {
+                    return;
+                }
+            }
+        }
         I2CEvent evt = new I2CEvent(this, register, message);
         I2CListener listener = callbacks.remove(register);
         if (listener == null) {
             for (I2CListener subscriber : subscribers) {
                 subscriber.onReceive(evt);
             }
+            SamplePublisher<I2CEvent> p = publisher;
+            if (p != null && p.hasSubscribers()) {
+                p.submit(evt);
+            }
         } else {
             listener.onReceive(evt);
         }
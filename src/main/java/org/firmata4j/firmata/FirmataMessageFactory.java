@@ -179,6 +179,19 @@ public class FirmataMessageFactory {
         return result;
     }
 
+    /**
+     * Builds message to enable or disable reporting from Firmata device on
+     * change of a single analog input.
+     *
+     * @param channel index of the analog channel
+     * @param enable message enables analog reporting if true and disable if
+     * false
+     * @return message that enables or disables analog reporting of the channel
+     */
+    public static byte[] analogReport(byte channel, boolean enable) {
+        return new byte[]{(byte) (REPORT_ANALOG | channel), (byte) (enable ? 1 : 0)};
+    }
+
     /**
      * Builds message to enable or disable reporting from Firmata device on
      * change of digital input.
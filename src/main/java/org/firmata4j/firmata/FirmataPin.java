@@ -24,15 +24,31 @@
 
 package org.firmata4j.firmata;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.EnumSet;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 import org.firmata4j.IOEvent;
+import org.firmata4j.LongPredicate;
 import org.firmata4j.Pin;
 import org.firmata4j.PinEventListener;
+import org.firmata4j.PinSample;
+import org.firmata4j.PinStateFuture;
+import org.firmata4j.filter.FilterChain;
+import org.firmata4j.filter.SignalFilter;
+import org.firmata4j.flow.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * This class contains implementation of Firmata pin.
@@ -41,12 +57,21 @@ import org.firmata4j.PinEventListener;
  */
 public class FirmataPin implements Pin {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(FirmataPin.class);
+    private static final AtomicLongFieldUpdater<FirmataPin> VALUE = AtomicLongFieldUpdater.newUpdater(FirmataPin.class, "currentValue");
+
     private final FirmataDevice device;
     private final byte pinId;
     private final Set<Mode> supportedModes = Collections.synchronizedSet(EnumSet.noneOf(Mode.class));
-    private final Set<PinEventListener> listeners = Collections.synchronizedSet(new HashSet<PinEventListener>());
+    private final Set<PinEventListener> listeners = new CopyOnWriteArraySet<>();
     private volatile Mode currentMode;
     private volatile long currentValue;
+    private volatile PinSamplePublisher publisher;
+    private final Queue<ValueWaiter> waiters = new ConcurrentLinkedQueue<>();
+    private volatile FilterChain filters;
+    private volatile boolean releaseScheduled;
+    private int servoMinPulse = 544;
+    private int servoMaxPulse = 2400;
 
     /**
      * Constructs Firmata pin for the specified device.
@@ -84,27 +109,65 @@ public class FirmataPin implements Pin {
         setMode(Mode.SERVO, minPulse, maxPulse);
     }
 
-    private synchronized void setMode(Mode mode, int minPulse, int maxPulse) throws IOException {
-        if (supports(mode)) {
-            if (currentMode != mode) {
-                if (mode == Mode.SERVO) {
-                    getDevice().sendMessage(FirmataMessageFactory.servoConfig(pinId, minPulse, maxPulse));
-                    // The currentValue for a servo is unknown as the motor is 
-                    // send to the 1.5ms position when pinStateRequest is invoked
-                    currentValue = -1;
-                }
-                getDevice().sendMessage(FirmataMessageFactory.setMode(pinId, mode));
-                currentMode = mode;
-                IOEvent evt = new IOEvent(this);
-                getDevice().pinChanged(evt);
-                for (PinEventListener listener : listeners) {
-                    listener.onModeChange(evt);
-                }
-                getDevice().sendMessage(FirmataMessageFactory.pinStateRequest(pinId));
+    @Override
+    public PinStateFuture setModeAsync(Mode mode) throws IOException, IllegalArgumentException {
+        if (!supports(mode)) {
+            throw new IllegalArgumentException(String.format("Pin %d does not support mode %s", pinId, mode));
+        }
+        FirmataPinStateFuture future = device.expectPinState(this, mode);
+        try {
+            if (!setMode(mode, 544, 2400)) {
+                // the mode is the same so the state was not requested yet
+                device.sendMessage(FirmataMessageFactory.pinStateRequest(pinId));
             }
-        } else {
+        } catch (IOException | RuntimeException ex) {
+            future.fail(ex);
+            throw ex;
+        }
+        return future;
+    }
+
+    /**
+     * Assigns the mode to the pin and requests the pin state from the device
+     * if the mode differs from the current one.
+     *
+     * @return true if the mode has been changed, false otherwise
+     */
+    private boolean setMode(Mode mode, int minPulse, int maxPulse) throws IOException {
+        if (!supports(mode)) {
             throw new IllegalArgumentException(String.format("Pin %d does not support mode %s", pinId, mode));
         }
+        IOEvent evt;
+        synchronized (this) {
+            if (currentMode == mode) {
+                return false;
+            }
+            if (mode == Mode.SERVO) {
+                getDevice().sendMessage(FirmataMessageFactory.servoConfig(pinId, minPulse, maxPulse));
+                servoMinPulse = minPulse;
+                servoMaxPulse = maxPulse;
+                // The currentValue for a servo is unknown as the motor is 
+                // send to the 1.5ms position when pinStateRequest is invoked
+                currentValue = -1;
+            }
+            device.flushOutput(pinId); // a pending value belongs to the former mode
+            getDevice().sendMessage(FirmataMessageFactory.setMode(pinId, mode));
+            if (mode == Mode.OUTPUT) {
+                // the level reported while the pin was an input is not the one it drives now
+                currentValue = 0;
+            }
+            device.clearPortLevel(pinId);
+            currentMode = mode;
+            device.pinStateChanged(this);
+            evt = new IOEvent(this);
+        }
+        // listeners are notified outside of the monitor so that a slow one does not block other callers
+        getDevice().pinChanged(evt);
+        for (PinEventListener listener : listeners) {
+            listener.onModeChange(evt);
+        }
+        getDevice().sendMessage(FirmataMessageFactory.pinStateRequest(pinId));
+        return true;
     }
 
     @Override
@@ -128,38 +191,87 @@ public class FirmataPin implements Pin {
     }
 
     @Override
-    public synchronized void setValue(long value) throws IOException, IllegalStateException {
-        byte[] message;
-        long newValue;
-        if (currentMode == Mode.OUTPUT) {
-            //have to calculate the value of whole port (8-pin set) the pin sits in
-            byte portId = (byte) (pinId / 8);
-            byte pinInPort = (byte) (pinId % 8);
-            byte portValue = 0;
-            for (int i = 0; i < 8; i++) {
-                Pin p = device.getPin(portId * 8 + i);
-                if (p.getMode() == Mode.OUTPUT && p.getValue() > 0) {
-                    portValue |= 1 << i;
+    public void setValue(long value) throws IOException, IllegalStateException {
+        boolean digital;
+        synchronized (this) { // keeps the order of messages in line with the order of values
+            if (currentMode == Mode.OUTPUT) {
+                value = value > 0 ? 1 : 0;
+                if (currentValue == value) {
+                    return;
                 }
-            }
-            byte bitmask = (byte) (1 << pinInPort);
-            boolean val = value > 0;
-            if (val) {
-                portValue |= bitmask;
+                //the value of whole port (8-pin set) the pin sits in is sent at once
+                int bitmask = 1 << (pinId % 8);
+                device.writeDigitalPort(pinId / 8, bitmask, value > 0 ? bitmask : 0);
+                digital = true;
+            } else if (currentMode == Mode.ANALOG || currentMode == Mode.PWM || currentMode == Mode.SERVO) {
+                if (currentValue == value) {
+                    return;
+                }
+                device.sendOutput(pinId, FirmataMessageFactory.setAnalogPinValue(pinId, value));
+                digital = false;
             } else {
-                portValue &= ((byte) ~bitmask);
+                throw new IllegalStateException(String.format("Port %d is in %s mode and its value cannot be set.", pinId, currentMode));
             }
-            message = FirmataMessageFactory.setDigitalPinValue(portId, portValue);
-            newValue = val ? 1 : 0;
-        } else if (currentMode == Mode.ANALOG || currentMode == Mode.PWM || currentMode == Mode.SERVO) {
-            message = FirmataMessageFactory.setAnalogPinValue(pinId, value);
-            newValue = value;
+            // the value is published along with the message, so the next caller compares against it
+            VALUE.set(this, value);
+            device.pinStateChanged(this);
+        }
+        valueChanged(value);
+        if (digital) {
+            device.notifyPinGroups(pinId / 8);
+        }
+    }
+
+    @Override
+    public PinStateFuture setValueAsync(long value) throws IOException, IllegalStateException {
+        Mode mode = currentMode;
+        long expectedValue;
+        if (mode == Mode.OUTPUT) {
+            expectedValue = value > 0 ? 1 : 0;
+        } else if (mode == Mode.ANALOG || mode == Mode.PWM || mode == Mode.SERVO) {
+            expectedValue = value;
         } else {
-            throw new IllegalStateException(String.format("Port %d is in %s mode and its value cannot be set.", pinId, currentMode));
+            throw new IllegalStateException(String.format("Port %d is in %s mode and its value cannot be set.", pinId, mode));
         }
-        if (currentValue != newValue) {
-            device.sendMessage(message);
-            updateValue(value);
+        FirmataPinStateFuture future = device.expectPinState(this, mode, expectedValue);
+        try {
+            setValue(value);
+            device.flushOutput(pinId); // conflation would delay the confirmation
+            device.sendMessage(FirmataMessageFactory.pinStateRequest(pinId));
+        } catch (IOException | RuntimeException ex) {
+            future.fail(ex);
+            throw ex;
+        }
+        return future;
+    }
+
+    @Override
+    public long awaitValue(LongPredicate predicate, long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        long value = currentValue;
+        if (predicate.test(value)) {
+            return value;
+        }
+        return await(new ValueWaiter(predicate), timeout, unit);
+    }
+
+    @Override
+    public long awaitChange(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        return await(new ValueWaiter(null), timeout, unit);
+    }
+
+    private long await(ValueWaiter waiter, long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        waiters.add(waiter);
+        if (waiter.predicate != null) {
+            long value = currentValue; // the value might have changed before the waiter was added
+            if (waiter.predicate.test(value) && waiter.complete(value)) {
+                waiters.remove(waiter);
+            }
+        }
+        try {
+            return waiter.await(timeout, unit);
+        } catch (InterruptedException | TimeoutException ex) {
+            waiters.remove(waiter);
+            throw ex;
         }
     }
 
@@ -178,6 +290,29 @@ public class FirmataPin implements Pin {
     public void removeAllEventListeners() {
         listeners.clear();
     }
+
+    @Override
+    public void setFilters(SignalFilter... filters) {
+        this.filters = filters.length == 0 ? null : new FilterChain(filters);
+    }
+
+    @Override
+    public synchronized Publisher<PinSample> getPublisher() {
+        if (publisher == null) {
+            publisher = device.createPinPublisher(this);
+        }
+        return publisher;
+    }
+
+    /**
+     * Completes the subscriptions to the values of the pin.
+     */
+    void closePublisher() {
+        PinSamplePublisher p = publisher;
+        if (p != null) {
+            p.close();
+        }
+    }
     
 
     /**
@@ -196,8 +331,9 @@ public class FirmataPin implements Pin {
      *
      * @param mode initial mode
      */
-    synchronized void initMode(Mode mode) {
+    void initMode(Mode mode) {
         currentMode = mode;
+        device.pinStateChanged(this);
     }
 
     /**
@@ -206,24 +342,183 @@ public class FirmataPin implements Pin {
      *
      * @param value initial value
      */
-    synchronized void initValue(long value) {
+    void initValue(long value) {
         currentValue = value;
+        device.pinStateChanged(this);
+    }
+
+    /**
+     * Writes the messages that apply the mode of the pin and the value of a
+     * PWM or servo output to a board that might have lost them. The levels of
+     * digital outputs are applied per port by the device.<br/>
+     * This method is package-wide accessible to be used by
+     * {@link FirmataDevice}.
+     *
+     * @param out the buffer of the messages
+     */
+    synchronized void writeState(ByteArrayOutputStream out) {
+        Mode mode = currentMode;
+        if (mode != Mode.INPUT && mode != Mode.PULLUP && mode != Mode.OUTPUT
+                && mode != Mode.ANALOG && mode != Mode.PWM && mode != Mode.SERVO) {
+            // the other modes need configuration the pin does not keep
+            return;
+        }
+        byte[] message;
+        if (mode == Mode.SERVO) {
+            message = FirmataMessageFactory.servoConfig(pinId, servoMinPulse, servoMaxPulse);
+            out.write(message, 0, message.length);
+        }
+        message = FirmataMessageFactory.setMode(pinId, mode);
+        out.write(message, 0, message.length);
+        if ((mode == Mode.PWM || mode == Mode.SERVO) && currentValue >= 0) {
+            message = FirmataMessageFactory.setAnalogPinValue(pinId, currentValue);
+            out.write(message, 0, message.length);
+        }
+    }
+
+    /**
+     * Passes the value reported by the device through the filters of the pin
+     * and updates the value of the pin with the result.
+     *
+     * @param value the value reported by the device
+     */
+    void receiveValue(long value) {
+        device.pinSampled(pinId, value); // every sample, before it is filtered or found repeated
+        FilterChain chain = filters;
+        if (chain == null) {
+            updateValue(value);
+            return;
+        }
+        long filtered;
+        long delay;
+        synchronized (chain) {
+            long now = System.nanoTime();
+            filtered = chain.apply(value, now);
+            delay = chain.getPendingDelay(now);
+        }
+        if (filtered != SignalFilter.SUPPRESS) {
+            updateValue(filtered);
+        }
+        if (delay >= 0) {
+            scheduleRelease(chain, delay);
+        }
+    }
+
+    /**
+     * Makes the filters release the value they hold back when the time comes
+     * even if the device does not report anything new.
+     *
+     * @param chain the filters holding a value back
+     * @param delay nanoseconds till the value can be released
+     */
+    private void scheduleRelease(final FilterChain chain, long delay) {
+        if (releaseScheduled || !device.isReady()) {
+            return; // the scheduled release reschedules itself if needed
+        }
+        releaseScheduled = true;
+        try {
+            device.getScheduler().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    releaseScheduled = false;
+                    if (chain != filters) {
+                        return;
+                    }
+                    long released;
+                    long delay;
+                    synchronized (chain) {
+                        long now = System.nanoTime();
+                        released = chain.release(now);
+                        delay = chain.getPendingDelay(now);
+                    }
+                    if (released != SignalFilter.SUPPRESS) {
+                        updateValue(released);
+                    }
+                    if (delay >= 0) {
+                        scheduleRelease(chain, delay);
+                    }
+                }
+            }, delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            releaseScheduled = false; // the device is shutting down
+        }
     }
 
     /**
-     * Permits the {@link FirmataDevice} to update input pin value.
+     * Permits the {@link FirmataDevice} to update input pin value.<br/>
+     * The value is published atomically and the listeners are notified
+     * without holding any lock. An event is created only if there are
+     * listeners to receive it.
      *
      * @param value the new value
      */
-    synchronized void updateValue(long value) {
-        if (value != currentValue) {
-            currentValue = value;
-            IOEvent evt = new IOEvent(this);
-            getDevice().pinChanged(evt); // the device listeners receive the event first
-            for (PinEventListener listener : listeners) { // then pin listeners receive the event
-                listener.onValueChange(evt);
+    void updateValue(long value) {
+        if (VALUE.getAndSet(this, value) != value) {
+            device.pinStateChanged(this);
+            valueChanged(value);
+        }
+    }
+
+    /**
+     * Notifies the waiters, the sinks and the listeners about the new value
+     * that has already been published. It is invoked without holding the
+     * monitor of the pin.
+     *
+     * @param value the new value
+     */
+    private void valueChanged(long value) {
+        if (!waiters.isEmpty()) {
+            wakeUpWaiters(value);
+        }
+        device.pinValueChanged(pinId, value); // the sinks receive the value first
+        boolean pinListeners = !listeners.isEmpty();
+        if (pinListeners || device.hasEventListeners()) {
+            IOEvent evt = new IOEvent(this, value, System.currentTimeMillis());
+            device.pinChanged(evt); // then the device listeners receive the event
+            if (pinListeners) {
+                for (PinEventListener listener : listeners) { // then pin listeners receive the event
+                    listener.onValueChange(evt);
+                }
             }
         }
     }
     
+
+    private void wakeUpWaiters(long value) {
+        Iterator<ValueWaiter> iterator = waiters.iterator();
+        while (iterator.hasNext()) {
+            ValueWaiter waiter = iterator.next();
+            if (waiter.matches(value)) {
+                waiter.complete(value);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * A thread waiting for the pin to get a value that matches the
+     * predicate. A waiter without predicate waits for any change.
+     */
+    private static class ValueWaiter extends Waiter<Long> {
+
+        private final LongPredicate predicate;
+
+        ValueWaiter(LongPredicate predicate) {
+            this.predicate = predicate;
+        }
+
+        boolean matches(long value) {
+            if (predicate == null) {
+                return true;
+            }
+            try {
+                return predicate.test(value);
+            } catch (RuntimeException ex) {
+                LOGGER.error("Predicate of a waiter failed", ex);
+                return false;
+            }
+        }
+
+    }
+
 }
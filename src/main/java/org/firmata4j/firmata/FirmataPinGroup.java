@@ -0,0 +1,202 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+import org.firmata4j.Pin;
+import org.firmata4j.PinGroup;
+import org.firmata4j.PinGroupEvent;
+import org.firmata4j.PinGroupEventListener;
+
+/**
+ * This class contains implementation of a group of Firmata pins.<br/>
+ * The value of the group is written with one digital message per port the
+ * pins of the group sit in. The value is read from the port state the
+ * {@link FirmataDevice} keeps, so every port is read at once.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class FirmataPinGroup implements PinGroup {
+
+    private final FirmataDevice device;
+    private final FirmataPin[] pins;
+    /**
+     * Ports the pins of the group sit in.
+     */
+    private final int[] ports;
+    /**
+     * Bits of the group's pins within every port from {@link #ports}.
+     */
+    private final int[] portMasks;
+    /**
+     * Index in {@link #ports} of the port the pin sits in.
+     */
+    private final int[] pinPorts;
+    private final Set<PinGroupEventListener> listeners = new CopyOnWriteArraySet<>();
+    private final AtomicLong lastValue = new AtomicLong();
+
+    /**
+     * Constructs a group of the pins of the specified device.
+     *
+     * @param device the device the pins belong to
+     * @param pins the pins that make up the group
+     */
+    FirmataPinGroup(FirmataDevice device, FirmataPin... pins) {
+        this.device = device;
+        this.pins = pins;
+        int[] groupPorts = new int[pins.length];
+        int[] groupMasks = new int[pins.length];
+        int portCount = 0;
+        pinPorts = new int[pins.length];
+        for (int i = 0; i < pins.length; i++) {
+            int portId = pins[i].getIndex() / 8;
+            int p = 0;
+            while (p < portCount && groupPorts[p] != portId) {
+                p++;
+            }
+            if (p == portCount) {
+                groupPorts[portCount++] = portId;
+            }
+            groupMasks[p] |= 1 << (pins[i].getIndex() % 8);
+            pinPorts[i] = p;
+        }
+        ports = Arrays.copyOf(groupPorts, portCount);
+        portMasks = Arrays.copyOf(groupMasks, portCount);
+        lastValue.set(getValue());
+    }
+
+    @Override
+    public FirmataDevice getDevice() {
+        return device;
+    }
+
+    @Override
+    public List<Pin> getPins() {
+        return Collections.unmodifiableList(new ArrayList<Pin>(Arrays.asList(pins)));
+    }
+
+    @Override
+    public int size() {
+        return pins.length;
+    }
+
+    @Override
+    public long getValue() {
+        long result = 0;
+        for (int p = 0; p < ports.length; p++) {
+            int portValue = device.getPortValue(ports[p]);
+            for (int i = 0; i < pins.length; i++) {
+                if (pinPorts[i] == p && (portValue & (1 << (pins[i].getIndex() % 8))) != 0) {
+                    result |= 1L << i;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void setValue(long value) throws IOException, IllegalStateException {
+        for (FirmataPin pin : pins) {
+            if (pin.getMode() != Pin.Mode.OUTPUT) {
+                throw new IllegalStateException(String.format("Port %d is in %s mode and its value cannot be set.", pin.getIndex(), pin.getMode()));
+            }
+        }
+        int[] levels = new int[ports.length];
+        for (int i = 0; i < pins.length; i++) {
+            if (((value >>> i) & 1) != 0) {
+                levels[pinPorts[i]] |= 1 << (pins[i].getIndex() % 8);
+            }
+        }
+        device.writeDigitalPorts(ports, portMasks, levels);
+        for (int i = 0; i < pins.length; i++) {
+            pins[i].updateValue((value >>> i) & 1);
+        }
+        for (int port : ports) {
+            device.notifyPinGroups(port);
+        }
+    }
+
+    @Override
+    public synchronized void addEventListener(PinGroupEventListener listener) {
+        if (listeners.isEmpty()) {
+            lastValue.set(getValue());
+            device.addPinGroup(this);
+        }
+        listeners.add(listener);
+    }
+
+    @Override
+    public synchronized void removeEventListener(PinGroupEventListener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) {
+            device.removePinGroup(this);
+        }
+    }
+
+    @Override
+    public synchronized void removeAllEventListeners() {
+        listeners.clear();
+        device.removePinGroup(this);
+    }
+
+    /**
+     * Notifies the listeners if the value of the group has changed. That
+     * happens once per a change of a port the group contains pins of.<br/>
+     * This method is package-wide accessible to be used by
+     * {@link FirmataDevice}.
+     *
+     * @param portId index of the port that has changed
+     */
+    void portChanged(int portId) {
+        for (int port : ports) {
+            if (port == portId) {
+                long value = getValue();
+                if (lastValue.getAndSet(value) != value) {
+                    PinGroupEvent evt = new PinGroupEvent(this, value);
+                    for (PinGroupEventListener listener : listeners) {
+                        listener.onValueChange(evt);
+                    }
+                }
+                break;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        int[] indexes = new int[pins.length];
+        for (int i = 0; i < pins.length; i++) {
+            indexes[i] = pins[i].getIndex();
+        }
+        return String.format("FirmataPinGroup %s", Arrays.toString(indexes));
+    }
+
+}
@@ -0,0 +1,240 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.firmata4j.Consumer;
+import org.firmata4j.Pin;
+import org.firmata4j.PinStateFuture;
+
+/**
+ * Implementation of {@link PinStateFuture} that waits for a pin state report
+ * from a Firmata device.<br/>
+ * The future occupies a slot of the confirmation window until it completes.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+class FirmataPinStateFuture implements PinStateFuture {
+
+    private final FirmataPin pin;
+    private final Pin.Mode expectedMode;
+    private final boolean valueExpected;
+    private final long expectedValue;
+    private final Semaphore window;
+    private final long startTime = System.nanoTime();
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private final List<Consumer<PinStateFuture>> actions = new ArrayList<>();
+    private volatile ScheduledFuture<?> timeout;
+    private volatile boolean done;
+    private volatile boolean cancelled;
+    private volatile Throwable failure;
+    private volatile Pin.Mode mode;
+    private volatile long value;
+    private volatile long latency = -1;
+
+    /**
+     * Creates a future that expects the pin to get into the mode.
+     *
+     * @param pin the pin
+     * @param expectedMode the mode the pin should get into
+     * @param window the window the future occupies a slot of
+     */
+    FirmataPinStateFuture(FirmataPin pin, Pin.Mode expectedMode, Semaphore window) {
+        this.pin = pin;
+        this.expectedMode = expectedMode;
+        this.valueExpected = false;
+        this.expectedValue = 0;
+        this.window = window;
+    }
+
+    /**
+     * Creates a future that expects the pin to be in the mode and have the
+     * value.
+     *
+     * @param pin the pin
+     * @param expectedMode the mode the pin should be in
+     * @param expectedValue the value the pin should get
+     * @param window the window the future occupies a slot of
+     */
+    FirmataPinStateFuture(FirmataPin pin, Pin.Mode expectedMode, long expectedValue, Semaphore window) {
+        this.pin = pin;
+        this.expectedMode = expectedMode;
+        this.valueExpected = true;
+        this.expectedValue = expectedValue;
+        this.window = window;
+    }
+
+    @Override
+    public FirmataPin getPin() {
+        return pin;
+    }
+
+    @Override
+    public Pin.Mode getMode() {
+        return mode;
+    }
+
+    @Override
+    public long getLatency(TimeUnit unit) {
+        long result = latency;
+        return result < 0 ? result : unit.convert(result, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void whenDone(Consumer<PinStateFuture> action) {
+        synchronized (this) {
+            if (!done) {
+                actions.add(action);
+                return;
+            }
+        }
+        action.accept(this);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return finish(null, true);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public Long get() throws InterruptedException, ExecutionException {
+        latch.await();
+        return result();
+    }
+
+    @Override
+    public Long get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!latch.await(timeout, unit)) {
+            throw new TimeoutException(String.format("Pin %d state has not been confirmed yet", pin.getIndex()));
+        }
+        return result();
+    }
+
+    /**
+     * Checks whether the reported state of the pin matches the expected one.
+     *
+     * @param reportedMode the mode the device reported
+     * @param reportedValue the value the device reported
+     * @return true if the state matches the expectation, false otherwise
+     */
+    boolean matches(Pin.Mode reportedMode, long reportedValue) {
+        return expectedMode == reportedMode && (!valueExpected || expectedValue == reportedValue);
+    }
+
+    /**
+     * Completes the future with the state that the device reported.
+     *
+     * @param reportedMode the mode the device reported
+     * @param reportedValue the value the device reported
+     * @return true if the future has been completed by this invocation
+     */
+    boolean confirm(Pin.Mode reportedMode, long reportedValue) {
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            mode = reportedMode;
+            value = reportedValue;
+            latency = now - startTime;
+        }
+        return finish(null, false);
+    }
+
+    /**
+     * Completes the future exceptionally.
+     *
+     * @param cause the reason of failure
+     * @return true if the future has been completed by this invocation
+     */
+    boolean fail(Throwable cause) {
+        return finish(cause, false);
+    }
+
+    /**
+     * Sets the task that fails the future when the confirmation does not
+     * arrive in time.
+     *
+     * @param timeout the scheduled task
+     */
+    void setTimeout(ScheduledFuture<?> timeout) {
+        this.timeout = timeout;
+        if (done) {
+            timeout.cancel(false);
+        }
+    }
+
+    private boolean finish(Throwable cause, boolean cancel) {
+        List<Consumer<PinStateFuture>> toPerform;
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            failure = cause;
+            cancelled = cancel;
+            done = true;
+            toPerform = new ArrayList<>(actions);
+            actions.clear();
+        }
+        window.release();
+        ScheduledFuture<?> task = timeout;
+        if (task != null) {
+            task.cancel(false);
+        }
+        latch.countDown();
+        for (Consumer<PinStateFuture> action : toPerform) {
+            action.accept(this);
+        }
+        return true;
+    }
+
+    private Long result() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return value;
+    }
+
+}
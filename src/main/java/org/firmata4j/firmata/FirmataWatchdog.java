@@ -23,8 +23,8 @@
  */
 package org.firmata4j.firmata;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.firmata4j.Consumer;
@@ -63,9 +63,22 @@ public class FirmataWatchdog extends Consumer<Event> {
 
     private volatile long lastTimestamp = 0;
 
+    private ScheduledFuture<?> scheduled;
+
+    /**
+     * Grows on every activation, so that a check scheduled before the
+     * watchdog was disabled does not keep checking after it is enabled again.
+     */
+    private int generation;
+
     private final static TimeUnit UNIT = TimeUnit.MILLISECONDS;
 
-    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("firmata-watchdog"));
+    private static final ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("firmata-watchdog"));
+
+    static {
+        // disabled watchdogs should not stay in the queue until their checks are due
+        EXECUTOR.setRemoveOnCancelPolicy(true);
+    }
 
     /**
      * Creates a watchdog that activates itself on the first received event.
@@ -100,26 +113,53 @@ public class FirmataWatchdog extends Consumer<Event> {
         }
     }
 
-    public void enable() {
+    public synchronized void enable() {
         if (!active.getAndSet(true)) {
-            EXECUTOR.schedule(watch, timeout, UNIT);
+            schedule(++generation);
         }
     }
 
-    public void disable() {
+    public synchronized void disable() {
         active.set(false);
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+    }
+
+    /**
+     * Returns the number of checks of all the watchdogs waiting for their
+     * time.
+     *
+     * @return count of scheduled checks
+     */
+    static int getScheduledCount() {
+        return EXECUTOR.getQueue().size();
     }
 
-    private final Runnable watch = new Runnable() {
-        @Override
-        public void run() {
-            if (System.currentTimeMillis() - lastTimestamp >= timeout) {
-                action.run();
+    private void schedule(final int checkGeneration) {
+        scheduled = EXECUTOR.schedule(new Runnable() {
+            @Override
+            public void run() {
+                check(checkGeneration);
             }
-            if (active.get()) {
-                EXECUTOR.schedule(watch, timeout, UNIT);
+        }, timeout, UNIT);
+    }
+
+    private void check(int checkGeneration) {
+        synchronized (this) {
+            if (!active.get() || checkGeneration != generation) {
+                return;
             }
         }
-    };
+        if (System.currentTimeMillis() - lastTimestamp >= timeout) {
+            action.run();
+        }
+        synchronized (this) {
+            if (active.get() && checkGeneration == generation) {
+                schedule(checkGeneration);
+            }
+        }
+    }
 
 }
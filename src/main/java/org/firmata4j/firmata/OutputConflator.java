@@ -0,0 +1,118 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps only the latest pending output message of every pin and sends them in
+ * batches.<br/>
+ * When an output value is offered for a pin that already has a pending
+ * message, the older message is dropped and counted as superseded. The pending
+ * messages are sent to the device by {@link #flush()} which is supposed to be
+ * invoked periodically.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+class OutputConflator {
+
+    /**
+     * Firmata addresses up to 128 pins.
+     */
+    private static final int MAX_PINS = 128;
+
+    private final FirmataDevice device;
+    private final AtomicReferenceArray<byte[]> pending = new AtomicReferenceArray<>(MAX_PINS);
+    private final AtomicLong superseded = new AtomicLong();
+    private final byte[][] batch = new byte[MAX_PINS][]; // guarded by this
+
+    OutputConflator(FirmataDevice device) {
+        this.device = device;
+    }
+
+    /**
+     * Puts the message to be sent on the next flush replacing a message that
+     * is pending for the same pin.
+     *
+     * @param pinId index of the pin the message sets a value to
+     * @param message the message
+     */
+    void offer(byte pinId, byte[] message) {
+        if (pending.getAndSet(pinId, message) != null) {
+            superseded.incrementAndGet();
+        }
+    }
+
+    /**
+     * Sends all the pending messages in a single write.
+     *
+     * @throws IOException when sending of the messages fails
+     */
+    synchronized void flush() throws IOException {
+        int count = 0;
+        int length = 0;
+        for (int i = 0; i < MAX_PINS; i++) {
+            byte[] message = pending.getAndSet(i, null);
+            if (message != null) {
+                batch[count++] = message;
+                length += message.length;
+            }
+        }
+        if (count > 0) {
+            byte[] messages = new byte[length];
+            for (int i = 0, offset = 0; i < count; i++) {
+                System.arraycopy(batch[i], 0, messages, offset, batch[i].length);
+                offset += batch[i].length;
+                batch[i] = null; // the message should not outlive the flush
+            }
+            device.sendMessage(messages);
+        }
+    }
+
+    /**
+     * Sends the pending message of the specified pin if there is one.
+     *
+     * @param pinId index of the pin
+     * @throws IOException when sending of the message fails
+     */
+    synchronized void flush(byte pinId) throws IOException {
+        byte[] message = pending.getAndSet(pinId, null);
+        if (message != null) {
+            device.sendMessage(message);
+        }
+    }
+
+    /**
+     * Returns the number of messages that have been replaced by a newer
+     * message before they were sent.
+     *
+     * @return count of superseded messages
+     */
+    long getSupersededCount() {
+        return superseded.get();
+    }
+
+}
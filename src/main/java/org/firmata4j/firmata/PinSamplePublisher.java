@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import org.firmata4j.PinSample;
+import org.firmata4j.PinValueSink;
+import org.firmata4j.flow.SamplePublisher;
+
+/**
+ * Publisher of the values of a pin or of all the pins of a device. The
+ * buffered samples of the same pin are conflated when a subscriber does not
+ * keep up with the pace of the device.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+class PinSamplePublisher extends SamplePublisher<PinSample> implements PinValueSink {
+
+    /**
+     * Pin index that makes the publisher publish the values of all the pins.
+     */
+    static final int ALL_PINS = -1;
+
+    private final int pinId;
+
+    /**
+     * Creates the publisher.
+     *
+     * @param pinId index of the pin or {@link #ALL_PINS}
+     * @param bufferSize size of the buffer of each subscription
+     */
+    PinSamplePublisher(int pinId, int bufferSize) {
+        super(bufferSize);
+        this.pinId = pinId;
+    }
+
+    @Override
+    public void onValue(int pinIndex, long value, long nanoTime) {
+        if ((pinId == ALL_PINS || pinId == pinIndex) && hasSubscribers()) {
+            submit(new PinSample(pinIndex, value, nanoTime));
+        }
+    }
+
+    @Override
+    protected int keyOf(PinSample item) {
+        return item.getPinIndex();
+    }
+
+}
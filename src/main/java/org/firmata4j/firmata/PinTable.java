@@ -0,0 +1,116 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.firmata4j.Pin;
+
+/**
+ * Keeps modes and values of all pins of a device so that they can be read
+ * consistently at once.<br/>
+ * The table is guarded by a sequence lock. A writer makes the version odd,
+ * updates the pin and makes the version even again. A reader copies the
+ * table and retries if the version has changed or was odd meanwhile. Readers
+ * neither block nor allocate and never delay the writers.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+class PinTable {
+
+    /**
+     * Firmata addresses up to 128 pins.
+     */
+    private static final int MAX_PINS = 128;
+
+    private static final Pin.Mode[] MODES = Pin.Mode.values();
+
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLongArray values = new AtomicLongArray(MAX_PINS);
+    private final AtomicIntegerArray modes = new AtomicIntegerArray(MAX_PINS); // ordinal + 1, 0 if unknown
+    private volatile int size;
+
+    /**
+     * Sets the count of pins in the table.
+     *
+     * @param size count of pins
+     */
+    synchronized void setSize(int size) {
+        long v = version.get();
+        version.set(v + 1);
+        this.size = Math.min(size, MAX_PINS);
+        version.set(v + 2);
+    }
+
+    /**
+     * Records the current mode and value of the pin.
+     *
+     * @param pin the pin
+     */
+    synchronized void update(FirmataPin pin) {
+        int index = pin.getIndex();
+        if (index >= MAX_PINS) {
+            return;
+        }
+        Pin.Mode mode = pin.getMode();
+        long v = version.get();
+        version.set(v + 1);
+        values.set(index, pin.getValue());
+        modes.set(index, mode == null ? 0 : mode.ordinal() + 1);
+        version.set(v + 2);
+    }
+
+    /**
+     * Copies the modes and values of the pins. Copies as many pins as both the
+     * table and the arrays can hold.
+     *
+     * @param valuesDest the array to receive the values
+     * @param modesDest the array to receive the modes, may be {@code null}
+     * @return the version of the copied state
+     */
+    long read(long[] valuesDest, Pin.Mode[] modesDest) {
+        for (;;) {
+            long v = version.get();
+            if ((v & 1) != 0) {
+                continue; // a writer is in progress
+            }
+            int count = Math.min(size, valuesDest.length);
+            for (int i = 0; i < count; i++) {
+                valuesDest[i] = values.get(i);
+            }
+            if (modesDest != null) {
+                count = Math.min(size, modesDest.length);
+                for (int i = 0; i < count; i++) {
+                    int mode = modes.get(i);
+                    modesDest[i] = mode == 0 ? null : MODES[mode - 1];
+                }
+            }
+            if (version.get() == v) {
+                return v >>> 1;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A thread parked until a result arrives from the device.<br/>
+ * Waiting does not occupy anything but the waiter object, so it suits well a
+ * large number of threads (virtual threads included) blocked on conditions
+ * of a device.
+ *
+ * @param <T> type of the result
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+class Waiter<T> {
+
+    private static final Object PENDING = new Object();
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Waiter, Object> RESULT = AtomicReferenceFieldUpdater.newUpdater(Waiter.class, Object.class, "result");
+
+    private final Thread thread = Thread.currentThread();
+    private volatile Object result = PENDING;
+
+    /**
+     * Passes the result to the waiting thread and wakes it up.
+     *
+     * @param value the result
+     * @return true if the waiter has received the result, false if it has
+     * received another result or has given up waiting
+     */
+    boolean complete(T value) {
+        if (RESULT.compareAndSet(this, PENDING, value)) {
+            LockSupport.unpark(thread);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Parks the current thread until the result arrives.<br/>
+     * Must be called by the thread that created the waiter.
+     *
+     * @param timeout how long to wait
+     * @param unit time unit of the timeout
+     * @return the result
+     * @throws InterruptedException if the thread has been interrupted while
+     * waiting
+     * @throws TimeoutException if the result has not arrived in time
+     */
+    @SuppressWarnings("unchecked")
+    T await(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            Object current = result;
+            if (current != PENDING) {
+                return (T) current;
+            }
+            if (Thread.interrupted()) {
+                if (RESULT.compareAndSet(this, PENDING, null)) {
+                    throw new InterruptedException("Interrupted while waiting for the device");
+                }
+                Thread.currentThread().interrupt(); // the result has arrived anyway
+            } else {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    if (RESULT.compareAndSet(this, PENDING, null)) {
+                        throw new TimeoutException(String.format("The device has not responded within %d %s", timeout, unit));
+                    }
+                } else {
+                    LockSupport.parkNanos(this, remaining);
+                }
+            }
+        }
+    }
+
+}
@@ -46,6 +46,9 @@ public interface FirmataEventType {
     
     String ANALOG_MESSAGE_RESPONSE = "analogMessage";
     String DIGITAL_MESSAGE_RESPONSE = "digitalMessage";
+    String DIGITAL_PORT_MESSAGE = "digitalPortMessage";
+    String PORT_ID = "portId";
+    String PORT_VALUE = "portValue";
     String I2C_MESSAGE = "i2cMessage";
     String I2C_ADDRESS = "i2cAddress";
     String I2C_REGISTER = "i2cRegister";
@@ -25,6 +25,7 @@ package org.firmata4j.firmata.parser;
 
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import org.firmata4j.fsm.FiniteStateMachine;
 import org.firmata4j.Parser;
 import org.slf4j.Logger;
@@ -42,6 +43,7 @@ public class FirmataParser implements Parser {
     private final FiniteStateMachine fsm;
     private final ArrayBlockingQueue<byte[]> byteQueue = new ArrayBlockingQueue<>(128);
     private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong droppedChunks = new AtomicLong();
 
     private static final long WAIT_FOR_TERMINATION_DELAY = 3000;
     private static final Logger LOGGER = LoggerFactory.getLogger(FirmataParser.class);
@@ -78,10 +80,30 @@ public class FirmataParser implements Parser {
     @Override
     public void parse(byte[] bytes) {
         if (bytes != null && !byteQueue.offer(bytes)) {
+            droppedChunks.incrementAndGet();
             LOGGER.warn("Parser reached byte queue limit. Some bytes were skipped.");
         }
     }
 
+    /**
+     * Returns the number of chunks of bytes that have been skipped because
+     * the queue of the parser was full.
+     *
+     * @return count of dropped chunks
+     */
+    public long getDroppedChunkCount() {
+        return droppedChunks.get();
+    }
+
+    /**
+     * Returns the number of chunks of bytes waiting to be parsed.
+     *
+     * @return count of queued chunks
+     */
+    public int getQueuedChunkCount() {
+        return byteQueue.size();
+    }
+
     private class JobRunner implements Runnable {
 
         @Override
@@ -0,0 +1,139 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata.parser;
+
+import java.io.ByteArrayOutputStream;
+import static org.firmata4j.firmata.parser.FirmataToken.*;
+
+/**
+ * Decodes the messages a host sends to a board. It serves the code that
+ * plays the role of a board, such as a simulated board or a gateway that
+ * shares a board among several hosts.<br/>
+ * The decoder is fed byte by byte and passes every complete message to a
+ * {@link Handler}. The data bytes of a command follow it, and the command
+ * can be repeated by sending new data bytes only (running status). Data
+ * bytes that no command expects are ignored.<br/>
+ * The decoder is not thread-safe.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class HostMessageDecoder {
+
+    private final ByteArrayOutputStream sysex = new ByteArrayOutputStream();
+    private final int[] data = new int[2];
+    private boolean inSysex;
+    private int command = -1;
+    private int dataCount;
+
+    /**
+     * Receives the messages decoded by {@link HostMessageDecoder}.
+     *
+     * @param <X> type of the exception the handler may throw
+     */
+    public interface Handler<X extends Exception> {
+
+        /**
+         * Handles a command with its data bytes.
+         *
+         * @param command the command byte
+         * @param data the data bytes, valid until the handler returns
+         * @throws X when the handler fails
+         */
+        void onCommand(int command, int[] data) throws X;
+
+        /**
+         * Handles a sysex message.
+         *
+         * @param message the body of the message without the start and the
+         * end of sysex
+         * @throws X when the handler fails
+         */
+        void onSysex(byte[] message) throws X;
+
+    }
+
+    /**
+     * Processes a byte received from the host.
+     *
+     * @param <X> type of the exception the handler may throw
+     * @param b the byte
+     * @param handler the receiver of the complete messages
+     * @throws X when the handler fails
+     */
+    public <X extends Exception> void receive(byte b, Handler<X> handler) throws X {
+        int u = b & 0xFF;
+        if (u >= 0x80) {
+            if (inSysex) {
+                inSysex = false;
+                handler.onSysex(sysex.toByteArray());
+                if (u == (END_SYSEX & 0xFF)) {
+                    return;
+                }
+                // a message without the end of sysex is completed by the next command
+            }
+            if (u == (START_SYSEX & 0xFF)) {
+                inSysex = true;
+                sysex.reset();
+                command = -1;
+                return;
+            }
+            command = u;
+            dataCount = 0;
+            if (dataLength(u) == 0) {
+                handler.onCommand(u, data);
+            }
+        } else if (inSysex) {
+            sysex.write(b);
+        } else if (command >= 0 && dataLength(command) > 0) {
+            data[dataCount++] = u;
+            if (dataCount == dataLength(command)) {
+                handler.onCommand(command, data);
+                dataCount = 0; // the command can be repeated with new data
+            }
+        }
+    }
+
+    /**
+     * Returns the count of data bytes that follow the command.
+     *
+     * @param command the command byte
+     * @return count of data bytes
+     */
+    public static int dataLength(int command) {
+        switch (command & 0xF0) {
+            case DIGITAL_MESSAGE & 0xF0:
+            case ANALOG_MESSAGE & 0xF0:
+                return 2;
+            case REPORT_ANALOG & 0xF0:
+            case REPORT_DIGITAL & 0xF0:
+                return 1;
+            default:
+                if (command == (SET_PIN_MODE & 0xFF) || command == (SET_DIGITAL_PIN_VALUE & 0xFF)) {
+                    return 2;
+                }
+                return 0;
+        }
+    }
+
+}
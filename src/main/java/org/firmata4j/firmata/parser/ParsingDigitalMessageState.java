@@ -39,7 +39,9 @@ import static org.firmata4j.firmata.parser.FirmataEventType.*;
  * When digital input of particular pin has been changed, Firmata transmits
  * state of whole port the pin is contained in.<br/>
  * A port is a set of 8 pins. State of every pin is represented inside one byte
- * by bit (0 - low, 1 - high).
+ * by bit (0 - low, 1 - high).<br/>
+ * Events of particular pins are followed by the event that carries the value
+ * of the whole port.
  *
  * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
  */
@@ -68,6 +70,10 @@ public class ParsingDigitalMessageState extends AbstractState {
                     evt.setBodyItem(PIN_VALUE, (value >>> i) & 0x01);
                     publish(evt);
                 }
+                Event portEvt = new Event(DIGITAL_PORT_MESSAGE);
+                portEvt.setBodyItem(PORT_ID, portId);
+                portEvt.setBodyItem(PORT_VALUE, value);
+                publish(portEvt);
                 transitTo(WaitingForMessageState.class);
                 break;
         }
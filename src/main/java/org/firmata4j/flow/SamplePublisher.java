@@ -0,0 +1,402 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.flow;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link Publisher} of items that arrive from a source which cannot be slowed
+ * down, such as readings of a sensor.<br/>
+ * Every subscription has a bounded buffer for the items the subscriber has
+ * not requested yet. When the buffer is full, a new item replaces the latest
+ * buffered item with the same key (see {@link #keyOf(Object)}). If there is
+ * no such item, the oldest buffered item is dropped. So memory consumption
+ * does not grow with the rate of the source.<br/>
+ * Items are delivered on the thread that submits them or on the thread that
+ * requests them. Subscribers should handle them quickly.<br/>
+ * The source may be paused when every subscriber has neither demand nor room
+ * in its buffer. See {@link DemandListener}.
+ *
+ * @param <T> type of published items
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class SamplePublisher<T> implements Publisher<T> {
+
+    /**
+     * Receives notifications about changes of demand on the items of the
+     * publisher. The source of the items can be paused when nobody is able to
+     * receive them.
+     */
+    public interface DemandListener {
+
+        /**
+         * Invoked when some subscriber is able to receive items again.
+         */
+        void onDemand();
+
+        /**
+         * Invoked when no subscriber is able to receive items: they have no
+         * demand and their buffers are full.
+         */
+        void onNoDemand();
+
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SamplePublisher.class);
+
+    private final int bufferSize;
+    private final List<SampleSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile DemandListener demandListener;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+    private boolean demanded = true;
+
+    /**
+     * Creates a publisher.
+     *
+     * @param bufferSize size of the buffer of each subscription
+     */
+    public SamplePublisher(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be greater than 0.");
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber is required");
+        }
+        SampleSubscription subscription = new SampleSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        if (!subscription.cancelled) {
+            subscriptions.add(subscription);
+            if (closed) {
+                subscription.terminate(failure);
+            }
+            updateDemand();
+        }
+    }
+
+    /**
+     * Sets the listener that gets notified when the subscribers become unable
+     * to receive items and when they are able to receive items again.
+     *
+     * @param listener the listener
+     */
+    public void setDemandListener(DemandListener listener) {
+        this.demandListener = listener;
+    }
+
+    /**
+     * Checks whether the publisher has subscribers. A source may use this
+     * method to avoid creation of items that nobody receives.
+     *
+     * @return true if there is at least one subscriber
+     */
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Publishes the item to all the subscribers.
+     *
+     * @param item the item
+     */
+    public void submit(T item) {
+        if (closed) {
+            return;
+        }
+        for (SampleSubscription subscription : subscriptions) {
+            subscription.offer(item);
+        }
+    }
+
+    /**
+     * Completes all the subscriptions. The subscribers receive the buffered
+     * items first.
+     */
+    public void close() {
+        terminate(null);
+    }
+
+    /**
+     * Completes all the subscriptions with the error. The buffered items are
+     * discarded.
+     *
+     * @param error the reason of the failure
+     */
+    public void closeExceptionally(Throwable error) {
+        if (error == null) {
+            throw new NullPointerException("Error is required");
+        }
+        terminate(error);
+    }
+
+    /**
+     * Checks whether the publisher has been closed.
+     *
+     * @return true if the publisher has been closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Returns the number of items that have been dropped or replaced because
+     * a buffer of a subscription was full.
+     *
+     * @return count of the lost items
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the key of an item. When a buffer is full, a new item replaces
+     * the latest buffered item with the same key. Items with a negative key
+     * are never replaced.<br/>
+     * The default implementation returns -1.
+     *
+     * @param item the item
+     * @return the key of the item
+     */
+    protected int keyOf(T item) {
+        return -1;
+    }
+
+    private void terminate(Throwable error) {
+        if (closed) {
+            return;
+        }
+        failure = error;
+        closed = true;
+        for (SampleSubscription subscription : subscriptions) {
+            subscription.terminate(error);
+        }
+    }
+
+    private synchronized void updateDemand() {
+        boolean wanted = subscriptions.isEmpty();
+        for (SampleSubscription subscription : subscriptions) {
+            if (!subscription.saturated) {
+                wanted = true;
+                break;
+            }
+        }
+        if (wanted != demanded) {
+            demanded = wanted;
+            DemandListener listener = demandListener;
+            if (listener != null) {
+                if (wanted) {
+                    listener.onDemand();
+                } else {
+                    listener.onNoDemand();
+                }
+            }
+        }
+    }
+
+    /**
+     * Buffers the items for a subscriber and delivers them according to the
+     * demand. Delivery is serialized by the work-in-progress counter so that
+     * only one thread delivers the items at a time.
+     */
+    private class SampleSubscription implements Subscription {
+
+        private final Subscriber<? super T> subscriber;
+        private final Object[] ring = new Object[bufferSize];
+        private int head; // guarded by ring
+        private int count; // guarded by ring
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean terminated;
+        private volatile Throwable error;
+        private volatile boolean saturated;
+
+        SampleSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Number of requested items must be positive");
+                terminated = true;
+            } else {
+                long current;
+                long next;
+                do {
+                    current = requested.get();
+                    next = current + n;
+                    if (next < 0) {
+                        next = Long.MAX_VALUE;
+                    }
+                } while (!requested.compareAndSet(current, next));
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                discard();
+            }
+        }
+
+        void offer(T item) {
+            synchronized (ring) {
+                if (count < ring.length) {
+                    ring[(head + count) % ring.length] = item;
+                    count++;
+                } else {
+                    dropped.incrementAndGet();
+                    int index = lastIndexOf(keyOf(item));
+                    if (index >= 0) {
+                        ring[index] = item;
+                    } else {
+                        // the buffer is full so the tail is where the head is
+                        ring[head] = item;
+                        head = (head + 1) % ring.length;
+                    }
+                }
+            }
+            drain();
+        }
+
+        void terminate(Throwable cause) {
+            error = cause;
+            terminated = true;
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                long demand = requested.get();
+                long emitted = 0;
+                while (emitted != demand && !cancelled && error == null) {
+                    T item = poll();
+                    if (item == null) {
+                        break;
+                    }
+                    try {
+                        subscriber.onNext(item);
+                    } catch (RuntimeException ex) {
+                        LOGGER.error("Subscriber failed to handle an item. The subscription is cancelled.", ex);
+                        cancel();
+                    }
+                    emitted++;
+                }
+                if (emitted > 0 && demand != Long.MAX_VALUE) {
+                    demand = requested.addAndGet(-emitted);
+                }
+                if (!cancelled && terminated && (error != null || isEmpty())) {
+                    cancelled = true;
+                    discard();
+                    if (error == null) {
+                        subscriber.onComplete();
+                    } else {
+                        subscriber.onError(error);
+                    }
+                }
+                boolean full = !cancelled && demand == 0 && isFull();
+                if (full != saturated) {
+                    saturated = full;
+                    updateDemand();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void discard() {
+            synchronized (ring) {
+                for (int i = 0; i < ring.length; i++) {
+                    ring[i] = null;
+                }
+                count = 0;
+            }
+            if (subscriptions.remove(this)) {
+                updateDemand();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private T poll() {
+            synchronized (ring) {
+                if (count == 0) {
+                    return null;
+                }
+                T result = (T) ring[head];
+                ring[head] = null;
+                head = (head + 1) % ring.length;
+                count--;
+                return result;
+            }
+        }
+
+        private boolean isEmpty() {
+            synchronized (ring) {
+                return count == 0;
+            }
+        }
+
+        private boolean isFull() {
+            synchronized (ring) {
+                return count == ring.length;
+            }
+        }
+
+        /**
+         * Finds the latest buffered item with the key. Must be called holding
+         * the lock of the ring.
+         */
+        @SuppressWarnings("unchecked")
+        private int lastIndexOf(int key) {
+            if (key >= 0) {
+                for (int i = count - 1; i >= 0; i--) {
+                    int index = (head + i) % ring.length;
+                    if (keyOf((T) ring[index]) == key) {
+                        return index;
+                    }
+                }
+            }
+            return -1;
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.flow;
+
+/**
+ * A receiver of items from a {@link Publisher}.<br/>
+ * The methods of a subscriber are invoked sequentially, never concurrently.
+ * The interface mirrors {@code java.util.concurrent.Flow.Subscriber}.
+ *
+ * @param <T> type of received items
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public interface Subscriber<T> {
+
+    /**
+     * Invoked prior to any other method of the subscriber. No items are
+     * delivered until the subscriber requests them via the subscription.
+     *
+     * @param subscription the subscription
+     */
+    void onSubscribe(Subscription subscription);
+
+    /**
+     * Invoked with the next item. The number of invocations never exceeds the
+     * number of requested items.
+     *
+     * @param item the item
+     */
+    void onNext(T item);
+
+    /**
+     * Invoked when the publisher fails. No other methods are invoked after
+     * that.
+     *
+     * @param throwable the reason of the failure
+     */
+    void onError(Throwable throwable);
+
+    /**
+     * Invoked when the publisher has no more items. No other methods are
+     * invoked after that.
+     */
+    void onComplete();
+
+}
@@ -0,0 +1,206 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.gateway;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import org.firmata4j.IODevice;
+import org.firmata4j.Pin;
+import static org.firmata4j.firmata.parser.FirmataToken.*;
+
+/**
+ * Builds the messages a board sends to the host, so that the gateway can
+ * answer its clients the way the board would.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+final class BoardMessageFactory {
+
+    private BoardMessageFactory() {
+    }
+
+    /**
+     * Builds the report of the protocol version.
+     *
+     * @param major major version of the protocol
+     * @param minor minor version of the protocol
+     * @return the message
+     */
+    static byte[] protocolVersion(int major, int minor) {
+        return new byte[] {REPORT_VERSION, (byte) major, (byte) minor};
+    }
+
+    /**
+     * Builds the report of the firmware.
+     *
+     * @param name name of the firmware
+     * @param major major version of the firmware
+     * @param minor minor version of the firmware
+     * @return the message
+     */
+    static byte[] firmware(String name, int major, int minor) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(START_SYSEX);
+        out.write(REPORT_FIRMWARE);
+        out.write(major);
+        out.write(minor);
+        for (char c : name.toCharArray()) {
+            out.write(c & 0x7F);
+            out.write(c >>> 7 & 0x7F);
+        }
+        out.write(END_SYSEX);
+        return out.toByteArray();
+    }
+
+    /**
+     * Builds the capability response that lists the supported modes of the
+     * pins of the device. The device does not keep the resolutions of the
+     * modes, so the usual ones are reported.
+     *
+     * @param device the device
+     * @return the message
+     */
+    static byte[] capabilities(IODevice device) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(START_SYSEX);
+        out.write(CAPABILITY_RESPONSE);
+        for (int i = 0; i < device.getPinsCount(); i++) {
+            for (Pin.Mode mode : device.getPin(i).getSupportedModes()) {
+                if (mode != Pin.Mode.IGNORED && mode != Pin.Mode.UNSUPPORTED) {
+                    out.write(mode.ordinal());
+                    out.write(resolution(mode));
+                }
+            }
+            out.write(127);
+        }
+        out.write(END_SYSEX);
+        return out.toByteArray();
+    }
+
+    /**
+     * Builds the analog mapping response.
+     *
+     * @param mapping indexes of pins by analog channel
+     * @param pinCount count of the pins of the device
+     * @return the message
+     */
+    static byte[] analogMapping(Map<Integer, Integer> mapping, int pinCount) {
+        byte[] result = new byte[pinCount + 3];
+        result[0] = START_SYSEX;
+        result[1] = ANALOG_MAPPING_RESPONSE;
+        for (int i = 0; i < pinCount; i++) {
+            result[i + 2] = 127;
+        }
+        for (Map.Entry<Integer, Integer> entry : mapping.entrySet()) {
+            if (entry.getValue() < pinCount) {
+                result[entry.getValue() + 2] = entry.getKey().byteValue();
+            }
+        }
+        result[pinCount + 2] = END_SYSEX;
+        return result;
+    }
+
+    /**
+     * Builds the pin state response.
+     *
+     * @param pin the pin
+     * @return the message
+     */
+    static byte[] pinState(Pin pin) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(START_SYSEX);
+        out.write(PIN_STATE_RESPONSE);
+        out.write(pin.getIndex());
+        Pin.Mode mode = pin.getMode();
+        out.write(mode == null || mode == Pin.Mode.IGNORED || mode == Pin.Mode.UNSUPPORTED ? PIN_MODE_IGNORE : mode.ordinal());
+        long value = Math.max(0, pin.getValue());
+        do {
+            out.write((int) (value & 0x7F));
+            value >>>= 7;
+        } while (value > 0);
+        out.write(END_SYSEX);
+        return out.toByteArray();
+    }
+
+    /**
+     * Builds the report of an analog channel.
+     *
+     * @param channel the analog channel
+     * @param value the value
+     * @return the message
+     */
+    static byte[] analog(int channel, int value) {
+        return new byte[] {(byte) (ANALOG_MESSAGE | channel), (byte) (value & 0x7F), (byte) ((value >>> 7) & 0x7F)};
+    }
+
+    /**
+     * Builds the report of a digital port.
+     *
+     * @param port index of the port
+     * @param value levels of the pins of the port
+     * @return the message
+     */
+    static byte[] digitalPort(int port, int value) {
+        return new byte[] {(byte) (DIGITAL_MESSAGE | port), (byte) (value & 0x7F), (byte) ((value >>> 7) & 0x7F)};
+    }
+
+    /**
+     * Builds the reply of an I2C device.
+     *
+     * @param address address of the I2C device
+     * @param register the register that has been read
+     * @param data the bytes that have been read
+     * @return the message
+     */
+    static byte[] i2cReply(int address, int register, byte[] data) {
+        byte[] result = new byte[7 + data.length * 2];
+        int i = 0;
+        result[i++] = START_SYSEX;
+        result[i++] = I2C_REPLY;
+        result[i++] = (byte) (address & 0x7F);
+        result[i++] = (byte) ((address >>> 7) & 0x7F);
+        result[i++] = (byte) (register & 0x7F);
+        result[i++] = (byte) ((register >>> 7) & 0x7F);
+        for (byte b : data) {
+            result[i++] = (byte) (b & 0x7F);
+            result[i++] = (byte) ((b >>> 7) & 0x01);
+        }
+        result[i] = END_SYSEX;
+        return result;
+    }
+
+    private static int resolution(Pin.Mode mode) {
+        switch (mode) {
+            case ANALOG:
+                return 10;
+            case PWM:
+                return 8;
+            case SERVO:
+                return 14;
+            default:
+                return 1;
+        }
+    }
+
+}
@@ -0,0 +1,525 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.gateway;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.firmata4j.Consumer;
+import org.firmata4j.IODevice;
+import org.firmata4j.Pin;
+import org.firmata4j.firmata.DaemonThreadFactory;
+import org.firmata4j.firmata.FirmataMessageFactory;
+import org.firmata4j.fsm.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import static org.firmata4j.firmata.parser.FirmataEventType.*;
+import static org.firmata4j.firmata.parser.FirmataToken.*;
+
+/**
+ * Shares one board between many clients that connect over TCP and speak
+ * Firmata, like {@link org.firmata4j.firmata.FirmataDevice} over
+ * {@link org.firmata4j.transport.NetworkTransport}.<br/>
+ * The gateway owns the device. The queries of the handshake are answered
+ * from the state of the device without bothering the board. The reports of
+ * the board are encoded once and passed to every client that has enabled
+ * reporting of the channel or port. The commands of the clients get to the
+ * board in order through a single queue; pin modes and values are applied
+ * through the pins of the device, so they stay in line with what the
+ * clients are told. A query of a pin state waits in the same queue and is
+ * answered once the commands the client has sent before it are applied, so
+ * the client learns the state it has asked for. A client cannot reset the
+ * shared board.
+ * <pre>
+ * FirmataGateway gateway = new FirmataGateway(new FirmataDevice("/dev/ttyUSB0"), 4334);
+ * gateway.start();
+ * // elsewhere
+ * IODevice device = new FirmataDevice(new NetworkTransport("gateway-host:4334"));
+ * </pre>
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class FirmataGateway {
+
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int DEFAULT_CLIENT_BUFFER_SIZE = 1024;
+    private static final Logger LOGGER = LoggerFactory.getLogger(FirmataGateway.class);
+
+    private final IODevice device;
+    private final InetSocketAddress address;
+    private final List<GatewayClient> clients = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<Command> commands = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final int[][] servoPulses = new int[128][];
+    private volatile int clientBufferSize = DEFAULT_CLIENT_BUFFER_SIZE;
+    private volatile byte[] versionMessage = BoardMessageFactory.protocolVersion(FIRMATA_MAJOR_VERSION, FIRMATA_MINOR_VERSION);
+    private volatile Map<String, Object> firmware;
+    private volatile Map<Integer, Integer> analogMapping;
+    private byte[] firmwareMessage;
+    private byte[] capabilityMessage;
+    private byte[] analogMappingMessage;
+    private ServerSocket server;
+    private Thread acceptor;
+    private Thread output;
+
+    /**
+     * Creates the gateway that accepts clients on the specified port of all
+     * network interfaces.
+     *
+     * @param device the device to be shared, it gets started by the gateway
+     * @param port the port
+     */
+    public FirmataGateway(IODevice device, int port) {
+        this(device, new InetSocketAddress(port));
+    }
+
+    /**
+     * Creates the gateway that accepts clients on the specified address.
+     *
+     * @param device the device to be shared, it gets started by the gateway
+     * @param address the address to listen to
+     */
+    public FirmataGateway(IODevice device, InetSocketAddress address) {
+        this.device = device;
+        this.address = address;
+        device.addProtocolMessageHandler(PROTOCOL_MESSAGE, new Consumer<Event>() {
+            @Override
+            public void accept(Event event) {
+                versionMessage = BoardMessageFactory.protocolVersion(
+                        (Integer) event.getBodyItem(PROTOCOL_MAJOR),
+                        (Integer) event.getBodyItem(PROTOCOL_MINOR));
+            }
+        });
+        device.addProtocolMessageHandler(FIRMWARE_MESSAGE, new Consumer<Event>() {
+            @Override
+            public void accept(Event event) {
+                if (firmware == null) {
+                    firmware = event.getBody();
+                }
+            }
+        });
+        device.addProtocolMessageHandler(ANALOG_MAPPING_MESSAGE, new Consumer<Event>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void accept(Event event) {
+                analogMapping = (Map<Integer, Integer>) event.getBodyItem(ANALOG_MAPPING);
+            }
+        });
+        device.addProtocolMessageHandler(ANALOG_MESSAGE_RESPONSE, new Consumer<Event>() {
+            @Override
+            public void accept(Event event) {
+                if (!clients.isEmpty()) {
+                    int channel = (Integer) event.getBodyItem(PIN_ID);
+                    byte[] message = BoardMessageFactory.analog(channel, (Integer) event.getBodyItem(PIN_VALUE));
+                    for (GatewayClient client : clients) {
+                        if (client.isReportingAnalog(channel)) {
+                            client.offer(message);
+                        }
+                    }
+                }
+            }
+        });
+        device.addProtocolMessageHandler(DIGITAL_PORT_MESSAGE, new Consumer<Event>() {
+            @Override
+            public void accept(Event event) {
+                if (!clients.isEmpty()) {
+                    int port = (Integer) event.getBodyItem(PORT_ID);
+                    byte[] message = BoardMessageFactory.digitalPort(port, (Integer) event.getBodyItem(PORT_VALUE));
+                    for (GatewayClient client : clients) {
+                        if (client.isReportingDigital(port)) {
+                            client.offer(message);
+                        }
+                    }
+                }
+            }
+        });
+        device.addProtocolMessageHandler(I2C_MESSAGE, new Consumer<Event>() {
+            @Override
+            public void accept(Event event) {
+                if (!clients.isEmpty()) {
+                    broadcast(BoardMessageFactory.i2cReply(
+                            (Byte) event.getBodyItem(I2C_ADDRESS),
+                            ((Number) event.getBodyItem(I2C_REGISTER)).intValue() & 0xFF,
+                            (byte[]) event.getBodyItem(I2C_MESSAGE)));
+                }
+            }
+        });
+        device.addProtocolMessageHandler(STRING_MESSAGE, new Consumer<Event>() {
+            @Override
+            public void accept(Event event) {
+                if (!clients.isEmpty()) {
+                    broadcast(FirmataMessageFactory.stringMessage((String) event.getBodyItem(STRING_MESSAGE)));
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets how many messages may wait for a client before the new ones get
+     * dropped. The size applies to the clients that connect afterwards.
+     *
+     * @param size the size of the buffer of a client
+     */
+    public void setClientBufferSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Buffer size must be greater than 0.");
+        }
+        clientBufferSize = size;
+    }
+
+    /**
+     * Starts the device and begins accepting the clients.
+     *
+     * @throws IOException when the device cannot be started or the port
+     * cannot be bound
+     * @throws InterruptedException when the device fails to initialize
+     */
+    public synchronized void start() throws IOException, InterruptedException {
+        if (server != null) {
+            return;
+        }
+        if (device.isReady()) {
+            throw new IllegalStateException("The gateway has to start the device itself in order to learn its firmware.");
+        }
+        device.start();
+        device.ensureInitializationIsDone();
+        Map<String, Object> info = firmware;
+        Map<Integer, Integer> mapping = analogMapping;
+        if (info == null || mapping == null) {
+            device.stop();
+            throw new IllegalStateException("The device has been initialized without reporting its firmware and analog mapping.");
+        }
+        firmwareMessage = BoardMessageFactory.firmware(
+                (String) info.get(FIRMWARE_NAME),
+                (Integer) info.get(FIRMWARE_MAJOR),
+                (Integer) info.get(FIRMWARE_MINOR));
+        capabilityMessage = BoardMessageFactory.capabilities(device);
+        analogMappingMessage = BoardMessageFactory.analogMapping(mapping, device.getPinsCount());
+        ServerSocket socket = new ServerSocket();
+        try {
+            socket.setReuseAddress(true);
+            socket.bind(address);
+        } catch (IOException ex) {
+            socket.close();
+            device.stop();
+            throw ex;
+        }
+        server = socket;
+        output = new DaemonThreadFactory("firmata-gateway-output").newThread(applyCommands);
+        output.start();
+        acceptor = new DaemonThreadFactory("firmata-gateway-acceptor").newThread(acceptClients);
+        acceptor.start();
+        LOGGER.info("Gateway to {} is listening on port {}", getFirmwareName(info), socket.getLocalPort());
+    }
+
+    /**
+     * Disconnects the clients and stops the device.
+     *
+     * @throws IOException when the device cannot be stopped properly
+     */
+    public synchronized void stop() throws IOException {
+        if (server == null) {
+            return;
+        }
+        try {
+            server.close();
+            acceptor.join();
+            List<GatewayClient> connected = new ArrayList<>(clients);
+            for (GatewayClient client : connected) {
+                client.close();
+            }
+            output.interrupt();
+            output.join();
+            for (GatewayClient client : connected) {
+                client.join();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            server = null;
+            device.stop();
+        }
+    }
+
+    /**
+     * Returns the port the gateway accepts the clients on. That is useful when
+     * the gateway is bound to an ephemeral port.
+     *
+     * @return the port or -1 if the gateway is not started
+     */
+    public synchronized int getPort() {
+        return server == null ? -1 : server.getLocalPort();
+    }
+
+    /**
+     * Returns the clients that are connected at the moment.
+     *
+     * @return the clients
+     */
+    public List<GatewayClient> getClients() {
+        return new ArrayList<>(clients);
+    }
+
+    /**
+     * Returns the device shared by the gateway.
+     *
+     * @return the device
+     */
+    public IODevice getDevice() {
+        return device;
+    }
+
+    /**
+     * Puts the message of a client to the queue of the messages for the
+     * board. Waits while the queue is full.
+     *
+     * @param client the client that has sent the message
+     * @param message the message
+     * @throws InterruptedException when interrupted while waiting
+     */
+    void submit(GatewayClient client, byte[] message) throws InterruptedException {
+        commands.put(new Command(client, message));
+    }
+
+    /**
+     * Removes the client that has disconnected.
+     *
+     * @param client the client
+     */
+    void disconnected(GatewayClient client) {
+        if (clients.remove(client)) {
+            LOGGER.info("Client {} has disconnected", client.getAddress());
+        }
+    }
+
+    byte[] getVersionMessage() {
+        return versionMessage;
+    }
+
+    byte[] getFirmwareMessage() {
+        return firmwareMessage;
+    }
+
+    byte[] getCapabilityMessage() {
+        return capabilityMessage;
+    }
+
+    byte[] getAnalogMappingMessage() {
+        return analogMappingMessage;
+    }
+
+    /**
+     * Builds the state of the pin as the device knows it.
+     *
+     * @param pinId index of the pin
+     * @return the pin state response or null if there is no such pin
+     */
+    byte[] pinState(int pinId) {
+        if (pinId >= device.getPinsCount()) {
+            return null;
+        }
+        return BoardMessageFactory.pinState(device.getPin(pinId));
+    }
+
+    /**
+     * Builds the report of the levels of a digital port as the device knows
+     * them.
+     *
+     * @param port index of the port
+     * @return the report
+     */
+    byte[] portReport(int port) {
+        int value = 0;
+        for (int bit = 0; bit < 8 && port * 8 + bit < device.getPinsCount(); bit++) {
+            Pin pin = device.getPin(port * 8 + bit);
+            if (pin.getMode() != Pin.Mode.ANALOG && pin.getValue() > 0) {
+                value |= 1 << bit;
+            }
+        }
+        return BoardMessageFactory.digitalPort(port, value);
+    }
+
+    private void broadcast(byte[] message) {
+        for (GatewayClient client : clients) {
+            client.offer(message);
+        }
+    }
+
+    private static String getFirmwareName(Map<String, Object> info) {
+        return String.format("%s %s.%s", info.get(FIRMWARE_NAME), info.get(FIRMWARE_MAJOR), info.get(FIRMWARE_MINOR));
+    }
+
+    /**
+     * Applies the messages of the clients to the device one by one.
+     */
+    private void apply(GatewayClient client, byte[] message) throws IOException {
+        int command = message[0] & 0xFF;
+        if (command == (START_SYSEX & 0xFF)) {
+            if (message[1] == PIN_STATE_QUERY) {
+                byte[] state = message.length > 3 ? pinState(message[2]) : null;
+                if (state != null) {
+                    client.offer(state);
+                }
+                return;
+            } else if (message[1] == SERVO_CONFIG && message.length > 6 && message[2] < servoPulses.length) {
+                // the pulses apply when the client sets the servo mode
+                servoPulses[message[2]] = new int[] {message[3] | message[4] << 7, message[5] | message[6] << 7};
+            } else if (message[1] == EXTENDED_ANALOG && message.length > 4) {
+                long value = 0;
+                for (int i = 3; i < message.length - 1; i++) {
+                    value |= (long) message[i] << (7 * (i - 3));
+                }
+                setValue(message[2], value);
+                return;
+            }
+            device.sendMessage(message);
+            return;
+        }
+        int channel = command & 0x0F;
+        switch (command & 0xF0) {
+            case DIGITAL_MESSAGE & 0xF0:
+                setPort(channel, message[1] | message[2] << 7);
+                return;
+            case ANALOG_MESSAGE & 0xF0:
+                setValue(channel, message[1] | message[2] << 7);
+                return;
+            default:
+                break;
+        }
+        if (command == (SET_PIN_MODE & 0xFF)) {
+            if (message[1] < device.getPinsCount()) {
+                Pin pin = device.getPin(message[1]);
+                Pin.Mode mode = Pin.Mode.resolve(message[2]);
+                int[] pulses = servoPulses[message[1]];
+                if (mode == Pin.Mode.SERVO && pulses != null) {
+                    pin.setServoMode(pulses[0], pulses[1]);
+                } else {
+                    pin.setMode(mode);
+                }
+            }
+        } else if (command == (SET_DIGITAL_PIN_VALUE & 0xFF)) {
+            setValue(message[1], message[2]);
+        }
+    }
+
+    /**
+     * Sets the levels of the output pins of a port in one write to the
+     * board.
+     */
+    private void setPort(int port, int levels) throws IOException {
+        int[] outputs = new int[8];
+        int count = 0;
+        long value = 0;
+        for (int bit = 0; bit < 8 && port * 8 + bit < device.getPinsCount(); bit++) {
+            if (device.getPin(port * 8 + bit).getMode() == Pin.Mode.OUTPUT) {
+                value |= (long) ((levels >>> bit) & 1) << count;
+                outputs[count++] = port * 8 + bit;
+            }
+        }
+        if (count > 0) {
+            device.createPinGroup(Arrays.copyOf(outputs, count)).setValue(value);
+        }
+    }
+
+    private void setValue(int pinId, long value) throws IOException {
+        if (pinId < device.getPinsCount()) {
+            device.getPin(pinId).setValue(value);
+        }
+    }
+
+    /**
+     * Passes the messages of the clients to the device in the order they
+     * arrive.
+     */
+    private final Runnable applyCommands = new Runnable() {
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                Command command;
+                try {
+                    command = commands.take();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                try {
+                    apply(command.client, command.message);
+                } catch (IOException ex) {
+                    LOGGER.error("Cannot pass a message of a client to the device", ex);
+                } catch (IllegalArgumentException | IllegalStateException ex) {
+                    LOGGER.warn("Rejected a message of a client: {}", ex.getMessage());
+                }
+            }
+        }
+    };
+
+    /**
+     * Accepts the clients until the server socket gets closed.
+     */
+    private final Runnable acceptClients = new Runnable() {
+        @Override
+        public void run() {
+            ServerSocket socket;
+            synchronized (FirmataGateway.this) {
+                socket = server;
+            }
+            while (socket != null && !socket.isClosed()) {
+                try {
+                    Socket connection = socket.accept();
+                    connection.setTcpNoDelay(true);
+                    GatewayClient client = new GatewayClient(FirmataGateway.this, connection, clientBufferSize);
+                    clients.add(client);
+                    client.start();
+                    LOGGER.info("Client {} has connected", client.getAddress());
+                } catch (IOException ex) {
+                    if (!socket.isClosed()) {
+                        LOGGER.error("Cannot accept a client", ex);
+                    }
+                }
+            }
+        }
+    };
+
+    /**
+     * A message of a client waiting in the queue for the board.
+     */
+    private static class Command {
+
+        private final GatewayClient client;
+        private final byte[] message;
+
+        Command(GatewayClient client, byte[] message) {
+            this.client = client;
+            this.message = message;
+        }
+
+    }
+
+}
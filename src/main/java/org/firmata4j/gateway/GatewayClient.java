@@ -0,0 +1,383 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.gateway;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.firmata4j.firmata.DaemonThreadFactory;
+import org.firmata4j.firmata.parser.HostMessageDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import static org.firmata4j.firmata.parser.FirmataToken.*;
+
+/**
+ * A client connected to {@link FirmataGateway}.<br/>
+ * The messages for the client wait in a bounded buffer until they get
+ * written to its socket. When the buffer is full, new messages for the client
+ * are dropped, so a slow client does not hold back the others. The time the
+ * messages wait is the lag of the client.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class GatewayClient {
+
+    private static final ThreadFactory READER_THREAD_FACTORY = new DaemonThreadFactory("firmata-gateway-client-in");
+    private static final ThreadFactory WRITER_THREAD_FACTORY = new DaemonThreadFactory("firmata-gateway-client-out");
+    private static final Logger LOGGER = LoggerFactory.getLogger(GatewayClient.class);
+
+    private final FirmataGateway gateway;
+    private final Socket socket;
+    private final SocketAddress address;
+    private final byte[][] pending;
+    private final long[] enqueuedAt;
+    private int head;
+    private int size;
+    private boolean closed;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long maxLag;
+    private volatile int analogReporting;
+    private volatile int digitalReporting;
+    private Thread reader;
+    private Thread writer;
+    // decodes the messages from the client, used by the reader only
+    private final HostMessageDecoder decoder = new HostMessageDecoder();
+    private final HostMessageDecoder.Handler<InterruptedException> handler = new HostMessageDecoder.Handler<InterruptedException>() {
+        @Override
+        public void onCommand(int command, int[] data) throws InterruptedException {
+            handleCommand(command, data);
+        }
+
+        @Override
+        public void onSysex(byte[] message) throws InterruptedException {
+            handleSysex(message);
+        }
+    };
+
+    GatewayClient(FirmataGateway gateway, Socket socket, int bufferSize) {
+        this.gateway = gateway;
+        this.socket = socket;
+        this.address = socket.getRemoteSocketAddress();
+        this.pending = new byte[bufferSize][];
+        this.enqueuedAt = new long[bufferSize];
+    }
+
+    /**
+     * Returns the address of the client.
+     *
+     * @return the remote address
+     */
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * Checks whether the client is still connected.
+     *
+     * @return true if the client is connected
+     */
+    public synchronized boolean isConnected() {
+        return !closed;
+    }
+
+    /**
+     * Returns how long the oldest message waiting for the client has been
+     * waiting.
+     *
+     * @param unit time unit of the result
+     * @return the current lag or 0 if no message is waiting
+     */
+    public long getLag(TimeUnit unit) {
+        long lag;
+        synchronized (this) {
+            lag = size == 0 ? 0 : System.nanoTime() - enqueuedAt[head];
+        }
+        return unit.convert(lag, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the longest time a message has waited before it was written to
+     * the client.
+     *
+     * @param unit time unit of the result
+     * @return the maximum lag
+     */
+    public long getMaxLag(TimeUnit unit) {
+        return unit.convert(maxLag, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the count of messages waiting to be written to the client.
+     *
+     * @return count of pending messages
+     */
+    public synchronized int getPendingCount() {
+        return size;
+    }
+
+    /**
+     * Returns the count of messages written to the client.
+     *
+     * @return count of sent messages
+     */
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    /**
+     * Returns the count of messages dropped because the buffer of the client
+     * was full.
+     *
+     * @return count of dropped messages
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Checks whether the client has enabled reporting of the analog channel.
+     *
+     * @param channel the analog channel
+     * @return true if the client receives the values of the channel
+     */
+    boolean isReportingAnalog(int channel) {
+        return channel < Integer.SIZE && (analogReporting & (1 << channel)) != 0;
+    }
+
+    /**
+     * Checks whether the client has enabled reporting of the digital port.
+     *
+     * @param port index of the port
+     * @return true if the client receives the levels of the port
+     */
+    boolean isReportingDigital(int port) {
+        return port < Integer.SIZE && (digitalReporting & (1 << port)) != 0;
+    }
+
+    /**
+     * Starts reading the messages of the client and writing the messages to
+     * it.
+     *
+     * @throws IOException when the streams of the socket cannot be opened
+     */
+    void start() throws IOException {
+        final InputStream in = socket.getInputStream();
+        final OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+        reader = READER_THREAD_FACTORY.newThread(new Runnable() {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[256];
+                try {
+                    int count;
+                    while ((count = in.read(buffer)) != -1) {
+                        for (int i = 0; i < count; i++) {
+                            decoder.receive(buffer[i], handler);
+                        }
+                    }
+                } catch (IOException e) {
+                    // the connection is closed
+                } catch (InterruptedException e) {
+                    // the gateway is stopping
+                } finally {
+                    close();
+                }
+            }
+        });
+        writer = WRITER_THREAD_FACTORY.newThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write(out);
+                } catch (IOException e) {
+                    LOGGER.debug("Cannot write to client {}", address, e);
+                } catch (InterruptedException e) {
+                    // the gateway is stopping
+                } finally {
+                    close();
+                }
+            }
+        });
+        reader.start();
+        writer.start();
+    }
+
+    /**
+     * Puts the message to the buffer of the client.
+     *
+     * @param message the message
+     * @return false if the message has been dropped
+     */
+    synchronized boolean offer(byte[] message) {
+        if (closed) {
+            return false;
+        }
+        if (size == pending.length) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        int tail = (head + size) % pending.length;
+        pending[tail] = message;
+        enqueuedAt[tail] = System.nanoTime();
+        if (size++ == 0) {
+            notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * Disconnects the client.
+     */
+    void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            LOGGER.debug("Cannot close the connection of client {}", address, e);
+        }
+        gateway.disconnected(this);
+    }
+
+    /**
+     * Waits for the threads of the client to stop. The reader gets
+     * interrupted in case it waits for the queue of the gateway.
+     *
+     * @throws InterruptedException when interrupted while waiting
+     */
+    void join() throws InterruptedException {
+        if (reader != null) {
+            reader.interrupt();
+            reader.join();
+        }
+        if (writer != null) {
+            writer.join();
+        }
+    }
+
+    /**
+     * Writes the buffered messages to the client until it gets closed.
+     */
+    private void write(OutputStream out) throws IOException, InterruptedException {
+        while (true) {
+            byte[] message;
+            long since;
+            boolean last;
+            synchronized (this) {
+                while (size == 0 && !closed) {
+                    wait();
+                }
+                if (closed) {
+                    return;
+                }
+                message = pending[head];
+                since = enqueuedAt[head];
+                pending[head] = null;
+                head = (head + 1) % pending.length;
+                last = --size == 0;
+            }
+            out.write(message);
+            if (last) {
+                out.flush();
+            }
+            long lag = System.nanoTime() - since;
+            if (lag > maxLag) {
+                maxLag = lag;
+            }
+            sent.incrementAndGet();
+        }
+    }
+
+    private void handleCommand(int command, int[] data) throws InterruptedException {
+        int channel = command & 0x0F;
+        switch (command & 0xF0) {
+            case REPORT_ANALOG & 0xF0:
+                if (data[0] != 0) {
+                    analogReporting |= 1 << channel;
+                } else {
+                    analogReporting &= ~(1 << channel);
+                }
+                return;
+            case REPORT_DIGITAL & 0xF0:
+                if (data[0] != 0) {
+                    digitalReporting |= 1 << channel;
+                    // a board reports the port right away when reporting gets enabled
+                    offer(gateway.portReport(channel));
+                } else {
+                    digitalReporting &= ~(1 << channel);
+                }
+                return;
+            case DIGITAL_MESSAGE & 0xF0:
+            case ANALOG_MESSAGE & 0xF0:
+                gateway.submit(this, new byte[] {(byte) command, (byte) data[0], (byte) data[1]});
+                return;
+            default:
+                break;
+        }
+        if (command == (SET_PIN_MODE & 0xFF) || command == (SET_DIGITAL_PIN_VALUE & 0xFF)) {
+            gateway.submit(this, new byte[] {(byte) command, (byte) data[0], (byte) data[1]});
+        } else if (command == (REPORT_VERSION & 0xFF)) {
+            offer(gateway.getVersionMessage());
+        } else if (command == (SYSTEM_RESET & 0xFF)) {
+            LOGGER.debug("Client {} requested reset of the board, ignored as the board is shared", address);
+        }
+    }
+
+    private void handleSysex(byte[] message) throws InterruptedException {
+        if (message.length == 0) {
+            return;
+        }
+        switch (message[0]) {
+            case REPORT_FIRMWARE:
+                offer(gateway.getFirmwareMessage());
+                break;
+            case CAPABILITY_QUERY:
+                offer(gateway.getCapabilityMessage());
+                break;
+            case ANALOG_MAPPING_QUERY:
+                offer(gateway.getAnalogMappingMessage());
+                break;
+            default:
+                // a query of a pin state is answered after the commands sent before it are applied
+                byte[] request = new byte[message.length + 2];
+                request[0] = START_SYSEX;
+                System.arraycopy(message, 0, request, 1, message.length);
+                request[request.length - 1] = END_SYSEX;
+                gateway.submit(this, request);
+                break;
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Reads the records of a journal written by {@link JournalWriter}.<br/>
+ * The records are streamed to a {@link RecordVisitor} without creating an
+ * object per record. The reader can read the journal while it is being
+ * written.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class JournalReader {
+
+    private final File directory;
+
+    /**
+     * Creates the reader of the journal in the directory.
+     *
+     * @param directory the directory of the journal
+     */
+    public JournalReader(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Streams the records within the range of time to the visitor in order
+     * of appending.
+     *
+     * @param from the start of the range (inclusive) as reported by
+     * {@link System#nanoTime()}
+     * @param to the end of the range (inclusive) as reported by
+     * {@link System#nanoTime()}
+     * @param visitor the receiver of the records
+     * @return count of the records passed to the visitor
+     * @throws IOException when a segment cannot be read
+     */
+    public long read(long from, long to, RecordVisitor visitor) throws IOException {
+        long result = 0;
+        for (File file : Segment.list(directory)) {
+            MappedByteBuffer segment = open(file);
+            if (segment == null) {
+                continue;
+            }
+            long count = segment.getLong(Segment.COUNT_OFFSET);
+            if (count == 0
+                    || segment.getLong(Segment.FIRST_OFFSET) - to > 0
+                    || segment.getLong(Segment.LAST_OFFSET) - from < 0) {
+                continue;
+            }
+            for (long i = firstAtOrAfter(segment, count, from); i < count; i++) {
+                int offset = Segment.offset(i);
+                long nanoTime = segment.getLong(offset);
+                if (nanoTime - to > 0) {
+                    break;
+                }
+                visitor.onRecord(nanoTime, segment.getInt(offset + 8), segment.getInt(offset + 12), segment.getLong(offset + 16));
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Streams all the records of the journal to the visitor.
+     *
+     * @param visitor the receiver of the records
+     * @return count of the records passed to the visitor
+     * @throws IOException when a segment cannot be read
+     */
+    public long readAll(RecordVisitor visitor) throws IOException {
+        long result = 0;
+        for (File file : Segment.list(directory)) {
+            MappedByteBuffer segment = open(file);
+            if (segment == null) {
+                continue;
+            }
+            long count = segment.getLong(Segment.COUNT_OFFSET);
+            for (long i = 0; i < count; i++) {
+                int offset = Segment.offset(i);
+                visitor.onRecord(segment.getLong(offset), segment.getInt(offset + 8), segment.getInt(offset + 12), segment.getLong(offset + 16));
+            }
+            result += count;
+        }
+        return result;
+    }
+
+    /**
+     * Maps the segment into memory.
+     *
+     * @return the segment or null if the writer has deleted it meanwhile or
+     * has not initialized it yet
+     */
+    private static MappedByteBuffer open(File file) throws IOException {
+        try {
+            return Segment.open(file);
+        } catch (IOException e) {
+            if (!file.exists()) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Finds the first record of the segment that is not earlier than the
+     * moment.
+     */
+    private static long firstAtOrAfter(MappedByteBuffer segment, long count, long from) {
+        long low = 0;
+        long high = count;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (segment.getLong(Segment.offset(middle)) - from < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+}
@@ -0,0 +1,276 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.firmata4j.PinValueSink;
+import org.firmata4j.firmata.DaemonThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records changes of pins into an append-only journal on disk.<br/>
+ * The journal is a directory of segment files of fixed size. The segments are
+ * mapped into memory, so appending a record is a copy of 24 bytes to memory
+ * and the operating system writes the pages to disk in background. The next
+ * segment is created and mapped in advance on a separate thread, and the
+ * oldest segments get deleted there once their count exceeds the limit. A
+ * filled segment is written to disk on that thread as well. Thus the thread
+ * that handles the messages from the device does not wait for the disk. If
+ * the next segment is not ready when the current one fills up, the records
+ * are dropped until it is.<br/>
+ * The writer provides a {@link PinValueSink} for every device:
+ * <pre>
+ * JournalWriter journal = new JournalWriter(new File("journal"), 1000000, 10);
+ * device.addPinValueSink(journal.sinkFor(1));
+ * ...
+ * device.removePinValueSink(sink);
+ * journal.close();
+ * </pre>
+ * The writer is thread-safe.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ * @see JournalReader
+ */
+public class JournalWriter implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournalWriter.class);
+
+    private final File directory;
+    private final int segmentRecords;
+    private final int maxSegments;
+    private final ExecutorService background = Executors.newSingleThreadExecutor(new DaemonThreadFactory("firmata-journal"));
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private MappedByteBuffer segment;
+    private Future<MappedByteBuffer> nextSegment;
+    private long sequence;
+    private int count;
+    private boolean closed;
+
+    /**
+     * Opens the journal in the directory. The records are appended to new
+     * segments following the existing ones.
+     *
+     * @param directory the directory of the journal
+     * @param segmentRecords count of records in a segment
+     * @param maxSegments count of segments to keep, the oldest segments are
+     * deleted
+     * @throws IOException when the directory or the first segment cannot be
+     * created
+     */
+    public JournalWriter(File directory, int segmentRecords, int maxSegments) throws IOException {
+        if (segmentRecords <= 0 || segmentRecords > (Integer.MAX_VALUE - Segment.HEADER_SIZE) / Segment.RECORD_SIZE) {
+            throw new IllegalArgumentException("Count of records in a segment is out of range: " + segmentRecords);
+        }
+        if (maxSegments < 2) {
+            throw new IllegalArgumentException("At least 2 segments should be kept.");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        this.maxSegments = maxSegments;
+        File[] existing = Segment.list(directory);
+        sequence = existing.length == 0 ? 0 : Segment.sequence(existing[existing.length - 1]) + 1;
+        segment = Segment.create(new File(directory, Segment.name(sequence)), segmentRecords);
+        prepareNextSegment();
+    }
+
+    /**
+     * Returns the sink that records the changes of the pins of a device.
+     *
+     * @param device identifier of the device in the journal
+     * @return the sink
+     */
+    public PinValueSink sinkFor(final int device) {
+        return new PinValueSink() {
+            @Override
+            public void onValue(int pinIndex, long value, long nanoTime) {
+                append(nanoTime, device, pinIndex, value);
+            }
+        };
+    }
+
+    /**
+     * Appends a record to the journal. The record is dropped if the journal
+     * is closed or the next segment is not ready when the current one is
+     * full.<br/>
+     * Devices may append their records from different threads, so a record
+     * can come with an earlier moment than the previous one. Its moment is
+     * raised to the moment of the previous record of the segment to keep the
+     * records of a segment ordered by time.
+     *
+     * @param nanoTime the moment of the change as reported by
+     * {@link System#nanoTime()}
+     * @param device identifier of the device
+     * @param pin index of the pin
+     * @param value the new value of the pin
+     */
+    public synchronized void append(long nanoTime, int device, int pin, long value) {
+        if (closed || (count == segmentRecords && !roll())) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (count > 0) {
+            long last = segment.getLong(Segment.LAST_OFFSET);
+            if (nanoTime - last < 0) {
+                nanoTime = last;
+            }
+        }
+        int offset = Segment.offset(count);
+        segment.putLong(offset, nanoTime);
+        segment.putInt(offset + 8, device);
+        segment.putInt(offset + 12, pin);
+        segment.putLong(offset + 16, value);
+        if (count == 0) {
+            segment.putLong(Segment.FIRST_OFFSET, nanoTime);
+        }
+        segment.putLong(Segment.LAST_OFFSET, nanoTime);
+        segment.putLong(Segment.COUNT_OFFSET, ++count); // the record becomes visible to the readers
+        written.incrementAndGet();
+    }
+
+    /**
+     * Writes the records of the current segment to disk.
+     */
+    public synchronized void flush() {
+        if (!closed) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Returns count of the records written to the journal.
+     *
+     * @return count of the records
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     * Returns count of the records that could not be written.
+     *
+     * @return count of the dropped records
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            segment.force();
+            nextSegment.cancel(false);
+        }
+        background.shutdown();
+        try {
+            // the directory should not change after the journal is closed
+            background.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Checks whether the segment that follows the current one is ready to
+     * receive records.
+     *
+     * @return true if the next segment has been created or has failed
+     */
+    synchronized boolean isNextSegmentReady() {
+        return nextSegment.isDone();
+    }
+
+    /**
+     * Switches to the segment prepared in advance. The former segment is
+     * written to disk in background.
+     *
+     * @return true if the switch succeeded, false if the next segment is not
+     * ready yet or could not be created
+     */
+    private boolean roll() {
+        if (!nextSegment.isDone()) {
+            return false; // the thread of the device does not wait for the disk
+        }
+        try {
+            final MappedByteBuffer previous = segment;
+            segment = nextSegment.get();
+            sequence++;
+            count = 0;
+            background.execute(new Runnable() {
+                @Override
+                public void run() {
+                    previous.force();
+                }
+            });
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            LOGGER.error("Cannot create a segment of the journal in {}", directory, e.getCause());
+            return false;
+        } finally {
+            prepareNextSegment();
+        }
+    }
+
+    private void prepareNextSegment() {
+        final long next = sequence + 1;
+        nextSegment = background.submit(new Callable<MappedByteBuffer>() {
+            @Override
+            public MappedByteBuffer call() throws Exception {
+                deleteOldSegments(next);
+                return Segment.create(new File(directory, Segment.name(next)), segmentRecords);
+            }
+        });
+    }
+
+    private void deleteOldSegments(long next) {
+        File[] files = Segment.list(directory);
+        for (File file : files) {
+            if (Segment.sequence(file) <= next - maxSegments && !file.delete()) {
+                LOGGER.warn("Cannot delete segment {} of the journal", file);
+            }
+        }
+    }
+
+}
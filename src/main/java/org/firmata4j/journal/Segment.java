@@ -0,0 +1,161 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.journal;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Layout of a segment file of the journal.<br/>
+ * A segment consists of a header and fixed-width records:
+ * <pre>
+ * header:  magic (4) | version (4) | record count (8) | base millis (8) | base nanos (8) | first nanos (8) | last nanos (8)
+ * record:  nanoTime (8) | device (4) | pin (4) | value (8)
+ * </pre>
+ * The base millis and nanos are the wall clock and {@link System#nanoTime()}
+ * at the moment the segment was created, so the moments of the records can be
+ * converted to wall clock time. The first and last nanos are the time range
+ * of the records of the segment. They serve as a sparse index: a query skips
+ * the segments outside of the requested range and finds the start of the
+ * range within a segment by bisection of the fixed-width records.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+final class Segment {
+
+    static final int MAGIC = 0x464A4E4C; // FJNL
+    static final int VERSION = 1;
+    static final int COUNT_OFFSET = 8;
+    static final int BASE_MILLIS_OFFSET = 16;
+    static final int BASE_NANOS_OFFSET = 24;
+    static final int FIRST_OFFSET = 32;
+    static final int LAST_OFFSET = 40;
+    static final int HEADER_SIZE = 48;
+    static final int RECORD_SIZE = 24;
+    static final String SUFFIX = ".journal";
+
+    private Segment() {
+    }
+
+    /**
+     * Creates a segment file and maps it into memory.
+     *
+     * @param file the file
+     * @param records capacity of the segment
+     * @return the mapped segment
+     * @throws IOException when the file cannot be created
+     */
+    static MappedByteBuffer create(File file, int records) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) records * RECORD_SIZE);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(COUNT_OFFSET, 0);
+            buffer.putLong(BASE_MILLIS_OFFSET, System.currentTimeMillis());
+            buffer.putLong(BASE_NANOS_OFFSET, System.nanoTime());
+            return buffer;
+        }
+    }
+
+    /**
+     * Maps an existing segment file into memory for reading.
+     *
+     * @param file the file
+     * @return the mapped segment or null if the writer has not initialized
+     * the segment yet
+     * @throws IOException when the file cannot be read or is not a segment
+     */
+    static MappedByteBuffer open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() == 0) {
+                return null;
+            }
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (buffer.capacity() >= HEADER_SIZE && buffer.getInt(0) == 0) {
+                return null; // the writer is preparing the segment
+            }
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException(file + " is not a journal segment");
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Returns the offset of the record.
+     *
+     * @param record index of the record
+     * @return the offset
+     */
+    static int offset(long record) {
+        return (int) (HEADER_SIZE + record * RECORD_SIZE);
+    }
+
+    /**
+     * Lists the segment files of the journal in order of creation.
+     *
+     * @param directory the directory of the journal
+     * @return the segment files
+     */
+    static File[] list(File directory) {
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().matches("\\d{20}\\" + SUFFIX);
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files); // the names are zero-padded sequence numbers
+        return files;
+    }
+
+    /**
+     * Returns the name of the segment file.
+     *
+     * @param sequence sequence number of the segment
+     * @return the name of the file
+     */
+    static String name(long sequence) {
+        return String.format("%020d%s", sequence, SUFFIX);
+    }
+
+    /**
+     * Returns the sequence number of the segment file.
+     *
+     * @param file the file
+     * @return the sequence number
+     */
+    static long sequence(File file) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+}
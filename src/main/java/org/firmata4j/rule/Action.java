@@ -0,0 +1,70 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.rule;
+
+/**
+ * Reaction of a rule of {@link RuleEngine}.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public final class Action {
+
+    static final int SET = 0;
+    static final int TOGGLE = 1;
+
+    final int kind;
+    final int pin;
+    final long value;
+
+    private Action(int kind, int pin, long value) {
+        if (pin < 0) {
+            throw new IllegalArgumentException("Pin index cannot be negative.");
+        }
+        this.kind = kind;
+        this.pin = pin;
+        this.value = value;
+    }
+
+    /**
+     * Sets the value to the pin.
+     *
+     * @param pin index of the pin
+     * @param value the value
+     * @return the action
+     */
+    public static Action set(int pin, long value) {
+        return new Action(SET, pin, value);
+    }
+
+    /**
+     * Sets 0 to the pin if it has a non-zero value and 1 otherwise.
+     *
+     * @param pin index of the pin
+     * @return the action
+     */
+    public static Action toggle(int pin) {
+        return new Action(TOGGLE, pin, 0);
+    }
+
+}
@@ -0,0 +1,301 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.rule;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.firmata4j.IODevice;
+import org.firmata4j.Pin;
+import org.firmata4j.PinValueSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reacts to changes of pins by changing other pins without involving
+ * listeners of the application.<br/>
+ * The rules are compiled into flat arrays grouped by pin, so a value is
+ * checked only against the rules of its pin, and evaluation does not create
+ * objects. The engine is a {@link PinValueSink}, so the rules are evaluated
+ * right on the thread that decodes the messages from the device and the
+ * actions are sent from there:
+ * <pre>
+ * RuleEngine rules = new RuleEngine.Builder(device)
+ *         .add(Trigger.above(14, 600), Action.set(13, 1))
+ *         .add(Trigger.rising(2), Action.toggle(3))
+ *         .build();
+ * device.addPinValueSink(rules);
+ * </pre>
+ * The engine measures the latency from the moment the value was received to
+ * the moment the action was sent.<br/>
+ * Actions change pins, which can trigger other rules. Rules that trigger each
+ * other endlessly must be avoided.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class RuleEngine implements PinValueSink {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RuleEngine.class);
+
+    /**
+     * Firmata addresses up to 128 pins.
+     */
+    private static final int MAX_PINS = 128;
+
+    // rules of pin p are at indexes from firstRule[p] to firstRule[p + 1] exclusive
+    private final int[] firstRule = new int[MAX_PINS + 1];
+    private final int[] triggerKinds;
+    private final long[] firstParams;
+    private final long[] secondParams;
+    private final int[] actionKinds;
+    private final Pin[] actionPins;
+    private final long[] actionValues;
+    // state of the triggers
+    private final boolean[] seen;
+    private final boolean[] active;
+    private final long[] lastValues;
+    private final long[] lastTimes;
+
+    private final AtomicLong fired = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    private RuleEngine(IODevice device, List<Trigger> triggers, List<Action> actions) {
+        int count = triggers.size();
+        triggerKinds = new int[count];
+        firstParams = new long[count];
+        secondParams = new long[count];
+        actionKinds = new int[count];
+        actionPins = new Pin[count];
+        actionValues = new long[count];
+        seen = new boolean[count];
+        active = new boolean[count];
+        lastValues = new long[count];
+        lastTimes = new long[count];
+        int r = 0;
+        for (int pin = 0; pin < MAX_PINS; pin++) {
+            firstRule[pin] = r;
+            for (int i = 0; i < count; i++) {
+                Trigger trigger = triggers.get(i);
+                if (trigger.pin != pin) {
+                    continue;
+                }
+                Action action = actions.get(i);
+                triggerKinds[r] = trigger.kind;
+                firstParams[r] = trigger.first;
+                secondParams[r] = trigger.second;
+                actionKinds[r] = action.kind;
+                actionPins[r] = device.getPin(action.pin);
+                actionValues[r] = action.value;
+                if (pin < device.getPinsCount()) {
+                    seen[r] = true;
+                    lastValues[r] = device.getPin(pin).getValue();
+                    lastTimes[r] = System.nanoTime();
+                }
+                r++;
+            }
+        }
+        firstRule[MAX_PINS] = r;
+    }
+
+    @Override
+    public void onValue(int pinIndex, long value, long nanoTime) {
+        if (pinIndex < 0 || pinIndex >= MAX_PINS) {
+            return;
+        }
+        for (int r = firstRule[pinIndex]; r < firstRule[pinIndex + 1]; r++) {
+            boolean fire;
+            synchronized (this) {
+                fire = evaluate(r, value, nanoTime);
+            }
+            if (fire) {
+                act(r, nanoTime);
+            }
+        }
+    }
+
+    /**
+     * Returns how many times the rules have fired.
+     *
+     * @return count of fired rules
+     */
+    public long getFiredCount() {
+        return fired.get();
+    }
+
+    /**
+     * Returns how many actions have failed.
+     *
+     * @return count of failed actions
+     */
+    public long getFailureCount() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the average time from receiving a value to sending the action
+     * it has triggered.
+     *
+     * @param unit time unit of the result
+     * @return the average latency
+     */
+    public long getAverageLatency(TimeUnit unit) {
+        long count = fired.get();
+        return count == 0 ? 0 : unit.convert(totalLatency.get() / count, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the longest time from receiving a value to sending the action
+     * it has triggered.
+     *
+     * @param unit time unit of the result
+     * @return the maximum latency
+     */
+    public long getMaxLatency(TimeUnit unit) {
+        return unit.convert(maxLatency.get(), TimeUnit.NANOSECONDS);
+    }
+
+    private boolean evaluate(int r, long value, long nanoTime) {
+        boolean hadPrevious = seen[r];
+        long previous = lastValues[r];
+        long previousTime = lastTimes[r];
+        seen[r] = true;
+        lastValues[r] = value;
+        lastTimes[r] = nanoTime;
+        boolean condition;
+        switch (triggerKinds[r]) {
+            case Trigger.ABOVE:
+                condition = value > firstParams[r];
+                break;
+            case Trigger.BELOW:
+                condition = value < firstParams[r];
+                break;
+            case Trigger.RISING:
+                return hadPrevious && previous == 0 && value != 0;
+            case Trigger.FALLING:
+                return hadPrevious && previous != 0 && value == 0;
+            case Trigger.CHANGE:
+                return hadPrevious && (previous == 0) != (value == 0);
+            case Trigger.RISES_ABOVE:
+                return hysteresis(r, value > firstParams[r], value < secondParams[r]);
+            case Trigger.FALLS_BELOW:
+                return hysteresis(r, value < firstParams[r], value > secondParams[r]);
+            case Trigger.RATE_ABOVE:
+                long elapsed = nanoTime - previousTime;
+                condition = hadPrevious && elapsed > 0
+                        && Math.abs((double) (value - previous)) * secondParams[r] > (double) firstParams[r] * elapsed;
+                break;
+            default:
+                return false;
+        }
+        boolean fire = condition && !active[r];
+        active[r] = condition;
+        return fire;
+    }
+
+    private boolean hysteresis(int r, boolean fires, boolean rearms) {
+        if (!active[r] && fires) {
+            active[r] = true;
+            return true;
+        }
+        if (active[r] && rearms) {
+            active[r] = false;
+        }
+        return false;
+    }
+
+    private void act(int r, long nanoTime) {
+        Pin pin = actionPins[r];
+        try {
+            if (actionKinds[r] == Action.TOGGLE) {
+                pin.setValue(pin.getValue() == 0 ? 1 : 0);
+            } else {
+                pin.setValue(actionValues[r]);
+            }
+        } catch (IOException | IllegalStateException e) {
+            failed.incrementAndGet();
+            LOGGER.error("Cannot perform action of a rule on pin {}", pin.getIndex(), e);
+            return;
+        }
+        long latency = System.nanoTime() - nanoTime;
+        fired.incrementAndGet();
+        totalLatency.addAndGet(latency);
+        long max = maxLatency.get();
+        while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+            max = maxLatency.get();
+        }
+    }
+
+    /**
+     * Collects the rules and compiles them into a {@link RuleEngine}.
+     */
+    public static class Builder {
+
+        private final IODevice device;
+        private final List<Trigger> triggers = new ArrayList<>();
+        private final List<Action> actions = new ArrayList<>();
+
+        /**
+         * Creates the builder of the rules for the device. The device should
+         * be initialized, so that its pins are known.
+         *
+         * @param device the device
+         */
+        public Builder(IODevice device) {
+            this.device = device;
+        }
+
+        /**
+         * Adds a rule that performs the action when the trigger fires.
+         *
+         * @param trigger the trigger
+         * @param action the action
+         * @return this builder
+         * @throws IllegalArgumentException if a pin of the rule does not exist
+         */
+        public Builder add(Trigger trigger, Action action) {
+            if (trigger.pin >= Math.min(device.getPinsCount(), MAX_PINS)
+                    || action.pin >= Math.min(device.getPinsCount(), MAX_PINS)) {
+                throw new IllegalArgumentException("The device does not have a pin of the rule.");
+            }
+            triggers.add(trigger);
+            actions.add(action);
+            return this;
+        }
+
+        /**
+         * Compiles the rules.
+         *
+         * @return the engine evaluating the rules
+         */
+        public RuleEngine build() {
+            return new RuleEngine(device, triggers, actions);
+        }
+
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.rule;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Condition over values of a pin that triggers a rule of {@link RuleEngine}.
+ * A rule fires when its condition becomes true, not while it stays true, so
+ * a value that stays above a threshold fires the rule once.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public final class Trigger {
+
+    static final int ABOVE = 0;
+    static final int BELOW = 1;
+    static final int RISING = 2;
+    static final int FALLING = 3;
+    static final int CHANGE = 4;
+    static final int RISES_ABOVE = 5;
+    static final int FALLS_BELOW = 6;
+    static final int RATE_ABOVE = 7;
+
+    final int kind;
+    final int pin;
+    final long first;
+    final long second;
+
+    private Trigger(int kind, int pin, long first, long second) {
+        if (pin < 0) {
+            throw new IllegalArgumentException("Pin index cannot be negative.");
+        }
+        this.kind = kind;
+        this.pin = pin;
+        this.first = first;
+        this.second = second;
+    }
+
+    /**
+     * Triggers when the value of the pin gets greater than the threshold.
+     *
+     * @param pin index of the pin
+     * @param threshold the threshold
+     * @return the trigger
+     */
+    public static Trigger above(int pin, long threshold) {
+        return new Trigger(ABOVE, pin, threshold, 0);
+    }
+
+    /**
+     * Triggers when the value of the pin gets less than the threshold.
+     *
+     * @param pin index of the pin
+     * @param threshold the threshold
+     * @return the trigger
+     */
+    public static Trigger below(int pin, long threshold) {
+        return new Trigger(BELOW, pin, threshold, 0);
+    }
+
+    /**
+     * Triggers when the value of the pin changes from 0 to non-zero.
+     *
+     * @param pin index of the pin
+     * @return the trigger
+     */
+    public static Trigger rising(int pin) {
+        return new Trigger(RISING, pin, 0, 0);
+    }
+
+    /**
+     * Triggers when the value of the pin changes from non-zero to 0.
+     *
+     * @param pin index of the pin
+     * @return the trigger
+     */
+    public static Trigger falling(int pin) {
+        return new Trigger(FALLING, pin, 0, 0);
+    }
+
+    /**
+     * Triggers on both rising and falling edges of the pin.
+     *
+     * @param pin index of the pin
+     * @return the trigger
+     */
+    public static Trigger change(int pin) {
+        return new Trigger(CHANGE, pin, 0, 0);
+    }
+
+    /**
+     * Triggers when the value of the pin gets greater than the upper
+     * threshold. The trigger is armed again only after the value gets less
+     * than the lower threshold, so the noise around a threshold does not fire
+     * the rule repeatedly.
+     *
+     * @param pin index of the pin
+     * @param upper the threshold that fires the rule
+     * @param lower the threshold that arms the trigger again
+     * @return the trigger
+     */
+    public static Trigger risesAbove(int pin, long upper, long lower) {
+        if (lower > upper) {
+            throw new IllegalArgumentException("Lower threshold cannot be greater than the upper one.");
+        }
+        return new Trigger(RISES_ABOVE, pin, upper, lower);
+    }
+
+    /**
+     * Triggers when the value of the pin gets less than the lower threshold.
+     * The trigger is armed again only after the value gets greater than the
+     * upper threshold.
+     *
+     * @param pin index of the pin
+     * @param lower the threshold that fires the rule
+     * @param upper the threshold that arms the trigger again
+     * @return the trigger
+     */
+    public static Trigger fallsBelow(int pin, long lower, long upper) {
+        if (lower > upper) {
+            throw new IllegalArgumentException("Lower threshold cannot be greater than the upper one.");
+        }
+        return new Trigger(FALLS_BELOW, pin, lower, upper);
+    }
+
+    /**
+     * Triggers when the value of the pin changes faster than the rate in
+     * either direction.
+     *
+     * @param pin index of the pin
+     * @param delta change of the value
+     * @param period the period the value changes by delta
+     * @param unit time unit of the period
+     * @return the trigger
+     */
+    public static Trigger rateAbove(int pin, long delta, long period, TimeUnit unit) {
+        if (delta <= 0 || period <= 0) {
+            throw new IllegalArgumentException("Rate must be greater than 0.");
+        }
+        return new Trigger(RATE_ABOVE, pin, delta, unit.toNanos(period));
+    }
+
+}
@@ -0,0 +1,269 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.shm;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.firmata4j.IODevice;
+import org.firmata4j.IOEvent;
+import org.firmata4j.OnStartListener;
+import org.firmata4j.OnStopListener;
+import org.firmata4j.Pin;
+import org.firmata4j.PinValueSink;
+import static org.firmata4j.shm.PinTableLayout.*;
+
+/**
+ * Mirrors modes and values of the pins of devices into a memory-mapped file,
+ * so that other processes on the same host can read the live state of the
+ * pins without a socket in between.<br/>
+ * Every exported device gets a block of the file, which is updated as the
+ * values of its pins change. The values are received through a
+ * {@link PinValueSink}, so mirroring does not create objects. The mode of a
+ * pin is taken from the pin along with its value, so a change of mode alone
+ * shows up with the next value of the pin. Every pin has its own slot guarded by
+ * a sequence counter, so a reader never sees a half-written slot and never
+ * delays the writer. The format of the file is described in
+ * {@link PinTableLayout} and in the README.
+ * <pre>
+ * PinTableExporter exporter = new PinTableExporter(new File("/dev/shm/firmata"), 4);
+ * int block = exporter.export(device);
+ * ...
+ * exporter.close();
+ * </pre>
+ * The exporter is thread-safe.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ * @see PinTableReader
+ */
+public class PinTableExporter implements Closeable {
+
+    private final MappedByteBuffer table;
+    private final PinTableMemory memory;
+    private final int capacity;
+    private final Map<IODevice, Exported> exported = new IdentityHashMap<>();
+    private int used;
+    private boolean closed;
+
+    /**
+     * Creates the file of the pin table. An existing file is overwritten.
+     *
+     * @param file the file, preferably on a memory-backed file system like
+     * /dev/shm
+     * @param devices count of devices the table can hold
+     * @throws IOException when the file cannot be created
+     */
+    public PinTableExporter(File file, int devices) throws IOException {
+        if (devices <= 0 || devices > (Integer.MAX_VALUE - HEADER_SIZE) / DEVICE_SIZE) {
+            throw new IllegalArgumentException("Count of devices is out of range: " + devices);
+        }
+        this.capacity = devices;
+        this.table = PinTableLayout.create(file, devices);
+        this.memory = new PinTableMemory(table);
+    }
+
+    /**
+     * Starts mirroring the pins of the device into the next free block of the
+     * table. If the device is ready, its current state is written right away,
+     * otherwise the state is written when the device starts. Only the first
+     * 128 pins of a device are mirrored.
+     *
+     * @param device the device
+     * @return index of the block of the device
+     * @throws IllegalStateException when all the blocks are taken or the
+     * exporter is closed
+     */
+    public synchronized int export(IODevice device) {
+        if (closed) {
+            throw new IllegalStateException("The exporter is closed.");
+        }
+        Exported existing = exported.get(device);
+        if (existing != null) {
+            return existing.block;
+        }
+        if (used == capacity) {
+            throw new IllegalStateException(String.format("All %d blocks of the table are taken.", capacity));
+        }
+        Exported listener = new Exported(device, used++);
+        exported.put(device, listener);
+        device.addEventListener(listener.started);
+        device.addEventListener(listener.stopped);
+        device.addPinValueSink(listener);
+        if (device.isReady()) {
+            writeDevice(listener.block, device, READY);
+        } else {
+            writeHeader(listener.block, INITIALIZING, 0, "");
+        }
+        return listener.block;
+    }
+
+    /**
+     * Stops mirroring the pins of the device. Its block keeps the last state
+     * and is marked as stopped. The block is not reused.
+     *
+     * @param device the device
+     */
+    public synchronized void unexport(IODevice device) {
+        Exported listener = exported.remove(device);
+        if (listener != null) {
+            device.removePinValueSink(listener);
+            device.removeEventListener(listener.started);
+            device.removeEventListener(listener.stopped);
+            if (!closed) {
+                writeState(listener.block, STOPPED);
+            }
+        }
+    }
+
+    /**
+     * Writes the table to the file. That is not needed for the readers of the
+     * table but makes the last state survive a crash of the host.
+     */
+    public synchronized void flush() {
+        if (!closed) {
+            table.force();
+        }
+    }
+
+    /**
+     * Stops mirroring all the devices. The blocks of the devices are marked
+     * as stopped.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        for (IODevice device : exported.keySet().toArray(new IODevice[0])) {
+            unexport(device);
+        }
+        closed = true;
+        table.force();
+    }
+
+    private synchronized void writeDevice(int block, IODevice device, int state) {
+        if (closed) {
+            return;
+        }
+        int count = Math.min(device.getPinsCount(), MAX_PINS);
+        for (int i = 0; i < count; i++) {
+            Pin pin = device.getPin(i);
+            writeSlot(block, i, pin.getMode(), pin.getValue());
+        }
+        writeHeader(block, state, count, device.getProtocol());
+    }
+
+    private synchronized void writePin(int block, IODevice device, int index, long value) {
+        if (!closed && index < MAX_PINS) {
+            writeSlot(block, index, device.getPin(index).getMode(), value);
+        }
+    }
+
+    private synchronized void writeState(int block, int state) {
+        if (!closed) {
+            int offset = deviceOffset(block);
+            int sequence = begin(offset);
+            memory.putInt(offset + STATE_OFFSET, state);
+            end(offset, sequence);
+        }
+    }
+
+    private void writeHeader(int block, int state, int pinCount, String protocol) {
+        byte[] name = protocol.getBytes(StandardCharsets.US_ASCII);
+        int length = Math.min(name.length, PROTOCOL_SIZE);
+        int offset = deviceOffset(block);
+        int sequence = begin(offset);
+        memory.putInt(offset + STATE_OFFSET, state);
+        memory.putInt(offset + PIN_COUNT_OFFSET, pinCount);
+        memory.putInt(offset + PROTOCOL_LENGTH_OFFSET, length);
+        for (int i = 0; i < PROTOCOL_SIZE; i++) {
+            memory.putByte(offset + PROTOCOL_OFFSET + i, i < length ? name[i] : 0);
+        }
+        end(offset, sequence);
+    }
+
+    private void writeSlot(int block, int pin, Pin.Mode mode, long value) {
+        int offset = slotOffset(block, pin);
+        int sequence = begin(offset);
+        memory.putInt(offset + MODE_OFFSET, mode == null ? UNKNOWN_MODE : mode.ordinal());
+        memory.putLong(offset + VALUE_OFFSET, value);
+        end(offset, sequence);
+    }
+
+    /**
+     * Makes the sequence counter at the offset odd.
+     *
+     * @return the former value of the counter
+     */
+    private int begin(int offset) {
+        int sequence = memory.getInt(offset);
+        memory.putInt(offset, sequence + 1);
+        return sequence;
+    }
+
+    /**
+     * Makes the sequence counter at the offset even again.
+     */
+    private void end(int offset, int sequence) {
+        memory.putInt(offset, sequence + 2);
+    }
+
+    /**
+     * Mirrors the values of the pins of a device into its block.
+     */
+    private class Exported implements PinValueSink {
+
+        private final IODevice device;
+        private final int block;
+        // the listeners ignore the changes of pins, so the device does not create events for them
+        private final OnStartListener started = new OnStartListener() {
+            @Override
+            public void accept(IOEvent event) {
+                writeDevice(block, device, READY);
+            }
+        };
+        private final OnStopListener stopped = new OnStopListener() {
+            @Override
+            public void accept(IOEvent event) {
+                writeState(block, STOPPED);
+            }
+        };
+
+        Exported(IODevice device, int block) {
+            this.device = device;
+            this.block = block;
+        }
+
+        @Override
+        public void onValue(int pinIndex, long value, long nanoTime) {
+            writePin(block, device, pinIndex, value);
+        }
+
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Layout of the file of a pin table.<br/>
+ * The file consists of a header followed by a block of every device. A block
+ * consists of a device header and a slot of every pin:
+ * <pre>
+ * header:        magic (4) | version (4) | device capacity (4) | pins per device (4) | reserved (48)
+ * device header: sequence (4) | state (4) | pin count (4) | protocol length (4) | protocol (48)
+ * pin slot:      sequence (4) | mode (4) | value (8)
+ * </pre>
+ * All numbers are little-endian. A block is 2112 bytes long and starts at
+ * {@code 64 + device * 2112}; the slot of a pin starts at
+ * {@code 64} bytes from the beginning of the block plus {@code pin * 16}.<br/>
+ * The state of a device is 0 if the block is not used, 1 while the device is
+ * initializing, 2 when it is ready and 3 after it has stopped. The protocol is
+ * an ASCII string like "StandardFirmata - 2.5". The mode of a pin is the
+ * Firmata mode number, that is the ordinal of {@link org.firmata4j.Pin.Mode},
+ * or -1 if it is unknown.<br/>
+ * The device header and every slot are guarded by their own sequence
+ * counters. The writer makes the counter odd, updates the fields and makes
+ * it even again. A reader reads the counter, the fields and the counter
+ * again, and retries if the counter was odd or has changed. The counters are
+ * 32-bit aligned, so readers in other languages can load them atomically.<br/>
+ * The writer stores the counters and the fields with release semantics and
+ * the reader loads them with acquire semantics, see {@link PinTableMemory},
+ * so the accesses keep their order on every architecture. Readers in other
+ * languages have to load the counters and the fields with acquire semantics
+ * as well.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+final class PinTableLayout {
+
+    static final int MAGIC = 0x46505442; // FPTB
+    static final int VERSION = 1;
+    static final int CAPACITY_OFFSET = 8;
+    static final int PINS_OFFSET = 12;
+    static final int HEADER_SIZE = 64;
+    static final int MAX_PINS = 128;
+
+    static final int STATE_OFFSET = 4;
+    static final int PIN_COUNT_OFFSET = 8;
+    static final int PROTOCOL_LENGTH_OFFSET = 12;
+    static final int PROTOCOL_OFFSET = 16;
+    static final int PROTOCOL_SIZE = 48;
+    static final int DEVICE_HEADER_SIZE = 64;
+
+    static final int MODE_OFFSET = 4;
+    static final int VALUE_OFFSET = 8;
+    static final int SLOT_SIZE = 16;
+    static final int DEVICE_SIZE = DEVICE_HEADER_SIZE + MAX_PINS * SLOT_SIZE;
+
+    static final int UNUSED = 0;
+    static final int INITIALIZING = 1;
+    static final int READY = 2;
+    static final int STOPPED = 3;
+
+    static final int UNKNOWN_MODE = -1;
+
+    private PinTableLayout() {
+    }
+
+    /**
+     * Creates the file of the pin table and maps it into memory. An existing
+     * file is overwritten.
+     *
+     * @param file the file
+     * @param devices count of device blocks
+     * @return the mapped table
+     * @throws IOException when the file cannot be created
+     */
+    static MappedByteBuffer create(File file, int devices) throws IOException {
+        long size = HEADER_SIZE + (long) devices * DEVICE_SIZE;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0); // the blocks of the former table become unused
+            raf.setLength(size);
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(CAPACITY_OFFSET, devices);
+            buffer.putInt(PINS_OFFSET, MAX_PINS);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(0, MAGIC); // the table becomes valid for the readers
+            return buffer;
+        }
+    }
+
+    /**
+     * Maps an existing file of the pin table into memory for reading.
+     *
+     * @param file the file
+     * @return the mapped table
+     * @throws IOException when the file cannot be read or is not a pin table
+     */
+    static MappedByteBuffer open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getInt(PINS_OFFSET) != MAX_PINS
+                    || buffer.capacity() < HEADER_SIZE + (long) buffer.getInt(CAPACITY_OFFSET) * DEVICE_SIZE) {
+                throw new IOException(file + " is not a pin table");
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Returns the offset of the block of the device.
+     *
+     * @param device index of the device
+     * @return the offset
+     */
+    static int deviceOffset(int device) {
+        return HEADER_SIZE + device * DEVICE_SIZE;
+    }
+
+    /**
+     * Returns the offset of the slot of the pin.
+     *
+     * @param device index of the device
+     * @param pin index of the pin
+     * @return the offset
+     */
+    static int slotOffset(int device, int pin) {
+        return deviceOffset(device) + DEVICE_HEADER_SIZE + pin * SLOT_SIZE;
+    }
+
+}
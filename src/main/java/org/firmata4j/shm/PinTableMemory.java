@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.shm;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import sun.misc.Unsafe;
+
+/**
+ * Accesses the memory of a mapped pin table with volatile semantics.<br/>
+ * The sequence counters of the table order the accesses of a writer and
+ * the readers only if the counters and the fields they guard are accessed
+ * in order on every architecture. The methods of {@link MappedByteBuffer}
+ * give no such guarantee, so the memory of the mapping is accessed directly
+ * with volatile loads and stores. They compile to acquire loads and release
+ * stores that keep their order on weakly ordered processors like AArch64
+ * as well as on x86.<br/>
+ * The numbers are little-endian regardless of the native byte order.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+final class PinTableMemory {
+
+    private static final Unsafe UNSAFE;
+    private static final long ADDRESS_OFFSET;
+    private static final boolean SWAP = ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN;
+
+    static {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            UNSAFE = (Unsafe) field.get(null);
+            ADDRESS_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    /**
+     * The mapping stays valid as long as the buffer is reachable.
+     */
+    private final MappedByteBuffer buffer;
+    private final long address;
+    private final int capacity;
+
+    /**
+     * Creates the access to the memory of the mapped table.
+     *
+     * @param buffer the mapped table
+     */
+    PinTableMemory(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.address = UNSAFE.getLong(buffer, ADDRESS_OFFSET);
+        this.capacity = buffer.capacity();
+    }
+
+    byte getByte(int offset) {
+        return UNSAFE.getByteVolatile(null, address(offset, 1));
+    }
+
+    void putByte(int offset, byte value) {
+        UNSAFE.putByteVolatile(null, address(offset, 1), value);
+    }
+
+    int getInt(int offset) {
+        int value = UNSAFE.getIntVolatile(null, address(offset, 4));
+        return SWAP ? Integer.reverseBytes(value) : value;
+    }
+
+    void putInt(int offset, int value) {
+        UNSAFE.putIntVolatile(null, address(offset, 4), SWAP ? Integer.reverseBytes(value) : value);
+    }
+
+    long getLong(int offset) {
+        long value = UNSAFE.getLongVolatile(null, address(offset, 8));
+        return SWAP ? Long.reverseBytes(value) : value;
+    }
+
+    void putLong(int offset, long value) {
+        UNSAFE.putLongVolatile(null, address(offset, 8), SWAP ? Long.reverseBytes(value) : value);
+    }
+
+    /**
+     * Returns the address of the field checking that it lies within the
+     * table and is aligned to its size, so that it is accessed atomically.
+     */
+    private long address(int offset, int size) {
+        if (offset < 0 || offset > capacity - size || offset % size != 0) {
+            throw new IndexOutOfBoundsException(String.format("Field of %d bytes at %d is out of the table of %d bytes.", size, offset, capacity));
+        }
+        return address + offset;
+    }
+
+}
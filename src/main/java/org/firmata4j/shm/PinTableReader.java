@@ -0,0 +1,232 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.firmata4j.Pin;
+import static org.firmata4j.shm.PinTableLayout.*;
+
+/**
+ * Reads the pin table written by {@link PinTableExporter}, possibly in
+ * another process.<br/>
+ * Every slot is read consistently: the mode and the value of a pin always
+ * belong to the same update. Slots of different pins may be read at
+ * different moments. Reading does not create any objects except for the
+ * protocol string. A reader is not thread-safe.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class PinTableReader {
+
+    private static final Pin.Mode[] MODES = Pin.Mode.values();
+
+    private final PinTableMemory table;
+    private final int capacity;
+    private final byte[] protocol = new byte[PROTOCOL_SIZE];
+    private long value;
+    private int mode;
+
+    /**
+     * Maps the file of the pin table for reading.
+     *
+     * @param file the file
+     * @throws IOException when the file cannot be read or is not a pin table
+     */
+    public PinTableReader(File file) throws IOException {
+        this.table = new PinTableMemory(PinTableLayout.open(file));
+        this.capacity = table.getInt(CAPACITY_OFFSET);
+    }
+
+    /**
+     * Returns the count of devices the table can hold.
+     *
+     * @return count of device blocks
+     */
+    public int getDeviceCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Checks whether the device is ready, i.e. it has been initialized and
+     * has not stopped yet.
+     *
+     * @param device index of the block of the device
+     * @return true if the device is ready
+     */
+    public boolean isReady(int device) {
+        return table.getInt(deviceOffset(checkDevice(device)) + STATE_OFFSET) == READY;
+    }
+
+    /**
+     * Returns the count of pins of the device in the table.
+     *
+     * @param device index of the block of the device
+     * @return count of pins or 0 if the device has not been initialized
+     */
+    public int getPinsCount(int device) {
+        return table.getInt(deviceOffset(checkDevice(device)) + PIN_COUNT_OFFSET);
+    }
+
+    /**
+     * Returns the protocol of the device.
+     *
+     * @param device index of the block of the device
+     * @return the protocol or an empty string if the device has not been
+     * initialized
+     */
+    public String getProtocol(int device) {
+        int offset = deviceOffset(checkDevice(device));
+        for (;;) {
+            int sequence = begin(offset);
+            if ((sequence & 1) != 0) {
+                continue; // a writer is in progress
+            }
+            int length = table.getInt(offset + PROTOCOL_LENGTH_OFFSET);
+            for (int i = 0; i < length && i < PROTOCOL_SIZE; i++) {
+                protocol[i] = table.getByte(offset + PROTOCOL_OFFSET + i);
+            }
+            if (validate(offset, sequence)) {
+                return new String(protocol, 0, Math.min(length, PROTOCOL_SIZE), StandardCharsets.US_ASCII);
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the pin.
+     *
+     * @param device index of the block of the device
+     * @param pin index of the pin
+     * @return the value of the pin
+     */
+    public long getValue(int device, int pin) {
+        readSlot(device, pin);
+        return value;
+    }
+
+    /**
+     * Returns the mode of the pin.
+     *
+     * @param device index of the block of the device
+     * @param pin index of the pin
+     * @return the mode of the pin or null if it is unknown
+     */
+    public Pin.Mode getMode(int device, int pin) {
+        readSlot(device, pin);
+        return toMode(mode);
+    }
+
+    /**
+     * Copies the modes and values of the pins of the device. Copies as many
+     * pins as both the table and the arrays can hold.
+     *
+     * @param device index of the block of the device
+     * @param values the array to receive the values
+     * @param modes the array to receive the modes, may be {@code null}
+     * @return count of the copied pins
+     */
+    public int read(int device, long[] values, Pin.Mode[] modes) {
+        int count = Math.min(getPinsCount(device), values.length);
+        if (modes != null) {
+            count = Math.min(count, modes.length);
+        }
+        for (int i = 0; i < count; i++) {
+            readSlot(device, i);
+            values[i] = value;
+            if (modes != null) {
+                modes[i] = toMode(mode);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the count of updates of the pin. It changes whenever the pin
+     * is written, so a reader can tell whether the pin has been updated since
+     * the previous reading.
+     *
+     * @param device index of the block of the device
+     * @param pin index of the pin
+     * @return count of updates of the pin
+     */
+    public int getUpdateCount(int device, int pin) {
+        int offset = slotOffset(checkDevice(device), checkPin(pin));
+        int sequence;
+        while (((sequence = table.getInt(offset)) & 1) != 0) {
+            // a writer is in progress
+        }
+        return sequence >>> 1;
+    }
+
+    private void readSlot(int device, int pin) {
+        int offset = slotOffset(checkDevice(device), checkPin(pin));
+        for (;;) {
+            int sequence = begin(offset);
+            if ((sequence & 1) != 0) {
+                continue; // a writer is in progress
+            }
+            mode = table.getInt(offset + MODE_OFFSET);
+            value = table.getLong(offset + VALUE_OFFSET);
+            if (validate(offset, sequence)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads the sequence counter at the offset.
+     *
+     * @return the counter, which is odd while a writer is in progress
+     */
+    private int begin(int offset) {
+        return table.getInt(offset);
+    }
+
+    /**
+     * Checks that the sequence counter at the offset has not changed.
+     */
+    private boolean validate(int offset, int sequence) {
+        return table.getInt(offset) == sequence;
+    }
+
+    private static Pin.Mode toMode(int mode) {
+        return mode >= 0 && mode < MODES.length ? MODES[mode] : null;
+    }
+
+    private int checkDevice(int device) {
+        if (device < 0 || device >= capacity) {
+            throw new IndexOutOfBoundsException(String.format("Device %d is out of the table of %d devices.", device, capacity));
+        }
+        return device;
+    }
+
+    private static int checkPin(int pin) {
+        if (pin < 0 || pin >= MAX_PINS) {
+            throw new IndexOutOfBoundsException(String.format("Pin %d is out of the table of %d pins.", pin, MAX_PINS));
+        }
+        return pin;
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.transport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Format of a capture of the traffic between the host and the device.<br/>
+ * A capture starts with a header and contains a record per chunk of bytes:
+ * <pre>
+ * header: magic (4) | version (4)
+ * chunk:  direction (1) | nanoseconds since the start of the capture (8) | length (4) | bytes
+ * </pre>
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+final class Capture {
+
+    static final byte INBOUND = 0;
+    static final byte OUTBOUND = 1;
+
+    private static final int MAGIC = 0x46434150; // FCAP
+    private static final int VERSION = 1;
+
+    private Capture() {
+    }
+
+    /**
+     * Receiver of the chunks of a capture.
+     */
+    interface ChunkVisitor {
+
+        /**
+         * Invoked for every chunk of the capture.
+         *
+         * @param direction {@link #INBOUND} or {@link #OUTBOUND}
+         * @param time nanoseconds since the start of the capture
+         * @param bytes the chunk
+         * @throws IOException when the chunk cannot be processed
+         * @throws InterruptedException when the thread is interrupted
+         */
+        void onChunk(byte direction, long time, byte[] bytes) throws IOException, InterruptedException;
+
+    }
+
+    /**
+     * Writes the chunks into a capture file.
+     */
+    static class Writer implements Closeable {
+
+        private final DataOutputStream out;
+        private final long start = System.nanoTime();
+
+        Writer(File file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        synchronized void write(byte direction, byte[] bytes) throws IOException {
+            out.writeByte(direction);
+            out.writeLong(System.nanoTime() - start);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+
+    }
+
+    /**
+     * Passes the chunks of a capture file to the visitor.
+     *
+     * @param file the capture file
+     * @param visitor the receiver of the chunks
+     * @throws IOException when the file cannot be read or is not a capture
+     * @throws InterruptedException when the visitor is interrupted
+     */
+    static void read(File file, ChunkVisitor visitor) throws IOException, InterruptedException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a capture");
+            }
+            while (true) {
+                byte direction;
+                try {
+                    direction = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                long time = in.readLong();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                visitor.onChunk(direction, time, bytes);
+            }
+        }
+    }
+
+}
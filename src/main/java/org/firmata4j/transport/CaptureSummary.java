@@ -0,0 +1,232 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import static org.firmata4j.firmata.parser.FirmataToken.*;
+
+/**
+ * Counts the Firmata messages of a capture made by
+ * {@link RecordingTransport} by direction and type.<br/>
+ * The summary of a capture can be printed from the command line:
+ * <pre>
+ * java -cp firmata4j.jar org.firmata4j.transport.CaptureSummary session.fcap
+ * </pre>
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class CaptureSummary {
+
+    private static final Map<Byte, String> COMMANDS = new HashMap<>();
+    private static final Map<Byte, String> SYSEX_COMMANDS = new HashMap<>();
+
+    static {
+        COMMANDS.put(DIGITAL_MESSAGE, "DIGITAL_MESSAGE");
+        COMMANDS.put(ANALOG_MESSAGE, "ANALOG_MESSAGE");
+        COMMANDS.put(REPORT_ANALOG, "REPORT_ANALOG");
+        COMMANDS.put(REPORT_DIGITAL, "REPORT_DIGITAL");
+        COMMANDS.put(SET_PIN_MODE, "SET_PIN_MODE");
+        COMMANDS.put(SET_DIGITAL_PIN_VALUE, "SET_DIGITAL_PIN_VALUE");
+        COMMANDS.put(REPORT_VERSION, "REPORT_VERSION");
+        COMMANDS.put(SYSTEM_RESET, "SYSTEM_RESET");
+        SYSEX_COMMANDS.put(SERVO_CONFIG, "SERVO_CONFIG");
+        SYSEX_COMMANDS.put(STRING_DATA, "STRING_DATA");
+        SYSEX_COMMANDS.put(I2C_REQUEST, "I2C_REQUEST");
+        SYSEX_COMMANDS.put(I2C_REPLY, "I2C_REPLY");
+        SYSEX_COMMANDS.put(EXTENDED_ANALOG, "EXTENDED_ANALOG");
+        SYSEX_COMMANDS.put(PIN_STATE_QUERY, "PIN_STATE_QUERY");
+        SYSEX_COMMANDS.put(PIN_STATE_RESPONSE, "PIN_STATE_RESPONSE");
+        SYSEX_COMMANDS.put(CAPABILITY_QUERY, "CAPABILITY_QUERY");
+        SYSEX_COMMANDS.put(CAPABILITY_RESPONSE, "CAPABILITY_RESPONSE");
+        SYSEX_COMMANDS.put(ANALOG_MAPPING_QUERY, "ANALOG_MAPPING_QUERY");
+        SYSEX_COMMANDS.put(ANALOG_MAPPING_RESPONSE, "ANALOG_MAPPING_RESPONSE");
+        SYSEX_COMMANDS.put(REPORT_FIRMWARE, "REPORT_FIRMWARE");
+        SYSEX_COMMANDS.put(SAMPLING_INTERVAL, "SAMPLING_INTERVAL");
+    }
+
+    private final Map<String, Long> inbound = new TreeMap<>();
+    private final Map<String, Long> outbound = new TreeMap<>();
+    private final Scanner inboundScanner = new Scanner(inbound);
+    private final Scanner outboundScanner = new Scanner(outbound);
+    private long inboundBytes;
+    private long outboundBytes;
+    private long duration;
+
+    private CaptureSummary() {
+    }
+
+    /**
+     * Reads the capture and counts its messages.
+     *
+     * @param file the capture file
+     * @return the summary of the capture
+     * @throws IOException when the file cannot be read or is not a capture
+     */
+    public static CaptureSummary of(File file) throws IOException {
+        final CaptureSummary summary = new CaptureSummary();
+        try {
+            Capture.read(file, new Capture.ChunkVisitor() {
+                @Override
+                public void onChunk(byte direction, long time, byte[] bytes) {
+                    summary.duration = time;
+                    if (direction == Capture.INBOUND) {
+                        summary.inboundBytes += bytes.length;
+                        summary.inboundScanner.scan(bytes);
+                    } else {
+                        summary.outboundBytes += bytes.length;
+                        summary.outboundScanner.scan(bytes);
+                    }
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Reading of the capture has been interrupted", e);
+        }
+        return summary;
+    }
+
+    /**
+     * Returns counts of the messages received from the device by type.
+     *
+     * @return counts of the inbound messages
+     */
+    public Map<String, Long> getInboundMessages() {
+        return inbound;
+    }
+
+    /**
+     * Returns counts of the messages sent to the device by type.
+     *
+     * @return counts of the outbound messages
+     */
+    public Map<String, Long> getOutboundMessages() {
+        return outbound;
+    }
+
+    /**
+     * Returns count of the bytes received from the device.
+     *
+     * @return count of the inbound bytes
+     */
+    public long getInboundBytes() {
+        return inboundBytes;
+    }
+
+    /**
+     * Returns count of the bytes sent to the device.
+     *
+     * @return count of the outbound bytes
+     */
+    public long getOutboundBytes() {
+        return outboundBytes;
+    }
+
+    /**
+     * Returns the time from the start of the capture to its last chunk.
+     *
+     * @param unit time unit of the result
+     * @return the duration of the capture
+     */
+    public long getDuration(TimeUnit unit) {
+        return unit.convert(duration, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        double seconds = duration / 1e9;
+        sb.append(String.format("Duration: %.3f s, received %d bytes, sent %d bytes%n", seconds, inboundBytes, outboundBytes));
+        append(sb, "Received", inbound, seconds);
+        append(sb, "Sent", outbound, seconds);
+        return sb.toString();
+    }
+
+    private static void append(StringBuilder sb, String title, Map<String, Long> counts, double seconds) {
+        sb.append(String.format("%s:%n", title));
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            double rate = seconds > 0 ? entry.getValue() / seconds : 0;
+            sb.append(String.format("  %-24s %10d %12.1f/s%n", entry.getKey(), entry.getValue(), rate));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: CaptureSummary <capture file>");
+            System.exit(1);
+        }
+        System.out.print(CaptureSummary.of(new File(args[0])));
+    }
+
+    /**
+     * Splits a stream of bytes into messages by their command bytes. The
+     * state is kept between chunks as a message can span several of them.
+     */
+    private static class Scanner {
+
+        private final Map<String, Long> counts;
+        private boolean inSysex;
+        private boolean expectSysexCommand;
+        private String sysexName;
+
+        Scanner(Map<String, Long> counts) {
+            this.counts = counts;
+        }
+
+        void scan(byte[] bytes) {
+            for (byte b : bytes) {
+                if (expectSysexCommand) {
+                    expectSysexCommand = false;
+                    String name = SYSEX_COMMANDS.get(b);
+                    sysexName = name == null ? String.format("SYSEX_0x%02X", b) : name;
+                } else if (b == START_SYSEX) {
+                    inSysex = true;
+                    expectSysexCommand = true;
+                } else if (b == END_SYSEX) {
+                    if (inSysex) {
+                        count(sysexName);
+                    }
+                    inSysex = false;
+                } else if ((b & 0x80) != 0 && !inSysex) {
+                    String name = COMMANDS.get(b);
+                    if (name == null) {
+                        name = COMMANDS.get((byte) (b & 0xF0));
+                    }
+                    count(name == null ? String.format("0x%02X", b) : name);
+                }
+            }
+        }
+
+        private void count(String name) {
+            Long count = counts.get(name);
+            counts.put(name, count == null ? 1 : count + 1);
+        }
+
+    }
+
+}
@@ -30,14 +30,18 @@ import java.net.InetAddress;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 import org.firmata4j.Parser;
 
 /**
- * Allows connections over the network.
+ * Allows connections over the network.<br/>
+ * The transport notifies its listeners when the connection gets closed by the
+ * other side or the device stays silent longer than the socket timeout.
  *
  * @author Thomas Welsch &lt;ttww@gmx.de&gt;
  */
-public class NetworkTransport implements TransportInterface {
+public class NetworkTransport implements ObservableTransport {
 
     private Parser parser;
     private Thread readerThread;
@@ -46,6 +50,8 @@ public class NetworkTransport implements TransportInterface {
     private DataInputStream in;
     private final InetAddress ip;
     private final int port;
+    private final Set<TransportListener> listeners = new CopyOnWriteArraySet<>();
+    private volatile boolean stopped;
 
     /**
      * Creates network transport using a sting as address.
@@ -77,6 +83,7 @@ public class NetworkTransport implements TransportInterface {
 
     @Override
     public void start() throws IOException {
+        stopped = false;
         socket = new Socket(ip, port);
         socket.setReuseAddress(true);
         socket.setSoTimeout(1500);
@@ -90,9 +97,12 @@ public class NetworkTransport implements TransportInterface {
 
     @Override
     public void stop() throws IOException {
+        stopped = true;
         try {
-            readerThread.interrupt();
-            readerThread.join();
+            if (readerThread != null) {
+                readerThread.interrupt();
+                readerThread.join();
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
@@ -127,27 +137,46 @@ public class NetworkTransport implements TransportInterface {
         this.parser = parser;
     }
 
+    @Override
+    public void addTransportListener(TransportListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeTransportListener(TransportListener listener) {
+        listeners.remove(listener);
+    }
+
     private class Reader implements Runnable {
 
         @Override
         public void run() {
             byte[] buf = new byte[100];
             int readIn;
+            IOException cause = null;
             while (!Thread.currentThread().isInterrupted()) {
                 try {
                     readIn = in.read(buf);
                 } catch (SocketTimeoutException e) {
+                    cause = e;
                     break;  // We try to reconnect, hearthbeats (1*second) missing
                 } catch (IOException e) {
+                    cause = e;
                     break;
                 }
                 if (readIn == -1) {
+                    cause = new IOException("Connection closed by the device");
                     break;  // Connection closed
                 }
                 byte[] data = new byte[readIn];
                 System.arraycopy(buf, 0, data, 0, readIn);
                 parser.parse(data);
             }
+            if (cause != null && !stopped) {
+                for (TransportListener listener : listeners) {
+                    listener.onConnectionLost(cause);
+                }
+            }
         }
 
     }
@@ -0,0 +1,308 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.transport;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.firmata4j.Parser;
+import org.firmata4j.firmata.DaemonThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transport that re-establishes the connection of another transport when it
+ * gets lost.<br/>
+ * The connection is considered lost when writing fails, when the wrapped
+ * transport reports the loss (see {@link ObservableTransport}) or when no
+ * data has been received for the idle timeout if one is set. Then the wrapped
+ * transport gets restarted until it succeeds. The pause between the attempts
+ * starts from the initial delay and doubles after every failure up to the
+ * maximum delay. Writing fails while the connection is being restored.
+ * <pre>
+ * TransportInterface transport = new ReconnectingTransport(
+ *         new NetworkTransport("192.168.1.10:3030"), 100, 10000, TimeUnit.MILLISECONDS);
+ * IODevice device = new FirmataDevice(transport);
+ * </pre>
+ * {@link org.firmata4j.firmata.FirmataDevice} restores the state of the
+ * board after the connection is back.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class ReconnectingTransport implements ObservableTransport {
+
+    private static final ThreadFactory THREAD_FACTORY = new DaemonThreadFactory("firmata-reconnect");
+    private static final long STOP_TIMEOUT = 10000L;
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReconnectingTransport.class);
+
+    private final TransportInterface delegate;
+    private final long initialDelay;
+    private final long maxDelay;
+    private final Set<TransportListener> listeners = new CopyOnWriteArraySet<>();
+    private volatile Parser parser;
+    private volatile long idleTimeout;
+    private volatile long lastReceived;
+    private volatile boolean connected;
+    private ScheduledExecutorService scheduler;
+    private int attempts;
+    private long delay;
+
+    /**
+     * Creates the transport that restores the connection of the specified
+     * transport.
+     *
+     * @param delegate the transport that maintains the connection
+     * @param initialDelay pause before the first attempt to reconnect
+     * @param maxDelay the longest pause between the attempts
+     * @param unit time unit of the delays
+     */
+    public ReconnectingTransport(TransportInterface delegate, long initialDelay, long maxDelay, TimeUnit unit) {
+        if (initialDelay <= 0) {
+            throw new IllegalArgumentException("Initial delay must be greater than 0.");
+        }
+        if (maxDelay < initialDelay) {
+            throw new IllegalArgumentException("Maximum delay must not be less than the initial delay.");
+        }
+        this.delegate = delegate;
+        this.initialDelay = unit.toNanos(initialDelay);
+        this.maxDelay = unit.toNanos(maxDelay);
+        delegate.setParser(new Parser() {
+            @Override
+            public void start() {
+                parser.start();
+            }
+
+            @Override
+            public void stop() {
+                parser.stop();
+            }
+
+            @Override
+            public void parse(byte[] bytes) {
+                lastReceived = System.nanoTime();
+                parser.parse(bytes);
+            }
+        });
+        if (delegate instanceof ObservableTransport) {
+            ((ObservableTransport) delegate).addTransportListener(new TransportListener() {
+                @Override
+                public void onConnectionLost(IOException cause) {
+                    connectionLost(cause);
+                }
+
+                @Override
+                public void onConnectionRestored(int attempts) {
+                    // the connection is restored by this transport only
+                }
+            });
+        }
+    }
+
+    /**
+     * Sets how long the device may stay silent before the connection is
+     * considered lost. That allows detecting the loss of connections that do
+     * not report it, like a serial port. The timeout takes effect when the
+     * transport starts.<br/>
+     * The device should report something more often than the timeout.
+     *
+     * @param timeout the timeout or 0 to disable detection of silence
+     * @param unit time unit of the timeout
+     */
+    public void setIdleTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Idle timeout must not be negative.");
+        }
+        idleTimeout = unit.toNanos(timeout);
+    }
+
+    /**
+     * Checks whether the connection is established at the moment.
+     *
+     * @return true if the connection is established, false if it is being
+     * restored or the transport is stopped
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void start() throws IOException {
+        ScheduledExecutorService s;
+        synchronized (this) {
+            if (scheduler == null) {
+                scheduler = Executors.newSingleThreadScheduledExecutor(THREAD_FACTORY);
+            }
+            s = scheduler;
+        }
+        try {
+            delegate.start();
+        } catch (IOException | RuntimeException ex) {
+            stopScheduler();
+            throw ex;
+        }
+        lastReceived = System.nanoTime();
+        connected = true;
+        long timeout = idleTimeout;
+        if (timeout > 0) {
+            long period = Math.max(timeout / 4, TimeUnit.MILLISECONDS.toNanos(1));
+            s.scheduleWithFixedDelay(checkIdle, period, period, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void stop() throws IOException {
+        stopScheduler();
+        delegate.stop();
+    }
+
+    @Override
+    public void write(byte[] bytes) throws IOException {
+        if (!connected) {
+            throw new IOException("Connection is lost. Reconnecting.");
+        }
+        try {
+            delegate.write(bytes);
+        } catch (IOException ex) {
+            connectionLost(ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public void setParser(Parser parser) {
+        this.parser = parser;
+    }
+
+    @Override
+    public void addTransportListener(TransportListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeTransportListener(TransportListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Stops reconnecting and waits for an attempt in progress to finish so
+     * that it does not start the wrapped transport again.
+     */
+    private void stopScheduler() {
+        ScheduledExecutorService s;
+        synchronized (this) {
+            connected = false;
+            s = scheduler;
+            scheduler = null;
+        }
+        if (s != null) {
+            s.shutdownNow();
+            try {
+                if (!s.awaitTermination(STOP_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    LOGGER.error("Cannot stop reconnecting. It may result in a thread leak.");
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void connectionLost(IOException cause) {
+        synchronized (this) {
+            if (!connected || scheduler == null) {
+                return;
+            }
+            connected = false;
+            attempts = 0;
+            delay = initialDelay;
+            scheduler.schedule(reconnect, delay, TimeUnit.NANOSECONDS);
+        }
+        LOGGER.warn("Connection is lost: {}", cause.getMessage());
+        for (TransportListener listener : listeners) {
+            listener.onConnectionLost(cause);
+        }
+    }
+
+    /**
+     * Restarts the wrapped transport and schedules the next attempt if it
+     * fails.
+     */
+    private final Runnable reconnect = new Runnable() {
+        @Override
+        public void run() {
+            int attempt;
+            synchronized (ReconnectingTransport.this) {
+                if (scheduler == null) {
+                    return;
+                }
+                attempt = ++attempts;
+            }
+            try {
+                delegate.stop();
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.debug("Cannot close the lost connection", ex);
+            }
+            try {
+                delegate.start();
+            } catch (IOException | RuntimeException ex) {
+                synchronized (ReconnectingTransport.this) {
+                    if (scheduler != null) {
+                        delay = delay > maxDelay / 2 ? maxDelay : delay * 2;
+                        scheduler.schedule(this, delay, TimeUnit.NANOSECONDS);
+                        LOGGER.debug("Attempt {} to reconnect has failed, the next one in {} ms", attempt, TimeUnit.NANOSECONDS.toMillis(delay));
+                    }
+                }
+                return;
+            }
+            synchronized (ReconnectingTransport.this) {
+                if (scheduler == null) {
+                    return;
+                }
+                lastReceived = System.nanoTime();
+                connected = true;
+            }
+            LOGGER.info("Connection is restored after {} attempt(s)", attempt);
+            for (TransportListener listener : listeners) {
+                listener.onConnectionRestored(attempt);
+            }
+        }
+    };
+
+    /**
+     * Considers the connection lost when the device stays silent for too long.
+     */
+    private final Runnable checkIdle = new Runnable() {
+        @Override
+        public void run() {
+            long silence = System.nanoTime() - lastReceived;
+            if (connected && silence > idleTimeout) {
+                connectionLost(new IOException(String.format("Nothing has been received for %d ms", TimeUnit.NANOSECONDS.toMillis(silence))));
+            }
+        }
+    };
+
+}
@@ -0,0 +1,126 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.transport;
+
+import java.io.File;
+import java.io.IOException;
+import org.firmata4j.Parser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decorator that records the traffic of a transport into a capture file.<br/>
+ * Every chunk of bytes received from the device and every chunk written to
+ * it is stored along with the moment it passed the transport. The capture can
+ * be fed back to a device by {@link ReplayTransport} and summarized by
+ * {@link CaptureSummary}:
+ * <pre>
+ * IODevice device = new FirmataDevice(new RecordingTransport(new SerialTransport("/dev/ttyUSB0"), new File("session.fcap")));
+ * </pre>
+ * A new capture is started every time the transport starts.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class RecordingTransport implements TransportInterface {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecordingTransport.class);
+
+    private final TransportInterface delegate;
+    private final File file;
+    private volatile Capture.Writer capture;
+
+    /**
+     * Creates the decorator.
+     *
+     * @param delegate the transport to record the traffic of
+     * @param file the capture file
+     */
+    public RecordingTransport(TransportInterface delegate, File file) {
+        this.delegate = delegate;
+        this.file = file;
+    }
+
+    @Override
+    public void start() throws IOException {
+        capture = new Capture.Writer(file);
+        try {
+            delegate.start();
+        } catch (IOException e) {
+            capture.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void stop() throws IOException {
+        try {
+            delegate.stop();
+        } finally {
+            Capture.Writer writer = capture;
+            capture = null;
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes) throws IOException {
+        record(Capture.OUTBOUND, bytes);
+        delegate.write(bytes);
+    }
+
+    @Override
+    public void setParser(final Parser parser) {
+        delegate.setParser(new Parser() {
+            @Override
+            public void start() {
+                parser.start();
+            }
+
+            @Override
+            public void stop() {
+                parser.stop();
+            }
+
+            @Override
+            public void parse(byte[] bytes) {
+                record(Capture.INBOUND, bytes);
+                parser.parse(bytes);
+            }
+        });
+    }
+
+    private void record(byte direction, byte[] bytes) {
+        Capture.Writer writer = capture;
+        if (writer != null) {
+            try {
+                writer.write(direction, bytes);
+            } catch (IOException e) {
+                LOGGER.error("Cannot record traffic to {}", file, e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.firmata4j.Parser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transport that feeds the bytes received in a recorded session to the
+ * parser instead of communicating with a real device.<br/>
+ * The inbound chunks of a capture made by {@link RecordingTransport} are
+ * replayed either with the original timing or as fast as possible. The bytes
+ * written to the transport are discarded. This makes it possible to reproduce
+ * a session and to measure the throughput of the processing without
+ * hardware.<br/>
+ * When replaying as fast as possible, consecutive chunks are merged into
+ * larger ones so that the queue of the parser does not overflow:
+ * <pre>
+ * ReplayTransport replay = new ReplayTransport(new File("session.fcap"), false);
+ * IODevice device = new FirmataDevice(replay);
+ * device.start();
+ * replay.awaitEnd(1, TimeUnit.MINUTES);
+ * </pre>
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class ReplayTransport implements TransportInterface {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplayTransport.class);
+
+    /**
+     * The size chunks are merged up to when replaying as fast as possible.
+     */
+    private static final int MERGED_CHUNK_SIZE = 8192;
+
+    private final File file;
+    private final boolean originalTiming;
+    private final AtomicLong replayedBytes = new AtomicLong();
+    private final AtomicLong discardedBytes = new AtomicLong();
+    private volatile CountDownLatch end = new CountDownLatch(1);
+    private Parser parser;
+    private Thread replayThread;
+
+    /**
+     * Creates the transport.
+     *
+     * @param file the capture file
+     * @param originalTiming whether the chunks are fed with the pauses they
+     * were received with or as fast as possible
+     */
+    public ReplayTransport(File file, boolean originalTiming) {
+        this.file = file;
+        this.originalTiming = originalTiming;
+    }
+
+    @Override
+    public void start() throws IOException {
+        if (!file.canRead()) {
+            throw new IOException("Cannot read capture " + file);
+        }
+        end = new CountDownLatch(1);
+        replayThread = new Thread(new Replay(), "firmata-replay-transport");
+        replayThread.setDaemon(true);
+        replayThread.start();
+    }
+
+    @Override
+    public void stop() throws IOException {
+        if (replayThread != null) {
+            replayThread.interrupt();
+            try {
+                replayThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            replayThread = null;
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes) throws IOException {
+        discardedBytes.addAndGet(bytes.length);
+    }
+
+    @Override
+    public void setParser(Parser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Waits until all the chunks of the capture have been fed to the parser.
+     *
+     * @param timeout how long to wait
+     * @param unit time unit of the timeout
+     * @return true if the replay has ended, false if the timeout has elapsed
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean awaitEnd(long timeout, TimeUnit unit) throws InterruptedException {
+        return end.await(timeout, unit);
+    }
+
+    /**
+     * Returns count of the bytes fed to the parser.
+     *
+     * @return count of the replayed bytes
+     */
+    public long getReplayedBytes() {
+        return replayedBytes.get();
+    }
+
+    /**
+     * Returns count of the bytes written to the transport.
+     *
+     * @return count of the discarded bytes
+     */
+    public long getDiscardedBytes() {
+        return discardedBytes.get();
+    }
+
+    private class Replay implements Runnable, Capture.ChunkVisitor {
+
+        private final ByteArrayOutputStream merged = new ByteArrayOutputStream(MERGED_CHUNK_SIZE);
+        private long start;
+
+        @Override
+        public void run() {
+            start = System.nanoTime();
+            try {
+                Capture.read(file, this);
+                feed();
+            } catch (IOException e) {
+                LOGGER.error("Cannot replay capture {}", file, e);
+            } catch (InterruptedException e) {
+                // the transport has been stopped
+            } finally {
+                end.countDown();
+            }
+        }
+
+        @Override
+        public void onChunk(byte direction, long time, byte[] bytes) throws InterruptedException {
+            if (direction != Capture.INBOUND) {
+                return;
+            }
+            if (originalTiming) {
+                long delay = time - (System.nanoTime() - start);
+                if (delay > 0) {
+                    TimeUnit.NANOSECONDS.sleep(delay);
+                }
+                parser.parse(bytes);
+                replayedBytes.addAndGet(bytes.length);
+            } else {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                merged.write(bytes, 0, bytes.length);
+                if (merged.size() >= MERGED_CHUNK_SIZE) {
+                    feed();
+                }
+            }
+        }
+
+        private void feed() {
+            if (merged.size() > 0) {
+                parser.parse(merged.toByteArray());
+                replayedBytes.addAndGet(merged.size());
+                merged.reset();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.transport;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source of the values of an input of {@link SimulatedBoard}.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public abstract class SignalGenerator {
+
+    /**
+     * Returns the value of the signal at the moment.
+     *
+     * @param nanoTime nanoseconds since the start of the board
+     * @return the value of the signal
+     */
+    public abstract long valueAt(long nanoTime);
+
+    /**
+     * Creates a signal that always has the same value.
+     *
+     * @param value the value
+     * @return the signal
+     */
+    public static SignalGenerator constant(final long value) {
+        return new SignalGenerator() {
+            @Override
+            public long valueAt(long nanoTime) {
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Creates a sine wave.
+     *
+     * @param offset the middle value of the wave
+     * @param amplitude the greatest deviation from the middle value
+     * @param period the period of the wave
+     * @param unit time unit of the period
+     * @return the signal
+     */
+    public static SignalGenerator sine(final long offset, final long amplitude, long period, TimeUnit unit) {
+        final double nanos = positive(unit.toNanos(period));
+        return new SignalGenerator() {
+            @Override
+            public long valueAt(long nanoTime) {
+                return offset + Math.round(amplitude * Math.sin(2 * Math.PI * (nanoTime % (long) nanos) / nanos));
+            }
+        };
+    }
+
+    /**
+     * Creates a square wave that spends half of the period at each level.
+     *
+     * @param low the low level
+     * @param high the high level
+     * @param period the period of the wave
+     * @param unit time unit of the period
+     * @return the signal
+     */
+    public static SignalGenerator square(final long low, final long high, long period, TimeUnit unit) {
+        final long nanos = positive(unit.toNanos(period));
+        return new SignalGenerator() {
+            @Override
+            public long valueAt(long nanoTime) {
+                return nanoTime % nanos < nanos / 2 ? low : high;
+            }
+        };
+    }
+
+    /**
+     * Creates a sawtooth wave that rises from the least value to the greatest
+     * one during the period and drops back.
+     *
+     * @param min the least value
+     * @param max the greatest value
+     * @param period the period of the wave
+     * @param unit time unit of the period
+     * @return the signal
+     */
+    public static SignalGenerator sawtooth(final long min, final long max, long period, TimeUnit unit) {
+        final long nanos = positive(unit.toNanos(period));
+        return new SignalGenerator() {
+            @Override
+            public long valueAt(long nanoTime) {
+                return min + (long) ((double) (max - min) * (nanoTime % nanos) / nanos);
+            }
+        };
+    }
+
+    /**
+     * Creates a signal of uniformly distributed random values.
+     *
+     * @param min the least value
+     * @param max the greatest value
+     * @return the signal
+     */
+    public static SignalGenerator noise(final long min, final long max) {
+        if (max < min) {
+            throw new IllegalArgumentException("The greatest value cannot be less than the least one.");
+        }
+        return new SignalGenerator() {
+            @Override
+            public long valueAt(long nanoTime) {
+                return min + (long) (ThreadLocalRandom.current().nextDouble() * (max - min + 1));
+            }
+        };
+    }
+
+    private static long positive(long period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be greater than 0.");
+        }
+        return period;
+    }
+
+}
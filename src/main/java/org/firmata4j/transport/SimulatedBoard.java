@@ -0,0 +1,526 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.firmata4j.Parser;
+import org.firmata4j.Pin;
+import org.firmata4j.firmata.DaemonThreadFactory;
+import org.firmata4j.firmata.parser.HostMessageDecoder;
+import static org.firmata4j.firmata.parser.FirmataToken.*;
+
+/**
+ * Transport that simulates a board running StandardFirmata in the same
+ * process.<br/>
+ * The board answers the requests of the firmware, capabilities, analog
+ * mapping and pin states, keeps the modes and values the host sets and
+ * reports the inputs once per sampling interval. The values of the inputs
+ * come from {@link SignalGenerator}s. The board can host I2C devices that
+ * keep the bytes written to their registers and return them on reading.<br/>
+ * The first pins of the board are digital and the last ones are analog
+ * inputs mapped to the analog channels in order:
+ * <pre>
+ * SimulatedBoard board = new SimulatedBoard(14, 6);
+ * board.setSignal(14, SignalGenerator.sine(512, 511, 1, TimeUnit.SECONDS)); // A0
+ * board.setSignal(2, SignalGenerator.square(0, 1, 100, TimeUnit.MILLISECONDS));
+ * board.addI2CDevice(0x3C);
+ * board.setSamplingInterval(100, TimeUnit.MICROSECONDS);
+ * IODevice device = new FirmataDevice(board);
+ * </pre>
+ * Nothing limits the rate of the data besides the sampling interval, so the
+ * board can load the host far beyond the capacity of a serial line.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class SimulatedBoard implements TransportInterface {
+
+    private static final String FIRMWARE = "SimulatedBoard";
+    private static final int MAX_ANALOG_CHANNELS = 16;
+    private static final int MAX_PORTS = 16;
+    private static final int REGISTERS = 256;
+
+    private final int pinCount;
+    private final int firstAnalog;
+    private final byte[] modes;
+    private final long[] values;
+    private final SignalGenerator[] signals;
+    private final Map<Integer, byte[]> i2cDevices = new HashMap<>();
+    private final Map<Integer, Integer> i2cPointers = new HashMap<>();
+    private final List<int[]> continuousReads = new ArrayList<>();
+    private final boolean[] digitalReporting = new boolean[MAX_PORTS];
+    private final int[] reportedPorts = new int[MAX_PORTS];
+    private int analogReporting;
+    private final AtomicLong sentBytes = new AtomicLong();
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private volatile long samplingInterval = TimeUnit.MILLISECONDS.toNanos(19);
+    private volatile Parser parser;
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> sampling;
+    private long start;
+
+    // decodes the messages from the host
+    private final HostMessageDecoder decoder = new HostMessageDecoder();
+
+    /**
+     * Creates the board.
+     *
+     * @param digitalPins count of digital pins
+     * @param analogInputs count of analog inputs following the digital pins
+     */
+    public SimulatedBoard(int digitalPins, int analogInputs) {
+        if (digitalPins < 0 || analogInputs < 0 || analogInputs > MAX_ANALOG_CHANNELS
+                || digitalPins + analogInputs > MAX_PORTS * 8 || digitalPins + analogInputs == 0) {
+            throw new IllegalArgumentException("Count of pins is out of range.");
+        }
+        this.pinCount = digitalPins + analogInputs;
+        this.firstAnalog = digitalPins;
+        this.modes = new byte[pinCount];
+        this.values = new long[pinCount];
+        this.signals = new SignalGenerator[pinCount];
+        reset();
+    }
+
+    /**
+     * Sets the source of the values of an input pin. The value of a digital
+     * input is 1 if the signal is not 0.
+     *
+     * @param pin index of the pin
+     * @param signal the source of the values
+     */
+    public synchronized void setSignal(int pin, SignalGenerator signal) {
+        signals[pin] = signal;
+    }
+
+    /**
+     * Adds an I2C device that returns the bytes written to its registers.
+     *
+     * @param address address of the device
+     */
+    public synchronized void addI2CDevice(int address) {
+        i2cDevices.put(address, new byte[REGISTERS]);
+        i2cPointers.put(address, 0);
+    }
+
+    /**
+     * Sets how often the board reports its inputs. Unlike the host, this
+     * method does not limit the interval to whole milliseconds.
+     *
+     * @param interval the sampling interval
+     * @param unit time unit of the interval
+     */
+    public synchronized void setSamplingInterval(long interval, TimeUnit unit) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Sampling interval must be greater than 0.");
+        }
+        samplingInterval = unit.toNanos(interval);
+        if (sampling != null) {
+            sampling.cancel(false);
+            startSampling();
+        }
+    }
+
+    /**
+     * Returns the value the host has set to the pin or the last reported
+     * value of an input.
+     *
+     * @param pin index of the pin
+     * @return the value of the pin
+     */
+    public synchronized long getValue(int pin) {
+        return values[pin];
+    }
+
+    /**
+     * Returns the mode of the pin.
+     *
+     * @param pin index of the pin
+     * @return the mode of the pin
+     */
+    public synchronized Pin.Mode getMode(int pin) {
+        return Pin.Mode.resolve(modes[pin]);
+    }
+
+    /**
+     * Returns count of the bytes the board has sent to the host.
+     *
+     * @return count of the sent bytes
+     */
+    public long getSentBytes() {
+        return sentBytes.get();
+    }
+
+    /**
+     * Returns count of the bytes the board has received from the host.
+     *
+     * @return count of the received bytes
+     */
+    public long getReceivedBytes() {
+        return receivedBytes.get();
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        if (scheduler == null) {
+            start = System.nanoTime();
+            scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("firmata-simulated-board"));
+            startSampling();
+        }
+    }
+
+    @Override
+    public synchronized void stop() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            sampling = null;
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes) throws IOException {
+        receivedBytes.addAndGet(bytes.length);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HostMessageDecoder.Handler<RuntimeException> handler = new HostMessageDecoder.Handler<RuntimeException>() {
+            @Override
+            public void onCommand(int command, int[] data) {
+                handleCommand(command, data, out);
+            }
+
+            @Override
+            public void onSysex(byte[] message) {
+                handleSysex(message, out);
+            }
+        };
+        synchronized (this) {
+            for (byte b : bytes) {
+                decoder.receive(b, handler);
+            }
+        }
+        send(out);
+    }
+
+    @Override
+    public void setParser(Parser parser) {
+        this.parser = parser;
+    }
+
+    private void startSampling() {
+        sampling = scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                synchronized (SimulatedBoard.this) {
+                    sample(System.nanoTime() - start, out);
+                }
+                send(out);
+            }
+        }, samplingInterval, samplingInterval, TimeUnit.NANOSECONDS);
+    }
+
+    private void send(ByteArrayOutputStream out) {
+        Parser receiver = parser;
+        if (out.size() > 0 && receiver != null) {
+            sentBytes.addAndGet(out.size());
+            receiver.parse(out.toByteArray());
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < pinCount; i++) {
+            modes[i] = i < firstAnalog ? PIN_MODE_OUTPUT : PIN_MODE_ANALOG;
+            values[i] = 0;
+        }
+        analogReporting = 0;
+        for (int i = 0; i < MAX_PORTS; i++) {
+            digitalReporting[i] = false;
+            reportedPorts[i] = -1;
+        }
+        continuousReads.clear();
+    }
+
+    /**
+     * Reports the inputs.
+     */
+    private void sample(long now, ByteArrayOutputStream out) {
+        for (int channel = 0; channel < pinCount - firstAnalog; channel++) {
+            int pin = firstAnalog + channel;
+            if ((analogReporting & (1 << channel)) != 0 && modes[pin] == PIN_MODE_ANALOG) {
+                long value = Math.max(0, Math.min(1023, signal(pin, now)));
+                values[pin] = value;
+                out.write(ANALOG_MESSAGE | channel);
+                out.write((int) value & 0x7F);
+                out.write((int) (value >>> 7) & 0x7F);
+            }
+        }
+        for (int port = 0; port * 8 < pinCount; port++) {
+            if (digitalReporting[port]) {
+                reportPort(port, now, false, out);
+            }
+        }
+        for (int[] read : continuousReads) {
+            replyI2C(read[0], read[1], read[2], out);
+        }
+    }
+
+    private long signal(int pin, long now) {
+        SignalGenerator signal = signals[pin];
+        return signal == null ? 0 : signal.valueAt(now);
+    }
+
+    private void reportPort(int port, long now, boolean force, ByteArrayOutputStream out) {
+        int value = 0;
+        for (int bit = 0; bit < 8 && port * 8 + bit < pinCount; bit++) {
+            int pin = port * 8 + bit;
+            if (modes[pin] == PIN_MODE_INPUT || modes[pin] == PIN_MODE_PULLUP) {
+                values[pin] = signal(pin, now) == 0 ? 0 : 1;
+            }
+            if (modes[pin] != PIN_MODE_ANALOG && values[pin] != 0) {
+                value |= 1 << bit;
+            }
+        }
+        if (force || value != reportedPorts[port]) {
+            reportedPorts[port] = value;
+            out.write(DIGITAL_MESSAGE | port);
+            out.write(value & 0x7F);
+            out.write(value >>> 7);
+        }
+    }
+
+    private void handleCommand(int command, int[] data, ByteArrayOutputStream out) {
+        int channel = command & 0x0F;
+        switch (command & 0xF0) {
+            case DIGITAL_MESSAGE & 0xF0:
+                int portValue = data[0] | (data[1] << 7);
+                for (int bit = 0; bit < 8 && channel * 8 + bit < pinCount; bit++) {
+                    int pin = channel * 8 + bit;
+                    if (modes[pin] == PIN_MODE_OUTPUT) {
+                        values[pin] = (portValue >>> bit) & 1;
+                    }
+                }
+                return;
+            case ANALOG_MESSAGE & 0xF0:
+                writeAnalog(channel, data[0] | (data[1] << 7));
+                return;
+            case REPORT_ANALOG & 0xF0:
+                if (data[0] != 0) {
+                    analogReporting |= 1 << channel;
+                } else {
+                    analogReporting &= ~(1 << channel);
+                }
+                return;
+            case REPORT_DIGITAL & 0xF0:
+                digitalReporting[channel] = data[0] != 0;
+                if (digitalReporting[channel] && channel * 8 < pinCount) {
+                    reportPort(channel, System.nanoTime() - start, true, out);
+                }
+                return;
+            default:
+                break;
+        }
+        if (command == (SET_PIN_MODE & 0xFF)) {
+            setMode(data[0], (byte) data[1]);
+        } else if (command == (SET_DIGITAL_PIN_VALUE & 0xFF)) {
+            if (data[0] < pinCount && modes[data[0]] == PIN_MODE_OUTPUT) {
+                values[data[0]] = data[1] == 0 ? 0 : 1;
+            }
+        } else if (command == (REPORT_VERSION & 0xFF)) {
+            out.write(REPORT_VERSION);
+            out.write(FIRMATA_MAJOR_VERSION);
+            out.write(FIRMATA_MINOR_VERSION);
+        } else if (command == (SYSTEM_RESET & 0xFF)) {
+            reset();
+        }
+    }
+
+    private void setMode(int pin, byte mode) {
+        if (pin < pinCount && supports(pin, mode)) {
+            modes[pin] = mode;
+            values[pin] = 0;
+        }
+    }
+
+    private void writeAnalog(int pin, long value) {
+        if (pin < pinCount && (modes[pin] == PIN_MODE_PWM || modes[pin] == PIN_MODE_SERVO)) {
+            values[pin] = value;
+        }
+    }
+
+    private boolean supports(int pin, byte mode) {
+        for (int i = 0; i < capabilities(pin).length; i += 2) {
+            if (capabilities(pin)[i] == mode) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns pairs of supported modes and their resolutions.
+     */
+    private byte[] capabilities(int pin) {
+        if (pin < firstAnalog) {
+            return new byte[] {PIN_MODE_INPUT, 1, PIN_MODE_OUTPUT, 1, PIN_MODE_PULLUP, 1, PIN_MODE_PWM, 8, PIN_MODE_SERVO, 14};
+        }
+        return new byte[] {PIN_MODE_INPUT, 1, PIN_MODE_OUTPUT, 1, PIN_MODE_PULLUP, 1, PIN_MODE_ANALOG, 10};
+    }
+
+    private void handleSysex(byte[] message, ByteArrayOutputStream out) {
+        if (message.length == 0) {
+            return;
+        }
+        switch (message[0]) {
+            case REPORT_FIRMWARE:
+                out.write(START_SYSEX);
+                out.write(REPORT_FIRMWARE);
+                out.write(FIRMATA_MAJOR_VERSION);
+                out.write(FIRMATA_MINOR_VERSION);
+                for (char c : FIRMWARE.toCharArray()) {
+                    out.write(c & 0x7F);
+                    out.write(c >>> 7);
+                }
+                out.write(END_SYSEX);
+                break;
+            case CAPABILITY_QUERY:
+                out.write(START_SYSEX);
+                out.write(CAPABILITY_RESPONSE);
+                for (int pin = 0; pin < pinCount; pin++) {
+                    byte[] capabilities = capabilities(pin);
+                    out.write(capabilities, 0, capabilities.length);
+                    out.write(127);
+                }
+                out.write(END_SYSEX);
+                break;
+            case ANALOG_MAPPING_QUERY:
+                out.write(START_SYSEX);
+                out.write(ANALOG_MAPPING_RESPONSE);
+                for (int pin = 0; pin < pinCount; pin++) {
+                    out.write(pin < firstAnalog ? 127 : pin - firstAnalog);
+                }
+                out.write(END_SYSEX);
+                break;
+            case PIN_STATE_QUERY:
+                if (message.length > 1 && message[1] < pinCount) {
+                    int pin = message[1];
+                    out.write(START_SYSEX);
+                    out.write(PIN_STATE_RESPONSE);
+                    out.write(pin);
+                    out.write(modes[pin]);
+                    long value = values[pin];
+                    do {
+                        out.write((int) (value & 0x7F));
+                        value >>>= 7;
+                    } while (value > 0);
+                    out.write(END_SYSEX);
+                }
+                break;
+            case SAMPLING_INTERVAL:
+                if (message.length > 2) {
+                    setSamplingInterval(message[1] | (message[2] << 7), TimeUnit.MILLISECONDS);
+                }
+                break;
+            case EXTENDED_ANALOG:
+                if (message.length > 2) {
+                    long value = 0;
+                    for (int i = 2; i < message.length; i++) {
+                        value |= (long) message[i] << (7 * (i - 2));
+                    }
+                    writeAnalog(message[1], value);
+                }
+                break;
+            case I2C_REQUEST:
+                if (message.length > 2) {
+                    handleI2C(message, out);
+                }
+                break;
+            default:
+                // the other messages do not need a response
+                break;
+        }
+    }
+
+    private void handleI2C(byte[] message, ByteArrayOutputStream out) {
+        int address = message[1];
+        int mode = message[2] & 0x18;
+        int[] words = new int[(message.length - 3) / 2];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = message[3 + 2 * i] | (message[4 + 2 * i] << 7);
+        }
+        byte[] registers = i2cDevices.get(address);
+        if (registers == null) {
+            return;
+        }
+        if (mode == I2C_WRITE) {
+            if (words.length > 0) {
+                int register = words[0] & 0xFF;
+                for (int i = 1; i < words.length; i++) {
+                    registers[(register + i - 1) % REGISTERS] = (byte) words[i];
+                }
+                i2cPointers.put(address, register);
+            }
+        } else if (mode == I2C_STOP_READ_CONTINUOUS) {
+            Iterator<int[]> iterator = continuousReads.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next()[0] == address) {
+                    iterator.remove();
+                }
+            }
+        } else if (words.length > 0) {
+            int register = words.length > 1 ? words[0] : i2cPointers.get(address);
+            int length = words[words.length - 1];
+            if (mode == I2C_READ_CONTINUOUS) {
+                continuousReads.add(new int[] {address, register, length});
+            } else {
+                replyI2C(address, register, length, out);
+            }
+        }
+    }
+
+    private void replyI2C(int address, int register, int length, ByteArrayOutputStream out) {
+        byte[] registers = i2cDevices.get(address);
+        out.write(START_SYSEX);
+        out.write(I2C_REPLY);
+        out.write(address & 0x7F);
+        out.write(address >>> 7);
+        out.write(register & 0x7F);
+        out.write(register >>> 7);
+        for (int i = 0; i < length; i++) {
+            int b = registers[(register + i) % REGISTERS] & 0xFF;
+            out.write(b & 0x7F);
+            out.write(b >>> 7);
+        }
+        out.write(END_SYSEX);
+    }
+
+}
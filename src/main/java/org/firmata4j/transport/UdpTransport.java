@@ -0,0 +1,469 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.transport;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.firmata4j.Parser;
+import org.firmata4j.firmata.DaemonThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import static org.firmata4j.firmata.parser.FirmataToken.END_SYSEX;
+
+/**
+ * Exchanges Firmata messages with a board in UDP datagrams. That avoids the
+ * latency spikes TCP gets from retransmissions and coalescing of small
+ * segments on lossy WiFi links.<br/>
+ * Outgoing bytes are packed into as few datagrams as the maximum datagram
+ * size allows, splitting them between Firmata messages only, so that a lost
+ * datagram does not leave a part of a message behind. The board is expected
+ * to put whole messages into its datagrams as well. By default only the
+ * bytes of a single write get packed together, as every write is sent right
+ * away. A packing delay lets the messages of the writes that follow within
+ * the delay share a datagram, at the cost of that much latency.<br/>
+ * When sequencing is enabled, every datagram starts with a 16-bit sequence
+ * number in both directions. That allows counting the datagrams that have
+ * been lost or reordered on the way from the board. A datagram that arrives
+ * after a newer one is dropped, so stale values do not overwrite the fresh
+ * ones. A sequence number far behind the expected one means the board has
+ * restarted its numbering, so the transport follows it. The firmware of the
+ * board has to support the sequence numbers.
+ * <pre>
+ * UdpTransport transport = new UdpTransport("192.168.1.10:3030");
+ * IODevice device = new FirmataDevice(transport);
+ * </pre>
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class UdpTransport implements TransportInterface {
+
+    private static final int DEFAULT_MAX_DATAGRAM_SIZE = 512;
+    private static final int MIN_DATAGRAM_SIZE = 16;
+    private static final int MAX_UDP_PAYLOAD = 65507;
+    private static final int SEQUENCE_SIZE = 2;
+    /**
+     * Datagrams that arrive later than this count of newer ones mean the
+     * board has restarted the sequence rather than that they got reordered.
+     */
+    private static final int MAX_REORDERING = 64;
+    private static final Logger LOGGER = LoggerFactory.getLogger(UdpTransport.class);
+
+    private final InetSocketAddress board;
+    private final InetSocketAddress local;
+    private volatile Parser parser;
+    private volatile int maxDatagramSize = DEFAULT_MAX_DATAGRAM_SIZE;
+    private volatile boolean sequenced;
+    private volatile long packingDelay;
+    private volatile DatagramChannel channel;
+    private Thread receiverThread;
+    private ScheduledExecutorService flusher;
+    // the settings the transport has started with and the datagram being packed, guarded by this
+    private int header;
+    private long flushDelay;
+    private ByteBuffer sendBuffer;
+    private ScheduledFuture<?> pendingFlush;
+    private int sendSequence;
+    private int expectedSequence;
+    private final AtomicLong sentDatagrams = new AtomicLong();
+    private final AtomicLong receivedDatagrams = new AtomicLong();
+    private final AtomicLong lostDatagrams = new AtomicLong();
+    private final AtomicLong reorderedDatagrams = new AtomicLong();
+
+    /**
+     * Creates UDP transport using a string as address of the board.<br/>
+     * Address should specify host and port, for example "192.168.1.10:3030".
+     *
+     * @param address host and port
+     */
+    public UdpTransport(String address) {
+        String[] parts = address.split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Address must specify host and port but received " + address);
+        }
+        try {
+            this.board = new InetSocketAddress(InetAddress.getByName(parts[0]), Integer.valueOf(parts[1]));
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException(e);
+        }
+        this.local = null;
+    }
+
+    /**
+     * Creates UDP transport that exchanges datagrams with the board using an
+     * ephemeral local port.
+     *
+     * @param ip address of the board
+     * @param port port of the board
+     */
+    public UdpTransport(InetAddress ip, int port) {
+        this(new InetSocketAddress(ip, port), null);
+    }
+
+    /**
+     * Creates UDP transport that exchanges datagrams with the board using the
+     * specified local address. That is needed when the board sends its
+     * datagrams to a fixed port.
+     *
+     * @param board address of the board
+     * @param local local address or null for an ephemeral port
+     */
+    public UdpTransport(InetSocketAddress board, InetSocketAddress local) {
+        this.board = board;
+        this.local = local;
+    }
+
+    /**
+     * Sets the largest datagram the transport sends, including the sequence
+     * number. A message that does not fit gets its own datagram anyway. The
+     * size takes effect when the transport starts.
+     *
+     * @param size the size in bytes
+     */
+    public void setMaxDatagramSize(int size) {
+        if (size < MIN_DATAGRAM_SIZE || size > MAX_UDP_PAYLOAD) {
+            throw new IllegalArgumentException(String.format("Datagram size must be from %d to %d bytes.", MIN_DATAGRAM_SIZE, MAX_UDP_PAYLOAD));
+        }
+        maxDatagramSize = size;
+    }
+
+    /**
+     * Enables or disables sequence numbers in the datagrams. It takes effect
+     * when the transport starts.
+     *
+     * @param sequenced true to prepend sequence numbers to the datagrams
+     */
+    public void setSequenced(boolean sequenced) {
+        this.sequenced = sequenced;
+    }
+
+    /**
+     * Sets how long the messages wait for the messages of the following
+     * writes to share a datagram with them. A datagram gets sent earlier when
+     * it is full. The delay of 0, which is the default, sends the bytes of
+     * every write right away. The delay takes effect when the transport
+     * starts.
+     *
+     * @param delay the delay
+     * @param unit time unit of the delay
+     */
+    public void setPackingDelay(long delay, TimeUnit unit) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("Packing delay cannot be negative.");
+        }
+        packingDelay = unit.toNanos(delay);
+    }
+
+    /**
+     * Returns the local address the transport receives the datagrams on.
+     *
+     * @return the local address or null if the transport is not started
+     * @throws IOException when the address cannot be obtained
+     */
+    public SocketAddress getLocalAddress() throws IOException {
+        DatagramChannel c = channel;
+        return c == null ? null : c.getLocalAddress();
+    }
+
+    /**
+     * Returns the count of datagrams sent to the board.
+     *
+     * @return count of sent datagrams
+     */
+    public long getSentDatagramCount() {
+        return sentDatagrams.get();
+    }
+
+    /**
+     * Returns the count of datagrams received from the board.
+     *
+     * @return count of received datagrams
+     */
+    public long getReceivedDatagramCount() {
+        return receivedDatagrams.get();
+    }
+
+    /**
+     * Returns the count of datagrams of the board that have not arrived in
+     * order, judging by the gaps in the sequence numbers. It is known only
+     * when sequencing is enabled.
+     *
+     * @return count of lost datagrams
+     */
+    public long getLostDatagramCount() {
+        return lostDatagrams.get();
+    }
+
+    /**
+     * Returns the count of datagrams that have arrived after a newer one and
+     * have been dropped. They are counted as lost as well. It is known only
+     * when sequencing is enabled.
+     *
+     * @return count of reordered datagrams
+     */
+    public long getReorderedDatagramCount() {
+        return reorderedDatagrams.get();
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        DatagramChannel c = DatagramChannel.open();
+        try {
+            c.bind(local);
+            c.connect(board);
+        } catch (IOException ex) {
+            c.close();
+            throw ex;
+        }
+        header = sequenced ? SEQUENCE_SIZE : 0;
+        flushDelay = packingDelay;
+        sendBuffer = ByteBuffer.allocate(maxDatagramSize);
+        sendBuffer.position(header);
+        sendSequence = 0;
+        expectedSequence = -1;
+        if (flushDelay > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("firmata-udp-transport-flush"));
+        }
+        channel = c;
+        receiverThread = new Thread(new Receiver(c, header > 0), "firmata-udp-transport");
+        receiverThread.setDaemon(true);
+        receiverThread.start();
+    }
+
+    @Override
+    public synchronized void stop() throws IOException {
+        DatagramChannel c = channel;
+        channel = null;
+        try {
+            if (c != null) {
+                try {
+                    flush(c);
+                } finally {
+                    c.close();
+                }
+            }
+        } finally {
+            if (flusher != null) {
+                flusher.shutdownNow();
+                flusher = null;
+                pendingFlush = null;
+            }
+            if (receiverThread != null) {
+                receiverThread.interrupt();
+                try {
+                    receiverThread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                receiverThread = null;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes) throws IOException {
+        DatagramChannel c = channel;
+        if (c == null) {
+            throw new IOException("Transport is not started.");
+        }
+        int capacity = sendBuffer.capacity() - header;
+        int start = 0;
+        while (start < bytes.length) {
+            int end = start + capacity;
+            if (end >= bytes.length) {
+                end = bytes.length;
+            } else {
+                // step back to the beginning of the message that does not fit
+                while (end > start && !isMessageStart(bytes[end])) {
+                    end--;
+                }
+                if (end == start) {
+                    // the message is longer than a datagram, so it is sent on its own
+                    end = start + 1;
+                    while (end < bytes.length && !isMessageStart(bytes[end])) {
+                        end++;
+                    }
+                }
+            }
+            send(c, bytes, start, end - start);
+            start = end;
+        }
+    }
+
+    @Override
+    public void setParser(Parser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Adds whole messages to the datagram being packed. The datagram is sent
+     * right away unless there is a packing delay. Must be called holding the
+     * lock of the transport.
+     */
+    private void send(DatagramChannel c, byte[] bytes, int offset, int length) throws IOException {
+        if (sendBuffer.remaining() < length) {
+            flush(c);
+        }
+        if (sendBuffer.remaining() < length) {
+            // the message is longer than a datagram
+            ByteBuffer buffer = ByteBuffer.allocate(length + header);
+            if (header > 0) {
+                buffer.putShort((short) sendSequence++);
+            }
+            buffer.put(bytes, offset, length);
+            buffer.flip();
+            c.write(buffer);
+            sentDatagrams.incrementAndGet();
+            return;
+        }
+        sendBuffer.put(bytes, offset, length);
+        if (flushDelay == 0) {
+            flush(c);
+        } else if (pendingFlush == null) {
+            pendingFlush = flusher.schedule(flushTask, flushDelay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Sends the datagram being packed if it holds any message. Must be called
+     * holding the lock of the transport.
+     */
+    private void flush(DatagramChannel c) throws IOException {
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+        if (sendBuffer.position() == header) {
+            return;
+        }
+        if (header > 0) {
+            sendBuffer.putShort(0, (short) sendSequence++);
+        }
+        sendBuffer.flip();
+        try {
+            c.write(sendBuffer);
+        } finally {
+            sendBuffer.clear();
+            sendBuffer.position(header);
+        }
+        sentDatagrams.incrementAndGet();
+    }
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (UdpTransport.this) {
+                pendingFlush = null;
+                DatagramChannel c = channel;
+                if (c != null) {
+                    try {
+                        flush(c);
+                    } catch (IOException e) {
+                        LOGGER.error("Cannot send a datagram", e);
+                    }
+                }
+            }
+        }
+    };
+
+    private static boolean isMessageStart(byte b) {
+        return (b & 0x80) != 0 && b != END_SYSEX;
+    }
+
+    /**
+     * Checks the sequence number of a received datagram and counts the gaps.
+     *
+     * @return true if the datagram should be parsed
+     */
+    private boolean accept(int sequence) {
+        if (expectedSequence >= 0) {
+            int gap = (short) (sequence - expectedSequence);
+            if (gap < -MAX_REORDERING) {
+                LOGGER.debug("Sequence of the board has restarted from {}, {} was expected", sequence, expectedSequence);
+            } else if (gap < 0) {
+                reorderedDatagrams.incrementAndGet();
+                return false;
+            } else {
+                lostDatagrams.addAndGet(gap);
+            }
+        }
+        expectedSequence = (sequence + 1) & 0xFFFF;
+        return true;
+    }
+
+    private class Receiver implements Runnable {
+
+        private final DatagramChannel channel;
+        private final boolean sequenced;
+
+        Receiver(DatagramChannel channel, boolean sequenced) {
+            this.channel = channel;
+            this.sequenced = sequenced;
+        }
+
+        @Override
+        public void run() {
+            ByteBuffer buffer = ByteBuffer.allocate(MAX_UDP_PAYLOAD);
+            while (!Thread.currentThread().isInterrupted()) {
+                buffer.clear();
+                try {
+                    channel.receive(buffer);
+                } catch (ClosedChannelException e) {
+                    break;
+                } catch (PortUnreachableException e) {
+                    continue; // the board is not listening yet
+                } catch (IOException e) {
+                    LOGGER.error("Cannot receive a datagram", e);
+                    break;
+                }
+                buffer.flip();
+                receivedDatagrams.incrementAndGet();
+                if (sequenced) {
+                    if (buffer.remaining() < SEQUENCE_SIZE || !accept(buffer.getShort() & 0xFFFF)) {
+                        continue;
+                    }
+                }
+                if (buffer.hasRemaining()) {
+                    // the parser keeps the array, so the datagram gets its own one
+                    byte[] data = new byte[buffer.remaining()];
+                    buffer.get(data);
+                    parser.parse(data);
+                }
+            }
+        }
+
+    }
+
+}
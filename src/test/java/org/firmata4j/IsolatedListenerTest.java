@@ -0,0 +1,173 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.firmata4j.IsolatedListener.OverflowPolicy;
+import org.firmata4j.firmata.FirmataDevice;
+import org.firmata4j.firmata.FirmataPin;
+import org.firmata4j.transport.TransportInterface;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class IsolatedListenerTest {
+
+    private final FirmataDevice device = new FirmataDevice(new TransportInterface() {
+        @Override
+        public void start() throws IOException {
+
+        }
+
+        @Override
+        public void stop() throws IOException {
+
+        }
+
+        @Override
+        public void write(byte[] bytes) throws IOException {
+
+        }
+
+        @Override
+        public void setParser(Parser parser) {
+
+        }
+    });
+    private final Pin pin1 = new FirmataPin(device, (byte) 1);
+    private final Pin pin2 = new FirmataPin(device, (byte) 2);
+
+    @Test
+    public void slowListenerDoesNotBlockProducer() throws InterruptedException {
+        BlockedListener listener = new BlockedListener();
+        IsolatedListener isolated = new IsolatedListener(listener, 2, OverflowPolicy.DROP_OLDEST);
+        isolated.onValueChange(new IOEvent(pin1, 0, 0));
+        assertTrue(listener.started.await(1, TimeUnit.SECONDS));
+        for (int i = 1; i < 10; i++) {
+            isolated.onValueChange(new IOEvent(pin1, i, i));
+        }
+        assertEquals(2, isolated.getQueueSize());
+        listener.release.countDown();
+        waitForDelivery(isolated, 3);
+        assertEquals(7, isolated.getDroppedCount());
+        assertEquals(3, listener.values.size());
+        assertEquals(0L, (long) listener.values.get(0)); // was being delivered
+        assertEquals(8L, (long) listener.values.get(1));
+        assertEquals(9L, (long) listener.values.get(2));
+    }
+
+    @Test
+    public void conflationKeepsLatestChangeOfEveryPin() throws InterruptedException {
+        BlockedListener listener = new BlockedListener();
+        IsolatedListener isolated = new IsolatedListener(listener, 16, OverflowPolicy.CONFLATE);
+        isolated.onValueChange(new IOEvent(pin2, 100, 0));
+        assertTrue(listener.started.await(1, TimeUnit.SECONDS));
+        isolated.onValueChange(new IOEvent(pin1, 1, 0));
+        isolated.onValueChange(new IOEvent(pin2, 2, 0));
+        isolated.onModeChange(new IOEvent(pin1, 3, 0));
+        isolated.onValueChange(new IOEvent(pin1, 4, 0));
+        isolated.onValueChange(new IOEvent(pin2, 5, 0));
+        assertEquals(3, isolated.getQueueSize());
+        assertEquals(2, isolated.getConflatedCount());
+        listener.release.countDown();
+        waitForDelivery(isolated, 4);
+        assertEquals(0, isolated.getDroppedCount());
+        assertEquals(3, listener.values.size());
+        assertEquals(100L, (long) listener.values.get(0));
+        assertEquals(4L, (long) listener.values.get(1));
+        assertEquals(5L, (long) listener.values.get(2));
+        assertEquals(1, listener.modeChanges);
+    }
+
+    @Test
+    public void blockingPolicyDeliversAllEvents() throws InterruptedException {
+        final List<Long> values = new CopyOnWriteArrayList<>();
+        IsolatedListener isolated = new IsolatedListener(new PinEventListener() {
+            @Override
+            public void onModeChange(IOEvent event) {
+            }
+
+            @Override
+            public void onValueChange(IOEvent event) {
+                values.add(event.getValue());
+                if (event.getValue() == 3) {
+                    throw new IllegalStateException("failure of listener");
+                }
+            }
+        }, 1, OverflowPolicy.BLOCK);
+        for (int i = 0; i < 100; i++) {
+            isolated.onValueChange(new IOEvent(pin1, i, i));
+        }
+        waitForDelivery(isolated, 100);
+        assertEquals(100, values.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (long) values.get(i));
+        }
+        assertEquals(1, isolated.getFailureCount());
+        assertEquals(0, isolated.getDroppedCount());
+    }
+
+    private static void waitForDelivery(IsolatedListener isolated, long count) throws InterruptedException {
+        for (int i = 0; i < 100 && isolated.getDeliveredCount() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, isolated.getDeliveredCount());
+    }
+
+    /**
+     * Listener that blocks on the first event until it is released.
+     */
+    private static class BlockedListener implements PinEventListener {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Long> values = new CopyOnWriteArrayList<>();
+        volatile int modeChanges;
+
+        @Override
+        public void onModeChange(IOEvent event) {
+            modeChanges++;
+        }
+
+        @Override
+        public void onValueChange(IOEvent event) {
+            values.add(event.getValue());
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j;
+
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class PinHistoryTest {
+
+    @Test
+    public void keepsLatestSamples() {
+        PinHistory history = new PinHistory(4, true, 3);
+        assertEquals(64, history.getMemoryUsage());
+        for (int i = 1; i <= 6; i++) {
+            history.onValue(3, i * 10, i);
+        }
+        history.onValue(5, 1, 7); // not kept
+        assertEquals(4, history.size(3));
+        long[] times = new long[10];
+        long[] values = new long[10];
+        assertEquals(4, history.latest(3, 10, times, values));
+        assertArrayEquals(new long[] {3, 4, 5, 6}, Arrays.copyOf(times, 4));
+        assertArrayEquals(new long[] {30, 40, 50, 60}, Arrays.copyOf(values, 4));
+        assertEquals(2, history.latest(3, 2, times, values));
+        assertEquals(50, values[0]);
+        assertEquals(60, values[1]);
+    }
+
+    @Test
+    public void rangeQuery() {
+        PinHistory history = new PinHistory(8, false, 0);
+        for (int i = 0; i < 12; i++) {
+            history.onValue(0, i, i * 100);
+        }
+        long[] times = new long[8];
+        long[] values = new long[8];
+        assertEquals(3, history.range(0, 650, 900, times, values));
+        assertEquals(7, values[0]);
+        assertEquals(9, values[2]);
+        assertEquals(900, times[2]);
+        assertEquals("Overwritten samples should not be returned", 1, history.range(0, 0, 400, times, values));
+        assertEquals(4, values[0]);
+        long[] shortTimes = new long[2];
+        long[] shortValues = new long[2];
+        assertEquals(2, history.range(0, 0, Long.MAX_VALUE, shortTimes, shortValues));
+        assertEquals(4, shortValues[0]);
+        assertEquals(0, history.range(0, 1200, 1300, times, values));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownPin() {
+        new PinHistory(8, false, 0).size(1);
+    }
+
+}
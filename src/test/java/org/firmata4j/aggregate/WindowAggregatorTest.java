@@ -0,0 +1,112 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.aggregate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class WindowAggregatorTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final List<Aggregate> aggregates = new ArrayList<>();
+
+    private final AggregateListener listener = new AggregateListener() {
+        @Override
+        public void onAggregate(Aggregate aggregate) {
+            aggregates.add(aggregate);
+        }
+    };
+
+    @Test
+    public void tumblingWindows() {
+        WindowAggregator aggregator = WindowAggregator.tumbling(2, 100, TimeUnit.MILLISECONDS, listener);
+        aggregator.onValue(2, 2, 0);
+        aggregator.onValue(2, 4, 10 * MS);
+        aggregator.onValue(3, 1000, 20 * MS); // another pin
+        aggregator.onValue(2, 6, 99 * MS);
+        assertTrue(aggregates.isEmpty());
+        aggregator.onValue(2, 10, 150 * MS);
+        assertEquals(1, aggregates.size());
+        Aggregate first = aggregates.get(0);
+        assertEquals(0, first.getStart());
+        assertEquals(100 * MS, first.getEnd());
+        assertEquals(3, first.getCount());
+        assertEquals(2, first.getMin());
+        assertEquals(6, first.getMax());
+        assertEquals(12, first.getSum());
+        assertEquals(4.0, first.getMean(), 1e-9);
+        assertEquals(8.0 / 3, first.getVariance(), 1e-9);
+        aggregator.closeWindows(550 * MS);
+        assertEquals("Empty windows should not be emitted", 2, aggregates.size());
+        assertEquals(1, aggregates.get(1).getCount());
+        assertEquals(10, aggregates.get(1).getMin());
+        aggregator.onValue(2, 7, 560 * MS);
+        aggregator.closeWindows(600 * MS);
+        assertEquals(3, aggregates.size());
+        assertEquals(500 * MS, aggregates.get(2).getStart());
+        assertEquals(7, aggregates.get(2).getMax());
+    }
+
+    @Test
+    public void slidingWindows() {
+        WindowAggregator aggregator = WindowAggregator.sliding(0, 300, 100, TimeUnit.MILLISECONDS, listener);
+        aggregator.onValue(0, 1, 0);
+        aggregator.onValue(0, 3, 150 * MS);
+        aggregator.onValue(0, 5, 250 * MS);
+        aggregator.onValue(0, 11, 350 * MS);
+        assertEquals(3, aggregates.size());
+        assertEquals(1, aggregates.get(0).getCount());
+        assertEquals(2, aggregates.get(1).getCount());
+        Aggregate full = aggregates.get(2);
+        assertEquals(3, full.getCount());
+        assertEquals(3.0, full.getMean(), 1e-9);
+        assertEquals(8.0 / 3, full.getVariance(), 1e-9);
+        aggregator.closeWindows(400 * MS);
+        Aggregate shifted = aggregates.get(3);
+        assertEquals(100 * MS, shifted.getStart());
+        assertEquals(400 * MS, shifted.getEnd());
+        assertEquals(3, shifted.getCount());
+        assertEquals(3, shifted.getMin());
+        assertEquals(11, shifted.getMax());
+        assertEquals(19, shifted.getSum());
+        aggregator.closeWindows(2000 * MS);
+        assertEquals("Windows should be emitted while they contain values", 6, aggregates.size());
+        assertEquals(1, aggregates.get(5).getCount());
+        assertEquals(11, aggregates.get(5).getMin());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lengthMustBeMultipleOfStep() {
+        WindowAggregator.sliding(0, 250, 100, TimeUnit.MILLISECONDS, listener);
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.filter;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.firmata4j.filter.SignalFilter.SUPPRESS;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class SignalFilterTest {
+
+    @Test
+    public void deadband() {
+        SignalFilter filter = new Deadband(3);
+        assertEquals(100, filter.filter(100, 0));
+        assertEquals(SUPPRESS, filter.filter(102, 0));
+        assertEquals(SUPPRESS, filter.filter(98, 0));
+        assertEquals(103, filter.filter(103, 0));
+        assertEquals(SUPPRESS, filter.filter(101, 0));
+    }
+
+    @Test
+    public void movingAverage() {
+        SignalFilter filter = new MovingAverage(3);
+        assertEquals(3, filter.filter(3, 0));
+        assertEquals(6, filter.filter(9, 0));
+        assertEquals(6, filter.filter(6, 0));
+        assertEquals(9, filter.filter(12, 0));
+        filter.reset();
+        assertEquals(1, filter.filter(1, 0));
+    }
+
+    @Test
+    public void exponentialMovingAverage() {
+        SignalFilter filter = new ExponentialMovingAverage(0.5);
+        assertEquals(100, filter.filter(100, 0));
+        assertEquals(150, filter.filter(200, 0));
+        assertEquals(175, filter.filter(200, 0));
+    }
+
+    @Test
+    public void medianIgnoresSpikes() {
+        SignalFilter filter = new Median(3);
+        assertEquals(10, filter.filter(10, 0));
+        assertEquals(11, filter.filter(11, 0));
+        assertEquals(11, filter.filter(1000, 0));
+        assertEquals(12, filter.filter(12, 0));
+        assertEquals(12, filter.filter(0, 0));
+        assertEquals(12, filter.filter(13, 0));
+    }
+
+    @Test
+    public void debounceReleasesSettledValue() {
+        long period = TimeUnit.MILLISECONDS.toNanos(10);
+        SignalFilter filter = new Debounce(10, TimeUnit.MILLISECONDS);
+        assertEquals(0, filter.filter(0, 0));
+        assertEquals(-1, filter.getPendingDelay(0));
+        assertEquals(SUPPRESS, filter.filter(1, 100));
+        assertEquals(SUPPRESS, filter.filter(0, 200));
+        assertEquals(SUPPRESS, filter.filter(1, 300));
+        assertEquals(period, filter.getPendingDelay(300));
+        assertEquals(SUPPRESS, filter.release(300 + period - 1));
+        assertEquals(0, filter.getPendingDelay(300 + period));
+        assertEquals(1, filter.release(300 + period));
+        assertEquals(-1, filter.getPendingDelay(300 + period));
+        assertEquals(SUPPRESS, filter.filter(1, 400 + period));
+    }
+
+    @Test
+    public void decimation() {
+        SignalFilter filter = new Decimation(3);
+        assertEquals(1, filter.filter(1, 0));
+        assertEquals(SUPPRESS, filter.filter(2, 0));
+        assertEquals(SUPPRESS, filter.filter(3, 0));
+        assertEquals(4, filter.filter(4, 0));
+    }
+
+    @Test
+    public void chainStopsOnSuppressedValue() {
+        FilterChain chain = new FilterChain(new Debounce(10, TimeUnit.NANOSECONDS), new Deadband(5));
+        assertEquals(100, chain.apply(100, 0));
+        assertEquals(SUPPRESS, chain.apply(200, 1));
+        assertEquals(5, chain.getPendingDelay(6));
+        assertEquals(200, chain.release(11));
+        assertEquals(-1, chain.getPendingDelay(11));
+        assertEquals(SUPPRESS, chain.apply(203, 12));
+        assertEquals(SUPPRESS, chain.release(22)); // released by debounce but dropped by deadband
+    }
+
+}
@@ -0,0 +1,270 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.firmata4j.I2CEvent;
+import org.firmata4j.I2CListener;
+import org.firmata4j.Parser;
+import org.firmata4j.Pin;
+import org.firmata4j.PinValueSink;
+import org.firmata4j.transport.TransportInterface;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.firmata4j.firmata.parser.FirmataToken.*;
+import static org.junit.Assert.*;
+
+/**
+ * Guards the memory allocated while processing a message. Every kind of
+ * message has a budget of bytes per message about 1.2 times as large as the
+ * allocation measured when the budget was set. Exceeding a budget means a
+ * change made the path produce more garbage. The allocations were measured
+ * with escape analysis turned off, so the budgets hold whatever the compiler
+ * manages to eliminate.<br/>
+ * The incoming messages are counted on the parser thread and the event
+ * handling thread of the device, which they pass.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class AllocationBudgetTest {
+
+    private static final long ANALOG_MESSAGE_BUDGET = 1024;
+    private static final long DIGITAL_PORT_MESSAGE_BUDGET = 3650;
+    private static final long I2C_REPLY_BUDGET = 1720;
+    private static final long SET_VALUE_BUDGET = 176;
+
+    private static final int MESSAGES = 20000;
+    /**
+     * Rounds of messages processed before the measurement, so that the
+     * compiler has settled on the code the measurement sees.
+     */
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int MESSAGES_PER_CHUNK = 50;
+    private static final int I2C_ADDRESS = 0x3C;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    private final AtomicLong changes = new AtomicLong();
+    private Parser parser;
+    private FirmataDevice device;
+    private long[] deviceThreads;
+
+    @BeforeClass
+    public static void checkSupport() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue("The JVM does not count allocated bytes", bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        Set<Long> existing = new HashSet<>();
+        for (long id : threads.getAllThreadIds()) {
+            existing.add(id);
+        }
+        device = new FirmataDevice(new TransportInterface() {
+            @Override
+            public void start() throws IOException {
+
+            }
+
+            @Override
+            public void stop() throws IOException {
+
+            }
+
+            @Override
+            public void write(byte[] bytes) throws IOException {
+
+            }
+
+            @Override
+            public void setParser(Parser p) {
+                parser = p;
+            }
+        });
+        device.addPinValueSink(new PinValueSink() {
+            @Override
+            public void onValue(int pinIndex, long value, long nanoTime) {
+                changes.incrementAndGet();
+            }
+        });
+        device.start();
+        // pins 0 and 1 are outputs, 2-5 are digital inputs and 6-7 are analog inputs
+        parser.parse(BoardResponses.handshake(8, 2, 6));
+        device.ensureInitializationIsDone();
+        deviceThreads = startedThreads(existing);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        device.stop();
+    }
+
+    @Test
+    public void analogMessage() {
+        byte[][] chunks = new byte[2][];
+        for (int c = 0; c < chunks.length; c++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (int i = 0; i < MESSAGES_PER_CHUNK; i++) {
+                // the values differ from the initial 0 and the previous value of the channel
+                write(out, BoardResponses.analogMessage(i % 2, c * 512 + i + 1));
+            }
+            chunks[c] = out.toByteArray();
+        }
+        assertWithinBudget("analog message", ANALOG_MESSAGE_BUDGET, receive(chunks, changes, 1));
+    }
+
+    @Test
+    public void digitalPortMessage() {
+        byte[][] chunks = new byte[2][];
+        for (int c = 0; c < chunks.length; c++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (int i = 0; i < MESSAGES_PER_CHUNK; i++) {
+                // every message toggles all the 4 digital inputs
+                int value = i % 2 == 0 ? 0x3C : 0;
+                write(out, new byte[] {DIGITAL_MESSAGE, (byte) (value & 0x7F), (byte) (value >>> 7)});
+            }
+            chunks[c] = out.toByteArray();
+        }
+        assertWithinBudget("digital port message", DIGITAL_PORT_MESSAGE_BUDGET, receive(chunks, changes, 4));
+    }
+
+    @Test
+    public void i2cReply() throws IOException {
+        final AtomicLong replies = new AtomicLong();
+        device.getI2CDevice((byte) I2C_ADDRESS).subscribe(new I2CListener() {
+            @Override
+            public void onReceive(I2CEvent event) {
+                replies.incrementAndGet();
+            }
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < MESSAGES_PER_CHUNK; i++) {
+            write(out, BoardResponses.i2cReply(I2C_ADDRESS, 0x10, i, i + 1, i + 2, i + 3, i + 4, i + 5));
+        }
+        byte[] chunk = out.toByteArray();
+        assertWithinBudget("I2C reply", I2C_REPLY_BUDGET, receive(new byte[][] {chunk, chunk}, replies, 1));
+    }
+
+    @Test
+    public void setValue() throws IOException {
+        Pin pin = device.getPin(0);
+        for (int i = 0; i < WARM_UP_ROUNDS * MESSAGES; i++) {
+            pin.setValue(i % 2);
+        }
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < MESSAGES; i++) {
+            pin.setValue(i % 2);
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+        assertWithinBudget("setValue", SET_VALUE_BUDGET, (double) allocated / MESSAGES);
+    }
+
+    /**
+     * Passes the chunks to the parser in turn until the specified count of
+     * messages is received and returns the bytes allocated per message. The
+     * parsing of every chunk is awaited, so that the queue of the parser does
+     * not overflow.
+     */
+    private double receive(byte[][] chunks, AtomicLong counter, int countPerMessage) {
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            feed(chunks, counter, countPerMessage);
+        }
+        long before = allocatedBytes();
+        feed(chunks, counter, countPerMessage);
+        return (double) (allocatedBytes() - before) / MESSAGES;
+    }
+
+    private void feed(byte[][] chunks, AtomicLong counter, int countPerMessage) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        for (int i = 0; i < MESSAGES / MESSAGES_PER_CHUNK; i++) {
+            long expected = counter.get() + MESSAGES_PER_CHUNK * countPerMessage;
+            parser.parse(chunks[i % chunks.length]);
+            while (counter.get() < expected) {
+                if (System.nanoTime() > deadline) {
+                    fail("The messages have not been processed in time");
+                }
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Returns the identifiers of the parser thread and the event handling
+     * thread started along with the device.
+     */
+    private static long[] startedThreads(Set<Long> existing) {
+        List<Long> started = new ArrayList<>();
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info != null && !existing.contains(info.getThreadId())
+                    && (info.getThreadName().startsWith("firmata-parser-thread")
+                    || info.getThreadName().startsWith("firmata-event-handler"))) {
+                started.add(info.getThreadId());
+            }
+        }
+        assertEquals("The threads of the device are not found", 2, started.size());
+        long[] result = new long[started.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = started.get(i);
+        }
+        return result;
+    }
+
+    private long allocatedBytes() {
+        long result = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(deviceThreads)) {
+            if (bytes > 0) {
+                result += bytes;
+            }
+        }
+        return result;
+    }
+
+    private static void assertWithinBudget(String path, long budget, double allocated) {
+        assertTrue(String.format("%s allocates %.1f bytes per message, the budget is %d bytes", path, allocated, budget),
+                allocated <= budget);
+    }
+
+    private static void write(ByteArrayOutputStream out, byte[] message) {
+        out.write(message, 0, message.length);
+    }
+
+}
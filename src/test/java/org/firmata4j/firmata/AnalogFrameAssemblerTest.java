@@ -0,0 +1,129 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.firmata4j.AnalogFrame;
+import org.firmata4j.AnalogFrameListener;
+import org.firmata4j.Parser;
+import org.firmata4j.transport.TransportInterface;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class AnalogFrameAssemblerTest {
+
+    private Parser parser;
+    private FirmataDevice device;
+    private final BlockingQueue<AnalogFrame> frames = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        device = new FirmataDevice(new TransportInterface() {
+            @Override
+            public void start() throws IOException {
+
+            }
+
+            @Override
+            public void stop() throws IOException {
+
+            }
+
+            @Override
+            public void write(byte[] bytes) throws IOException {
+
+            }
+
+            @Override
+            public void setParser(Parser p) {
+                parser = p;
+            }
+        });
+        device.start();
+        parser.parse(BoardResponses.handshake(6, 6, 3));
+        device.ensureInitializationIsDone();
+        device.addAnalogFrameListener(new AnalogFrameListener() {
+            @Override
+            public void onAnalogFrame(AnalogFrame frame) {
+                frames.add(frame);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        device.stop();
+    }
+
+    @Test
+    public void frameCompletesWhenAllChannelsReported() throws InterruptedException {
+        parser.parse(BoardResponses.analogMessage(0, 100));
+        parser.parse(BoardResponses.analogMessage(1, 200));
+        parser.parse(BoardResponses.analogMessage(2, 300));
+        AnalogFrame frame = frames.poll(1, TimeUnit.SECONDS);
+        assertNotNull("Frame should be emitted once all the channels are reported", frame);
+        assertEquals(3, frame.getChannelCount());
+        assertEquals(100, frame.getValue(0));
+        assertEquals(200, frame.getValue(1));
+        assertEquals(300, frame.getValues()[2]);
+        assertFalse(frame.hasChannel(3));
+        assertEquals(300, device.getPin(5).getValue());
+    }
+
+    @Test
+    public void repeatedChannelStartsNewFrame() throws InterruptedException {
+        device.setAnalogFrameGap(1, TimeUnit.SECONDS);
+        parser.parse(BoardResponses.analogMessage(0, 1));
+        parser.parse(BoardResponses.analogMessage(1, 2));
+        parser.parse(BoardResponses.analogMessage(0, 3));
+        AnalogFrame frame = frames.poll(1, TimeUnit.SECONDS);
+        assertNotNull("Frame should end when a channel is reported again", frame);
+        assertEquals(2, frame.getChannelCount());
+        assertEquals(1, frame.getValue(0));
+        assertEquals(2, frame.getValue(1));
+        assertFalse(frame.hasChannel(2));
+    }
+
+    @Test
+    public void gapEndsFrame() throws InterruptedException {
+        device.setAnalogFrameGap(10, TimeUnit.MILLISECONDS);
+        parser.parse(BoardResponses.analogMessage(1, 5));
+        Thread.sleep(50);
+        parser.parse(BoardResponses.analogMessage(2, 6));
+        AnalogFrame frame = frames.poll(1, TimeUnit.SECONDS);
+        assertNotNull("Frame should end after a gap in reports", frame);
+        assertEquals(1, frame.getChannelCount());
+        assertEquals(5, frame.getValue(1));
+    }
+
+}
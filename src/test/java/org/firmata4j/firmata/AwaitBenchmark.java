@@ -0,0 +1,154 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.firmata4j.LongPredicate;
+import org.firmata4j.Parser;
+import org.firmata4j.Pin;
+import org.firmata4j.transport.TransportInterface;
+
+/**
+ * Measures how quickly threads blocked in
+ * {@link Pin#awaitValue(LongPredicate, long, TimeUnit)} are woken up when a
+ * large number of them wait at once.<br/>
+ * Every waiter waits for one of the pins to reach a value. The benchmark then
+ * steps the values of all the pins until every waiter is released.<br/>
+ * Run with {@code java org.firmata4j.firmata.AwaitBenchmark [waiters]
+ * [virtual]}. Virtual threads are used if requested and the runtime provides
+ * them, otherwise each waiter gets a platform thread.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class AwaitBenchmark {
+
+    private static final int PIN_COUNT = 16;
+    private static final int STEPS = 100;
+
+    public static void main(String[] args) throws Exception {
+        int waiters = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        boolean virtual = args.length > 1 && "virtual".equals(args[1]);
+        FirmataDevice device = startDevice();
+        ExecutorService executor = createExecutor(virtual, waiters);
+
+        final CountDownLatch ready = new CountDownLatch(waiters);
+        final CountDownLatch released = new CountDownLatch(waiters);
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong wakeUpLatency = new AtomicLong();
+        final AtomicLong[] stepTimes = new AtomicLong[STEPS + 1];
+        for (int i = 0; i < stepTimes.length; i++) {
+            stepTimes[i] = new AtomicLong();
+        }
+        for (int i = 0; i < waiters; i++) {
+            final Pin pin = device.getPin(i % PIN_COUNT);
+            final long target = 1 + i % STEPS;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ready.countDown();
+                    try {
+                        pin.awaitValue(LongPredicate.isEqual(target), 1, TimeUnit.MINUTES);
+                        wakeUpLatency.addAndGet(System.nanoTime() - stepTimes[(int) target].get());
+                    } catch (InterruptedException | TimeoutException ex) {
+                        failures.incrementAndGet();
+                    } finally {
+                        released.countDown();
+                    }
+                }
+            });
+        }
+        ready.await();
+        Thread.sleep(500); // let the waiters park
+        Runtime runtime = Runtime.getRuntime();
+        long memory = runtime.totalMemory() - runtime.freeMemory();
+
+        long start = System.nanoTime();
+        for (int step = 1; step <= STEPS; step++) {
+            stepTimes[step].set(System.nanoTime());
+            for (int p = 0; p < PIN_COUNT; p++) {
+                ((FirmataPin) device.getPin(p)).updateValue(step);
+            }
+        }
+        long stepping = System.nanoTime() - start;
+        released.await();
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        device.stop();
+
+        System.out.printf("waiters: %,d on %s threads%n", waiters, virtual ? "requested virtual" : "platform");
+        System.out.printf("heap used while waiting: %,d KB%n", memory / 1024);
+        System.out.printf("value updates: %,d in %,d us%n", STEPS * PIN_COUNT, TimeUnit.NANOSECONDS.toMicros(stepping));
+        System.out.printf("all waiters released in: %,d ms%n", TimeUnit.NANOSECONDS.toMillis(elapsed));
+        System.out.printf("average wake-up latency: %,d us%n", TimeUnit.NANOSECONDS.toMicros(wakeUpLatency.get() / waiters));
+        System.out.printf("failures: %d%n", failures.get());
+    }
+
+    private static ExecutorService createExecutor(boolean virtual, int threads) {
+        if (virtual) {
+            try {
+                // available since Java 21
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException ex) {
+                System.out.println("Virtual threads are not available, platform threads are used instead");
+            }
+        }
+        return Executors.newFixedThreadPool(threads, new DaemonThreadFactory("waiter"));
+    }
+
+    private static FirmataDevice startDevice() throws IOException, InterruptedException {
+        final Parser[] parser = new Parser[1];
+        FirmataDevice device = new FirmataDevice(new TransportInterface() {
+            @Override
+            public void start() throws IOException {
+
+            }
+
+            @Override
+            public void stop() throws IOException {
+
+            }
+
+            @Override
+            public void write(byte[] bytes) throws IOException {
+
+            }
+
+            @Override
+            public void setParser(Parser p) {
+                parser[0] = p;
+            }
+        });
+        device.start();
+        parser[0].parse(BoardResponses.handshake(PIN_COUNT, 0));
+        device.ensureInitializationIsDone();
+        return device;
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.io.ByteArrayOutputStream;
+import static org.firmata4j.firmata.parser.FirmataToken.*;
+
+/**
+ * Builds messages that a Firmata board sends in response to the requests of
+ * {@link FirmataDevice}.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+class BoardResponses {
+
+    private BoardResponses() {
+    }
+
+    /**
+     * Builds the responses of a board to the initialization requests. The
+     * board has the specified number of digital pins. The pins from
+     * {@code firstInput} are in input mode, the others are in output mode.
+     *
+     * @param pinCount count of pins
+     * @param firstInput index of the first pin in input mode
+     * @return the responses
+     */
+    static byte[] handshake(int pinCount, int firstInput) {
+        return handshake(pinCount, firstInput, pinCount);
+    }
+
+    /**
+     * Builds the responses of a board to the initialization requests. The
+     * pins from {@code firstAnalog} are in analog mode and report analog
+     * channels starting from 0.
+     *
+     * @param pinCount count of pins
+     * @param firstInput index of the first pin in input mode
+     * @param firstAnalog index of the first pin in analog mode
+     * @return the responses
+     */
+    static byte[] handshake(int pinCount, int firstInput, int firstAnalog) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(START_SYSEX);
+        out.write(REPORT_FIRMWARE);
+        out.write(2);
+        out.write(5);
+        for (char c : "Test".toCharArray()) {
+            out.write(c & 0x7F);
+            out.write(c >>> 7);
+        }
+        out.write(END_SYSEX);
+        out.write(START_SYSEX);
+        out.write(CAPABILITY_RESPONSE);
+        for (int i = 0; i < pinCount; i++) {
+            out.write(PIN_MODE_INPUT);
+            out.write(1);
+            out.write(PIN_MODE_OUTPUT);
+            out.write(1);
+            out.write(PIN_MODE_PWM);
+            out.write(8);
+            if (i >= firstAnalog) {
+                out.write(PIN_MODE_ANALOG);
+                out.write(10);
+            }
+            out.write(127);
+        }
+        out.write(END_SYSEX);
+        for (int i = 0; i < pinCount; i++) {
+            byte mode = i >= firstAnalog ? PIN_MODE_ANALOG : i < firstInput ? PIN_MODE_OUTPUT : PIN_MODE_INPUT;
+            byte[] state = pinState(i, mode, 0);
+            out.write(state, 0, state.length);
+        }
+        out.write(START_SYSEX);
+        out.write(ANALOG_MAPPING_RESPONSE);
+        for (int i = 0; i < pinCount; i++) {
+            out.write(i >= firstAnalog ? i - firstAnalog : 127);
+        }
+        out.write(END_SYSEX);
+        return out.toByteArray();
+    }
+
+    /**
+     * Builds a pin state response.
+     *
+     * @param pinId index of the pin
+     * @param mode mode of the pin
+     * @param value value of the pin
+     * @return the response
+     */
+    static byte[] pinState(int pinId, byte mode, long value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(START_SYSEX);
+        out.write(PIN_STATE_RESPONSE);
+        out.write(pinId);
+        out.write(mode);
+        do {
+            out.write((int) (value & 0x7F));
+            value >>>= 7;
+        } while (value > 0);
+        out.write(END_SYSEX);
+        return out.toByteArray();
+    }
+
+    /**
+     * Builds an analog message.
+     *
+     * @param channel the analog channel
+     * @param value value of the channel
+     * @return the message
+     */
+    static byte[] analogMessage(int channel, int value) {
+        return new byte[] {(byte) (ANALOG_MESSAGE | channel), (byte) (value & 0x7F), (byte) (value >>> 7)};
+    }
+
+    /**
+     * Builds a reply of an I2C device.
+     *
+     * @param address address of the I2C device
+     * @param register the register the data has been read from
+     * @param data the data
+     * @return the reply
+     */
+    static byte[] i2cReply(int address, int register, int... data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(START_SYSEX);
+        out.write(I2C_REPLY);
+        out.write(address & 0x7F);
+        out.write(address >>> 7);
+        out.write(register & 0x7F);
+        out.write(register >>> 7);
+        for (int b : data) {
+            out.write(b & 0x7F);
+            out.write(b >>> 7);
+        }
+        out.write(END_SYSEX);
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.firmata4j.Parser;
+import org.firmata4j.Pin;
+import org.firmata4j.PinGroup;
+import org.firmata4j.PinGroupEvent;
+import org.firmata4j.PinGroupEventListener;
+import org.firmata4j.transport.TransportInterface;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.firmata4j.firmata.parser.FirmataToken.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class FirmataPinGroupTest {
+
+    private static final int PIN_COUNT = 16;
+    private static final int FIRST_INPUT = 12;
+
+    private final List<byte[]> written = new CopyOnWriteArrayList<>();
+    private Parser parser;
+    private FirmataDevice device;
+
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        device = new FirmataDevice(new TransportInterface() {
+            @Override
+            public void start() throws IOException {
+
+            }
+
+            @Override
+            public void stop() throws IOException {
+
+            }
+
+            @Override
+            public void write(byte[] bytes) throws IOException {
+                written.add(bytes);
+            }
+
+            @Override
+            public void setParser(Parser p) {
+                parser = p;
+            }
+        });
+        device.start();
+        parser.parse(BoardResponses.handshake(PIN_COUNT, FIRST_INPUT));
+        device.ensureInitializationIsDone();
+        written.clear();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        device.stop();
+    }
+
+    @Test
+    public void writeGroupWithMessagePerPort() throws IOException {
+        PinGroup group = device.createPinGroup(6, 7, 8, 9);
+        final AtomicInteger events = new AtomicInteger();
+        group.addEventListener(new PinGroupEventListener() {
+            @Override
+            public void onValueChange(PinGroupEvent event) {
+                events.incrementAndGet();
+            }
+        });
+        group.setValue(0b1011);
+        assertEquals("One message per port is expected", 2, written.size());
+        assertArrayEquals(FirmataMessageFactory.setDigitalPinValue((byte) 0, (byte) 0xC0), written.get(0));
+        assertArrayEquals(FirmataMessageFactory.setDigitalPinValue((byte) 1, (byte) 0x02), written.get(1));
+        assertEquals(0b1011, group.getValue());
+        assertEquals(1, device.getPin(6).getValue());
+        assertEquals(0, device.getPin(8).getValue());
+        assertEquals("Listener should be notified once per group update", 1, events.get());
+        device.getPin(0).setValue(1);
+        assertArrayEquals(FirmataMessageFactory.setDigitalPinValue((byte) 0, (byte) 0xC1), written.get(2));
+        assertEquals("Change of another pin of the port does not affect the group", 1, events.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void writeGroupWithInputPin() throws IOException {
+        device.createPinGroup(10, 11, 12).setValue(7);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createGroupWithDuplicatePin() {
+        device.createPinGroup(1, 2, 1);
+    }
+
+    @Test
+    public void readGroupFromPortMessage() throws InterruptedException {
+        PinGroup group = device.createPinGroup(12, 13, 14, 15);
+        final AtomicInteger events = new AtomicInteger();
+        final AtomicInteger lastValue = new AtomicInteger();
+        group.addEventListener(new PinGroupEventListener() {
+            @Override
+            public void onValueChange(PinGroupEvent event) {
+                lastValue.set((int) event.getValue());
+                events.incrementAndGet();
+            }
+        });
+        int portValue = 0b0101 << 4 | 0x03; // bits of output pins should be ignored
+        parser.parse(new byte[]{(byte) (DIGITAL_MESSAGE | 1), (byte) (portValue & 0x7F), (byte) (portValue >>> 7)});
+        for (int i = 0; i < 20 && events.get() == 0; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals("Listener should be notified once per port message", 1, events.get());
+        assertEquals(0b0101, lastValue.get());
+        assertEquals(0b0101, group.getValue());
+        assertEquals(0, device.createPinGroup(8, 9).getValue());
+        assertEquals(1, device.getPin(12).getValue());
+    }
+
+    @Test
+    public void formerInputPinDoesNotKeepReportedLevel() throws IOException, InterruptedException {
+        parser.parse(new byte[]{(byte) (DIGITAL_MESSAGE | 1), (byte) (1 << 4), 0});
+        for (int i = 0; i < 20 && device.getPin(12).getValue() == 0; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, device.getPin(12).getValue());
+        device.getPin(12).setMode(Pin.Mode.OUTPUT);
+        assertEquals(0, device.getPin(12).getValue());
+        written.clear();
+        device.getPin(8).setValue(1);
+        assertArrayEquals(FirmataMessageFactory.setDigitalPinValue((byte) 1, (byte) 0x01), written.get(0));
+        device.getPin(12).setValue(1);
+        assertArrayEquals(FirmataMessageFactory.setDigitalPinValue((byte) 1, (byte) 0x11), written.get(1));
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.firmata4j.Parser;
+import org.firmata4j.Pin;
+import org.firmata4j.PinStateFuture;
+import org.firmata4j.transport.TransportInterface;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.firmata4j.firmata.parser.FirmataToken.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class FirmataPinStateFutureTest {
+
+    private final List<byte[]> written = new CopyOnWriteArrayList<>();
+    private Parser parser;
+    private FirmataDevice device;
+
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        device = new FirmataDevice(new TransportInterface() {
+            @Override
+            public void start() throws IOException {
+
+            }
+
+            @Override
+            public void stop() throws IOException {
+
+            }
+
+            @Override
+            public void write(byte[] bytes) throws IOException {
+                written.add(bytes);
+            }
+
+            @Override
+            public void setParser(Parser p) {
+                parser = p;
+            }
+        });
+        device.start();
+        parser.parse(BoardResponses.handshake(8, 4));
+        device.ensureInitializationIsDone();
+        written.clear();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        device.stop();
+    }
+
+    @Test
+    public void valueIsConfirmedByPinState() throws Exception {
+        PinStateFuture future = device.getPin(2).setValueAsync(1);
+        assertArrayEquals(FirmataMessageFactory.pinStateRequest((byte) 2), written.get(written.size() - 1));
+        assertFalse(future.isDone());
+        assertEquals(-1, future.getLatency(TimeUnit.NANOSECONDS));
+        parser.parse(BoardResponses.pinState(3, PIN_MODE_OUTPUT, 1)); // another pin
+        parser.parse(BoardResponses.pinState(2, PIN_MODE_OUTPUT, 1));
+        assertEquals(Long.valueOf(1), future.get(1, TimeUnit.SECONDS));
+        assertEquals(Pin.Mode.OUTPUT, future.getMode());
+        assertTrue(future.getLatency(TimeUnit.NANOSECONDS) >= 0);
+    }
+
+    @Test
+    public void modeIsConfirmedByPinState() throws Exception {
+        PinStateFuture future = device.getPin(1).setModeAsync(Pin.Mode.PWM);
+        parser.parse(BoardResponses.pinState(1, PIN_MODE_OUTPUT, 0)); // stale state
+        parser.parse(BoardResponses.pinState(1, PIN_MODE_PWM, 0));
+        future.get(1, TimeUnit.SECONDS);
+        assertEquals(Pin.Mode.PWM, future.getMode());
+    }
+
+    @Test
+    public void unconfirmedChangeTimesOut() throws Exception {
+        device.setPinStateConfirmationTimeout(100, TimeUnit.MILLISECONDS);
+        PinStateFuture future = device.getPin(2).setValueAsync(1);
+        parser.parse(BoardResponses.pinState(2, PIN_MODE_OUTPUT, 0));
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Change reported with another value must not be confirmed");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof TimeoutException);
+        }
+    }
+
+    @Test
+    public void fullWindowBlocksChanges() throws IOException {
+        device.setPinStateConfirmationWindow(1);
+        device.setPinStateConfirmationTimeout(100, TimeUnit.MILLISECONDS);
+        PinStateFuture first = device.getPin(1).setValueAsync(1);
+        PinStateFuture second = device.getPin(2).setValueAsync(1);
+        assertTrue("The change should wait for a free slot", first.isDone());
+        assertFalse(second.isDone());
+    }
+
+    @Test
+    public void windowSlotIsReleasedOnConfirmation() throws Exception {
+        device.setPinStateConfirmationWindow(1);
+        device.setPinStateConfirmationTimeout(1, TimeUnit.SECONDS);
+        PinStateFuture first = device.getPin(1).setValueAsync(1);
+        parser.parse(BoardResponses.pinState(1, PIN_MODE_OUTPUT, 1));
+        first.get(1, TimeUnit.SECONDS);
+        PinStateFuture second = device.getPin(2).setValueAsync(1);
+        assertFalse(second.isDone());
+    }
+
+}
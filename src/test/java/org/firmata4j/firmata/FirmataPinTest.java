@@ -0,0 +1,452 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.firmata4j.DeviceSnapshot;
+import org.firmata4j.I2CDevice;
+import org.firmata4j.IOEvent;
+import org.firmata4j.LongPredicate;
+import org.firmata4j.OnStartListener;
+import org.firmata4j.OnStopListener;
+import org.firmata4j.Parser;
+import org.firmata4j.Pin;
+import org.firmata4j.PinEventListener;
+import org.firmata4j.PinSample;
+import org.firmata4j.PinValueSink;
+import org.firmata4j.filter.Deadband;
+import org.firmata4j.filter.Debounce;
+import org.firmata4j.flow.Subscriber;
+import org.firmata4j.flow.Subscription;
+import org.firmata4j.transport.TransportInterface;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import static org.firmata4j.firmata.parser.FirmataToken.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class FirmataPinTest {
+
+    private final List<byte[]> written = Collections.synchronizedList(new ArrayList<byte[]>());
+    private Parser parser;
+    private FirmataDevice device;
+
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        device = new FirmataDevice(new TransportInterface() {
+            @Override
+            public void start() throws IOException {
+
+            }
+
+            @Override
+            public void stop() throws IOException {
+
+            }
+
+            @Override
+            public void write(byte[] bytes) throws IOException {
+                written.add(bytes);
+            }
+
+            @Override
+            public void setParser(Parser p) {
+                parser = p;
+            }
+        });
+        device.start();
+        parser.parse(BoardResponses.handshake(8, 8));
+        device.ensureInitializationIsDone();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        device.stop();
+    }
+
+    @Test
+    public void listenerRemovesItselfOnNotification() throws IOException {
+        final Pin pin = device.getPin(3);
+        final AtomicInteger notifications = new AtomicInteger();
+        pin.addEventListener(new PinEventAdapter() {
+            @Override
+            public void onValueChange(IOEvent event) {
+                notifications.incrementAndGet();
+                pin.removeEventListener(this);
+            }
+        });
+        pin.addEventListener(new PinEventAdapter());
+        pin.setValue(1);
+        pin.setValue(0);
+        assertEquals(1, notifications.get());
+    }
+
+    @Test
+    public void slowListenerDoesNotBlockValueChange() throws Exception {
+        final Pin pin = device.getPin(3);
+        final CountDownLatch notified = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        pin.addEventListener(new PinEventAdapter() {
+            @Override
+            public void onValueChange(IOEvent event) {
+                if (event.getValue() == 1) {
+                    notified.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+        Thread slow = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pin.setValue(1);
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        });
+        slow.start();
+        assertTrue(notified.await(1, TimeUnit.SECONDS));
+        final CountDownLatch changed = new CountDownLatch(1);
+        Thread fast = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pin.setValue(0);
+                    changed.countDown();
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        });
+        fast.start();
+        assertTrue("Value should be changed while the listener is busy", changed.await(1, TimeUnit.SECONDS));
+        assertEquals(0, pin.getValue());
+        release.countDown();
+        slow.join();
+    }
+
+    @Test
+    public void concurrentWritersKeepValueInLineWithBoard() throws Exception {
+        Pin digital = device.getPin(3);
+        digital.setMode(Pin.Mode.OUTPUT);
+        Pin pwm = device.getPin(4);
+        pwm.setMode(Pin.Mode.PWM);
+        for (int round = 0; round < 10; round++) {
+            race(digital, true);
+            byte[] port = lastMessage((byte) DIGITAL_MESSAGE);
+            assertEquals("The board got another value than the pin holds", digital.getValue(), (port[1] >>> 3) & 1);
+            race(pwm, false);
+            byte[] analog = lastMessage((byte) (ANALOG_MESSAGE | 4));
+            assertEquals("The board got another value than the pin holds", pwm.getValue(), analog[1] | (analog[2] << 7));
+        }
+    }
+
+    /**
+     * Makes two threads set values of the pin at once. A digital pin gets
+     * alternating values, other pins get a distinct value on every call.
+     */
+    private void race(final Pin pin, final boolean digital) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[2];
+        for (int i = 0; i < threads.length; i++) {
+            final int offset = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < 5000; j++) {
+                            pin.setValue(digital ? (j + offset) % 2 : 1 + j * 2 + offset);
+                        }
+                    } catch (IOException | InterruptedException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Finds the last message with the status byte among the written bytes.
+     */
+    private byte[] lastMessage(byte status) {
+        synchronized (written) {
+            for (int i = written.size() - 1; i >= 0; i--) {
+                byte[] bytes = written.get(i);
+                for (int j = bytes.length - 3; j >= 0; j--) {
+                    if (bytes[j] == status) {
+                        return Arrays.copyOfRange(bytes, j, j + 3);
+                    }
+                }
+            }
+        }
+        throw new AssertionError("No message has been sent");
+    }
+
+    @Test
+    public void sinkReceivesValues() throws IOException {
+        final List<Long> values = new ArrayList<>();
+        final AtomicLong lastTime = new AtomicLong(System.nanoTime());
+        PinValueSink sink = new PinValueSink() {
+            @Override
+            public void onValue(int pinIndex, long value, long nanoTime) {
+                assertEquals(5, pinIndex);
+                assertTrue(nanoTime >= lastTime.getAndSet(nanoTime));
+                values.add(value);
+            }
+        };
+        device.addPinValueSink(sink);
+        device.addPinValueSink(sink);
+        Pin pin = device.getPin(5);
+        pin.setValue(1);
+        pin.setValue(1);
+        pin.setValue(0);
+        device.removePinValueSink(sink);
+        pin.setValue(1);
+        assertEquals(Arrays.asList(1L, 0L), values);
+    }
+
+    @Test
+    public void noEventIsBuiltForSinksOnly() {
+        final AtomicLong received = new AtomicLong();
+        device.addPinValueSink(new PinValueSink() {
+            @Override
+            public void onValue(int pinIndex, long value, long nanoTime) {
+                received.incrementAndGet();
+            }
+        });
+        device.addEventListener(new OnStartListener() {
+            @Override
+            public void accept(IOEvent event) {
+            }
+        });
+        device.addEventListener(new OnStopListener() {
+            @Override
+            public void accept(IOEvent event) {
+            }
+        });
+        assertFalse("The device has no listeners of the changes of pins", device.hasEventListeners());
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        FirmataPin pin = (FirmataPin) device.getPin(6);
+        for (int i = 0; i < 10000; i++) {
+            pin.receiveValue((i + 1) % 2);
+        }
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < 10000; i++) {
+            pin.receiveValue((i + 1) % 2);
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+        assertEquals(20000, received.get());
+        assertTrue(String.format("%d bytes allocated per change, an event takes more", allocated / 10000), allocated / 10000 < 16);
+    }
+
+    @Test
+    public void publisherDeliversRequestedSamples() throws IOException {
+        final List<PinSample> samples = new ArrayList<>();
+        final Subscription[] subscription = new Subscription[1];
+        device.getPin(4).getPublisher().subscribe(new Subscriber<PinSample>() {
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription[0] = s;
+            }
+
+            @Override
+            public void onNext(PinSample item) {
+                samples.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        device.getPin(3).setValue(1);
+        device.getPin(4).setValue(1);
+        device.getPin(4).setValue(0);
+        assertTrue(samples.isEmpty());
+        subscription[0].request(1);
+        assertEquals(1, samples.size());
+        assertEquals(4, samples.get(0).getPinIndex());
+        assertEquals(1, samples.get(0).getValue());
+    }
+
+    @Test
+    public void awaitValueWakesUpOnMatchingValue() throws Exception {
+        final Pin pin = device.getPin(6);
+        assertEquals(0, pin.awaitValue(LongPredicate.isEqual(0), 1, TimeUnit.MILLISECONDS));
+        final long[] result = new long[1];
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result[0] = pin.awaitValue(LongPredicate.isEqual(1), 2, TimeUnit.SECONDS);
+                } catch (InterruptedException | TimeoutException ex) {
+                    result[0] = -1;
+                }
+            }
+        });
+        waiter.start();
+        Thread.sleep(50);
+        pin.setValue(1);
+        waiter.join(2000);
+        assertEquals(1, result[0]);
+    }
+
+    @Test
+    public void sampleSinkReceivesRepeatedValues() {
+        final List<Long> samples = new ArrayList<>();
+        final List<Long> changes = new ArrayList<>();
+        device.addPinSampleSink(new PinValueSink() {
+            @Override
+            public void onValue(int pinIndex, long value, long nanoTime) {
+                samples.add(value);
+            }
+        });
+        device.addPinValueSink(new PinValueSink() {
+            @Override
+            public void onValue(int pinIndex, long value, long nanoTime) {
+                changes.add(value);
+            }
+        });
+        FirmataPin pin = (FirmataPin) device.getPin(2);
+        pin.receiveValue(0);
+        pin.receiveValue(0);
+        pin.receiveValue(1);
+        pin.receiveValue(1);
+        assertEquals(Arrays.asList(0L, 0L, 1L, 1L), samples);
+        assertEquals(Arrays.asList(1L), changes);
+    }
+
+    @Test
+    public void filtersApplyToReceivedValues() throws Exception {
+        FirmataPin pin = (FirmataPin) device.getPin(2);
+        pin.setFilters(new Debounce(20, TimeUnit.MILLISECONDS), new Deadband(1));
+        pin.receiveValue(0);
+        pin.receiveValue(1);
+        pin.receiveValue(0);
+        pin.receiveValue(1);
+        assertEquals("Bouncing value should be held back", 0, pin.getValue());
+        assertEquals("Settled value should be released without new readings",
+                1, pin.awaitValue(LongPredicate.isEqual(1), 1, TimeUnit.SECONDS));
+        pin.setFilters();
+        pin.receiveValue(0);
+        assertEquals(0, pin.getValue());
+    }
+
+    @Test
+    public void snapshotReflectsPinState() throws IOException {
+        DeviceSnapshot snapshot = new DeviceSnapshot(device);
+        assertTrue(snapshot.refresh());
+        assertEquals(8, snapshot.getPinsCount());
+        assertEquals(Pin.Mode.OUTPUT, snapshot.getMode(3));
+        assertEquals(0, snapshot.getValue(3));
+        assertFalse("Version should not change without updates", snapshot.refresh());
+        device.getPin(3).setValue(1);
+        device.getPin(5).setMode(Pin.Mode.INPUT);
+        assertTrue(snapshot.refresh());
+        assertEquals(1, snapshot.getValue(3));
+        assertEquals(Pin.Mode.INPUT, snapshot.getMode(5));
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void awaitChangeTimesOut() throws Exception {
+        device.getPin(6).awaitChange(50, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void i2cReadsGetRepliesInOrder() throws Exception {
+        final I2CDevice i2c = device.getI2CDevice((byte) 0x3C);
+        final byte[][] results = new byte[2][];
+        Thread[] readers = new Thread[2];
+        for (int i = 0; i < readers.length; i++) {
+            final int index = i;
+            readers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        results[index] = i2c.read(0x10, (byte) 1, 2, TimeUnit.SECONDS);
+                    } catch (IOException | InterruptedException | TimeoutException ex) {
+                        results[index] = null;
+                    }
+                }
+            });
+            readers[i].start();
+            Thread.sleep(50);
+        }
+        parser.parse(BoardResponses.i2cReply(0x3C, 0x10, 7));
+        parser.parse(BoardResponses.i2cReply(0x3C, 0x10, 8));
+        for (Thread reader : readers) {
+            reader.join(2000);
+        }
+        assertArrayEquals(new byte[]{7}, results[0]);
+        assertArrayEquals(new byte[]{8}, results[1]);
+    }
+
+    private static class PinEventAdapter implements PinEventListener {
+
+        @Override
+        public void onModeChange(IOEvent event) {
+        }
+
+        @Override
+        public void onValueChange(IOEvent event) {
+        }
+
+    }
+
+}
@@ -0,0 +1,282 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.firmata4j.IODeviceEventListener;
+import org.firmata4j.IOEvent;
+import org.firmata4j.Pin;
+import org.firmata4j.PinValueSink;
+import org.firmata4j.transport.SignalGenerator;
+import org.firmata4j.transport.SimulatedBoard;
+
+/**
+ * Measures how a growing fleet of {@link FirmataDevice}s on
+ * {@link SimulatedBoard}s loads a single JVM.<br/>
+ * Every board has 12 digital inputs with square signals and 6 analog inputs
+ * with sawtooth signals. Every device has the specified count of
+ * {@link IODeviceEventListener}s. For every size of the fleet the benchmark
+ * reports throughput of the pin values, percentiles of the latency between
+ * sampling of the first analog input on the board and delivering its value
+ * by the device, count of live threads, allocation rate, garbage collections
+ * and the chunks of bytes dropped by the parsers.<br/>
+ * Run with
+ * {@code mvn -P benchmark verify -Dbenchmark.args="[boards,...] [listeners] [interval in microseconds] [seconds]"}
+ * or {@code java org.firmata4j.firmata.FleetBenchmark} with the same
+ * arguments.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class FleetBenchmark {
+
+    private static final int DIGITAL_PINS = 14;
+    private static final int ANALOG_INPUTS = 6;
+    private static final int LATENCY_PIN = DIGITAL_PINS;
+    private static final long WARM_UP = TimeUnit.SECONDS.toMillis(1);
+
+    public static void main(String[] args) throws Exception {
+        // every dropped chunk is logged otherwise
+        System.setProperty("org.slf4j.simpleLogger.log.org.firmata4j.firmata.parser.FirmataParser", "error");
+        String[] fleet = (args.length > 0 ? args[0] : "1,2,4,8,16,32").split(",");
+        int listeners = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        long interval = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        long seconds = args.length > 3 ? Long.parseLong(args[3]) : 5;
+        System.out.printf("%d listeners per device, sampling interval %d us, %d s per run%n", listeners, interval, seconds);
+        System.out.printf("%6s %12s %9s %9s %9s %9s %8s %10s %6s %8s%n",
+                "boards", "values/s", "p50 us", "p99 us", "p99.9 us", "max us", "threads", "alloc MB/s", "GCs", "dropped");
+        for (String boards : fleet) {
+            run(Integer.parseInt(boards.trim()), listeners, interval, seconds);
+        }
+    }
+
+    private static void run(int boards, int listeners, long interval, long seconds) throws Exception {
+        final AtomicLong values = new AtomicLong();
+        final AtomicLong events = new AtomicLong();
+        final Latency latency = new Latency();
+        List<FirmataDevice> devices = new ArrayList<>();
+        for (int i = 0; i < boards; i++) {
+            SimulatedBoard board = new SimulatedBoard(DIGITAL_PINS, ANALOG_INPUTS);
+            final StampedSignal stamped = new StampedSignal();
+            board.setSignal(LATENCY_PIN, stamped);
+            for (int pin = LATENCY_PIN + 1; pin < DIGITAL_PINS + ANALOG_INPUTS; pin++) {
+                board.setSignal(pin, SignalGenerator.sawtooth(0, 1023, 50 + pin, TimeUnit.MILLISECONDS));
+            }
+            for (int pin = 2; pin < DIGITAL_PINS; pin++) {
+                board.setSignal(pin, SignalGenerator.square(0, 1, 10 + pin, TimeUnit.MILLISECONDS));
+            }
+            board.setSamplingInterval(interval, TimeUnit.MICROSECONDS);
+            FirmataDevice device = new FirmataDevice(board);
+            device.addPinValueSink(new PinValueSink() {
+                @Override
+                public void onValue(int pinIndex, long value, long nanoTime) {
+                    values.incrementAndGet();
+                    if (pinIndex == LATENCY_PIN) {
+                        latency.record(stamped.latency(value, nanoTime));
+                    }
+                }
+            });
+            for (int j = 0; j < listeners; j++) {
+                device.addEventListener(new CountingListener(events));
+            }
+            device.start();
+            devices.add(device);
+        }
+        for (FirmataDevice device : devices) {
+            device.ensureInitializationIsDone();
+            for (int pin = 2; pin < DIGITAL_PINS; pin++) {
+                device.getPin(pin).setMode(Pin.Mode.INPUT);
+            }
+        }
+        Thread.sleep(WARM_UP);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        latency.reset();
+        long startValues = values.get();
+        long startDropped = dropped(devices);
+        long startAllocated = allocated(threads);
+        long startCollections = collections();
+        long start = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        long elapsed = System.nanoTime() - start;
+        long received = values.get() - startValues;
+        long allocated = allocated(threads) - startAllocated;
+        long collections = collections() - startCollections;
+        long droppedChunks = dropped(devices) - startDropped;
+        int threadCount = threads.getThreadCount();
+        for (FirmataDevice device : devices) {
+            device.stop();
+        }
+        System.out.printf("%6d %12.0f %9d %9d %9d %9d %8d %10.1f %6d %8d%n",
+                boards, received * 1e9 / elapsed,
+                latency.percentile(0.5), latency.percentile(0.99), latency.percentile(0.999), latency.max(),
+                threadCount, allocated < 0 ? Double.NaN : allocated * 1e9 / elapsed / (1 << 20),
+                collections, droppedChunks);
+    }
+
+    private static long dropped(List<FirmataDevice> devices) {
+        long result = 0;
+        for (FirmataDevice device : devices) {
+            result += device.getDroppedChunkCount();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the bytes allocated by the live threads or -1 if the JVM does
+     * not count them.
+     */
+    private static long allocated(ThreadMXBean threads) {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        long result = 0;
+        for (long bytes : ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                result += bytes;
+            }
+        }
+        return result;
+    }
+
+    private static long collections() {
+        long result = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(0, collector.getCollectionCount());
+        }
+        return result;
+    }
+
+    /**
+     * Signal that returns the number of the sample and remembers when the
+     * sample was taken. The number wraps at the resolution of an analog input,
+     * so the latency is measured correctly while the device lags less than
+     * 1024 samples behind the board.
+     */
+    private static class StampedSignal extends SignalGenerator {
+
+        private static final int SAMPLES = 1024;
+
+        private final AtomicLongArray stamps = new AtomicLongArray(SAMPLES);
+        private int counter;
+
+        @Override
+        public long valueAt(long nanoTime) {
+            int sample = counter++ % SAMPLES;
+            stamps.set(sample, System.nanoTime());
+            return sample;
+        }
+
+        long latency(long value, long nanoTime) {
+            return nanoTime - stamps.get((int) value);
+        }
+
+    }
+
+    /**
+     * Histogram of latencies with buckets of 10 microseconds up to a second.
+     */
+    private static class Latency {
+
+        private static final long BUCKET = TimeUnit.MICROSECONDS.toNanos(10);
+        private static final int BUCKETS = 100000;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long latency) {
+            buckets.incrementAndGet((int) Math.min(BUCKETS - 1, Math.max(0, latency / BUCKET)));
+            long current = max.get();
+            while (latency > current && !max.compareAndSet(current, latency)) {
+                current = max.get();
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            max.set(0);
+        }
+
+        /**
+         * Returns the upper bound of the bucket that holds the percentile in
+         * microseconds.
+         */
+        long percentile(double fraction) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += buckets.get(i);
+            }
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank && seen > 0) {
+                    return TimeUnit.NANOSECONDS.toMicros((i + 1) * BUCKET);
+                }
+            }
+            return 0;
+        }
+
+        long max() {
+            return TimeUnit.NANOSECONDS.toMicros(max.get());
+        }
+
+    }
+
+    private static class CountingListener implements IODeviceEventListener {
+
+        private final AtomicLong events;
+
+        CountingListener(AtomicLong events) {
+            this.events = events;
+        }
+
+        @Override
+        public void onStart(IOEvent event) {
+        }
+
+        @Override
+        public void onStop(IOEvent event) {
+        }
+
+        @Override
+        public void onPinChange(IOEvent event) {
+            events.incrementAndGet();
+        }
+
+        @Override
+        public void onMessageReceive(IOEvent event, String message) {
+        }
+
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.firmata4j.IOEvent;
+import org.firmata4j.Parser;
+import org.firmata4j.PinEventListener;
+import org.firmata4j.transport.TransportInterface;
+
+/**
+ * Measures how fast pin values are published when several threads update
+ * pins while listeners are being added and removed and one of the listeners
+ * is slow.<br/>
+ * Run with {@code java org.firmata4j.firmata.ListenerContentionBenchmark
+ * [threads] [seconds] [slow listener delay in microseconds]}.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class ListenerContentionBenchmark {
+
+    private static final int PIN_COUNT = 16;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        final long slowDelay = TimeUnit.MICROSECONDS.toNanos(args.length > 2 ? Long.parseLong(args[2]) : 100);
+        final FirmataDevice device = startDevice();
+
+        final FirmataPin slowPin = (FirmataPin) device.getPin(0);
+        slowPin.addEventListener(new PinEventListener() {
+            @Override
+            public void onModeChange(IOEvent event) {
+            }
+
+            @Override
+            public void onValueChange(IOEvent event) {
+                long until = System.nanoTime() + slowDelay;
+                while (System.nanoTime() < until) {
+                    // the listener does some heavy work
+                }
+            }
+        });
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong updates = new AtomicLong();
+        final AtomicLong slowUpdates = new AtomicLong();
+        final AtomicLong churns = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final CountDownLatch finished = new CountDownLatch(threads + 2);
+
+        for (int t = 0; t < threads; t++) {
+            final FirmataPin pin = (FirmataPin) device.getPin(1 + t % (PIN_COUNT - 1));
+            start(new Runnable() {
+                @Override
+                public void run() {
+                    long value = 0;
+                    long count = 0;
+                    while (running.get()) {
+                        pin.updateValue(value++);
+                        count++;
+                    }
+                    updates.addAndGet(count);
+                }
+            }, finished, failures);
+        }
+        start(new Runnable() {
+            @Override
+            public void run() {
+                long value = 0;
+                while (running.get()) {
+                    slowPin.updateValue(value++);
+                    slowUpdates.incrementAndGet();
+                }
+            }
+        }, finished, failures);
+        start(new Runnable() {
+            @Override
+            public void run() {
+                PinEventListener listener = new PinEventListener() {
+                    @Override
+                    public void onModeChange(IOEvent event) {
+                    }
+
+                    @Override
+                    public void onValueChange(IOEvent event) {
+                    }
+                };
+                while (running.get()) {
+                    for (int i = 0; i < PIN_COUNT; i++) {
+                        device.getPin(i).addEventListener(listener);
+                        device.getPin(i).removeEventListener(listener);
+                    }
+                    churns.incrementAndGet();
+                }
+            }
+        }, finished, failures);
+
+        TimeUnit.SECONDS.sleep(seconds);
+        running.set(false);
+        finished.await();
+        device.stop();
+
+        System.out.printf("threads: %d, duration: %d s, slow listener: %d us%n", threads, seconds, TimeUnit.NANOSECONDS.toMicros(slowDelay));
+        System.out.printf("updates of regular pins: %,d (%,d per second)%n", updates.get(), updates.get() / seconds);
+        System.out.printf("updates of the pin with slow listener: %,d%n", slowUpdates.get());
+        System.out.printf("listener registration rounds: %,d%n", churns.get());
+        System.out.printf("failures: %d%n", failures.get());
+    }
+
+    private static void start(final Runnable task, final CountDownLatch finished, final AtomicLong failures) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    failures.incrementAndGet();
+                    ex.printStackTrace();
+                } finally {
+                    finished.countDown();
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static FirmataDevice startDevice() throws IOException, InterruptedException {
+        final Parser[] parser = new Parser[1];
+        FirmataDevice device = new FirmataDevice(new TransportInterface() {
+            @Override
+            public void start() throws IOException {
+
+            }
+
+            @Override
+            public void stop() throws IOException {
+
+            }
+
+            @Override
+            public void write(byte[] bytes) throws IOException {
+
+            }
+
+            @Override
+            public void setParser(Parser p) {
+                parser[0] = p;
+            }
+        });
+        device.start();
+        parser[0].parse(BoardResponses.handshake(PIN_COUNT, 0));
+        device.ensureInitializationIsDone();
+        return device;
+    }
+
+}
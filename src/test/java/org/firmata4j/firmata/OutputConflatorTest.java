@@ -0,0 +1,108 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.firmata4j.Parser;
+import org.firmata4j.transport.TransportInterface;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class OutputConflatorTest {
+
+    private final List<byte[]> written = new ArrayList<>();
+
+    private OutputConflator conflator;
+
+    @Before
+    public void setUp() {
+        written.clear();
+        conflator = new OutputConflator(new FirmataDevice(new TransportInterface() {
+            @Override
+            public void start() throws IOException {
+
+            }
+
+            @Override
+            public void stop() throws IOException {
+
+            }
+
+            @Override
+            public void write(byte[] bytes) throws IOException {
+                written.add(bytes);
+            }
+
+            @Override
+            public void setParser(Parser parser) {
+
+            }
+        }));
+    }
+
+    @Test
+    public void latestValueWins() throws IOException {
+        conflator.offer((byte) 3, FirmataMessageFactory.setAnalogPinValue((byte) 3, 10));
+        conflator.offer((byte) 3, FirmataMessageFactory.setAnalogPinValue((byte) 3, 20));
+        conflator.offer((byte) 5, FirmataMessageFactory.setAnalogPinValue((byte) 5, 50));
+        conflator.offer((byte) 3, FirmataMessageFactory.setAnalogPinValue((byte) 3, 30));
+        conflator.flush();
+        assertEquals("Pending values should be sent in a single write", 1, written.size());
+        byte[] pin3 = FirmataMessageFactory.setAnalogPinValue((byte) 3, 30);
+        byte[] pin5 = FirmataMessageFactory.setAnalogPinValue((byte) 5, 50);
+        byte[] expected = new byte[pin3.length + pin5.length];
+        System.arraycopy(pin3, 0, expected, 0, pin3.length);
+        System.arraycopy(pin5, 0, expected, pin3.length, pin5.length);
+        assertArrayEquals(expected, written.get(0));
+        assertEquals(2, conflator.getSupersededCount());
+    }
+
+    @Test
+    public void flushWithoutPendingValues() throws IOException {
+        conflator.flush();
+        conflator.flush((byte) 3);
+        assertTrue("Nothing should be sent when there are no pending values", written.isEmpty());
+    }
+
+    @Test
+    public void flushSinglePin() throws IOException {
+        conflator.offer((byte) 3, FirmataMessageFactory.setAnalogPinValue((byte) 3, 10));
+        conflator.offer((byte) 5, FirmataMessageFactory.setAnalogPinValue((byte) 5, 50));
+        conflator.flush((byte) 3);
+        assertEquals(1, written.size());
+        assertArrayEquals(FirmataMessageFactory.setAnalogPinValue((byte) 3, 10), written.get(0));
+        conflator.flush();
+        assertEquals(2, written.size());
+        assertArrayEquals(FirmataMessageFactory.setAnalogPinValue((byte) 5, 50), written.get(1));
+        assertEquals(0, conflator.getSupersededCount());
+    }
+
+}
@@ -0,0 +1,383 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.firmata4j.ConnectionEvent;
+import org.firmata4j.ConnectionListener;
+import org.firmata4j.Consumer;
+import org.firmata4j.I2CDevice;
+import org.firmata4j.I2CEvent;
+import org.firmata4j.I2CListener;
+import org.firmata4j.LongPredicate;
+import org.firmata4j.Parser;
+import org.firmata4j.Pin;
+import org.firmata4j.PinSample;
+import org.firmata4j.firmata.parser.FirmataEventType;
+import org.firmata4j.flow.Subscriber;
+import org.firmata4j.flow.Subscription;
+import org.firmata4j.fsm.Event;
+import org.firmata4j.transport.NetworkTransport;
+import org.firmata4j.transport.ReconnectingTransport;
+import org.firmata4j.transport.SignalGenerator;
+import org.firmata4j.transport.SimulatedBoard;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.firmata4j.firmata.parser.FirmataToken.*;
+import static org.junit.Assert.*;
+
+/**
+ * Drops the connection to a simulated board served over a socket and checks
+ * that the device gets its state back on the board that answers the next
+ * connection.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class ReconnectTest {
+
+    private static final long TIMEOUT = 10;
+
+    private final List<SimulatedBoard> boards = new CopyOnWriteArrayList<>();
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+    private final AtomicInteger firmwareRepliesToDrop = new AtomicInteger();
+    private ServerSocket server;
+    private FirmataDevice device;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!server.isClosed()) {
+                    try {
+                        serve(server.accept());
+                    } catch (IOException e) {
+                        // the server is closed
+                    }
+                }
+            }
+        }, "reconnect-board-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try {
+            if (device != null) {
+                device.stop();
+            }
+        } finally {
+            server.close();
+            for (Socket connection : connections) {
+                connection.close();
+            }
+        }
+    }
+
+    @Test
+    public void restoresStateAfterReconnection() throws Exception {
+        device = new FirmataDevice(new ReconnectingTransport(
+                new NetworkTransport(InetAddress.getLoopbackAddress(), server.getLocalPort()),
+                20, 200, TimeUnit.MILLISECONDS));
+        final AtomicInteger handshakes = new AtomicInteger();
+        device.addProtocolMessageHandler(FirmataEventType.PIN_CAPABILITIES_FINISHED, new Consumer<Event>() {
+            @Override
+            public void accept(Event event) {
+                handshakes.incrementAndGet();
+            }
+        });
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        final CountDownLatch reconnected = new CountDownLatch(1);
+        final AtomicReference<ConnectionEvent> reconnection = new AtomicReference<>();
+        device.addConnectionListener(new ConnectionListener() {
+            @Override
+            public void onDisconnect(ConnectionEvent event) {
+                assertNotNull(event.getCause());
+                disconnected.countDown();
+            }
+
+            @Override
+            public void onReconnect(ConnectionEvent event) {
+                reconnection.set(event);
+                reconnected.countDown();
+            }
+        });
+        device.start();
+        device.ensureInitializationIsDone();
+        device.getPin(13).setValue(1);
+        device.getPin(5).setMode(Pin.Mode.PWM);
+        device.getPin(5).setValue(200);
+        device.getPin(6).setServoMode(600, 2300);
+        device.getPin(6).setValue(90);
+        device.getPin(2).setMode(Pin.Mode.INPUT);
+        I2CDevice i2c = device.getI2CDevice((byte) 0x3C);
+        i2c.startReceivingUpdates(0x10, (byte) 2);
+        assertEquals(321, device.getPin(15).awaitValue(LongPredicate.isEqual(321), TIMEOUT, TimeUnit.SECONDS));
+
+        connections.get(0).close();
+        assertTrue("Loss of the connection has not been reported", disconnected.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue("The device has not reconnected", reconnected.await(TIMEOUT, TimeUnit.SECONDS));
+        ConnectionEvent event = reconnection.get();
+        assertTrue(event.isStateRestored());
+        assertTrue(event.getAttempts() >= 1);
+        assertTrue(event.getDowntime(TimeUnit.NANOSECONDS) > 0);
+        assertEquals(1, device.getReconnectCount());
+        assertEquals(event.getDowntime(TimeUnit.NANOSECONDS), device.getTotalDowntime(TimeUnit.NANOSECONDS));
+
+        // the second board reports another value, so reporting is enabled again
+        assertEquals(654, device.getPin(15).awaitValue(LongPredicate.isEqual(654), TIMEOUT, TimeUnit.SECONDS));
+        final CountDownLatch updated = new CountDownLatch(1);
+        i2c.subscribe(new I2CListener() {
+            @Override
+            public void onReceive(I2CEvent event) {
+                updated.countDown();
+            }
+        });
+        assertTrue("Continuous reading has not been restored", updated.await(TIMEOUT, TimeUnit.SECONDS));
+        SimulatedBoard board = boards.get(1);
+        assertEquals(Pin.Mode.OUTPUT, board.getMode(13));
+        assertEquals(1, board.getValue(13));
+        assertEquals(Pin.Mode.PWM, board.getMode(5));
+        assertEquals(200, board.getValue(5));
+        assertEquals(Pin.Mode.SERVO, board.getMode(6));
+        assertEquals(90, board.getValue(6));
+        assertEquals(Pin.Mode.INPUT, board.getMode(2));
+        assertEquals("The device has gone through the handshake again", 1, handshakes.get());
+        assertEquals(20, device.getPinsCount());
+    }
+
+    @Test
+    public void keepsPausedInputsPaused() throws Exception {
+        device = new FirmataDevice(new ReconnectingTransport(
+                new NetworkTransport(InetAddress.getLoopbackAddress(), server.getLocalPort()),
+                20, 200, TimeUnit.MILLISECONDS));
+        final CountDownLatch reconnected = reconnectionLatch();
+        device.setDemandDrivenReporting(true);
+        device.start();
+        device.ensureInitializationIsDone();
+        // the subscriber never requests samples, so reporting of A0 gets paused once the buffer is full
+        device.getPin(14).getPublisher().subscribe(new Subscriber<PinSample>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+            }
+
+            @Override
+            public void onNext(PinSample item) {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        assertTrue("Reporting of A0 has not been paused", awaitSteady(device.getPin(14)));
+
+        connections.get(0).close();
+        assertTrue("The device has not reconnected", reconnected.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(654, device.getPin(15).awaitValue(LongPredicate.isEqual(654), TIMEOUT, TimeUnit.SECONDS));
+        long value = device.getPin(14).getValue();
+        Thread.sleep(200);
+        assertEquals("Reporting of A0 has been resumed", value, device.getPin(14).getValue());
+    }
+
+    @Test
+    public void requestsFirmwareAgainWhenReplyIsLost() throws Exception {
+        device = new FirmataDevice(new ReconnectingTransport(
+                new NetworkTransport(InetAddress.getLoopbackAddress(), server.getLocalPort()),
+                20, 200, TimeUnit.MILLISECONDS));
+        final AtomicReference<ConnectionEvent> reconnection = new AtomicReference<>();
+        final CountDownLatch reconnected = new CountDownLatch(1);
+        device.addConnectionListener(new ConnectionListener() {
+            @Override
+            public void onDisconnect(ConnectionEvent event) {
+            }
+
+            @Override
+            public void onReconnect(ConnectionEvent event) {
+                reconnection.set(event);
+                reconnected.countDown();
+            }
+        });
+        device.start();
+        device.ensureInitializationIsDone();
+        firmwareRepliesToDrop.set(1);
+        connections.get(0).close();
+        assertTrue("The device has not reconnected", reconnected.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(reconnection.get().isStateRestored());
+        assertEquals(0, firmwareRepliesToDrop.get());
+        assertEquals(654, device.getPin(15).awaitValue(LongPredicate.isEqual(654), TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void reportsLossOfConnection() throws Exception {
+        device = new FirmataDevice(new NetworkTransport(InetAddress.getLoopbackAddress(), server.getLocalPort()));
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        device.addConnectionListener(new ConnectionListener() {
+            @Override
+            public void onDisconnect(ConnectionEvent event) {
+                disconnected.countDown();
+            }
+
+            @Override
+            public void onReconnect(ConnectionEvent event) {
+                fail("Plain network transport does not reconnect");
+            }
+        });
+        device.start();
+        device.ensureInitializationIsDone();
+        connections.get(0).close();
+        assertTrue("Loss of the connection has not been reported", disconnected.await(TIMEOUT, TimeUnit.SECONDS));
+        try {
+            device.stop();
+        } catch (IOException e) {
+            // the connection is already lost
+        }
+        device = null;
+    }
+
+    /**
+     * Connects a new simulated board to the socket until one of them closes.
+     * Every board reports another value of the analog input A1.
+     */
+    private void serve(final Socket socket) throws IOException {
+        final boolean reconnection = !boards.isEmpty();
+        final SimulatedBoard board = new SimulatedBoard(14, 6);
+        board.setSignal(14, SignalGenerator.noise(0, 1023));
+        board.setSignal(15, SignalGenerator.constant(boards.isEmpty() ? 321 : 654));
+        board.addI2CDevice(0x3C);
+        board.setSamplingInterval(5, TimeUnit.MILLISECONDS);
+        boards.add(board);
+        connections.add(socket);
+        final OutputStream out = socket.getOutputStream();
+        final InputStream in = socket.getInputStream();
+        board.setParser(new Parser() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() {
+            }
+
+            @Override
+            public void parse(byte[] bytes) {
+                if (reconnection && bytes.length > 1 && bytes[0] == START_SYSEX && bytes[1] == REPORT_FIRMWARE
+                        && firmwareRepliesToDrop.get() > 0) {
+                    firmwareRepliesToDrop.decrementAndGet();
+                    return; // the reply is lost on the way to the device
+                }
+                try {
+                    out.write(bytes);
+                } catch (IOException e) {
+                    // the device has disconnected
+                }
+            }
+        });
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[256];
+                try {
+                    board.start();
+                    if (reconnection && firmwareRepliesToDrop.get() > 0) {
+                        // the board keeps reporting, so the connection does not time out while the reply is awaited
+                        board.write(FirmataMessageFactory.analogReport((byte) 1, true));
+                    }
+                    int count;
+                    while ((count = in.read(buffer)) != -1) {
+                        byte[] bytes = new byte[count];
+                        System.arraycopy(buffer, 0, bytes, 0, count);
+                        board.write(bytes);
+                    }
+                } catch (IOException e) {
+                    // the connection is closed
+                } finally {
+                    try {
+                        board.stop();
+                        socket.close();
+                    } catch (IOException e) {
+                        // nothing to do
+                    }
+                }
+            }
+        }, "reconnect-board-connection");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private CountDownLatch reconnectionLatch() {
+        final CountDownLatch reconnected = new CountDownLatch(1);
+        device.addConnectionListener(new ConnectionListener() {
+            @Override
+            public void onDisconnect(ConnectionEvent event) {
+            }
+
+            @Override
+            public void onReconnect(ConnectionEvent event) {
+                reconnected.countDown();
+            }
+        });
+        return reconnected;
+    }
+
+    /**
+     * Waits until the value of the pin stops changing.
+     *
+     * @return true if the value has been steady for 200 milliseconds
+     */
+    private static boolean awaitSteady(Pin pin) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        long value = pin.getValue();
+        long since = System.nanoTime();
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            long current = pin.getValue();
+            if (current != value) {
+                value = current;
+                since = System.nanoTime();
+            } else if (System.nanoTime() - since > TimeUnit.MILLISECONDS.toNanos(200)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
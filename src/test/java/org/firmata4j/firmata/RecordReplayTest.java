@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.firmata4j.LongPredicate;
+import org.firmata4j.Parser;
+import org.firmata4j.transport.CaptureSummary;
+import org.firmata4j.transport.RecordingTransport;
+import org.firmata4j.transport.ReplayTransport;
+import org.firmata4j.transport.TransportInterface;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class RecordReplayTest {
+
+    private File capture;
+
+    @Before
+    public void setUp() throws IOException {
+        capture = File.createTempFile("firmata4j", ".fcap");
+    }
+
+    @After
+    public void tearDown() {
+        capture.delete();
+    }
+
+    @Test
+    public void replayReproducesRecordedSession() throws Exception {
+        record(capture, 100);
+        CaptureSummary summary = CaptureSummary.of(capture);
+        assertEquals(Long.valueOf(100), summary.getInboundMessages().get("ANALOG_MESSAGE"));
+        assertEquals(Long.valueOf(1), summary.getInboundMessages().get("CAPABILITY_RESPONSE"));
+        assertEquals(Long.valueOf(1), summary.getOutboundMessages().get("REPORT_FIRMWARE"));
+        assertTrue(summary.getInboundBytes() > 300);
+
+        ReplayTransport replay = new ReplayTransport(capture, false);
+        FirmataDevice device = new FirmataDevice(replay);
+        try {
+            device.start();
+            device.ensureInitializationIsDone();
+            assertTrue(replay.awaitEnd(5, TimeUnit.SECONDS));
+            assertEquals(summary.getInboundBytes(), replay.getReplayedBytes());
+            assertTrue("Requests of the device should be discarded", replay.getDiscardedBytes() > 0);
+            assertEquals(99, device.getPin(3).awaitValue(LongPredicate.isEqual(99), 5, TimeUnit.SECONDS));
+        } finally {
+            device.stop();
+        }
+    }
+
+    /**
+     * Records a session of a board with 6 pins, 3 of which are analog inputs.
+     * The board reports values from 0 to count - 1 on the channels in turn.
+     *
+     * @param file the capture file
+     * @param count count of analog messages
+     */
+    static void record(File file, int count) throws Exception {
+        final Parser[] parser = new Parser[1];
+        FirmataDevice device = new FirmataDevice(new RecordingTransport(new TransportInterface() {
+            @Override
+            public void start() throws IOException {
+
+            }
+
+            @Override
+            public void stop() throws IOException {
+
+            }
+
+            @Override
+            public void write(byte[] bytes) throws IOException {
+
+            }
+
+            @Override
+            public void setParser(Parser p) {
+                parser[0] = p;
+            }
+        }, file));
+        device.start();
+        parser[0].parse(BoardResponses.handshake(6, 6, 3));
+        device.ensureInitializationIsDone();
+        for (int i = 0; i < count; i++) {
+            parser[0].parse(BoardResponses.analogMessage(i % 3, i));
+        }
+        device.getPin(3 + (count - 1) % 3).awaitValue(LongPredicate.isEqual(count - 1), 5, TimeUnit.SECONDS);
+        device.stop();
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.firmata4j.LongPredicate;
+import org.firmata4j.Parser;
+import org.firmata4j.transport.CaptureSummary;
+import org.firmata4j.transport.RecordingTransport;
+import org.firmata4j.transport.ReplayTransport;
+import org.firmata4j.transport.TransportInterface;
+
+/**
+ * Measures how fast {@link FirmataDevice} processes a recorded session
+ * replayed by {@link ReplayTransport} as fast as possible.<br/>
+ * Run with {@code java org.firmata4j.firmata.ReplayBenchmark [capture]}. If
+ * no capture is specified, a session of a board reporting analog values is
+ * synthesized.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class ReplayBenchmark {
+
+    private static final int MESSAGES = 300000;
+    private static final int MESSAGES_PER_CHUNK = 32;
+
+    public static void main(String[] args) throws Exception {
+        File capture;
+        boolean synthesized = args.length == 0;
+        if (synthesized) {
+            capture = File.createTempFile("firmata4j", ".fcap");
+            capture.deleteOnExit();
+            synthesize(capture);
+        } else {
+            capture = new File(args[0]);
+        }
+        CaptureSummary summary = CaptureSummary.of(capture);
+        System.out.print(summary);
+        long messages = 0;
+        for (long count : summary.getInboundMessages().values()) {
+            messages += count;
+        }
+
+        ReplayTransport replay = new ReplayTransport(capture, false);
+        FirmataDevice device = new FirmataDevice(replay);
+        long start = System.nanoTime();
+        device.start();
+        device.ensureInitializationIsDone();
+        replay.awaitEnd(10, TimeUnit.MINUTES);
+        if (synthesized) {
+            // the last message sets the last analog pin to the greatest value
+            device.getPin(5).awaitValue(LongPredicate.isEqual(lastValue()), 1, TimeUnit.MINUTES);
+        }
+        long elapsed = System.nanoTime() - start;
+        device.stop();
+        System.out.printf("Replayed %d messages (%d bytes) in %d ms: %.0f messages/s%n",
+                messages, replay.getReplayedBytes(), TimeUnit.NANOSECONDS.toMillis(elapsed), messages * 1e9 / elapsed);
+    }
+
+    private static long lastValue() {
+        return (MESSAGES - 1) % 1024;
+    }
+
+    /**
+     * Records a session of a board with 3 analog inputs reporting values in
+     * turn. The values are not processed while recording.
+     */
+    private static void synthesize(File file) throws IOException {
+        final Parser[] parser = new Parser[1];
+        RecordingTransport recorder = new RecordingTransport(new TransportInterface() {
+            @Override
+            public void start() throws IOException {
+
+            }
+
+            @Override
+            public void stop() throws IOException {
+
+            }
+
+            @Override
+            public void write(byte[] bytes) throws IOException {
+
+            }
+
+            @Override
+            public void setParser(Parser p) {
+                parser[0] = p;
+            }
+        }, file);
+        recorder.setParser(new Parser() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() {
+            }
+
+            @Override
+            public void parse(byte[] bytes) {
+            }
+        });
+        recorder.start();
+        parser[0].parse(BoardResponses.handshake(6, 6, 3));
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        // the last message goes to channel 2, which is pin 5
+        int first = (3 - MESSAGES % 3) % 3;
+        for (int i = 0; i < MESSAGES; i++) {
+            byte[] message = BoardResponses.analogMessage((first + i) % 3, i % 1024);
+            chunk.write(message, 0, message.length);
+            if ((i + 1) % MESSAGES_PER_CHUNK == 0 || i == MESSAGES - 1) {
+                parser[0].parse(chunk.toByteArray());
+                chunk.reset();
+            }
+        }
+        recorder.stop();
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.firmata4j.PinValueSink;
+import org.firmata4j.transport.SignalGenerator;
+import org.firmata4j.transport.SimulatedBoard;
+
+/**
+ * Measures how many values {@link FirmataDevice} takes from a
+ * {@link SimulatedBoard} that reports 16 changing analog inputs with a short
+ * sampling interval.<br/>
+ * Run with {@code java org.firmata4j.firmata.SimulatedBoardBenchmark [interval in microseconds] [seconds]}.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class SimulatedBoardBenchmark {
+
+    private static final int ANALOG_INPUTS = 16;
+    private static final long SERIAL_BYTES_PER_SECOND = 57600 / 10;
+
+    public static void main(String[] args) throws Exception {
+        long interval = args.length > 0 ? Long.parseLong(args[0]) : 50;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 5;
+        SimulatedBoard board = new SimulatedBoard(2, ANALOG_INPUTS);
+        for (int i = 0; i < ANALOG_INPUTS; i++) {
+            board.setSignal(2 + i, SignalGenerator.sawtooth(0, 1023, 10 + i, TimeUnit.MILLISECONDS));
+        }
+        board.setSamplingInterval(interval, TimeUnit.MICROSECONDS);
+        FirmataDevice device = new FirmataDevice(board);
+        final AtomicLong values = new AtomicLong();
+        device.addPinValueSink(new PinValueSink() {
+            @Override
+            public void onValue(int pinIndex, long value, long nanoTime) {
+                values.incrementAndGet();
+            }
+        });
+        device.start();
+        device.ensureInitializationIsDone();
+        long bytes = board.getSentBytes();
+        long received = values.get();
+        long start = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        long elapsed = System.nanoTime() - start;
+        bytes = board.getSentBytes() - bytes;
+        received = values.get() - received;
+        device.stop();
+        double bytesPerSecond = bytes * 1e9 / elapsed;
+        System.out.printf("Board sent %.0f bytes/s (%.0f times the rate of 57600 baud), device took %.0f values/s%n",
+                bytesPerSecond, bytesPerSecond / SERIAL_BYTES_PER_SECOND, received * 1e9 / elapsed);
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.util.concurrent.TimeUnit;
+import org.firmata4j.I2CDevice;
+import org.firmata4j.LongPredicate;
+import org.firmata4j.Pin;
+import org.firmata4j.transport.SignalGenerator;
+import org.firmata4j.transport.SimulatedBoard;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class SimulatedBoardTest {
+
+    private SimulatedBoard board;
+    private FirmataDevice device;
+
+    @Before
+    public void setUp() throws Exception {
+        board = new SimulatedBoard(14, 6);
+        board.setSignal(15, SignalGenerator.constant(321));
+        board.setSignal(2, SignalGenerator.constant(1));
+        board.addI2CDevice(0x3C);
+        board.setSamplingInterval(1, TimeUnit.MILLISECONDS);
+        device = new FirmataDevice(board);
+        device.start();
+        device.ensureInitializationIsDone();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        device.stop();
+    }
+
+    @Test
+    public void initializesDevice() {
+        assertEquals(20, device.getPinsCount());
+        assertEquals(Pin.Mode.ANALOG, device.getPin(15).getMode());
+        assertTrue(device.getPin(3).supports(Pin.Mode.SERVO));
+        assertFalse(device.getPin(16).supports(Pin.Mode.PWM));
+    }
+
+    @Test
+    public void reportsInputs() throws Exception {
+        assertEquals(321, device.getPin(15).awaitValue(LongPredicate.isEqual(321), 5, TimeUnit.SECONDS));
+        device.getPin(2).setMode(Pin.Mode.INPUT);
+        assertEquals(1, device.getPin(2).awaitValue(LongPredicate.isEqual(1), 5, TimeUnit.SECONDS));
+        assertTrue(board.getSentBytes() > 0);
+    }
+
+    @Test
+    public void keepsOutputs() throws Exception {
+        device.getPin(13).setValue(1);
+        device.getPin(5).setMode(Pin.Mode.PWM);
+        device.getPin(5).setValue(200);
+        assertEquals(Pin.Mode.PWM, board.getMode(5));
+        assertEquals(1, board.getValue(13));
+        assertEquals(200, board.getValue(5));
+    }
+
+    @Test
+    public void ignoresDataBytesNoCommandExpects() throws Exception {
+        board.write(new byte[] {
+            (byte) 0xF9, 0x01, 0x02, 0x03, // report version takes no data
+            (byte) 0xA5, 0x10, // neither does an unknown command
+            (byte) 0x91, 0x20, 0x00 // digital message of port 1 sets pin 13
+        });
+        assertEquals(1, board.getValue(13));
+    }
+
+    @Test
+    public void echoesI2CRegisters() throws Exception {
+        I2CDevice i2c = device.getI2CDevice((byte) 0x3C);
+        i2c.tell((byte) 0x10, (byte) 0xAB, (byte) 0x7F);
+        byte[] data = i2c.read(0x10, (byte) 2, 5, TimeUnit.SECONDS);
+        assertArrayEquals(new byte[] {(byte) 0xAB, 0x7F}, data);
+    }
+
+}
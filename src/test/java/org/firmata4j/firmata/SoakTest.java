@@ -0,0 +1,369 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.firmata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.firmata4j.Consumer;
+import org.firmata4j.Parser;
+import org.firmata4j.Pin;
+import org.firmata4j.firmata.parser.FirmataEventType;
+import org.firmata4j.fsm.Event;
+import org.firmata4j.transport.NetworkTransport;
+import org.firmata4j.transport.SignalGenerator;
+import org.firmata4j.transport.SimulatedBoard;
+import org.firmata4j.transport.TransportInterface;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Starts and stops devices over and over again and checks that nothing
+ * accumulates: threads, heap, bytes in the queue of the parser and checks
+ * of the watchdogs.<br/>
+ * Every cycle runs a device on a {@link SimulatedBoard} and a device on a
+ * {@link NetworkTransport} connected to a simulated board behind a local
+ * socket. Both boards get garbage bytes injected into the stream and get
+ * disconnected before the device stops. A third device conflates its output
+ * values and still has one pending when it stops after losing the
+ * connection.<br/>
+ * The test takes 5 seconds by default. Set {@code firmata4j.soak.seconds} to
+ * soak for longer:
+ * <pre>
+ * mvn test -Dtest=SoakTest -Dfirmata4j.soak.seconds=7200
+ * </pre>
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class SoakTest {
+
+    private static final long DURATION = TimeUnit.SECONDS.toNanos(Long.getLong("firmata4j.soak.seconds", 5));
+    private static final long SETTLE_TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+    private static final long HEAP_SLACK = 16 << 20;
+    private static final int GARBAGE_BYTES = 64;
+
+    private final Random random = new Random(42);
+    private ServerSocket server;
+    private volatile Socket connection;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!server.isClosed()) {
+                    try {
+                        serve(server.accept());
+                    } catch (IOException e) {
+                        // the server is closed
+                    }
+                }
+            }
+        }, "soak-board-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void resourcesStayFlat() throws Exception {
+        // the first cycles load the classes and start the shared threads
+        simulatedCycle();
+        networkCycle();
+        conflatedCycle();
+        Thread.sleep(500);
+        int firmataThreads = countFirmataThreads();
+        long heap = usedHeapAfterGc();
+        int cycles = 0;
+        long deadline = System.nanoTime() + DURATION;
+        do {
+            simulatedCycle();
+            networkCycle();
+            conflatedCycle();
+            cycles++;
+            assertTrue("Threads of cycle " + cycles + " have not stopped",
+                    awaitFirmataThreads(firmataThreads) <= firmataThreads);
+            assertEquals("Watchdog checks of cycle " + cycles + " remain scheduled",
+                    0, FirmataWatchdog.getScheduledCount());
+        } while (System.nanoTime() < deadline);
+        long grown = usedHeapAfterGc() - heap;
+        assertTrue(String.format("Heap has grown by %d bytes in %d cycles", grown, cycles),
+                grown < Math.max(HEAP_SLACK, heap / 2));
+    }
+
+    private void simulatedCycle() throws Exception {
+        final SimulatedBoard board = board();
+        run(board, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    board.stop();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }, false);
+    }
+
+    private void conflatedCycle() throws Exception {
+        final SimulatedBoard board = board();
+        run(board, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    board.stop();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }, true);
+    }
+
+    private void networkCycle() throws Exception {
+        run(new NetworkTransport(InetAddress.getLoopbackAddress(), server.getLocalPort()), new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    connection.close();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }, false);
+    }
+
+    /**
+     * Runs a device on the transport. After the device is initialized, it
+     * gets some data, garbage bytes and the disconnection. A conflating device
+     * is left with a pending output value that cannot be sent anymore.
+     */
+    private void run(TransportInterface transport, Runnable disconnect, boolean conflate) throws Exception {
+        GarbageInjector injector = new GarbageInjector(transport);
+        FirmataDevice device = new FirmataDevice(injector);
+        FirmataWatchdog watchdog = new FirmataWatchdog(50, new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        device.addProtocolMessageHandler(FirmataEventType.ANY, watchdog);
+        // the garbage makes the parser complain about every unknown byte
+        device.addProtocolMessageHandler(FirmataEventType.ERROR_MESSAGE, new Consumer<Event>() {
+            @Override
+            public void accept(Event event) {
+            }
+        });
+        try {
+            device.start();
+            device.ensureInitializationIsDone();
+            device.getPin(2).setMode(Pin.Mode.INPUT);
+            if (conflate) {
+                device.enableOutputConflation(1, TimeUnit.HOURS);
+                device.getPin(5).setMode(Pin.Mode.PWM);
+            }
+            Thread.sleep(20);
+            injector.inject(random, GARBAGE_BYTES);
+            disconnect.run();
+            if (conflate) {
+                injector.lose();
+                device.getPin(5).setValue(1 + random.nextInt(255));
+            }
+            long deadline = System.nanoTime() + SETTLE_TIMEOUT;
+            while (device.getQueuedChunkCount() > 0) {
+                assertTrue("The parser does not drain its queue", System.nanoTime() < deadline);
+                Thread.sleep(1);
+            }
+        } finally {
+            try {
+                device.stop();
+            } catch (IOException e) {
+                // the connection has been lost
+            }
+            watchdog.disable();
+        }
+    }
+
+    private SimulatedBoard board() {
+        SimulatedBoard board = new SimulatedBoard(14, 6);
+        board.setSignal(2, SignalGenerator.square(0, 1, 10, TimeUnit.MILLISECONDS));
+        board.setSignal(14, SignalGenerator.sine(512, 511, 50, TimeUnit.MILLISECONDS));
+        board.setSignal(15, SignalGenerator.noise(0, 1023));
+        board.setSamplingInterval(1, TimeUnit.MILLISECONDS);
+        return board;
+    }
+
+    /**
+     * Connects a simulated board to the socket until one of them closes.
+     */
+    private void serve(final Socket socket) throws IOException {
+        connection = socket;
+        final SimulatedBoard board = board();
+        final OutputStream out = socket.getOutputStream();
+        final InputStream in = socket.getInputStream();
+        board.setParser(new Parser() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() {
+            }
+
+            @Override
+            public void parse(byte[] bytes) {
+                try {
+                    out.write(bytes);
+                } catch (IOException e) {
+                    // the device has disconnected
+                }
+            }
+        });
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[256];
+                try {
+                    board.start();
+                    int count;
+                    while ((count = in.read(buffer)) != -1) {
+                        byte[] bytes = new byte[count];
+                        System.arraycopy(buffer, 0, bytes, 0, count);
+                        board.write(bytes);
+                    }
+                } catch (IOException e) {
+                    // the connection is closed
+                } finally {
+                    try {
+                        board.stop();
+                        socket.close();
+                    } catch (IOException e) {
+                        // nothing to do
+                    }
+                }
+            }
+        }, "soak-board-connection");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Waits until no more than the specified count of threads of firmata4j
+     * are alive and returns their count.
+     */
+    private static int awaitFirmataThreads(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + SETTLE_TIMEOUT;
+        int count = countFirmataThreads();
+        while (count > expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            count = countFirmataThreads();
+        }
+        return count;
+    }
+
+    private static int countFirmataThreads() {
+        Thread[] threads = new Thread[Thread.activeCount() * 2 + 16];
+        int count = Thread.enumerate(threads);
+        int result = 0;
+        for (int i = 0; i < count; i++) {
+            if (threads[i].getName().startsWith("firmata-")) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Transport that mixes random bytes into the stream received from the
+     * board and can simulate the loss of the connection.
+     */
+    private static class GarbageInjector implements TransportInterface {
+
+        private final TransportInterface delegate;
+        private volatile Parser parser;
+        private volatile boolean lost;
+
+        GarbageInjector(TransportInterface delegate) {
+            this.delegate = delegate;
+        }
+
+        void inject(Random random, int count) {
+            byte[] garbage = new byte[count];
+            random.nextBytes(garbage);
+            parser.parse(garbage);
+        }
+
+        /**
+         * Makes the writes fail like they do when the connection is lost.
+         */
+        void lose() {
+            lost = true;
+        }
+
+        @Override
+        public void start() throws IOException {
+            delegate.start();
+        }
+
+        @Override
+        public void stop() throws IOException {
+            delegate.stop();
+        }
+
+        @Override
+        public void write(byte[] bytes) throws IOException {
+            if (lost) {
+                throw new IOException("Connection lost");
+            }
+            delegate.write(bytes);
+        }
+
+        @Override
+        public void setParser(Parser parser) {
+            this.parser = parser;
+            delegate.setParser(parser);
+        }
+
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.flow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class SamplePublisherTest {
+
+    @Test
+    public void demandDrivesDelivery() {
+        SamplePublisher<Integer> publisher = new SamplePublisher<>(8);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        publisher.submit(1);
+        publisher.submit(2);
+        publisher.submit(3);
+        assertTrue(subscriber.items.isEmpty());
+        subscriber.subscription.request(2);
+        assertEquals(Arrays.asList(1, 2), subscriber.items);
+        publisher.submit(4);
+        subscriber.subscription.request(5);
+        assertEquals(Arrays.asList(1, 2, 3, 4), subscriber.items);
+        publisher.submit(5);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), subscriber.items);
+    }
+
+    @Test
+    public void fullBufferConflatesItemsWithTheSameKey() {
+        SamplePublisher<Integer> publisher = new SamplePublisher<Integer>(3) {
+            @Override
+            protected int keyOf(Integer item) {
+                return item / 10; // items of the same ten share a key
+            }
+        };
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        publisher.submit(10);
+        publisher.submit(20);
+        publisher.submit(11);
+        publisher.submit(12); // replaces 11
+        publisher.submit(30); // drops 10 as there is no other item of its key
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(Arrays.asList(20, 12, 30), subscriber.items);
+        assertEquals(2, publisher.getDroppedCount());
+    }
+
+    @Test
+    public void sourceIsPausedWhileSubscribersCannotReceive() {
+        SamplePublisher<Integer> publisher = new SamplePublisher<>(2);
+        final AtomicInteger pauses = new AtomicInteger();
+        final AtomicInteger resumes = new AtomicInteger();
+        publisher.setDemandListener(new SamplePublisher.DemandListener() {
+            @Override
+            public void onDemand() {
+                resumes.incrementAndGet();
+            }
+
+            @Override
+            public void onNoDemand() {
+                pauses.incrementAndGet();
+            }
+        });
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        publisher.submit(1);
+        publisher.submit(2);
+        assertEquals("The buffer still has room", 0, pauses.get());
+        publisher.submit(3);
+        assertEquals(1, pauses.get());
+        subscriber.subscription.request(1);
+        assertEquals(1, resumes.get());
+        publisher.submit(4);
+        assertEquals(2, pauses.get());
+        subscriber.subscription.cancel();
+        assertEquals("No subscribers means nobody is waiting for the source", 2, resumes.get());
+    }
+
+    @Test
+    public void closeCompletesAfterBufferedItems() {
+        SamplePublisher<Integer> publisher = new SamplePublisher<>(4);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        publisher.submit(1);
+        publisher.close();
+        assertFalse(subscriber.completed);
+        subscriber.subscription.request(1);
+        assertEquals(Arrays.asList(1), subscriber.items);
+        assertTrue(subscriber.completed);
+        RecordingSubscriber late = new RecordingSubscriber();
+        publisher.subscribe(late);
+        assertTrue(late.completed);
+    }
+
+    @Test
+    public void nonPositiveRequestIsError() {
+        SamplePublisher<Integer> publisher = new SamplePublisher<>(4);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertFalse(publisher.hasSubscribers());
+    }
+
+    private static class RecordingSubscriber implements Subscriber<Integer> {
+
+        final List<Integer> items = new ArrayList<>();
+        Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.gateway;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.firmata4j.I2CDevice;
+import org.firmata4j.IODevice;
+import org.firmata4j.LongPredicate;
+import org.firmata4j.Pin;
+import org.firmata4j.PinStateFuture;
+import org.firmata4j.firmata.FirmataDevice;
+import org.firmata4j.transport.NetworkTransport;
+import org.firmata4j.transport.SignalGenerator;
+import org.firmata4j.transport.SimulatedBoard;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class FirmataGatewayTest {
+
+    private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+
+    private SimulatedBoard board;
+    private FirmataGateway gateway;
+    private IODevice first;
+    private IODevice second;
+
+    @Before
+    public void setUp() throws Exception {
+        board = new SimulatedBoard(14, 6);
+        board.setSignal(15, SignalGenerator.constant(321));
+        board.setSignal(2, SignalGenerator.constant(1));
+        board.addI2CDevice(0x3C);
+        board.setSamplingInterval(5, TimeUnit.MILLISECONDS);
+        gateway = new FirmataGateway(new FirmataDevice(board), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        gateway.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            if (first != null) {
+                first.stop();
+            }
+            if (second != null) {
+                second.stop();
+            }
+        } finally {
+            gateway.stop();
+        }
+    }
+
+    @Test
+    public void sharesBoardBetweenClients() throws Exception {
+        long received = board.getReceivedBytes();
+        first = connect();
+        second = connect();
+        assertEquals(20, first.getPinsCount());
+        assertEquals(Pin.Mode.ANALOG, second.getPin(15).getMode());
+        assertTrue(second.getPin(3).supports(Pin.Mode.SERVO));
+        assertEquals("Handshake of the clients should not reach the board", received, board.getReceivedBytes());
+        assertEquals(2, gateway.getClients().size());
+
+        assertEquals(321, first.getPin(15).awaitValue(LongPredicate.isEqual(321), 5, TimeUnit.SECONDS));
+        assertEquals(321, second.getPin(15).awaitValue(LongPredicate.isEqual(321), 5, TimeUnit.SECONDS));
+
+        first.getPin(13).setValue(1);
+        second.getPin(5).setMode(Pin.Mode.PWM);
+        second.getPin(5).setValue(200);
+        second.getPin(2).setMode(Pin.Mode.INPUT);
+        awaitBoardValue(13, 1);
+        awaitBoardValue(5, 200);
+        assertEquals(Pin.Mode.PWM, board.getMode(5));
+        assertEquals(Pin.Mode.PWM, gateway.getDevice().getPin(5).getMode());
+        assertEquals(1, second.getPin(2).awaitValue(LongPredicate.isEqual(1), 5, TimeUnit.SECONDS));
+
+        I2CDevice i2c = first.getI2CDevice((byte) 0x3C);
+        i2c.tell((byte) 0x10, (byte) 0xAB, (byte) 0x7F);
+        assertArrayEquals(new byte[] {(byte) 0xAB, 0x7F}, i2c.read(0x10, (byte) 2, 5, TimeUnit.SECONDS));
+
+        for (GatewayClient client : gateway.getClients()) {
+            assertTrue(client.getSentCount() > 0);
+            assertEquals(0, client.getDroppedCount());
+        }
+        first.stop();
+        first = null;
+        long deadline = System.nanoTime() + TIMEOUT;
+        while (gateway.getClients().size() > 1) {
+            assertTrue("The gateway has not noticed the client leaving", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void confirmsChangesOfClient() throws Exception {
+        first = connect();
+        Pin pin = first.getPin(5);
+        for (int round = 0; round < 10; round++) {
+            Pin.Mode mode = round % 2 == 0 ? Pin.Mode.PWM : Pin.Mode.OUTPUT;
+            pin.setModeAsync(mode).get(5, TimeUnit.SECONDS);
+            assertEquals(1, (long) pin.setValueAsync(1).get(5, TimeUnit.SECONDS));
+        }
+        pin.setMode(Pin.Mode.PWM);
+        List<PinStateFuture> futures = new ArrayList<>();
+        for (int value = 10; value < 70; value += 10) {
+            futures.add(pin.setValueAsync(value));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(10 + i * 10, (long) futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void writesPortOfClientAtOnce() throws Exception {
+        first = connect();
+        awaitIdleBoard();
+        long received = board.getReceivedBytes();
+        first.createPinGroup(8, 9, 10).setValue(0b101);
+        awaitBoardValue(10, 1);
+        assertEquals(1, board.getValue(8));
+        assertEquals(0, board.getValue(9));
+        assertEquals("One port message is expected", 3, board.getReceivedBytes() - received);
+    }
+
+    @Test
+    public void dropsMessagesOfSlowClient() throws Exception {
+        GatewayClient client = new GatewayClient(gateway, new Socket(), 2);
+        assertTrue(client.offer(new byte[] {1}));
+        assertTrue(client.offer(new byte[] {2}));
+        assertFalse(client.offer(new byte[] {3}));
+        assertEquals(2, client.getPendingCount());
+        assertEquals(1, client.getDroppedCount());
+        Thread.sleep(5);
+        assertTrue(client.getLag(TimeUnit.MILLISECONDS) >= 5);
+    }
+
+    /**
+     * Waits until the gateway stops sending the messages of the handshake of
+     * a client to the board.
+     */
+    private void awaitIdleBoard() throws InterruptedException {
+        long received;
+        do {
+            received = board.getReceivedBytes();
+            Thread.sleep(100);
+        } while (board.getReceivedBytes() != received);
+    }
+
+    private IODevice connect() throws Exception {
+        IODevice device = new FirmataDevice(new NetworkTransport(InetAddress.getLoopbackAddress(), gateway.getPort()));
+        device.start();
+        device.ensureInitializationIsDone();
+        return device;
+    }
+
+    private void awaitBoardValue(int pin, long value) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT;
+        while (board.getValue(pin) != value) {
+            assertTrue(String.format("Pin %d of the board has not got value %d", pin, value), System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.firmata4j.PinValueSink;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class JournalTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("firmata4j-journal", "");
+        assertTrue(directory.delete());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void rangeQuerySpansSegments() throws IOException {
+        try (JournalWriter writer = new JournalWriter(directory, 10, 100)) {
+            PinValueSink sink = writer.sinkFor(7);
+            for (int i = 0; i < 35; i++) {
+                if (i % 10 == 0) {
+                    awaitNextSegment(writer);
+                }
+                sink.onValue(i % 4, i * 2, 1000 + i * 10);
+            }
+            assertEquals(35, writer.getWrittenCount());
+        }
+        final List<long[]> records = new ArrayList<>();
+        RecordVisitor collector = new RecordVisitor() {
+            @Override
+            public void onRecord(long nanoTime, int device, int pin, long value) {
+                records.add(new long[] {nanoTime, device, pin, value});
+            }
+        };
+        JournalReader reader = new JournalReader(directory);
+        assertEquals(6, reader.read(1085, 1145, collector));
+        assertArrayEquals(new long[] {1090, 7, 1, 18}, records.get(0));
+        assertArrayEquals(new long[] {1140, 7, 2, 28}, records.get(5));
+        records.clear();
+        assertEquals(35, reader.readAll(collector));
+        assertEquals(1340, records.get(34)[0]);
+    }
+
+    @Test
+    public void recordsOfSegmentStayOrdered() throws IOException {
+        try (JournalWriter writer = new JournalWriter(directory, 10, 10)) {
+            writer.append(100, 1, 0, 1);
+            writer.append(90, 2, 0, 2); // another device reports a moment observed earlier
+            writer.append(110, 1, 0, 3);
+        }
+        final List<long[]> records = new ArrayList<>();
+        assertEquals(2, new JournalReader(directory).read(95, 105, new RecordVisitor() {
+            @Override
+            public void onRecord(long nanoTime, int device, int pin, long value) {
+                records.add(new long[] {nanoTime, value});
+            }
+        }));
+        assertArrayEquals(new long[] {100, 1}, records.get(0));
+        assertArrayEquals(new long[] {100, 2}, records.get(1));
+    }
+
+    @Test
+    public void oldSegmentsAreDeleted() throws IOException {
+        try (JournalWriter writer = new JournalWriter(directory, 5, 3)) {
+            for (int i = 0; i < 50; i++) {
+                if (i % 5 == 0) {
+                    awaitNextSegment(writer);
+                }
+                writer.append(i, 1, 2, i);
+            }
+            assertEquals(50, writer.getWrittenCount());
+        }
+        long count = new JournalReader(directory).readAll(new RecordVisitor() {
+            @Override
+            public void onRecord(long nanoTime, int device, int pin, long value) {
+                assertEquals(nanoTime, value);
+            }
+        });
+        assertTrue("The journal should keep only the latest segments", count <= 15);
+        assertTrue(count >= 5);
+    }
+
+    @Test
+    public void reopenedJournalContinues() throws IOException {
+        try (JournalWriter writer = new JournalWriter(directory, 5, 10)) {
+            writer.append(1, 0, 0, 1);
+        }
+        try (JournalWriter writer = new JournalWriter(directory, 5, 10)) {
+            writer.append(2, 0, 0, 2);
+        }
+        assertEquals(2, new JournalReader(directory).read(0, 10, new RecordVisitor() {
+            @Override
+            public void onRecord(long nanoTime, int device, int pin, long value) {
+            }
+        }));
+    }
+
+    /**
+     * Waits until the writer can switch to the next segment without dropping
+     * records.
+     */
+    private static void awaitNextSegment(JournalWriter writer) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!writer.isNextSegmentReady()) {
+            assertTrue("The next segment has not been prepared", System.currentTimeMillis() < deadline);
+            Thread.yield();
+        }
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.rule;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.firmata4j.LongPredicate;
+import org.firmata4j.Pin;
+import org.firmata4j.firmata.FirmataDevice;
+import org.firmata4j.transport.SignalGenerator;
+import org.firmata4j.transport.SimulatedBoard;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class RuleEngineTest {
+
+    private static final long TIMEOUT = 5;
+
+    private SimulatedBoard board;
+    private FirmataDevice device;
+
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        // pins 0-3 are outputs, 4-7 are digital inputs, 8 and 9 are analog inputs
+        board = new SimulatedBoard(8, 2);
+        board.setSamplingInterval(1, TimeUnit.MILLISECONDS);
+        device = new FirmataDevice(board);
+        device.start();
+        device.ensureInitializationIsDone();
+        for (int i = 4; i < 8; i++) {
+            device.getPin(i).setMode(Pin.Mode.INPUT);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        device.stop();
+    }
+
+    @Test
+    public void thresholdFiresOnceWhileExceeded() throws Exception {
+        RuleEngine rules = new RuleEngine.Builder(device)
+                .add(Trigger.above(8, 600), Action.toggle(1))
+                .add(Trigger.below(8, 100), Action.set(2, 1))
+                .build();
+        device.addPinValueSink(rules);
+        Level level = new Level();
+        board.setSignal(8, level);
+        level.set(700);
+        await(1, 1);
+        level.set(800);
+        await(8, 800);
+        level.set(50);
+        await(2, 1);
+        assertEquals("The rule should not fire again while the threshold is exceeded", 1, device.getPin(1).getValue());
+        level.set(700);
+        await(1, 0);
+        assertTrue(rules.getMaxLatency(TimeUnit.NANOSECONDS) > 0);
+    }
+
+    @Test
+    public void edgeTogglesPin() throws Exception {
+        RuleEngine rules = new RuleEngine.Builder(device)
+                .add(Trigger.rising(4), Action.toggle(2))
+                .add(Trigger.falling(4), Action.set(3, 1))
+                .build();
+        device.addPinValueSink(rules);
+        Level level = new Level();
+        board.setSignal(4, level);
+        level.set(1);
+        await(2, 1);
+        level.set(0);
+        await(3, 1);
+        assertEquals("The falling edge should not toggle the pin", 1, device.getPin(2).getValue());
+        level.set(1);
+        await(2, 0);
+    }
+
+    @Test
+    public void hysteresisIgnoresNoise() throws Exception {
+        RuleEngine rules = new RuleEngine.Builder(device)
+                .add(Trigger.risesAbove(9, 500, 400), Action.toggle(3))
+                .add(Trigger.above(9, 515), Action.set(2, 1))
+                .build();
+        device.addPinValueSink(rules);
+        Level level = new Level();
+        board.setSignal(9, level);
+        level.set(510);
+        await(3, 1);
+        level.set(490);
+        await(9, 490);
+        level.set(505);
+        await(9, 505);
+        level.set(390);
+        await(9, 390);
+        level.set(520);
+        await(2, 1);
+        assertEquals("Noise above the lower threshold should not fire the rule again", 0, device.getPin(3).getValue());
+    }
+
+    @Test
+    public void rateOfChangeFires() throws Exception {
+        RuleEngine rules = new RuleEngine.Builder(device)
+                .add(Trigger.rateAbove(8, 100, 1, TimeUnit.MILLISECONDS), Action.set(1, 1))
+                .build();
+        device.addPinValueSink(rules);
+        board.setSignal(8, ramp(0, 100));
+        device.getPin(8).awaitValue(new LongPredicate() {
+            @Override
+            public boolean test(long value) {
+                return value >= 20;
+            }
+        }, TIMEOUT, TimeUnit.SECONDS);
+        assertEquals("A slow ramp should not fire the rule", 0, device.getPin(1).getValue());
+        board.setSignal(8, ramp(device.getPin(8).getValue(), 500000));
+        await(1, 1);
+    }
+
+    @Test
+    public void actionOnInputPinFails() throws Exception {
+        RuleEngine rules = new RuleEngine.Builder(device)
+                .add(Trigger.change(4), Action.set(5, 1))
+                .build();
+        device.addPinValueSink(rules);
+        Level level = new Level();
+        board.setSignal(4, level);
+        level.set(1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while (rules.getFailureCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, rules.getFailureCount());
+        assertEquals(0, rules.getFiredCount());
+    }
+
+    private void await(int pin, long value) throws InterruptedException, TimeoutException {
+        device.getPin(pin).awaitValue(LongPredicate.isEqual(value), TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Produces a value that rises steadily from the moment of creation.
+     */
+    private static SignalGenerator ramp(final long from, final long perSecond) {
+        final long origin = System.nanoTime();
+        return new SignalGenerator() {
+            @Override
+            public long valueAt(long nanoTime) {
+                return from + (System.nanoTime() - origin) * perSecond / TimeUnit.SECONDS.toNanos(1);
+            }
+        };
+    }
+
+    /**
+     * Produces the value set by the test.
+     */
+    private static class Level extends SignalGenerator {
+
+        private volatile long value;
+
+        void set(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public long valueAt(long nanoTime) {
+            return value;
+        }
+
+    }
+
+}
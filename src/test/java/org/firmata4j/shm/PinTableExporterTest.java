@@ -0,0 +1,160 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import org.firmata4j.LongPredicate;
+import org.firmata4j.Pin;
+import org.firmata4j.firmata.FirmataDevice;
+import org.firmata4j.transport.SignalGenerator;
+import org.firmata4j.transport.SimulatedBoard;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class PinTableExporterTest {
+
+    private static final long TIMEOUT = 5;
+
+    private File file;
+    private PinTableExporter exporter;
+    private FirmataDevice device;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("firmata4j-pins", ".table");
+        exporter = new PinTableExporter(file, 2);
+        SimulatedBoard board = new SimulatedBoard(14, 6);
+        board.setSignal(15, SignalGenerator.constant(321));
+        board.setSamplingInterval(1, TimeUnit.MILLISECONDS);
+        device = new FirmataDevice(board);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try {
+            device.stop();
+        } finally {
+            exporter.close();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void mirrorsDevice() throws Exception {
+        assertEquals(0, exporter.export(device));
+        PinTableReader reader = new PinTableReader(file);
+        assertEquals(2, reader.getDeviceCapacity());
+        assertFalse(reader.isReady(0));
+        assertEquals(0, reader.getPinsCount(0));
+
+        device.start();
+        device.ensureInitializationIsDone();
+        device.getPin(15).awaitValue(LongPredicate.isEqual(321), TIMEOUT, TimeUnit.SECONDS);
+        assertTrue(reader.isReady(0));
+        assertEquals(20, reader.getPinsCount(0));
+        assertEquals("SimulatedBoard - 2.3", reader.getProtocol(0));
+        assertEquals(Pin.Mode.ANALOG, reader.getMode(0, 15));
+        assertEquals(321, reader.getValue(0, 15));
+
+        int updates = reader.getUpdateCount(0, 5);
+        device.getPin(5).setMode(Pin.Mode.PWM);
+        device.getPin(5).setValue(200);
+        assertEquals(Pin.Mode.PWM, reader.getMode(0, 5));
+        assertEquals(200, reader.getValue(0, 5));
+        assertTrue(reader.getUpdateCount(0, 5) > updates);
+
+        long[] values = new long[32];
+        Pin.Mode[] modes = new Pin.Mode[32];
+        assertEquals(20, reader.read(0, values, modes));
+        assertEquals(321, values[15]);
+        assertEquals(Pin.Mode.PWM, modes[5]);
+        assertNull(modes[20]);
+
+        device.stop();
+        assertFalse(reader.isReady(0));
+        assertEquals(321, reader.getValue(0, 15));
+    }
+
+    @Test
+    public void writesDocumentedLayout() throws Exception {
+        device.start();
+        device.ensureInitializationIsDone();
+        device.getPin(15).awaitValue(LongPredicate.isEqual(321), TIMEOUT, TimeUnit.SECONDS);
+        assertEquals(0, exporter.export(device));
+        assertEquals(0, exporter.export(device));
+
+        ByteBuffer table = ByteBuffer.allocate((int) file.length()).order(ByteOrder.LITTLE_ENDIAN);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.readFully(table.array());
+        }
+        assertEquals(64 + 2 * 2112, table.capacity());
+        assertEquals(0x46505442, table.getInt(0));
+        assertEquals(1, table.getInt(4));
+        assertEquals(2, table.getInt(8));
+        assertEquals(128, table.getInt(12));
+        int block = 64;
+        assertEquals(0, table.getInt(block) % 2);
+        assertEquals(2, table.getInt(block + 4)); // ready
+        assertEquals(20, table.getInt(block + 8));
+        assertEquals("SimulatedBoard - 2.3".length(), table.getInt(block + 12));
+        int slot = block + 64 + 15 * 16;
+        assertEquals(0, table.getInt(slot) % 2);
+        assertEquals(Pin.Mode.ANALOG.ordinal(), table.getInt(slot + 4));
+        assertEquals(321, table.getLong(slot + 8));
+        assertEquals(0, table.getInt(64 + 2112 + 4)); // the second block is unused
+    }
+
+    @Test
+    public void limitsCountOfDevices() throws Exception {
+        FirmataDevice second = new FirmataDevice(new SimulatedBoard(2, 0));
+        FirmataDevice third = new FirmataDevice(new SimulatedBoard(2, 0));
+        exporter.export(device);
+        assertEquals(1, exporter.export(second));
+        try {
+            exporter.export(third);
+            fail("The table should be full");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        exporter.unexport(second);
+        try {
+            exporter.export(third);
+            fail("Blocks should not be reused");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+}
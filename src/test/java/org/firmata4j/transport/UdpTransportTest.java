@@ -0,0 +1,316 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2023 Oleg Kurbatov (o.v.kurbatov@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.firmata4j.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.firmata4j.LongPredicate;
+import org.firmata4j.Parser;
+import org.firmata4j.Pin;
+import org.firmata4j.firmata.FirmataDevice;
+import org.firmata4j.firmata.FirmataMessageFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.firmata4j.firmata.parser.FirmataToken.*;
+import static org.junit.Assert.*;
+
+/**
+ * Exchanges datagrams with a board emulated on a local datagram channel.
+ *
+ * @author Oleg Kurbatov &lt;o.v.kurbatov@gmail.com&gt;
+ */
+public class UdpTransportTest {
+
+    private static final long TIMEOUT = 10;
+
+    private DatagramChannel emulator;
+    private UdpTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        emulator = DatagramChannel.open();
+        emulator.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        transport = new UdpTransport(InetAddress.getLoopbackAddress(), emulatorPort());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try {
+            transport.stop();
+        } finally {
+            emulator.close();
+        }
+    }
+
+    @Test
+    public void talksToBoard() throws Exception {
+        final SimulatedBoard board = new SimulatedBoard(14, 6);
+        board.setSignal(15, SignalGenerator.constant(321));
+        board.setSamplingInterval(5, TimeUnit.MILLISECONDS);
+        serve(board);
+        transport.setSequenced(true);
+        FirmataDevice device = new FirmataDevice(transport);
+        device.start();
+        try {
+            device.ensureInitializationIsDone();
+            assertEquals("SimulatedBoard - 2.3", device.getProtocol());
+            assertEquals(20, device.getPinsCount());
+            assertEquals(321, device.getPin(15).awaitValue(LongPredicate.isEqual(321), TIMEOUT, TimeUnit.SECONDS));
+            device.getPin(13).setMode(Pin.Mode.OUTPUT);
+            device.getPin(13).setValue(1);
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+            while (board.getValue(13) != 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, board.getValue(13));
+            assertTrue(transport.getReceivedDatagramCount() > 0);
+            assertEquals(0, transport.getLostDatagramCount());
+            assertEquals(0, transport.getReorderedDatagramCount());
+        } finally {
+            device.stop();
+            board.stop();
+        }
+    }
+
+    @Test
+    public void countsLostAndReorderedDatagrams() throws Exception {
+        final BlockingQueue<byte[]> parsed = new LinkedBlockingQueue<>();
+        transport.setSequenced(true);
+        transport.setParser(collector(parsed));
+        transport.start();
+        SocketAddress client = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                ((InetSocketAddress) transport.getLocalAddress()).getPort());
+        for (int sequence : new int[]{0, 1, 3, 2, 4}) {
+            ByteBuffer datagram = ByteBuffer.allocate(5);
+            datagram.putShort((short) sequence);
+            datagram.put(FirmataMessageFactory.setAnalogPinValue((byte) 1, sequence));
+            datagram.flip();
+            emulator.send(datagram, client);
+        }
+        for (int expected : new int[]{0, 1, 3, 4}) {
+            byte[] chunk = parsed.poll(TIMEOUT, TimeUnit.SECONDS);
+            assertNotNull("The datagram has not been parsed", chunk);
+            assertArrayEquals(FirmataMessageFactory.setAnalogPinValue((byte) 1, expected), chunk);
+        }
+        assertEquals(5, transport.getReceivedDatagramCount());
+        assertEquals(1, transport.getLostDatagramCount());
+        assertEquals(1, transport.getReorderedDatagramCount());
+        assertTrue("The stale datagram has been parsed", parsed.isEmpty());
+    }
+
+    @Test
+    public void followsRestartedSequenceOfBoard() throws Exception {
+        final BlockingQueue<byte[]> parsed = new LinkedBlockingQueue<>();
+        transport.setSequenced(true);
+        transport.setParser(collector(parsed));
+        transport.start();
+        SocketAddress client = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                ((InetSocketAddress) transport.getLocalAddress()).getPort());
+        for (int sequence : new int[]{1000, 1001, 0, 1}) {
+            ByteBuffer datagram = ByteBuffer.allocate(5);
+            datagram.putShort((short) sequence);
+            datagram.put(FirmataMessageFactory.setAnalogPinValue((byte) 1, sequence));
+            datagram.flip();
+            emulator.send(datagram, client);
+        }
+        for (int expected : new int[]{1000, 1001, 0, 1}) {
+            byte[] chunk = parsed.poll(TIMEOUT, TimeUnit.SECONDS);
+            assertNotNull("The datagram has not been parsed", chunk);
+            assertArrayEquals(FirmataMessageFactory.setAnalogPinValue((byte) 1, expected), chunk);
+        }
+        assertEquals(0, transport.getLostDatagramCount());
+        assertEquals(0, transport.getReorderedDatagramCount());
+    }
+
+    @Test
+    public void packsMessagesOfSeveralWritesWithinDelay() throws Exception {
+        transport.setSequenced(true);
+        transport.setPackingDelay(200, TimeUnit.MILLISECONDS);
+        transport.start();
+        for (int i = 0; i < 10; i++) {
+            transport.write(FirmataMessageFactory.setAnalogPinValue((byte) 3, i));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(2048);
+        emulator.receive(buffer);
+        buffer.flip();
+        assertEquals("Sequence number", 0, buffer.getShort());
+        for (int i = 0; i < 10; i++) {
+            byte[] message = new byte[3];
+            buffer.get(message);
+            assertArrayEquals(FirmataMessageFactory.setAnalogPinValue((byte) 3, i), message);
+        }
+        assertFalse(buffer.hasRemaining());
+        transport.write(FirmataMessageFactory.setAnalogPinValue((byte) 3, 10));
+        transport.stop(); // sends what is packed
+        buffer.clear();
+        emulator.receive(buffer);
+        buffer.flip();
+        assertEquals("Sequence number", 1, buffer.getShort());
+        assertEquals(3, buffer.remaining());
+        assertEquals(2, transport.getSentDatagramCount());
+    }
+
+    @Test
+    public void packsMessagesIntoDatagrams() throws Exception {
+        transport.setMaxDatagramSize(512);
+        transport.start();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 300; i++) {
+            out.write(FirmataMessageFactory.setAnalogPinValue((byte) 3, i));
+        }
+        byte[] longMessage = new byte[700];
+        longMessage[0] = START_SYSEX;
+        longMessage[1] = STRING_DATA;
+        longMessage[longMessage.length - 1] = END_SYSEX;
+        out.write(longMessage);
+        for (int i = 0; i < 100; i++) {
+            out.write(FirmataMessageFactory.setAnalogPinValue((byte) 3, i));
+        }
+        byte[] bytes = out.toByteArray();
+        transport.write(bytes);
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(2048);
+        int datagrams = 0;
+        boolean longMessageSeparate = false;
+        while (received.size() < bytes.length) {
+            buffer.clear();
+            emulator.receive(buffer);
+            buffer.flip();
+            byte[] datagram = new byte[buffer.remaining()];
+            buffer.get(datagram);
+            datagrams++;
+            assertTrue("Datagram does not start with a message", (datagram[0] & 0x80) != 0 && datagram[0] != END_SYSEX);
+            if (datagram[0] == START_SYSEX) {
+                assertEquals("Long message should be sent alone", longMessage.length, datagram.length);
+                longMessageSeparate = true;
+            } else {
+                assertTrue("Datagram is too long", datagram.length <= 512);
+                assertEquals("Datagram splits a message", 0, datagram.length % 3);
+            }
+            received.write(datagram);
+        }
+        assertTrue(longMessageSeparate);
+        assertArrayEquals(bytes, received.toByteArray());
+        assertEquals(transport.getSentDatagramCount(), datagrams);
+        assertEquals(4, datagrams);
+    }
+
+    private int emulatorPort() throws IOException {
+        return ((InetSocketAddress) emulator.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Passes the datagrams received by the emulator to the board and sends
+     * the responses of the board to the last address a datagram came from.
+     * The sequence numbers are stripped and added to the datagrams.
+     */
+    private void serve(final SimulatedBoard board) {
+        final List<SocketAddress> clients = new CopyOnWriteArrayList<>();
+        board.setParser(new Parser() {
+            private short sequence;
+
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() {
+            }
+
+            @Override
+            public void parse(byte[] bytes) {
+                if (clients.isEmpty()) {
+                    return;
+                }
+                ByteBuffer datagram = ByteBuffer.allocate(bytes.length + 2);
+                datagram.putShort(sequence++);
+                datagram.put(bytes);
+                datagram.flip();
+                try {
+                    emulator.send(datagram, clients.get(0));
+                } catch (IOException e) {
+                    // the emulator is closed
+                }
+            }
+        });
+        Thread receiver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ByteBuffer buffer = ByteBuffer.allocate(2048);
+                try {
+                    board.start();
+                    while (true) {
+                        buffer.clear();
+                        SocketAddress client = emulator.receive(buffer);
+                        if (clients.isEmpty()) {
+                            clients.add(client);
+                        }
+                        buffer.flip();
+                        buffer.getShort();
+                        byte[] bytes = new byte[buffer.remaining()];
+                        buffer.get(bytes);
+                        board.write(bytes);
+                    }
+                } catch (ClosedChannelException e) {
+                    // the test is over
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }, "udp-board-emulator");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    private static Parser collector(final BlockingQueue<byte[]> parsed) {
+        return new Parser() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() {
+            }
+
+            @Override
+            public void parse(byte[] bytes) {
+                parsed.add(bytes);
+            }
+        };
+    }
+
+}